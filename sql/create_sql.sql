@@ -62,3 +62,23 @@ create table chat_history
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
     INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+-- 模型用量表
+create table ai_usage
+(
+    id           bigint auto_increment comment 'id' primary key,
+    appId        bigint                             not null comment '应用id',
+    userId       bigint                             null comment '发起生成的用户id',
+    codeGenType  varchar(64)                        not null comment '代码生成类型（枚举）',
+    modelName    varchar(128)                       null comment '模型名称',
+    status       varchar(32)                        not null comment 'success/error/cancelled/cache_hit',
+    inputTokens  int      default 0                 not null comment '输入 token 数（所有工具轮次之和）',
+    outputTokens int      default 0                 not null comment '输出 token 数（所有工具轮次之和）',
+    totalTokens  int      default 0                 not null comment '总 token 数',
+    toolRounds   int      default 0                 not null comment '工具调用轮次',
+    latencyMs    bigint   default 0                 not null comment '生成耗时（毫秒）',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    INDEX idx_appId_createTime (appId, createTime),   -- 按应用统计
+    INDEX idx_userId_createTime (userId, createTime), -- 按用户统计
+    INDEX idx_createTime (createTime)                 -- 按天统计
+) comment '模型用量' collate = utf8mb4_unicode_ci;
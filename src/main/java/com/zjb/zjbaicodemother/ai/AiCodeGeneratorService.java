@@ -6,52 +6,58 @@ import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
-import reactor.core.publisher.Flux;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 
 /**
  * 描述：AI代码生成服务
+ * 所有应用共用同一个实例，通过 @MemoryId 传入的 appId 区分对话记忆
  * @author zjb
  */
-public interface AiCodeGeneratorService {
+public interface AiCodeGeneratorService extends ChatMemoryAccess {
     /**
      * 生成单文件代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入
      * @return 生成的代码
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成多文件代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入
      * @return 生成的代码
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    MultiFileCodeResult generateMultiFileCode(String userMessage);
+    MultiFileCodeResult generateMultiFileCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
-     * 生成单文件代码
+     * 生成单文件代码（流式）
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入
-     * @return 生成的代码
+     * @return 生成过程的流式响应，完成时带有 token 用量
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    TokenStream generateHtmlCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
-     * 生成多文件代码
+     * 生成多文件代码（流式）
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入
-     * @return 生成的代码
+     * @return 生成过程的流式响应，完成时带有 token 用量
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    TokenStream generateMultiFileCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成 Vue 项目代码（流式）
      *
+     * @param appId       应用ID
      * @param userMessage 用户消息
      * @return 生成过程的流式响应
      */
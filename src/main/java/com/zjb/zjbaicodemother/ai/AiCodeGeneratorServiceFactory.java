@@ -1,27 +1,41 @@
 package com.zjb.zjbaicodemother.ai;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zjb.zjbaicodemother.ai.memory.ApproximateTokenCountEstimator;
+import com.zjb.zjbaicodemother.ai.memory.CachedChatMemoryStore;
+import com.zjb.zjbaicodemother.ai.memory.TokenBudgetChatMemory;
 import com.zjb.zjbaicodemother.ai.tools.FileWriteTool;
+import com.zjb.zjbaicodemother.config.ChatMemoryConfig;
+import com.zjb.zjbaicodemother.config.ReasoningStreamingChatModelConfig;
+import com.zjb.zjbaicodemother.core.output.ContentStore;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 描述：AI服务创建工厂
+ * 每种生成类型只创建一个 AI 服务实例，调用时通过 @MemoryId 传入 appId，按 appId 获取对话记忆；
+ * 对话记忆的消息只缓存在 {@link CachedChatMemoryStore} 的本地缓存中，按实际字符数限制总量，
+ * AI 服务内部按 appId 保存的对话记忆对象随本地缓存的淘汰一并移除，应用的首条消息不再需要构建 AI 服务实例
  * @author zjb
  */
 @Configuration
@@ -41,49 +55,68 @@ public class AiCodeGeneratorServiceFactory {
     private ChatHistoryService chatHistoryService;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private CachedChatMemoryStore chatMemoryStore;
 
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(30))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI服务实例被移除，缓存键: {}，原因: {}", key, cause);
-            }).build();
+    @Resource
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Resource
+    private ContentStore contentStore;
+
+    @Value("${langchain4j.open-ai.streaming-chat-model.model-name:}")
+    private String streamingChatModelName;
 
     /**
-     * 根据appId构建独立的对话记忆(带缓存)
+     * 生成中断时写入对话记忆的说明
      */
-    public AiCodeGeneratorService getAiCodeGeneratorService(Long appId) {
-        return getAiCodeGeneratorService(appId, CodeGenTypeEnum.HTML);
+    private static final String DISCARDED_FILES_NOTE = "（系统说明）上一轮生成因中断或出错没有完成，其中写入的文件已全部丢弃，"
+            + "项目仍是这一轮之前的版本；需要这些文件时请重新完整写入。";
+
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> services = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 各生成类型所用模型的 token 估算
+     */
+    private final Map<CodeGenTypeEnum, TokenCountEstimator> tokenCountEstimators = new EnumMap<>(CodeGenTypeEnum.class);
+
+    @PostConstruct
+    public void init() {
+        // AI 服务内部按 memoryId 保存了对话记忆对象，本地缓存淘汰消息时一并移除，下次调用时重新恢复
+        chatMemoryStore.onEvicted(memoryId -> services.values().forEach(service -> service.evictChatMemory(memoryId)));
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            ChatMemoryConfig.TokenEstimate tokenEstimate = chatMemoryConfig.tokenEstimateOf(modelNameOf(codeGenType));
+            tokenCountEstimators.put(codeGenType, new ApproximateTokenCountEstimator(tokenEstimate.getAsciiCharsPerToken(),
+                    tokenEstimate.getNonAsciiTokensPerChar(), tokenEstimate.getMessageOverheadTokens()));
+            services.put(codeGenType, createAiCodeGeneratorService(codeGenType));
+        }
     }
 
-    public AiCodeGeneratorService getAiCodeGeneratorService(Long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = buildCacheKey(appId, codeGenType);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+    /**
+     * 获取 HTML 和多文件模式使用的AI服务
+     */
+    public AiCodeGeneratorService getAiCodeGeneratorService() {
+        return getAiCodeGeneratorService(CodeGenTypeEnum.HTML);
+    }
+
+    /**
+     * 获取指定生成类型的AI服务，所有应用共用，对话记忆通过 @MemoryId 区分
+     */
+    public AiCodeGeneratorService getAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        return services.get(codeGenType);
     }
 
     /**
      * 创建新的AI服务实例
      */
-    public AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        log.info("创建新的AI服务实例，appId: {}", appId);
-        //根据appId构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                //消息最好大一些，不然会出现vue工程重复创建文件
-                .maxMessages(50)
-                .build();
-        //从数据库中加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMessage(appId, chatMemory, 20);
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("创建AI服务实例，生成类型: {}", codeGenType.getValue());
         //根据代码生成类型选择不同的模型配置
         return switch (codeGenType){
             //Vue 项目生成使用推理模型
             case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorService.class)
                     .streamingChatModel(reasoningStreamingChatModel)
-                    .chatMemoryProvider(memoryId -> chatMemory)
-                    .tools(new FileWriteTool())
+                    .chatMemoryProvider(memoryId -> getChatMemory(memoryId, codeGenType))
+                    .tools(new FileWriteTool(contentStore))
                     .hallucinatedToolNameStrategy(toolExecutionRequest -> {
                         return ToolExecutionResultMessage.from(toolExecutionRequest,"Error: there is no tool called" + toolExecutionRequest.name());
                     })
@@ -92,12 +125,105 @@ public class AiCodeGeneratorServiceFactory {
             case HTML, MULTI_FILE -> AiServices.builder(AiCodeGeneratorService.class)
                     .chatModel(chatModel)
                     .streamingChatModel(openAiStreamingChatModel)
-                    .chatMemory(chatMemory)
+                    .chatMemoryProvider(memoryId -> getChatMemory(memoryId, codeGenType))
                     .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型" + codeGenType.getValue());
         };
     }
 
+    /**
+     * 获取应用的对话记忆，首次使用时恢复对话记忆
+     * AI 服务按 memoryId 保存返回的对话记忆，同一应用的并发首次请求只调用一次
+     *
+     * @param memoryId    应用ID
+     * @param codeGenType 应用的生成类型，决定按哪个模型估算 token 数
+     * @return 对话记忆
+     */
+    private ChatMemory getChatMemory(Object memoryId, CodeGenTypeEnum codeGenType) {
+        return loadChatMemory(((Number) memoryId).longValue(), codeGenType);
+    }
+
+    /**
+     * 恢复对话记忆：优先使用本地缓存和 Redis 中仍未过期的对话记忆，
+     * 过期后才从数据库加载历史对话，并一次性写入 Redis，避免逐条添加时每次都重写整个列表
+     * 对话记忆对象本身不保存消息，每次调用都可以新建
+     */
+    private ChatMemory loadChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+        List<ChatMessage> messages = chatMemoryStore.getMessages(appId);
+        if (messages.isEmpty()) {
+            //从数据库中加载历史对话到记忆中
+            messages = chatHistoryService.loadChatHistoryMessages(appId, chatMemoryConfig.getHistoryLoadCount());
+            if (!messages.isEmpty()) {
+                chatMemoryStore.updateMessages(appId, messages);
+            }
+            log.info("从对话历史恢复对话记忆，appId: {}，消息数: {}", appId, messages.size());
+        } else {
+            log.info("使用 Redis 中的对话记忆，appId: {}，消息数: {}", appId, messages.size());
+        }
+        //根据appId构建独立的对话记忆
+        return buildChatMemory(appId, codeGenType);
+    }
+
+    /**
+     * 生成开始前校验本节点缓存的对话记忆是否仍然有效，生成过程中读取对话记忆不再访问 Redis
+     *
+     * @param appId 应用ID
+     */
+    public void revalidateChatMemory(long appId) {
+        chatMemoryStore.revalidate(appId);
+    }
+
+    /**
+     * 把未经过模型的一轮对话（如命中生成缓存）写入对话记忆，后续对话仍能看到这一轮的上下文
+     *
+     * @param appId       应用ID
+     * @param codeGenType 生成类型
+     * @param userMessage 用户消息
+     * @param aiResponse  AI 回复
+     */
+    public void appendToChatMemory(long appId, CodeGenTypeEnum codeGenType, String userMessage, String aiResponse) {
+        try {
+            ChatMemory chatMemory = getChatMemory(appId, codeGenType);
+            chatMemory.add(UserMessage.from(userMessage));
+            chatMemory.add(AiMessage.from(aiResponse));
+        } catch (Exception e) {
+            //写入失败不影响本次结果，重新加载对话记忆时会从对话历史中恢复
+            log.error("写入对话记忆失败, appId: {}, error: {}", appId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 生成中断或失败时，本轮写入的文件随暂存目录一起丢弃，但对话记忆中已有写入成功的工具结果；
+     * 追加一条说明，后续对话中模型不会以为这些文件已经存在
+     *
+     * @param appId       应用ID
+     * @param codeGenType 生成类型
+     */
+    public void appendDiscardedFilesNote(long appId, CodeGenTypeEnum codeGenType) {
+        try {
+            getChatMemory(appId, codeGenType).add(UserMessage.from(DISCARDED_FILES_NOTE));
+        } catch (Exception e) {
+            log.error("写入对话记忆失败, appId: {}, error: {}", appId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按 token 预算构建对话记忆，Vue 工程的工具消息很大，按条数限制无法控制请求大小
+     */
+    private ChatMemory buildChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+        return new TokenBudgetChatMemory(appId, chatMemoryConfig.getMaxTokens(),
+                tokenCountEstimators.get(codeGenType), chatMemoryStore);
+    }
+
+    /**
+     * 生成类型所用的模型名称：Vue 工程使用推理模型，其余使用基础模型
+     */
+    private String modelNameOf(CodeGenTypeEnum codeGenType) {
+        return codeGenType == CodeGenTypeEnum.VUE_PROJECT
+                ? ReasoningStreamingChatModelConfig.DEFAULT_MODEL_NAME
+                : streamingChatModelName;
+    }
+
     /**
      * 创建AI代码生成器服务
      * @return AI代码生成器服务
@@ -108,13 +234,6 @@ public class AiCodeGeneratorServiceFactory {
         //AiServices.create(AiCodeGeneratorService.class, chatModel);
 
         //流式输出, 为AiCodeGeneratorService创建对象
-        return getAiCodeGeneratorService(0L);
-    }
-
-    /**
-     * 构造缓存键
-     */
-    private String buildCacheKey(Long appId, CodeGenTypeEnum codeGenType) {
-        return appId + "_" + codeGenType.getValue();
+        return getAiCodeGeneratorService();
     }
 }
@@ -0,0 +1,85 @@
+package com.zjb.zjbaicodemother.ai.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模型 HTTP 客户端指标
+ * 统计占用中的请求（连接 / HTTP2 流）数量、首字节耗时、连接建立耗时和各类错误次数
+ *
+ * @author zjb
+ */
+@Component
+public class AiHttpClientMetrics {
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private final Timer firstByteTimer;
+
+    private final Timer connectTimer;
+
+    private final Counter timeoutCounter;
+
+    private final Counter httpErrorCounter;
+
+    private final Counter ioErrorCounter;
+
+    public AiHttpClientMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("ai.http.client.requests.active", activeRequests, AtomicInteger::get)
+                .description("正在占用连接（HTTP/2 下为流）的模型请求数量")
+                .register(meterRegistry);
+        this.firstByteTimer = Timer.builder("ai.http.client.first-byte")
+                .description("发出请求到收到响应头的耗时，新建连接时包含 TCP 和 TLS 握手")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.connectTimer = Timer.builder("ai.http.client.connect")
+                .description("预热时建立连接（含 TLS 握手）的耗时")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("ai.http.client.errors")
+                .tag("type", "timeout")
+                .description("模型请求失败次数")
+                .register(meterRegistry);
+        this.httpErrorCounter = Counter.builder("ai.http.client.errors")
+                .tag("type", "http")
+                .description("模型请求失败次数")
+                .register(meterRegistry);
+        this.ioErrorCounter = Counter.builder("ai.http.client.errors")
+                .tag("type", "io")
+                .description("模型请求失败次数")
+                .register(meterRegistry);
+    }
+
+    void onRequestStart() {
+        activeRequests.incrementAndGet();
+    }
+
+    void onRequestEnd() {
+        activeRequests.decrementAndGet();
+    }
+
+    void recordFirstByte(long nanos) {
+        firstByteTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordConnect(long nanos) {
+        connectTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onTimeout() {
+        timeoutCounter.increment();
+    }
+
+    void onHttpError() {
+        httpErrorCounter.increment();
+    }
+
+    void onIoError() {
+        ioErrorCounter.increment();
+    }
+}
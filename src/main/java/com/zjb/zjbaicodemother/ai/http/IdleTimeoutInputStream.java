@@ -0,0 +1,91 @@
+package com.zjb.zjbaicodemother.ai.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带空闲超时的响应体输入流
+ * 流式响应的两次数据之间超过读取超时时间时关闭底层流，正在阻塞的读取以 SocketTimeoutException 结束
+ *
+ * @author zjb
+ */
+class IdleTimeoutInputStream extends FilterInputStream {
+
+    private final long timeoutNanos;
+
+    private final ScheduledFuture<?> watchdog;
+
+    private volatile long lastActivity = System.nanoTime();
+
+    private volatile boolean timedOut;
+
+    IdleTimeoutInputStream(InputStream in, Duration timeout, ScheduledExecutorService scheduler) {
+        super(in);
+        this.timeoutNanos = timeout.toNanos();
+        long period = Math.max(100, timeout.toMillis() / 4);
+        this.watchdog = scheduler.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            int value = super.read();
+            if (value < 0 && timedOut) {
+                // 被看门狗关闭的流可能直接返回结束，而不是抛出异常
+                throw new IOException("stream closed");
+            }
+            lastActivity = System.nanoTime();
+            return value;
+        } catch (IOException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        try {
+            int count = super.read(b, off, len);
+            if (count < 0 && timedOut) {
+                throw new IOException("stream closed");
+            }
+            lastActivity = System.nanoTime();
+            return count;
+        } catch (IOException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchdog.cancel(false);
+        super.close();
+    }
+
+    private void check() {
+        if (System.nanoTime() - lastActivity < timeoutNanos) {
+            return;
+        }
+        timedOut = true;
+        watchdog.cancel(false);
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // 关闭失败时阻塞的读取仍会在连接断开后结束
+        }
+    }
+
+    private IOException translate(IOException e) {
+        if (!timedOut) {
+            return e;
+        }
+        SocketTimeoutException timeout = new SocketTimeoutException("超过 " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms 未收到数据");
+        timeout.initCause(e);
+        return timeout;
+    }
+}
@@ -0,0 +1,363 @@
+package com.zjb.zjbaicodemother.ai.http;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.service.StreamCancellation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static dev.langchain4j.http.client.sse.ServerSentEventListenerUtils.ignoringExceptions;
+
+/**
+ * 所有模型共用的 HTTP 客户端
+ * 基于同一个 JDK HttpClient，连接（HTTP/2 下为多路复用的流）在各模型和各次生成之间复用，
+ * 避免每次生成都重新进行 TCP 和 TLS 握手
+ * 1. 连接超时：建立 TCP / TLS 连接的最长时间
+ * 2. 首字节超时：发出请求到收到响应头的最长时间
+ * 3. 读取超时：流式响应两次数据之间的最长间隔
+ * 流式请求在虚拟线程上阻塞读取响应体，发起时所在的 {@link StreamCancellation} 可以中途取消请求
+ *
+ * @author zjb
+ */
+@Slf4j
+public class SharedHttpClient implements HttpClient {
+
+    /**
+     * JDK HttpClient 自行管理的请求头，不允许手动设置
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "host", "expect", "upgrade");
+
+    private final java.net.http.HttpClient delegate;
+
+    private final Duration firstByteTimeout;
+
+    private final Duration readTimeout;
+
+    private final Executor streamingExecutor;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final AiHttpClientMetrics metrics;
+
+    public SharedHttpClient(java.net.http.HttpClient delegate,
+                            Duration firstByteTimeout,
+                            Duration readTimeout,
+                            Executor streamingExecutor,
+                            ScheduledExecutorService watchdog,
+                            AiHttpClientMetrics metrics) {
+        this.delegate = delegate;
+        this.firstByteTimeout = firstByteTimeout;
+        this.readTimeout = readTimeout;
+        this.streamingExecutor = streamingExecutor;
+        this.watchdog = watchdog;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException {
+        metrics.onRequestStart();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = delegate.send(toJdkRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+            metrics.recordFirstByte(System.nanoTime() - start);
+            String body;
+            try (InputStream inputStream = new IdleTimeoutInputStream(response.body(), readTimeout, watchdog)) {
+                body = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (!isSuccessful(response.statusCode())) {
+                metrics.onHttpError();
+                throw new HttpException(response.statusCode(), body);
+            }
+            return SuccessfulHttpResponse.builder()
+                    .statusCode(response.statusCode())
+                    .headers(response.headers().map())
+                    .body(body)
+                    .build();
+        } catch (HttpTimeoutException | SocketTimeoutException e) {
+            metrics.onTimeout();
+            throw new TimeoutException(e);
+        } catch (IOException e) {
+            metrics.onIoError();
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            metrics.onRequestEnd();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        StreamCancellation cancellation = StreamCancellation.current();
+        streamingExecutor.execute(() -> stream(request, parser, new ErrorTrackingListener(listener, cancellation), cancellation));
+    }
+
+    private void stream(HttpRequest request, ServerSentEventParser parser, ErrorTrackingListener listener,
+                        StreamCancellation cancellation) {
+        metrics.onRequestStart();
+        long start = System.nanoTime();
+        StreamAbort abort = new StreamAbort(Thread.currentThread());
+        if (cancellation != null) {
+            cancellation.onCancel(abort);
+        }
+        try {
+            HttpResponse<InputStream> response = delegate.send(toJdkRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+            metrics.recordFirstByte(System.nanoTime() - start);
+            try (InputStream body = abort.attach(new IdleTimeoutInputStream(response.body(), readTimeout, watchdog))) {
+                if (!isSuccessful(response.statusCode())) {
+                    metrics.onHttpError();
+                    String errorBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    listener.onError(new HttpException(response.statusCode(), errorBody));
+                    return;
+                }
+                SuccessfulHttpResponse successfulResponse = SuccessfulHttpResponse.builder()
+                        .statusCode(response.statusCode())
+                        .headers(response.headers().map())
+                        .build();
+                ignoringExceptions(() -> listener.onOpen(successfulResponse));
+                parser.parse(body, listener);
+            }
+            if (cancellation != null && cancellation.isCancelled()) {
+                // 响应体被关闭后解析器可能按正常结束返回
+                listener.onError(new CancellationException("请求已取消"));
+            } else if (!listener.failed) {
+                // 解析器遇到 IO 异常时只回调 onError，此时不能再按正常结束处理
+                ignoringExceptions(listener::onClose);
+            }
+        } catch (InterruptedException e) {
+            if (!abort.finish()) {
+                Thread.currentThread().interrupt();
+            }
+            listener.onError(e);
+        } catch (Exception e) {
+            listener.onError(e);
+        } finally {
+            abort.finish();
+            metrics.onRequestEnd();
+        }
+    }
+
+    /**
+     * 预热到目标地址的连接，提前完成 TCP 和 TLS 握手，后续请求直接复用
+     *
+     * @param uri 目标地址
+     */
+    public void warmUp(URI uri) {
+        java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder(uri)
+                .method("HEAD", java.net.http.HttpRequest.BodyPublishers.noBody())
+                .timeout(firstByteTimeout)
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = delegate.send(request, HttpResponse.BodyHandlers.discarding());
+            long elapsed = System.nanoTime() - start;
+            metrics.recordConnect(elapsed);
+            log.info("模型连接预热完成: {}, 协议: {}, 耗时: {}ms", uri, response.version(), elapsed / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("模型连接预热失败: {}, 错误: {}", uri, e.getMessage());
+        }
+    }
+
+    private java.net.http.HttpRequest toJdkRequest(HttpRequest request) {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder()
+                .uri(URI.create(request.url()))
+                .timeout(firstByteTimeout);
+        Map<String, List<String>> headers = request.headers();
+        if (headers != null) {
+            headers.forEach((name, values) -> {
+                if (values != null && !RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+        }
+        java.net.http.HttpRequest.BodyPublisher bodyPublisher = request.body() == null
+                ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                : java.net.http.HttpRequest.BodyPublishers.ofString(request.body());
+        return builder.method(request.method().name(), bodyPublisher).build();
+    }
+
+    private static boolean isSuccessful(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * 取消流式请求：关闭响应体，并在请求线程阻塞于等待响应头或读取响应体时中断该线程
+     * 解析出的事件在同一线程上回调（完整响应后还会执行工具），回调期间不中断线程，避免打断正在进行的文件写入等操作
+     */
+    private static final class StreamAbort implements Runnable {
+
+        private Thread thread;
+
+        private InputStream body;
+
+        /**
+         * 请求线程是否阻塞在 IO 上，发出请求时为等待响应头
+         */
+        private boolean blocking = true;
+
+        private boolean aborted;
+
+        private StreamAbort(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized InputStream attach(InputStream body) {
+            this.body = body;
+            blocking = false;
+            if (aborted) {
+                // 取消发生在响应头返回之后、响应体登记之前
+                closeBody();
+            }
+            return new FilterInputStream(body) {
+
+                @Override
+                public int read() throws IOException {
+                    enterRead();
+                    try {
+                        return super.read();
+                    } finally {
+                        exitRead();
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    enterRead();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        exitRead();
+                    }
+                }
+            };
+        }
+
+        private synchronized void enterRead() throws IOException {
+            if (aborted) {
+                throw new IOException("stream aborted");
+            }
+            blocking = true;
+        }
+
+        private synchronized void exitRead() {
+            blocking = false;
+            if (aborted) {
+                // 读取已经返回，清除中断标记，避免影响随后的回调
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            if (thread == null || aborted) {
+                return;
+            }
+            aborted = true;
+            if (blocking) {
+                thread.interrupt();
+            }
+            closeBody();
+        }
+
+        private void closeBody() {
+            if (body != null) {
+                try {
+                    body.close();
+                } catch (IOException ignored) {
+                    // 读取线程已被中断，关闭失败不影响取消
+                }
+            }
+        }
+
+        /**
+         * 请求结束后不再响应取消，避免中断执行后续任务的线程，并清除取消时设置的中断标记
+         *
+         * @return 请求是否被取消过
+         */
+        private synchronized boolean finish() {
+            thread = null;
+            body = null;
+            if (aborted) {
+                Thread.interrupted();
+            }
+            return aborted;
+        }
+    }
+
+    /**
+     * 记录是否已经回调过错误，把超时统一转换为 langchain4j 的 TimeoutException，取消导致的错误统一转换为 CancellationException
+     */
+    private final class ErrorTrackingListener implements ServerSentEventListener {
+
+        private final ServerSentEventListener delegate;
+
+        private final StreamCancellation cancellation;
+
+        private volatile boolean failed;
+
+        private ErrorTrackingListener(ServerSentEventListener delegate, StreamCancellation cancellation) {
+            this.delegate = delegate;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            delegate.onOpen(response);
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            delegate.onEvent(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            Throwable error = throwable;
+            if (cancellation != null && cancellation.isCancelled()) {
+                // 不带原始异常，模型按根异常转换错误时才能保留 CancellationException
+                error = throwable instanceof CancellationException ? throwable : new CancellationException("请求已取消");
+            } else if (throwable instanceof HttpTimeoutException || throwable instanceof SocketTimeoutException) {
+                metrics.onTimeout();
+                error = new TimeoutException(throwable);
+            } else if (throwable instanceof IOException) {
+                metrics.onIoError();
+            }
+            Throwable finalError = error;
+            ignoringExceptions(() -> delegate.onError(finalError));
+        }
+
+        @Override
+        public void onClose() {
+            delegate.onClose();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zjb.zjbaicodemother.ai.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+
+import java.time.Duration;
+
+/**
+ * 共享 HTTP 客户端的构建器
+ * 模型构建时会按自身参数设置超时，但连接池和超时由共享客户端统一配置，这里只记录不生效
+ *
+ * @author zjb
+ */
+public class SharedHttpClientBuilder implements HttpClientBuilder {
+
+    private final SharedHttpClient sharedHttpClient;
+
+    private Duration connectTimeout;
+
+    private Duration readTimeout;
+
+    public SharedHttpClientBuilder(SharedHttpClient sharedHttpClient) {
+        this.sharedHttpClient = sharedHttpClient;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return readTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return sharedHttpClient;
+    }
+}
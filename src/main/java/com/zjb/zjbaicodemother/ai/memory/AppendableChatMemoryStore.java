@@ -0,0 +1,25 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.List;
+
+/**
+ * 支持追加写入的对话记忆存储
+ * 对话记忆新增消息时只写入新增的消息，并从头部淘汰指定条数，不再重写整个消息列表
+ *
+ * @author zjb
+ */
+public interface AppendableChatMemoryStore extends ChatMemoryStore {
+
+    /**
+     * 追加消息，并从最早的消息开始淘汰
+     * 系统消息不参与追加和淘汰，变化时通过 updateMessages 写入
+     *
+     * @param memoryId        对话记忆ID
+     * @param appended        追加的消息，不包含系统消息
+     * @param evictedFromHead 追加后从头部淘汰的消息数，不包含系统消息
+     */
+    void appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead);
+}
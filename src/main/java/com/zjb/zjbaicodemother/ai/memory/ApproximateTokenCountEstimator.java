@@ -0,0 +1,92 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 本地近似的 token 数估算
+ * 不加载分词器，按字符类别折算：ASCII 字符按平均每个 token 的字符数折算，其他字符（中文等）按每个字符的 token 数折算，
+ * 每条消息再加上固定的格式开销。只遍历一次字符，用于对话记忆的容量控制，不追求与模型计费完全一致
+ *
+ * @author zjb
+ */
+public class ApproximateTokenCountEstimator implements TokenCountEstimator {
+
+    private final double asciiCharsPerToken;
+
+    private final double nonAsciiTokensPerChar;
+
+    private final int messageOverheadTokens;
+
+    /**
+     * @param asciiCharsPerToken    平均每个 token 包含的 ASCII 字符数
+     * @param nonAsciiTokensPerChar 每个非 ASCII 字符折算的 token 数
+     * @param messageOverheadTokens 每条消息的格式开销
+     */
+    public ApproximateTokenCountEstimator(double asciiCharsPerToken, double nonAsciiTokensPerChar, int messageOverheadTokens) {
+        this.asciiCharsPerToken = asciiCharsPerToken;
+        this.nonAsciiTokensPerChar = nonAsciiTokensPerChar;
+        this.messageOverheadTokens = messageOverheadTokens;
+    }
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int asciiChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                asciiChars++;
+            } else if (!Character.isLowSurrogate(c)) {
+                // 代理对按一个字符计算
+                otherChars++;
+            }
+        }
+        return (int) Math.ceil(asciiChars / asciiCharsPerToken + otherChars * nonAsciiTokensPerChar);
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = messageOverheadTokens;
+        if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokenCountInText(systemMessage.text());
+        } else if (message instanceof UserMessage userMessage) {
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+                    tokens += messageOverheadTokens
+                            + estimateTokenCountInText(toolExecutionRequest.name())
+                            + estimateTokenCountInText(toolExecutionRequest.arguments());
+                }
+            }
+        } else if (message instanceof ToolExecutionResultMessage toolExecutionResultMessage) {
+            tokens += estimateTokenCountInText(toolExecutionResultMessage.text());
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+}
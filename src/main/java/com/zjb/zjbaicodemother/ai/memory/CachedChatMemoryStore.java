@@ -0,0 +1,450 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 带本地缓存和延迟写入的对话记忆存储
+ * 1. 本地 Caffeine 缓存按字符数限制总量，命中时读取不访问 Redis，一次生成中的读取都在本进程内完成
+ * 2. 写入先更新本地缓存，再由单独的后台线程定时批量写入 Redis；同一应用的多次追加合并为一次 RPUSH + LTRIM
+ * 3. 读取时记下 Redis 中的写入纪元，每次写入都校验并递增纪元，写入成功后本地缓存随之进入新的纪元；
+ *    纪元不一致说明其他节点在此期间写入过：追加的消息改为追加到其他节点的消息之后，不会丢失，
+ *    整体重写则丢弃，不会用旧的历史覆盖新的历史；每次生成开始前通过 {@link #revalidate} 校验一次纪元
+ * 4. 尚未写入 Redis 的消息在本地缓存被淘汰后仍可读取；关闭应用时写完所有未写入的消息
+ * 5. 本地缓存是对话记忆唯一的缓存，权重随消息增减更新；被淘汰时通过 {@link #onEvicted} 通知持有对话记忆对象的一方
+ *
+ * @author zjb
+ */
+@Slf4j
+public class CachedChatMemoryStore implements AppendableChatMemoryStore, AutoCloseable {
+
+    private final CompressedRedisChatMemoryStore redisStore;
+
+    private final Cache<Object, Entry> localCache;
+
+    private volatile Consumer<Object> evictionListener = memoryId -> {
+    };
+
+    /**
+     * 尚未写入 Redis 的变更，按对话记忆ID合并
+     */
+    private final Map<Object, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 正在写入 Redis 的变更，写入期间本地缓存被淘汰时仍从这里加载
+     */
+    private final Map<Object, Pending> flushing = new ConcurrentHashMap<>();
+
+    /**
+     * 定时写入、关闭和校验纪元时的写入互斥，写入时会访问 Redis，使用 {@link ReentrantLock} 避免阻塞虚拟线程的载体线程
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ScheduledExecutorService writer;
+
+    private final Duration shutdownTimeout;
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    private final Counter writeCounter;
+
+    private final Counter writeFailureCounter;
+
+    private final Counter mergedCounter;
+
+    private final Counter droppedCounter;
+
+    public CachedChatMemoryStore(CompressedRedisChatMemoryStore redisStore, long localMaximumChars, Duration expireAfterAccess,
+                                 Duration writeBehindInterval, Duration shutdownTimeout, MeterRegistry meterRegistry) {
+        this.redisStore = redisStore;
+        this.shutdownTimeout = shutdownTimeout;
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(localMaximumChars)
+                .weigher((Object memoryId, Entry entry) -> entry.chars())
+                .expireAfterAccess(expireAfterAccess)
+                .evictionListener((Object memoryId, Entry entry, RemovalCause cause) -> {
+                    log.debug("本地缓存的对话记忆被淘汰，memoryId: {}，原因: {}", memoryId, cause);
+                    evictionListener.accept(memoryId);
+                })
+                .build();
+        this.writer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("chat-memory-writer").daemon().factory());
+        long interval = writeBehindInterval.toMillis();
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        this.hitCounter = lookupCounter(meterRegistry, "hit");
+        this.missCounter = lookupCounter(meterRegistry, "miss");
+        this.writeCounter = Counter.builder("ai.chat-memory.writes")
+                .description("延迟写入 Redis 的次数，同一应用的多次变更合并为一次")
+                .register(meterRegistry);
+        this.writeFailureCounter = Counter.builder("ai.chat-memory.write-failures")
+                .description("写入 Redis 失败的次数，失败后在下一次写入时整体重写")
+                .register(meterRegistry);
+        this.mergedCounter = conflictCounter(meterRegistry, "merged");
+        this.droppedCounter = conflictCounter(meterRegistry, "dropped");
+        Gauge.builder("ai.chat-memory.pending", pending, Map::size)
+                .description("尚未写入 Redis 的对话记忆数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Entry entry = localCache.getIfPresent(memoryId);
+        if (entry != null) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+            entry = localCache.get(memoryId, this::load);
+        }
+        return new ArrayList<>(entry.messages());
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        localCache.asMap().compute(memoryId, (key, entry) -> {
+            long epoch = entry != null ? entry.epoch() : currentEpoch(key);
+            Entry updated = Entry.of(messages, epoch);
+            pending.compute(key, (k, current) -> Pending.merge(current, epoch).rewrite(updated.messages()));
+            return updated;
+        });
+    }
+
+    @Override
+    public void appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead) {
+        localCache.asMap().compute(memoryId, (key, entry) -> {
+            if (entry == null) {
+                entry = load(key);
+            }
+            List<ChatMessage> messages = new ArrayList<>(entry.messages());
+            int head = !messages.isEmpty() && messages.getFirst() instanceof SystemMessage ? 1 : 0;
+            messages.addAll(appended);
+            int evicted = Math.min(evictedFromHead, messages.size() - head);
+            messages.subList(head, head + evicted).clear();
+            Entry updated = Entry.of(messages, entry.epoch());
+            pending.compute(key, (k, current) -> Pending.merge(current, updated.epoch())
+                    .append(appended, evicted, updated.messages()));
+            return updated;
+        });
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        localCache.invalidate(memoryId);
+        pending.remove(memoryId);
+        redisStore.deleteMessages(memoryId);
+    }
+
+    /**
+     * 设置本地缓存淘汰对话记忆（超出容量或过期）时的回调，主动删除和丢弃不会触发
+     *
+     * @param listener 参数为对话记忆ID
+     */
+    public void onEvicted(Consumer<Object> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * 校验本地缓存的纪元是否仍与 Redis 一致，不一致说明其他节点写入过：先写入本地未写入的变更，
+     * 仍不一致时清除本地缓存，下次读取时从 Redis 重新加载
+     * 每次生成开始前调用一次，生成过程中的读取不再访问 Redis
+     *
+     * @param memoryId 对话记忆ID
+     */
+    public void revalidate(Object memoryId) {
+        Entry entry = localCache.getIfPresent(memoryId);
+        if (entry == null) {
+            return;
+        }
+        try {
+            if (redisStore.currentEpoch(memoryId) == entry.epoch()) {
+                return;
+            }
+            flushLock.lock();
+            try {
+                flush(memoryId);
+            } finally {
+                flushLock.unlock();
+            }
+            long epoch = redisStore.currentEpoch(memoryId);
+            localCache.asMap().computeIfPresent(memoryId, (key, current) ->
+                    current.epoch() != epoch && !pending.containsKey(key) ? null : current);
+            log.info("对话记忆已被其他节点写入，重新加载，memoryId: {}", memoryId);
+        } catch (Exception e) {
+            log.warn("校验对话记忆纪元失败，memoryId: {}, error: {}", memoryId, e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭应用时停止定时写入，并写完所有未写入的变更
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("等待对话记忆写入线程结束超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("关闭时仍有 {} 个对话记忆未能写入 Redis", pending.size());
+        }
+    }
+
+    /**
+     * 把所有未写入的变更写入 Redis，每个对话记忆一次事务
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            for (Object memoryId : pending.keySet()) {
+                flush(memoryId);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 写入一个对话记忆未写入的变更，调用方持有 {@link #flushLock}
+     */
+    private void flush(Object memoryId) {
+        Pending changes = pending.remove(memoryId);
+        if (changes == null) {
+            return;
+        }
+        flushing.put(memoryId, changes);
+        try {
+            Long written = changes.rewrite
+                    ? redisStore.updateMessages(memoryId, changes.snapshot, changes.epoch)
+                    : redisStore.appendMessages(memoryId, changes.appended, changes.evicted, changes.epoch);
+            flushing.remove(memoryId);
+            if (written != null) {
+                writeCounter.increment();
+                advance(memoryId, changes.epoch, written);
+            } else if (changes.rewrite) {
+                droppedCounter.increment();
+                log.warn("对话记忆已被其他节点写入，丢弃本地的整体重写，memoryId: {}", memoryId);
+                discard(memoryId, changes.epoch);
+            } else {
+                mergeRejected(memoryId, changes);
+            }
+        } catch (Exception e) {
+            flushing.remove(memoryId);
+            writeFailureCounter.increment();
+            log.error("对话记忆写入 Redis 失败，稍后重试，memoryId: {}, error: {}", memoryId, e.getMessage());
+            // 之后的变更基于本地最新的消息，重试时整体重写；写入其实已经成功时纪元已变化，重写会被拒绝，重新加载即可
+            pending.merge(memoryId, changes.rewrite(changes.snapshot), (current, failed) -> current.rewrite(current.snapshot));
+        }
+    }
+
+    /**
+     * 写入成功，本地缓存和写入期间新增的变更进入写入后的纪元
+     */
+    private void advance(Object memoryId, long epoch, long written) {
+        localCache.asMap().compute(memoryId, (key, entry) -> {
+            pending.computeIfPresent(key, (k, changes) -> {
+                if (changes.epoch == epoch) {
+                    changes.epoch = written;
+                }
+                return changes;
+            });
+            return entry != null && entry.epoch() == epoch ? entry.withEpoch(written) : entry;
+        });
+    }
+
+    /**
+     * 追加被拒绝（其他节点在此期间写入过）：清除本地缓存，把本地追加的消息（包括写入期间新增的）追加到其他节点的消息之后
+     * 追加不会覆盖其他节点的消息，因此不校验纪元；头部淘汰基于本地的旧历史，不再执行，之后添加消息时按最新的历史淘汰
+     */
+    private void mergeRejected(Object memoryId, Pending rejected) {
+        List<ChatMessage> unwritten = new ArrayList<>(rejected.appended);
+        boolean[] rewritten = {false};
+        localCache.asMap().compute(memoryId, (key, entry) -> {
+            Pending later = pending.get(key);
+            if (later != null && later.epoch == rejected.epoch) {
+                pending.remove(key);
+                rewritten[0] = later.rewrite;
+                unwritten.addAll(later.appended);
+            }
+            return entry != null && entry.epoch() == rejected.epoch ? null : entry;
+        });
+        if (rewritten[0]) {
+            droppedCounter.increment();
+            log.warn("对话记忆已被其他节点写入，丢弃本地的整体重写，memoryId: {}", memoryId);
+            return;
+        }
+        try {
+            redisStore.appendMessages(memoryId, unwritten, 0, null);
+            mergedCounter.increment();
+            log.info("对话记忆已被其他节点写入，本地的 {} 条消息追加到其后，memoryId: {}", unwritten.size(), memoryId);
+        } catch (Exception e) {
+            droppedCounter.increment();
+            log.error("对话记忆合并写入 Redis 失败，丢弃本地的 {} 条消息，memoryId: {}, error: {}",
+                    unwritten.size(), memoryId, e.getMessage());
+        }
+    }
+
+    /**
+     * 本地缓存未命中：还有未写入的变更时直接使用，否则先记下纪元再从 Redis 读取
+     */
+    private Entry load(Object memoryId) {
+        Pending changes = pending.get(memoryId);
+        if (changes == null) {
+            changes = flushing.get(memoryId);
+        }
+        if (changes != null) {
+            return Entry.of(changes.snapshot, changes.epoch);
+        }
+        long epoch = redisStore.currentEpoch(memoryId);
+        return Entry.of(redisStore.getMessages(memoryId), epoch);
+    }
+
+    private long currentEpoch(Object memoryId) {
+        Pending changes = pending.get(memoryId);
+        return changes != null ? changes.epoch : redisStore.currentEpoch(memoryId);
+    }
+
+    /**
+     * 丢弃指定纪元的本地缓存和未写入的变更
+     */
+    private void discard(Object memoryId, long epoch) {
+        localCache.asMap().computeIfPresent(memoryId, (key, entry) -> entry.epoch() == epoch ? null : entry);
+        pending.computeIfPresent(memoryId, (key, changes) -> changes.epoch == epoch ? null : changes);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai.chat-memory.local-lookups")
+                .tag("result", result)
+                .description("读取对话记忆时本地缓存的命中情况")
+                .register(meterRegistry);
+    }
+
+    private static Counter conflictCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai.chat-memory.conflicts")
+                .tag("result", result)
+                .description("对话记忆已被其他节点写入时本地变更的处理：追加合并到其后或丢弃")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 本地缓存的对话记忆
+     *
+     * @param messages 全部消息
+     * @param epoch    读取或最近一次写入后的纪元
+     * @param chars    消息的字符数，作为缓存权重
+     */
+    record Entry(List<ChatMessage> messages, long epoch, int chars) {
+
+        static Entry of(List<ChatMessage> messages, long epoch) {
+            List<ChatMessage> snapshot = List.copyOf(messages);
+            long chars = 0;
+            for (ChatMessage message : snapshot) {
+                chars += charsOf(message);
+            }
+            return new Entry(snapshot, epoch, (int) Math.min(Integer.MAX_VALUE, chars));
+        }
+
+        Entry withEpoch(long epoch) {
+            return new Entry(messages, epoch, chars);
+        }
+
+        private static long charsOf(ChatMessage message) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage.text().length();
+            }
+            if (message instanceof UserMessage userMessage) {
+                return userMessage.hasSingleText() ? userMessage.singleText().length() : userMessage.contents().size() * 64L;
+            }
+            if (message instanceof AiMessage aiMessage) {
+                long chars = aiMessage.text() == null ? 0 : aiMessage.text().length();
+                if (aiMessage.hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+                        chars += toolExecutionRequest.arguments() == null ? 0 : toolExecutionRequest.arguments().length();
+                    }
+                }
+                return chars;
+            }
+            if (message instanceof ToolExecutionResultMessage toolExecutionResultMessage) {
+                return toolExecutionResultMessage.text().length();
+            }
+            return 64;
+        }
+    }
+
+    /**
+     * 一个对话记忆尚未写入 Redis 的变更
+     * 只有追加时记录追加的消息和淘汰的条数；有整体重写时只需写入最新的全部消息
+     */
+    private static final class Pending {
+
+        /**
+         * 变更所基于的纪元，写入期间新增的变更在写入成功后进入写入后的纪元
+         */
+        private long epoch;
+
+        private boolean rewrite;
+
+        private final List<ChatMessage> appended = new ArrayList<>();
+
+        private int evicted;
+
+        /**
+         * 应用变更后的全部消息
+         */
+        private List<ChatMessage> snapshot = List.of();
+
+        private Pending(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * 合并到已有的变更；纪元不同说明本地缓存已重新加载，之前的变更已处理
+         */
+        static Pending merge(Pending current, long epoch) {
+            return current != null && current.epoch == epoch ? current : new Pending(epoch);
+        }
+
+        Pending append(List<ChatMessage> messages, int evictedFromHead, List<ChatMessage> latest) {
+            if (!rewrite) {
+                // RPUSH 全部追加的消息后再 LTRIM 淘汰的总条数，与逐次执行的结果相同
+                appended.addAll(messages);
+                evicted += evictedFromHead;
+            }
+            snapshot = latest;
+            return this;
+        }
+
+        Pending rewrite(List<ChatMessage> latest) {
+            rewrite = true;
+            appended.clear();
+            evicted = 0;
+            snapshot = latest;
+            return this;
+        }
+    }
+}
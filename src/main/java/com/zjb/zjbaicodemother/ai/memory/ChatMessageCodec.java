@@ -0,0 +1,108 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 单条对话消息的二进制编码
+ * 格式：1 字节版本 + 1 字节压缩方式 + 内容；压缩时内容前有 4 字节的原始长度
+ * 内容为消息的 JSON，超过阈值时使用 Deflate 压缩，压缩后不更小则保留原文
+ *
+ * @author zjb
+ */
+class ChatMessageCodec {
+
+    static final byte VERSION = 1;
+
+    private static final byte RAW = 0;
+
+    private static final byte DEFLATE = 1;
+
+    private static final int HEADER_LENGTH = 2;
+
+    private final int compressThresholdBytes;
+
+    ChatMessageCodec(int compressThresholdBytes) {
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    byte[] encode(ChatMessage message) {
+        byte[] json = ChatMessageSerializer.messageToJson(message).getBytes(StandardCharsets.UTF_8);
+        if (json.length >= compressThresholdBytes) {
+            byte[] compressed = deflate(json);
+            if (compressed.length + Integer.BYTES < json.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + compressed.length)
+                        .put(VERSION).put(DEFLATE).putInt(json.length).put(compressed)
+                        .array();
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + json.length).put(VERSION).put(RAW).put(json).array();
+    }
+
+    ChatMessage decode(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH || bytes[0] != VERSION) {
+            throw new IllegalStateException("不支持的对话消息编码版本: " + (bytes.length == 0 ? "空" : bytes[0]));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        byte[] json = switch (bytes[1]) {
+            case RAW -> {
+                byte[] raw = new byte[buffer.remaining()];
+                buffer.get(raw);
+                yield raw;
+            }
+            case DEFLATE -> {
+                byte[] inflated = new byte[buffer.getInt()];
+                inflate(bytes, buffer.position(), buffer.remaining(), inflated);
+                yield inflated;
+            }
+            default -> throw new IllegalStateException("不支持的对话消息压缩方式: " + bytes[1]);
+        };
+        return ChatMessageDeserializer.messageFromJson(new String(json, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 3 + 16);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void inflate(byte[] input, int offset, int length, byte[] output) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, length);
+            int inflated = 0;
+            while (inflated < output.length && !inflater.finished()) {
+                int count = inflater.inflate(output, inflated, output.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != output.length) {
+                throw new IllegalStateException("对话消息解压后的长度不一致");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("对话消息解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.SystemMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis 列表的对话记忆存储
+ * 1. 每个应用一个列表，每条消息是一个元素，按 {@link ChatMessageCodec} 编码，大消息压缩存储
+ * 2. 新增消息只 RPUSH 新消息，淘汰时 LTRIM 头部，不再像整段 JSON 那样每轮重写全部消息
+ * 3. 系统消息单独保存，不影响列表头部的淘汰
+ * 4. 读取时发现旧版的整段 JSON 键，转换为列表后删除旧键
+ * 5. 每个应用有一个写入纪元，每次写入时在同一事务中递增；带纪元的写入在纪元变化（其他节点已写入）后被拒绝，
+ *    基于旧历史的写入不会覆盖新的历史
+ *
+ * @author zjb
+ */
+@Slf4j
+public class CompressedRedisChatMemoryStore implements AppendableChatMemoryStore {
+
+    private static final String KEY_PREFIX = "ai:chat-memory:";
+
+    private static final String SYSTEM_KEY_SUFFIX = ":system";
+
+    private static final String EPOCH_KEY_SUFFIX = ":epoch";
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    /**
+     * 对话记忆的过期时间，每次写入时刷新，不大于 0 时不过期
+     */
+    private final Duration ttl;
+
+    private final ChatMessageCodec codec;
+
+    public CompressedRedisChatMemoryStore(RedisTemplate<String, byte[]> redisTemplate, Duration ttl, int compressThresholdBytes) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+        this.codec = new ChatMessageCodec(compressThresholdBytes);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = listKey(memoryId);
+        String systemKey = key + SYSTEM_KEY_SUFFIX;
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, byte[]> redisOperations = (RedisOperations<String, byte[]>) operations;
+                redisOperations.opsForValue().get(systemKey);
+                redisOperations.opsForList().range(key, 0, -1);
+                return null;
+            }
+        });
+        byte[] system = (byte[]) results.get(0);
+        List<byte[]> encoded = results.get(1) == null ? Collections.emptyList() : (List<byte[]>) results.get(1);
+        if (system == null && encoded.isEmpty()) {
+            return migrateLegacy(memoryId);
+        }
+        List<ChatMessage> messages = new ArrayList<>(encoded.size() + 1);
+        if (system != null) {
+            messages.add(codec.decode(system));
+        }
+        for (byte[] bytes : encoded) {
+            messages.add(codec.decode(bytes));
+        }
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        updateMessages(memoryId, messages, null);
+    }
+
+    /**
+     * 重写全部消息
+     *
+     * @param memoryId 对话记忆ID
+     * @param messages 全部消息
+     * @param epoch    读取历史时的纪元，为 null 时不校验
+     * @return 写入后的纪元，纪元已变化时返回 null，不写入
+     */
+    public Long updateMessages(Object memoryId, List<ChatMessage> messages, Long epoch) {
+        String key = listKey(memoryId);
+        String systemKey = key + SYSTEM_KEY_SUFFIX;
+        byte[] system = null;
+        List<byte[]> encoded = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage) {
+                system = codec.encode(message);
+            } else {
+                encoded.add(codec.encode(message));
+            }
+        }
+        byte[] encodedSystem = system;
+        return inTransaction(memoryId, epoch, operations -> {
+            operations.delete(key);
+            if (!encoded.isEmpty()) {
+                operations.opsForList().rightPushAll(key, encoded.toArray(new byte[0][]));
+            }
+            if (encodedSystem == null) {
+                operations.delete(systemKey);
+            } else {
+                operations.opsForValue().set(systemKey, encodedSystem);
+            }
+            expire(operations, key, systemKey);
+        });
+    }
+
+    @Override
+    public void appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead) {
+        appendMessages(memoryId, appended, evictedFromHead, null);
+    }
+
+    /**
+     * 追加消息，并从最早的消息开始淘汰
+     *
+     * @param memoryId        对话记忆ID
+     * @param appended        追加的消息
+     * @param evictedFromHead 追加后从头部淘汰的消息数
+     * @param epoch           读取历史时的纪元，为 null 时不校验
+     * @return 写入后的纪元，纪元已变化时返回 null，不写入
+     */
+    public Long appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead, Long epoch) {
+        String key = listKey(memoryId);
+        byte[][] encoded = new byte[appended.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = codec.encode(appended.get(i));
+        }
+        return inTransaction(memoryId, epoch, operations -> {
+            if (encoded.length > 0) {
+                operations.opsForList().rightPushAll(key, encoded);
+            }
+            if (evictedFromHead > 0) {
+                operations.opsForList().trim(key, evictedFromHead, -1);
+            }
+            expire(operations, key, key + SYSTEM_KEY_SUFFIX);
+        });
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = listKey(memoryId);
+        // 保留并递增纪元，删除前读取的节点不能再写入
+        inTransaction(memoryId, null, operations -> operations.delete(List.of(key, key + SYSTEM_KEY_SUFFIX, legacyKey(memoryId))));
+    }
+
+    /**
+     * 当前的写入纪元，读取历史前取得，写入时用于校验期间是否有其他写入
+     *
+     * @param memoryId 对话记忆ID
+     * @return 纪元，还没有写入过或已过期时为 0
+     */
+    public long currentEpoch(Object memoryId) {
+        return parseEpoch(redisTemplate.opsForValue().get(listKey(memoryId) + EPOCH_KEY_SUFFIX));
+    }
+
+    /**
+     * 旧版存储把整个消息列表保存为一个 JSON 字符串，键为对话记忆ID
+     */
+    private List<ChatMessage> migrateLegacy(Object memoryId) {
+        byte[] json = redisTemplate.opsForValue().get(legacyKey(memoryId));
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        List<ChatMessage> messages = ChatMessageDeserializer.messagesFromJson(new String(json, StandardCharsets.UTF_8));
+        updateMessages(memoryId, messages);
+        redisTemplate.delete(legacyKey(memoryId));
+        log.info("对话记忆已转换为列表存储，memoryId: {}，消息数: {}", memoryId, messages.size());
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * 在事务中执行写入并递增纪元；指定纪元时 WATCH 纪元键，纪元不一致或在事务提交前变化时不写入
+     *
+     * @return 写入后的纪元，没有写入时为 null
+     */
+    @SuppressWarnings("unchecked")
+    private Long inTransaction(Object memoryId, Long epoch, Consumer<RedisOperations<String, byte[]>> commands) {
+        String epochKey = listKey(memoryId) + EPOCH_KEY_SUFFIX;
+        List<Object> results = redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, byte[]> redisOperations = (RedisOperations<String, byte[]>) operations;
+                if (epoch != null) {
+                    redisOperations.watch(epochKey);
+                    if (epoch != parseEpoch(redisOperations.opsForValue().get(epochKey))) {
+                        redisOperations.unwatch();
+                        return null;
+                    }
+                }
+                redisOperations.multi();
+                commands.accept(redisOperations);
+                redisOperations.opsForValue().increment(epochKey);
+                if (ttl.isPositive()) {
+                    redisOperations.expire(epochKey, ttl);
+                }
+                return redisOperations.exec();
+            }
+        });
+        if (results == null || results.isEmpty()) {
+            // 被 WATCH 中止
+            return null;
+        }
+        // INCR 的结果即写入后的纪元，之后只有纪元键的 EXPIRE
+        return ((Number) results.get(results.size() - (ttl.isPositive() ? 2 : 1))).longValue();
+    }
+
+    private void expire(RedisOperations<String, byte[]> operations, String key, String systemKey) {
+        if (ttl.isPositive()) {
+            operations.expire(key, ttl);
+            operations.expire(systemKey, ttl);
+        }
+    }
+
+    private static long parseEpoch(byte[] value) {
+        return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    }
+
+    private static String listKey(Object memoryId) {
+        return KEY_PREFIX + memoryId;
+    }
+
+    private static String legacyKey(Object memoryId) {
+        return String.valueOf(memoryId);
+    }
+}
@@ -0,0 +1,199 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按估算的 token 数限制容量的对话记忆
+ * 1. 超出预算时从最早的消息开始淘汰，系统消息固定在最前面，不会被淘汰
+ * 2. 带工具调用的 AI 消息与其后的工具执行结果作为一个整体淘汰，不会留下不成对的工具消息
+ * 3. 当前轮次（最后一条用户消息及之后的消息）不淘汰，Vue 工程的工具调用循环中途不会丢失上下文
+ * 消息的条数不再固定，发送给模型的请求大小由 token 预算决定
+ * 存储支持追加写入时，新增消息只写入这一条消息和淘汰的条数
+ * 每条消息只估算一次（按对象缓存），总 token 数在上一次的结果上增量计算
+ *
+ * @author zjb
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final int maxTokens;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final ChatMemoryStore store;
+
+    /**
+     * 消息 -> 估算的 token 数，按对象比较，消息不再被引用后自动移除
+     */
+    private final Cache<ChatMessage, Integer> tokenCounts = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * 上一次计算的总 token 数
+     */
+    private volatile Totals totals;
+
+    public TokenBudgetChatMemory(Object id, int maxTokens, TokenCountEstimator tokenCountEstimator, ChatMemoryStore store) {
+        this.id = id;
+        this.maxTokens = maxTokens;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.store = store;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int existing = indexOfSystemMessage(messages);
+            if (existing >= 0) {
+                if (messages.get(existing).equals(message)) {
+                    return;
+                }
+                messages.remove(existing);
+            }
+            messages.addFirst(message);
+            store.updateMessages(id, ensureCapacity(messages));
+            return;
+        }
+        messages.add(message);
+        List<ChatMessage> kept = ensureCapacity(messages);
+        if (store instanceof AppendableChatMemoryStore appendableStore) {
+            // 被淘汰的总是系统消息之外最早的连续若干条消息
+            appendableStore.appendMessages(id, List.of(message), messages.size() - kept.size());
+        } else {
+            store.updateMessages(id, kept);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return ensureCapacity(new ArrayList<>(store.getMessages(id)));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 淘汰超出预算的消息
+     *
+     * @param messages 按时间顺序排列的消息
+     * @return 淘汰后的消息
+     */
+    List<ChatMessage> ensureCapacity(List<ChatMessage> messages) {
+        int total = totalTokens(messages);
+        if (total <= maxTokens) {
+            totals = Totals.of(messages, total);
+            return messages;
+        }
+        int currentRound = lastIndexOfUserMessage(messages);
+        List<ChatMessage> kept = new ArrayList<>(messages.size());
+        int i = 0;
+        while (i < messages.size()) {
+            ChatMessage message = messages.get(i);
+            if (total <= maxTokens || i >= currentRound || message instanceof SystemMessage) {
+                kept.add(message);
+                i++;
+                continue;
+            }
+            // 带工具调用的 AI 消息连同其后的工具执行结果一起淘汰
+            int end = i + 1;
+            if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                while (end < messages.size() && messages.get(end) instanceof ToolExecutionResultMessage) {
+                    end++;
+                }
+            }
+            for (; i < end; i++) {
+                total -= tokensOf(messages.get(i));
+            }
+        }
+        totals = Totals.of(kept, total);
+        return kept;
+    }
+
+    /**
+     * 总 token 数：消息与上一次相同，或只在末尾多了一条时沿用上一次的结果，否则用每条消息缓存的估算值求和
+     */
+    private int totalTokens(List<ChatMessage> messages) {
+        Totals known = totals;
+        int size = messages.size();
+        if (known != null) {
+            if (known.matches(messages, size)) {
+                return known.tokens();
+            }
+            if (known.matches(messages, size - 1)) {
+                return known.tokens() + tokensOf(messages.getLast());
+            }
+        }
+        int total = 0;
+        for (ChatMessage message : messages) {
+            total += tokensOf(message);
+        }
+        return total;
+    }
+
+    private int tokensOf(ChatMessage message) {
+        return tokenCounts.get(message, tokenCountEstimator::estimateTokenCountInMessage);
+    }
+
+    /**
+     * 一次计算的结果，消息只会在末尾追加、从头部淘汰，首尾两条消息和条数都相同即视为同一组消息
+     *
+     * @param size   消息数
+     * @param first  第一条消息
+     * @param last   最后一条消息
+     * @param tokens 总 token 数
+     */
+    private record Totals(int size, ChatMessage first, ChatMessage last, int tokens) {
+
+        static Totals of(List<ChatMessage> messages, int tokens) {
+            return messages.isEmpty() ? null : new Totals(messages.size(), messages.getFirst(), messages.getLast(), tokens);
+        }
+
+        /**
+         * messages 的前 count 条是否就是这一组消息
+         */
+        boolean matches(List<ChatMessage> messages, int count) {
+            return count == size && messages.getFirst() == first && messages.get(count - 1) == last;
+        }
+    }
+
+    private static int indexOfSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 最后一条用户消息的位置，没有用户消息时返回消息数，即不保护任何消息
+     */
+    private static int lastIndexOfUserMessage(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+}
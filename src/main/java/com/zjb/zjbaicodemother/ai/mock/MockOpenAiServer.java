@@ -0,0 +1,191 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * OpenAI 兼容的本地流式接口，回放录制的轨迹
+ * 只实现 POST /v1/chat/completions 的流式响应，按与进程内回放相同的方式计算生成和轮次，
+ * 模型经由真实的 HTTP 客户端和响应解析调用，压测时可以覆盖这部分开销；客户端断开后停止回放
+ *
+ * @author zjb
+ */
+@Slf4j
+public class MockOpenAiServer {
+
+    private final int port;
+
+    private final ModelTraceStore traceStore;
+
+    private final TracePlayer player;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public MockOpenAiServer(int port, ModelTraceStore traceStore, TracePlayer player) {
+        this.port = port;
+        this.traceStore = traceStore;
+        this.player = player;
+    }
+
+    public void start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("模型回放接口启动失败，端口: " + port, e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+        log.info("模型回放接口已启动: http://localhost:{}/v1", getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            ModelTrace trace = traceStore.find(positionOf(request));
+            if (trace == null) {
+                byte[] body = "{\"error\":{\"message\":\"no trace to replay\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(404, body.length);
+                exchange.getResponseBody().write(body);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            player.play(trace, new TracePlayer.Listener() {
+
+                /**
+                 * 已经开始输出的工具调用序号
+                 */
+                private int startedIndex = -1;
+
+                @Override
+                public void onText(String text) throws IOException {
+                    ObjectNode delta = objectMapper.createObjectNode().put("content", text);
+                    writeChunk(out, delta, null);
+                }
+
+                @Override
+                public void onToolArguments(int index, ModelTrace.ToolCall toolCall, String partialArguments) throws IOException {
+                    ObjectNode call = objectMapper.createObjectNode().put("index", index);
+                    ObjectNode function = call.putObject("function").put("arguments", partialArguments);
+                    // 与 OpenAI 一致，只有每个调用的第一段带 id 和名称
+                    if (index != startedIndex) {
+                        startedIndex = index;
+                        call.put("id", toolCall.id()).put("type", "function");
+                        function.put("name", toolCall.name());
+                    }
+                    ObjectNode delta = objectMapper.createObjectNode();
+                    delta.putArray("tool_calls").add(call);
+                    writeChunk(out, delta, null);
+                }
+
+                @Override
+                public void onToolCallComplete(int index, ModelTrace.ToolCall toolCall) {
+                }
+
+                @Override
+                public void onComplete(ModelTrace trace) throws IOException {
+                    writeChunk(out, objectMapper.createObjectNode(), trace.toolCalls().isEmpty() ? "stop" : "tool_calls");
+                    ObjectNode usage = objectMapper.createObjectNode()
+                            .put("prompt_tokens", trace.inputTokens())
+                            .put("completion_tokens", trace.outputTokens())
+                            .put("total_tokens", trace.inputTokens() + trace.outputTokens());
+                    ObjectNode chunk = chunk();
+                    chunk.putArray("choices");
+                    chunk.set("usage", usage);
+                    writeEvent(out, objectMapper.writeValueAsString(chunk));
+                    writeEvent(out, "[DONE]");
+                }
+            });
+        } catch (IOException e) {
+            log.debug("模型回放客户端已断开: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ObjectNode chunk() {
+        return objectMapper.createObjectNode()
+                .put("id", "replay")
+                .put("object", "chat.completion.chunk")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", ReplayStreamingChatModel.MODEL_NAME);
+    }
+
+    private void writeChunk(OutputStream out, ObjectNode delta, String finishReason) throws IOException {
+        ObjectNode chunk = chunk();
+        ObjectNode choice = chunk.putArray("choices").addObject().put("index", 0);
+        choice.set("delta", delta);
+        choice.put("finish_reason", finishReason);
+        writeEvent(out, objectMapper.writeValueAsString(chunk));
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * 按 OpenAI 请求体计算位置：最后一条用户消息之后带 tool_calls 的 assistant 消息数即为轮次
+     */
+    private static ModelTraceStore.Position positionOf(JsonNode request) {
+        String systemPrompt = null;
+        String userMessage = "";
+        int turn = 0;
+        for (JsonNode message : request.path("messages")) {
+            switch (message.path("role").asText()) {
+                case "system" -> systemPrompt = text(message.path("content"));
+                case "user" -> {
+                    userMessage = text(message.path("content"));
+                    turn = 0;
+                }
+                case "assistant" -> {
+                    if (message.path("tool_calls").size() > 0) {
+                        turn++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        JsonNode tools = request.path("tools");
+        return ModelTraceStore.Position.of(systemPrompt, userMessage, tools instanceof ArrayNode && !tools.isEmpty(), turn);
+    }
+
+    private static String text(JsonNode content) {
+        if (content.isTextual()) {
+            return content.asText();
+        }
+        StringBuilder text = new StringBuilder();
+        content.forEach(part -> text.append(part.path("text").asText()));
+        return text.toString();
+    }
+}
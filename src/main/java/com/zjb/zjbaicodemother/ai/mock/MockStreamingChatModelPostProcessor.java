@@ -0,0 +1,62 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import com.zjb.zjbaicodemother.config.MockModelConfig;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * 按 ai.mock.mode 替换或包装流式模型 Bean
+ * record 模式包装为 {@link RecordingStreamingChatModel}，replay 模式替换为 {@link ReplayStreamingChatModel}，
+ * server 模式替换为经由共享 HTTP 客户端调用 {@link MockOpenAiServer} 的 OpenAI 模型
+ * 配置和轨迹在处理第一个模型 Bean 时才从容器中获取，避免后置处理器提前初始化它们
+ *
+ * @author zjb
+ */
+@Slf4j
+public class MockStreamingChatModelPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+    private BeanFactory beanFactory;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof StreamingChatModel model)) {
+            return bean;
+        }
+        MockModelConfig config = beanFactory.getBean(MockModelConfig.class);
+        if (!config.getModels().contains(beanName)) {
+            return bean;
+        }
+        ModelTraceStore traceStore = beanFactory.getBean(ModelTraceStore.class);
+        return switch (config.getMode()) {
+            case RECORD -> {
+                log.info("录制模型调用，Bean: {}，轨迹文件: {}", beanName, config.getTraceFile());
+                yield new RecordingStreamingChatModel(model, traceStore);
+            }
+            case REPLAY -> {
+                log.info("使用回放模型替换 {}，共 {} 条轨迹", beanName, traceStore.size());
+                yield new ReplayStreamingChatModel(traceStore, beanFactory.getBean(TracePlayer.class));
+            }
+            case SERVER -> {
+                String baseUrl = "http://localhost:" + beanFactory.getBean(MockOpenAiServer.class).getPort() + "/v1";
+                log.info("{} 改为调用模型回放接口 {}", beanName, baseUrl);
+                yield OpenAiStreamingChatModel.builder()
+                        .baseUrl(baseUrl)
+                        .apiKey("mock")
+                        .modelName(ReplayStreamingChatModel.MODEL_NAME)
+                        .httpClientBuilder(beanFactory.getBean("aiHttpClientBuilder", HttpClientBuilder.class))
+                        .build();
+            }
+        };
+    }
+}
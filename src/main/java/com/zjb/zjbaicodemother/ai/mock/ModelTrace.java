@@ -0,0 +1,42 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import java.util.List;
+
+/**
+ * 录制的一次模型调用
+ * 一次生成可能包含多次调用：每轮工具调用之后模型会被再次调用，turn 从 0 开始递增
+ *
+ * @param traceId      所属生成的标识，由用户消息计算，同一次生成的各轮调用相同
+ * @param promptId     系统提示词摘要，回放时优先选择相同系统提示词录制的轨迹
+ * @param tools        请求是否带有工具定义
+ * @param turn         调用在本次生成中的轮次
+ * @param chunks       按到达顺序录制的文本片段
+ * @param toolCalls    模型请求的工具调用，为空表示本轮以文本结束
+ * @param inputTokens  输入 token 数
+ * @param outputTokens 输出 token 数
+ * @author zjb
+ */
+public record ModelTrace(String traceId,
+                         String promptId,
+                         boolean tools,
+                         int turn,
+                         List<String> chunks,
+                         List<ToolCall> toolCalls,
+                         int inputTokens,
+                         int outputTokens) {
+
+    public ModelTrace {
+        chunks = chunks == null ? List.of() : List.copyOf(chunks);
+        toolCalls = toolCalls == null ? List.of() : List.copyOf(toolCalls);
+    }
+
+    /**
+     * 录制的工具调用
+     *
+     * @param id        调用id
+     * @param name      工具名称
+     * @param arguments 完整的参数 JSON
+     */
+    public record ToolCall(String id, String name, String arguments) {
+    }
+}
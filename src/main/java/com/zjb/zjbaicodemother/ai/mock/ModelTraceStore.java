@@ -0,0 +1,174 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * 模型调用轨迹的存储
+ * 轨迹文件每行一个 {@link ModelTrace} JSON，录制时追加写入；文件不存在时加载内置的示例轨迹
+ * 回放时按用户消息找到对应的生成，再按轮次取出该轮调用；没有录制过的用户消息按系统提示词、是否带工具依次放宽，
+ * 从候选中按用户消息稳定地选一条，同一次生成的各轮调用总是来自同一条轨迹
+ *
+ * @author zjb
+ */
+@Slf4j
+public class ModelTraceStore {
+
+    private static final String SAMPLE_RESOURCE = "mock/model-traces.jsonl";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path traceFile;
+
+    /**
+     * traceId -> 轮次 -> 调用
+     */
+    private final Map<String, Map<Integer, ModelTrace>> traces = new TreeMap<>();
+
+    public ModelTraceStore(String traceFile) {
+        this.traceFile = Path.of(traceFile);
+        List<String> lines;
+        try {
+            lines = Files.exists(this.traceFile)
+                    ? Files.readAllLines(this.traceFile, StandardCharsets.UTF_8)
+                    : ResourceUtil.readUtf8Str(SAMPLE_RESOURCE).lines().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取模型轨迹失败: " + traceFile, e);
+        }
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                index(parse(line));
+            }
+        }
+        log.info("已加载 {} 次生成的模型轨迹，来源: {}", traces.size(), Files.exists(this.traceFile) ? traceFile : SAMPLE_RESOURCE);
+    }
+
+    /**
+     * 追加一次录制的调用
+     *
+     * @param trace 模型调用
+     */
+    public synchronized void append(ModelTrace trace) {
+        try {
+            Files.createDirectories(traceFile.toAbsolutePath().getParent());
+            Files.writeString(traceFile, objectMapper.writeValueAsString(trace) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("写入模型轨迹失败: {}", e.getMessage());
+            return;
+        }
+        index(trace);
+    }
+
+    /**
+     * 查找要回放的调用
+     *
+     * @param position 本次调用在生成中的位置
+     * @return 模型调用，没有可用的轨迹时为 null
+     */
+    public synchronized ModelTrace find(Position position) {
+        Map<Integer, ModelTrace> turns = traces.get(position.traceId());
+        if (turns == null) {
+            turns = select(position);
+        }
+        return turns == null ? null : turns.get(position.turn());
+    }
+
+    public synchronized int size() {
+        return traces.size();
+    }
+
+    private Map<Integer, ModelTrace> select(Position position) {
+        List<Predicate<ModelTrace>> filters = List.of(
+                first -> position.promptId() != null && position.promptId().equals(first.promptId()),
+                first -> first.tools() == position.tools(),
+                first -> true);
+        for (Predicate<ModelTrace> filter : filters) {
+            List<Map<Integer, ModelTrace>> candidates = new ArrayList<>();
+            traces.values().forEach(turns -> {
+                ModelTrace first = turns.get(0);
+                if (first != null && filter.test(first)) {
+                    candidates.add(turns);
+                }
+            });
+            if (!candidates.isEmpty()) {
+                return candidates.get(Math.floorMod(position.traceId().hashCode(), candidates.size()));
+            }
+        }
+        return null;
+    }
+
+    private void index(ModelTrace trace) {
+        traces.computeIfAbsent(trace.traceId(), key -> new HashMap<>()).put(trace.turn(), trace);
+    }
+
+    private ModelTrace parse(String line) {
+        try {
+            return objectMapper.readValue(line, ModelTrace.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("模型轨迹格式错误: " + line, e);
+        }
+    }
+
+    /**
+     * 一次模型调用在生成中的位置
+     *
+     * @param traceId  所属生成的标识
+     * @param promptId 系统提示词摘要，没有系统提示词时为 null
+     * @param tools    请求是否带有工具定义
+     * @param turn     轮次，即最后一条用户消息之后请求过工具调用的 AI 消息数
+     */
+    public record Position(String traceId, String promptId, boolean tools, int turn) {
+
+        /**
+         * 根据请求的消息计算位置
+         */
+        public static Position of(ChatRequest chatRequest) {
+            List<ChatMessage> messages = chatRequest.messages();
+            String systemPrompt = null;
+            String userMessage = "";
+            int turn = 0;
+            for (ChatMessage message : messages) {
+                if (message instanceof SystemMessage systemMessage) {
+                    systemPrompt = systemMessage.text();
+                } else if (message instanceof UserMessage user) {
+                    userMessage = user.hasSingleText() ? user.singleText() : user.contents().toString();
+                    turn = 0;
+                } else if (message instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                    turn++;
+                }
+            }
+            boolean tools = chatRequest.toolSpecifications() != null && !chatRequest.toolSpecifications().isEmpty();
+            return of(systemPrompt, userMessage, tools, turn);
+        }
+
+        public static Position of(String systemPrompt, String userMessage, boolean tools, int turn) {
+            return new Position(digest(userMessage.strip()), systemPrompt == null ? null : digest(systemPrompt), tools, turn);
+        }
+
+        private static String digest(String text) {
+            return DigestUtil.sha256Hex(text).substring(0, 16);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 录制轨迹的流式模型装饰器
+ * 所有回调原样转发给调用方，调用成功完成时把文本片段、工具调用和 token 用量追加到轨迹文件；失败的调用不录制
+ *
+ * @author zjb
+ */
+public class RecordingStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final ModelTraceStore traceStore;
+
+    public RecordingStreamingChatModel(StreamingChatModel delegate, ModelTraceStore traceStore) {
+        this.delegate = delegate;
+        this.traceStore = traceStore;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        ModelTraceStore.Position position = ModelTraceStore.Position.of(chatRequest);
+        List<String> chunks = new ArrayList<>();
+        delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                chunks.add(partialResponse);
+                handler.onPartialResponse(partialResponse);
+            }
+
+            @Override
+            public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+            }
+
+            @Override
+            public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                traceStore.append(toTrace(position, chunks, completeResponse));
+                handler.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                handler.onError(error);
+            }
+        });
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private static ModelTrace toTrace(ModelTraceStore.Position position, List<String> chunks, ChatResponse response) {
+        List<ModelTrace.ToolCall> toolCalls = response.aiMessage().hasToolExecutionRequests()
+                ? response.aiMessage().toolExecutionRequests().stream()
+                .map(request -> new ModelTrace.ToolCall(request.id(), request.name(), request.arguments()))
+                .toList()
+                : List.of();
+        TokenUsage tokenUsage = response.tokenUsage();
+        return new ModelTrace(position.traceId(), position.promptId(), position.tools(), position.turn(), chunks, toolCalls,
+                tokenUsage == null || tokenUsage.inputTokenCount() == null ? 0 : tokenUsage.inputTokenCount(),
+                tokenUsage == null || tokenUsage.outputTokenCount() == null ? 0 : tokenUsage.outputTokenCount());
+    }
+}
@@ -0,0 +1,108 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.StreamCancellation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 回放录制轨迹的流式模型，不发出任何网络请求
+ * 每次调用在单独的虚拟线程上回放，和真实模型一样在回调线程上继续执行工具；
+ * 调用方所在的取消句柄被取消时中断回放，并以 {@link CancellationException} 结束
+ *
+ * @author zjb
+ */
+@Slf4j
+public class ReplayStreamingChatModel implements StreamingChatModel {
+
+    public static final String MODEL_NAME = "replay";
+
+    private final ModelTraceStore traceStore;
+
+    private final TracePlayer player;
+
+    public ReplayStreamingChatModel(ModelTraceStore traceStore, TracePlayer player) {
+        this.traceStore = traceStore;
+        this.player = player;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        ModelTraceStore.Position position = ModelTraceStore.Position.of(chatRequest);
+        ModelTrace trace = traceStore.find(position);
+        if (trace == null) {
+            handler.onError(new IllegalStateException("没有可回放的模型轨迹: " + position));
+            return;
+        }
+        StreamCancellation cancellation = StreamCancellation.current();
+        Thread playback = Thread.ofVirtual().name("replay-model").unstarted(() -> play(trace, handler));
+        if (cancellation != null) {
+            cancellation.onCancel(playback::interrupt);
+        }
+        playback.start();
+    }
+
+    private void play(ModelTrace trace, StreamingChatResponseHandler handler) {
+        try {
+            player.play(trace, new TracePlayer.Listener() {
+
+                @Override
+                public void onText(String text) {
+                    handler.onPartialResponse(text);
+                }
+
+                @Override
+                public void onToolArguments(int index, ModelTrace.ToolCall toolCall, String partialArguments) {
+                    handler.onPartialToolExecutionRequest(index, toolExecutionRequest(toolCall, partialArguments));
+                }
+
+                @Override
+                public void onToolCallComplete(int index, ModelTrace.ToolCall toolCall) {
+                    handler.onCompleteToolExecutionRequest(index, toolExecutionRequest(toolCall, toolCall.arguments()));
+                }
+
+                @Override
+                public void onComplete(ModelTrace trace) {
+                    handler.onCompleteResponse(toChatResponse(trace));
+                }
+            });
+        } catch (InterruptedException e) {
+            handler.onError(new CancellationException("模型回放已取消"));
+        } catch (Exception e) {
+            handler.onError(e);
+        }
+    }
+
+    static ChatResponse toChatResponse(ModelTrace trace) {
+        List<ToolExecutionRequest> toolExecutionRequests = trace.toolCalls().stream()
+                .map(toolCall -> toolExecutionRequest(toolCall, toolCall.arguments()))
+                .toList();
+        String text = trace.chunks().isEmpty() ? null : String.join("", trace.chunks());
+        AiMessage aiMessage = toolExecutionRequests.isEmpty()
+                ? AiMessage.from(text == null ? "" : text)
+                : AiMessage.from(text, toolExecutionRequests);
+        return ChatResponse.builder()
+                .aiMessage(aiMessage)
+                .modelName(MODEL_NAME)
+                .tokenUsage(new TokenUsage(trace.inputTokens(), trace.outputTokens()))
+                .finishReason(toolExecutionRequests.isEmpty() ? FinishReason.STOP : FinishReason.TOOL_EXECUTION)
+                .build();
+    }
+
+    private static ToolExecutionRequest toolExecutionRequest(ModelTrace.ToolCall toolCall, String arguments) {
+        return ToolExecutionRequest.builder()
+                .id(toolCall.id())
+                .name(toolCall.name())
+                .arguments(arguments)
+                .build();
+    }
+}
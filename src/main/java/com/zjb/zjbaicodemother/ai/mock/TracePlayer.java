@@ -0,0 +1,114 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按固定速度回放一次模型调用
+ * 首个 token 前等待固定时长，之后每个文本片段、每段工具参数各算一个 token，间隔在平均值附近随机抖动
+ * 回放在调用线程上同步进行，进程内回放和本地接口回放共用同一套节奏
+ *
+ * @author zjb
+ */
+public class TracePlayer {
+
+    private final long firstTokenLatencyNanos;
+
+    private final long tokenIntervalNanos;
+
+    private final double jitter;
+
+    private final int toolArgumentChunkChars;
+
+    public TracePlayer(Duration firstTokenLatency, double tokensPerSecond, double jitter, int toolArgumentChunkChars) {
+        this.firstTokenLatencyNanos = firstTokenLatency.toNanos();
+        this.tokenIntervalNanos = tokensPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.toolArgumentChunkChars = Math.max(1, toolArgumentChunkChars);
+    }
+
+    /**
+     * 回放一次模型调用
+     *
+     * @param trace    模型调用
+     * @param listener 回放事件
+     * @throws InterruptedException 回放被中断
+     * @throws IOException          监听器写出失败
+     */
+    public void play(ModelTrace trace, Listener listener) throws InterruptedException, IOException {
+        sleepNanos(firstTokenLatencyNanos);
+        boolean first = true;
+        for (String chunk : trace.chunks()) {
+            if (!first) {
+                pause();
+            }
+            first = false;
+            listener.onText(chunk);
+        }
+        List<ModelTrace.ToolCall> toolCalls = trace.toolCalls();
+        for (int index = 0; index < toolCalls.size(); index++) {
+            ModelTrace.ToolCall toolCall = toolCalls.get(index);
+            String arguments = toolCall.arguments() == null ? "" : toolCall.arguments();
+            int start = 0;
+            do {
+                if (!first) {
+                    pause();
+                }
+                first = false;
+                int end = Math.min(arguments.length(), start + toolArgumentChunkChars);
+                if (end < arguments.length() && Character.isHighSurrogate(arguments.charAt(end - 1))) {
+                    end++;
+                }
+                listener.onToolArguments(index, toolCall, arguments.substring(start, end));
+                start = end;
+            } while (start < arguments.length());
+            listener.onToolCallComplete(index, toolCall);
+        }
+        listener.onComplete(trace);
+    }
+
+    private void pause() throws InterruptedException {
+        if (tokenIntervalNanos == 0) {
+            return;
+        }
+        double factor = 1 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        sleepNanos((long) (tokenIntervalNanos * factor));
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } else if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * 回放事件
+     */
+    public interface Listener {
+
+        /**
+         * 一个文本片段
+         */
+        void onText(String text) throws IOException;
+
+        /**
+         * 一段工具参数，每个工具调用的第一段之前回调方还不知道这个调用
+         */
+        void onToolArguments(int index, ModelTrace.ToolCall toolCall, String partialArguments) throws IOException;
+
+        /**
+         * 一个工具调用的参数已经完整
+         */
+        void onToolCallComplete(int index, ModelTrace.ToolCall toolCall) throws IOException;
+
+        /**
+         * 回放结束
+         */
+        void onComplete(ModelTrace trace) throws IOException;
+    }
+}
@@ -1,15 +1,15 @@
 package com.zjb.zjbaicodemother.ai.model.message;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
 /**
- * 流式消息响应基类
+ * 流式消息基类
+ * 进程内直接传递类型化消息，只在 SSE 出口处序列化一次
  */
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class StreamMessage {
-    private String type;
+public sealed interface StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
+
+    /**
+     * 获取消息类型
+     *
+     * @return 消息类型枚举
+     */
+    StreamMessageTypeEnum type();
 }
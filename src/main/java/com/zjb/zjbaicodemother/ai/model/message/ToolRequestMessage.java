@@ -1,28 +1,22 @@
 package com.zjb.zjbaicodemother.ai.model.message;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
 
 /**
  * 工具调用消息
+ *
+ * @param id        工具调用 ID
+ * @param name      工具名称
+ * @param arguments 参数片段
  */
-@Data
-@EqualsAndHashCode(callSuper = true)
-@NoArgsConstructor
-public class ToolRequestMessage extends StreamMessage {
-
-    private String id;
-
-    private String name;
-
-    private String arguments;
+public record ToolRequestMessage(String id, String name, String arguments) implements StreamMessage {
 
     public ToolRequestMessage(ToolExecutionRequest toolExecutionRequest) {
-        super(StreamMessageTypeEnum.TOOL_REQUEST.getValue());
-        this.id = toolExecutionRequest.id();
-        this.name = toolExecutionRequest.name();
-        this.arguments = toolExecutionRequest.arguments();
+        this(toolExecutionRequest.id(), toolExecutionRequest.name(), toolExecutionRequest.arguments());
+    }
+
+    @Override
+    public StreamMessageTypeEnum type() {
+        return StreamMessageTypeEnum.TOOL_REQUEST;
     }
 }
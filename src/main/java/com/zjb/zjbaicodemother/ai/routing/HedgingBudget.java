@@ -0,0 +1,35 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+/**
+ * 对冲请求预算
+ * 每个普通请求存入 ratio 个额度，每个对冲请求消耗 1 个额度，额度最多累积 maxBalance 个，
+ * 长期来看对冲请求不超过普通请求的 ratio 倍
+ *
+ * @author zjb
+ */
+class HedgingBudget {
+
+    private final double ratio;
+
+    private final double maxBalance;
+
+    private double balance;
+
+    HedgingBudget(double ratio, int maxBalance) {
+        this.ratio = ratio;
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+}
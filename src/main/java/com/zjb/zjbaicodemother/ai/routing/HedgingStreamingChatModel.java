@@ -0,0 +1,234 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.config.HedgingConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.service.StreamCancellation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带对冲请求的流式模型，降低首 token 耗时的长尾
+ * 1. 请求发出后超过等待时间仍未产出任何回调时，在预算允许的情况下再发出一个相同的请求
+ * 2. 先产出 token、工具调用或完整响应的一方胜出，另一方被取消，之后只转发胜出方的回调
+ * 3. 一旦有回调转发给调用方就不再发出对冲请求，保证调用方看到的始终是同一个流
+ * 4. 一方在产出 token 前失败时等待另一方；对冲请求尚未发出时直接返回错误，两方都失败时返回后失败的错误
+ * 调用方所在的取消句柄被取消时，两个请求都会被取消
+ * 只有经由共享 HTTP 客户端的请求可以真正中断，其他客户端的落败请求会继续执行，但输出被丢弃
+ *
+ * @author zjb
+ */
+@Slf4j
+public class HedgingStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final long delayMillis;
+
+    private final HedgingBudget budget;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ModelRoutingMetrics metrics;
+
+    public HedgingStreamingChatModel(StreamingChatModel delegate, HedgingConfig config,
+                                     ScheduledExecutorService scheduler, ModelRoutingMetrics metrics) {
+        this.delegate = delegate;
+        this.delayMillis = config.getDelay().toMillis();
+        this.budget = new HedgingBudget(config.getBudgetRatio(), config.getMaxBurst());
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        budget.deposit();
+        new HedgedCall(chatRequest, handler).start();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 一次调用及其最多两个请求，状态变化在该对象上加锁
+     */
+    private final class HedgedCall {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        /**
+         * 调用方所在的取消句柄，对冲请求在定时线程上发出，需要提前记录
+         */
+        private final StreamCancellation outer = StreamCancellation.current();
+
+        private final Attempt primary = new Attempt(false);
+
+        private Attempt hedge;
+
+        private ScheduledFuture<?> hedgeTimer;
+
+        /**
+         * 回调被转发给调用方的请求，确定后不再变化
+         */
+        private volatile Attempt winner;
+
+        private HedgedCall(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+        }
+
+        private void start() {
+            primary.launch();
+            synchronized (this) {
+                if (winner == null && !primary.failed) {
+                    hedgeTimer = scheduler.schedule(this::launchHedge, delayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        private void launchHedge() {
+            synchronized (this) {
+                if (winner != null || primary.failed) {
+                    return;
+                }
+                if (!budget.tryWithdraw()) {
+                    metrics.onHedgeSkipped();
+                    log.debug("对冲预算不足，继续等待原请求");
+                    return;
+                }
+                hedge = new Attempt(true);
+            }
+            metrics.onHedged();
+            log.info("{}ms 内未收到首个 token，发出对冲请求", delayMillis);
+            hedge.launch();
+        }
+
+        /**
+         * 尝试让该请求胜出
+         *
+         * @return 该请求的回调是否应转发给调用方
+         */
+        private boolean claim(Attempt attempt) {
+            Attempt current = winner;
+            if (current != null) {
+                return current == attempt;
+            }
+            Attempt loser;
+            synchronized (this) {
+                if (winner != null) {
+                    return winner == attempt;
+                }
+                winner = attempt;
+                cancelTimer();
+                loser = attempt == primary ? hedge : primary;
+            }
+            if (loser != null) {
+                loser.cancellation.cancel();
+                metrics.onHedgeWon(attempt.isHedge);
+            }
+            return true;
+        }
+
+        private void onAttemptError(Attempt attempt, Throwable error) {
+            synchronized (this) {
+                if (winner != null) {
+                    if (winner != attempt) {
+                        return;
+                    }
+                } else {
+                    attempt.failed = true;
+                    Attempt other = attempt == primary ? hedge : primary;
+                    if (other != null && !other.failed) {
+                        // 另一方仍在进行，等待其结果
+                        log.debug("{}在产出 token 前失败，等待另一请求: {}", attempt.isHedge ? "对冲请求" : "原请求", error.getMessage());
+                        return;
+                    }
+                    winner = attempt;
+                    cancelTimer();
+                }
+            }
+            handler.onError(error);
+        }
+
+        private void cancelTimer() {
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+            }
+        }
+
+        /**
+         * 单个请求，回调只在胜出后转发
+         */
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final boolean isHedge;
+
+            private final StreamCancellation cancellation = new StreamCancellation();
+
+            /**
+             * 在胜出前失败，由 HedgedCall 加锁读写
+             */
+            private boolean failed;
+
+            private Attempt(boolean isHedge) {
+                this.isHedge = isHedge;
+            }
+
+            private void launch() {
+                if (outer != null) {
+                    outer.onCancel(cancellation::cancel);
+                }
+                try {
+                    cancellation.runWithin(() -> delegate.chat(chatRequest, this));
+                } catch (RuntimeException e) {
+                    onError(e);
+                }
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (claim(this)) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                if (claim(this)) {
+                    handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                if (claim(this)) {
+                    handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (claim(this)) {
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                onAttemptError(this, error);
+            }
+        }
+    }
+}
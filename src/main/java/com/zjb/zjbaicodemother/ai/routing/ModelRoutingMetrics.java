@@ -0,0 +1,94 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型路由指标
+ * 按端点统计请求数、摘除次数、首 token 耗时，以及路由使用的平滑统计值和健康状态；
+ * 同时统计对冲请求的发出、胜出和因预算不足被跳过的次数
+ *
+ * @author zjb
+ */
+@Component
+public class ModelRoutingMetrics {
+
+    private static final String ENDPOINT_TAG = "endpoint";
+
+    private final MeterRegistry meterRegistry;
+
+    public ModelRoutingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    void register(RoutedEndpoint endpoint) {
+        Gauge.builder("ai.routing.endpoint.ttft", endpoint, RoutedEndpoint::ttftMillis)
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("平滑后的首 token 耗时（毫秒）")
+                .register(meterRegistry);
+        Gauge.builder("ai.routing.endpoint.tokens-per-second", endpoint, RoutedEndpoint::tokensPerSecond)
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("平滑后的生成速度")
+                .register(meterRegistry);
+        Gauge.builder("ai.routing.endpoint.error-rate", endpoint, RoutedEndpoint::errorRate)
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("平滑后的错误率")
+                .register(meterRegistry);
+        Gauge.builder("ai.routing.endpoint.healthy", endpoint, e -> e.isHealthy() ? 1 : 0)
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("端点是否可用，被摘除时为 0")
+                .register(meterRegistry);
+    }
+
+    void onRouted(RoutedEndpoint endpoint) {
+        Counter.builder("ai.routing.requests")
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("路由到各端点的请求数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void onEjected(RoutedEndpoint endpoint) {
+        Counter.builder("ai.routing.ejections")
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("端点被摘除的次数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void recordFirstToken(RoutedEndpoint endpoint, long nanos) {
+        Timer.builder("ai.routing.first-token")
+                .tag(ENDPOINT_TAG, endpoint.name())
+                .description("请求发出到收到首个 token 的耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onHedged() {
+        Counter.builder("ai.hedging.requests")
+                .description("发出的对冲请求数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void onHedgeSkipped() {
+        Counter.builder("ai.hedging.skipped")
+                .description("因预算不足没有发出的对冲请求数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void onHedgeWon(boolean hedge) {
+        Counter.builder("ai.hedging.wins")
+                .tag("winner", hedge ? "hedge" : "primary")
+                .description("发出对冲请求后，原请求和对冲请求各自胜出的次数")
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,211 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.config.ModelRoutingConfig;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 路由的候选端点及其统计
+ * 1. 首 token 耗时、生成速度和错误率使用指数加权移动平均，越近的请求权重越大
+ * 2. 连续失败或错误率过高时摘除端点，摘除到期后放行一个请求作为探测
+ * 3. 探测成功恢复端点，探测失败则摘除时长翻倍
+ *
+ * @author zjb
+ */
+@Slf4j
+public class RoutedEndpoint {
+
+    private enum State {
+        HEALTHY, EJECTED, PROBING
+    }
+
+    private final String name;
+
+    private final StreamingChatModel model;
+
+    private final ModelRoutingConfig config;
+
+    /**
+     * 尚无样本时为 NaN
+     */
+    private double ttftMillis = Double.NaN;
+
+    private double tokensPerSecond = Double.NaN;
+
+    private double errorRate;
+
+    private int consecutiveFailures;
+
+    private int inFlight;
+
+    private State state = State.HEALTHY;
+
+    private long ejectedUntilNanos;
+
+    /**
+     * 连续被摘除的次数，决定下一次摘除的时长
+     */
+    private int ejections;
+
+    public RoutedEndpoint(String name, StreamingChatModel model, ModelRoutingConfig config) {
+        this.name = name;
+        this.model = model;
+        this.config = config;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public StreamingChatModel model() {
+        return model;
+    }
+
+    /**
+     * 预计完成参考输出量所需的毫秒数，叠加错误率惩罚，越小越好；尚无样本的端点为 0，会被优先尝试
+     */
+    synchronized double score() {
+        double expectedMillis = 0;
+        if (!Double.isNaN(ttftMillis)) {
+            expectedMillis += ttftMillis;
+        }
+        if (!Double.isNaN(tokensPerSecond) && tokensPerSecond > 0) {
+            expectedMillis += config.getReferenceOutputTokens() * 1000.0 / tokensPerSecond;
+        }
+        return expectedMillis * (1 + errorRate * config.getErrorPenalty());
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized boolean isHealthy() {
+        return state == State.HEALTHY;
+    }
+
+    /**
+     * 摘除已到期且没有进行中的探测
+     */
+    synchronized boolean isProbeDue(long now) {
+        return state == State.EJECTED && now - ejectedUntilNanos >= 0;
+    }
+
+    synchronized long ejectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    /**
+     * 尝试占用端点，摘除到期的端点会以探测方式放行这一个请求
+     *
+     * @return 是否可以把请求发往该端点
+     */
+    synchronized boolean tryAcquire(long now) {
+        switch (state) {
+            case HEALTHY -> {
+                inFlight++;
+                return true;
+            }
+            case EJECTED -> {
+                if (now - ejectedUntilNanos < 0) {
+                    return false;
+                }
+                state = State.PROBING;
+                inFlight++;
+                log.info("探测被摘除的模型端点: {}", name);
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 所有端点都不可用时仍然占用该端点，不改变其状态
+     */
+    synchronized void forceAcquire() {
+        inFlight++;
+    }
+
+    synchronized void onFirstToken(long ttftNanos) {
+        ttftMillis = ewma(ttftMillis, ttftNanos / 1_000_000.0);
+    }
+
+    /**
+     * 请求成功完成
+     *
+     * @param outputTokens 输出 token 数
+     * @param streamNanos  首 token 到完成的耗时
+     */
+    synchronized void onSuccess(int outputTokens, long streamNanos) {
+        inFlight--;
+        if (outputTokens > 1 && streamNanos > 0) {
+            tokensPerSecond = ewma(tokensPerSecond, outputTokens * 1_000_000_000.0 / streamNanos);
+        }
+        errorRate = ewma(errorRate, 0);
+        consecutiveFailures = 0;
+        if (state != State.HEALTHY) {
+            state = State.HEALTHY;
+            log.info("模型端点已恢复: {}", name);
+        }
+        if (errorRate < config.getErrorRateToEject() / 2) {
+            ejections = 0;
+        }
+    }
+
+    /**
+     * 请求因端点原因失败
+     *
+     * @return 端点是否因此被摘除
+     */
+    synchronized boolean onFailure(long now) {
+        inFlight--;
+        errorRate = ewma(errorRate, 1);
+        consecutiveFailures++;
+        boolean eject = state == State.PROBING
+                || (state == State.HEALTHY && (consecutiveFailures >= config.getConsecutiveFailuresToEject()
+                || errorRate >= config.getErrorRateToEject()));
+        if (!eject) {
+            return false;
+        }
+        long ejectionNanos = Math.min(config.getBaseEjectionTime().toNanos() << Math.min(ejections, 16),
+                config.getMaxEjectionTime().toNanos());
+        ejections++;
+        state = State.EJECTED;
+        ejectedUntilNanos = now + ejectionNanos;
+        log.warn("摘除模型端点: {}, 连续失败: {}, 错误率: {}, 摘除时长: {}ms",
+                name, consecutiveFailures, String.format("%.2f", errorRate), ejectionNanos / 1_000_000);
+        return true;
+    }
+
+    /**
+     * 请求结束但结果与端点健康无关（如请求参数错误），只释放占用
+     */
+    synchronized void onRelease() {
+        inFlight--;
+        if (state == State.PROBING) {
+            // 探测没有得出结论，下一个请求继续探测
+            state = State.EJECTED;
+        }
+    }
+
+    synchronized double ttftMillis() {
+        return ttftMillis;
+    }
+
+    synchronized double tokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    synchronized double errorRate() {
+        return errorRate;
+    }
+
+    private double ewma(double current, double sample) {
+        if (Double.isNaN(current)) {
+            return sample;
+        }
+        double alpha = config.getEwmaAlpha();
+        return alpha * sample + (1 - alpha) * current;
+    }
+}
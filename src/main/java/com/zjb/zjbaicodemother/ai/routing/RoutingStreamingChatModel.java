@@ -0,0 +1,226 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.config.ModelRoutingConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 多端点路由的流式模型
+ * 每次请求从候选端点中选择预计最快的一个，再把请求交给该端点自己的模型：
+ * 1. 摘除到期的端点优先接收一个请求作为探测
+ * 2. 按一定比例随机选择端点，让暂时落后的端点也能持续更新统计
+ * 3. 其余请求发往得分（预计耗时 * 错误率惩罚）最低的可用端点，得分相同时选择进行中请求较少的
+ * 4. 所有端点都被摘除时，选择最早到期的端点，不直接拒绝请求
+ *
+ * @author zjb
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    private static final Comparator<RoutedEndpoint> BY_SCORE = Comparator
+            .comparingDouble(RoutedEndpoint::score)
+            .thenComparingInt(RoutedEndpoint::inFlight);
+
+    private final List<RoutedEndpoint> endpoints;
+
+    private final ModelRoutingConfig config;
+
+    private final ModelRoutingMetrics metrics;
+
+    private final Set<Capability> supportedCapabilities;
+
+    public RoutingStreamingChatModel(List<RoutedEndpoint> endpoints, ModelRoutingConfig config, ModelRoutingMetrics metrics) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个模型端点");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.config = config;
+        this.metrics = metrics;
+        // 只声明所有端点都支持的能力
+        Set<Capability> capabilities = EnumSet.allOf(Capability.class);
+        this.endpoints.forEach(endpoint -> capabilities.retainAll(endpoint.model().supportedCapabilities()));
+        this.supportedCapabilities = Set.copyOf(capabilities);
+        this.endpoints.forEach(metrics::register);
+    }
+
+    /**
+     * 直接交给选中端点的模型处理，请求参数的默认值、监听器等都由该模型自己的配置决定
+     */
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        RoutedEndpoint endpoint = select();
+        metrics.onRouted(endpoint);
+        log.debug("模型请求路由到端点: {}", endpoint.name());
+        RoutedResponseHandler routedHandler = new RoutedResponseHandler(endpoint, handler);
+        try {
+            endpoint.model().chat(chatRequest, routedHandler);
+        } catch (RuntimeException e) {
+            routedHandler.finish(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return supportedCapabilities;
+    }
+
+    public List<RoutedEndpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 选择并占用一个端点
+     */
+    RoutedEndpoint select() {
+        long now = System.nanoTime();
+        for (RoutedEndpoint endpoint : endpoints) {
+            if (endpoint.isProbeDue(now) && endpoint.tryAcquire(now)) {
+                return endpoint;
+            }
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (endpoints.size() > 1 && random.nextDouble() < config.getExplorationRatio()) {
+            RoutedEndpoint endpoint = endpoints.get(random.nextInt(endpoints.size()));
+            if (endpoint.isHealthy() && endpoint.tryAcquire(now)) {
+                return endpoint;
+            }
+        }
+        List<RoutedEndpoint> candidates = endpoints.stream()
+                .filter(RoutedEndpoint::isHealthy)
+                .sorted(BY_SCORE)
+                .toList();
+        for (RoutedEndpoint endpoint : candidates) {
+            // 排序后状态可能已经变化，占用失败时尝试下一个
+            if (endpoint.tryAcquire(now)) {
+                return endpoint;
+            }
+        }
+        RoutedEndpoint fallback = endpoints.stream()
+                .min(Comparator.comparingLong(endpoint -> endpoint.ejectedUntilNanos() - now))
+                .orElseThrow();
+        log.warn("所有模型端点都已被摘除，使用最早恢复的端点: {}", fallback.name());
+        fallback.forceAcquire();
+        return fallback;
+    }
+
+    /**
+     * 请求失败是否说明端点本身有问题；请求参数错误和主动取消与端点无关，不计入错误率
+     */
+    private static boolean isEndpointFailure(Throwable error) {
+        return !(error instanceof InvalidRequestException) && !(error instanceof CancellationException);
+    }
+
+    /**
+     * 记录单次请求的首 token 耗时、生成速度和结果，并把回调原样转发给调用方
+     * 回调由端点模型的响应线程依次触发
+     */
+    private final class RoutedResponseHandler implements StreamingChatResponseHandler {
+
+        private final RoutedEndpoint endpoint;
+
+        private final StreamingChatResponseHandler delegate;
+
+        private final long startNanos = System.nanoTime();
+
+        private long firstTokenNanos;
+
+        private int partialCount;
+
+        private boolean finished;
+
+        private RoutedResponseHandler(RoutedEndpoint endpoint, StreamingChatResponseHandler delegate) {
+            this.endpoint = endpoint;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            onToken();
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+            onToken();
+            delegate.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+            delegate.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            finish(null, completeResponse);
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            finish(error);
+            delegate.onError(error);
+        }
+
+        private void onToken() {
+            partialCount++;
+            if (firstTokenNanos == 0) {
+                firstTokenNanos = System.nanoTime();
+                long ttftNanos = firstTokenNanos - startNanos;
+                endpoint.onFirstToken(ttftNanos);
+                metrics.recordFirstToken(endpoint, ttftNanos);
+            }
+        }
+
+        private void finish(Throwable error) {
+            finish(error, null);
+        }
+
+        private synchronized void finish(Throwable error, ChatResponse completeResponse) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long now = System.nanoTime();
+            if (error == null) {
+                endpoint.onSuccess(outputTokens(completeResponse), firstTokenNanos == 0 ? 0 : now - firstTokenNanos);
+                return;
+            }
+            if (error instanceof CancellationException && firstTokenNanos == 0) {
+                // 在首 token 前被取消（如对冲落败），已等待的时长是首 token 耗时的下限，同样计入统计
+                endpoint.onFirstToken(now - startNanos);
+            }
+            if (!isEndpointFailure(error)) {
+                endpoint.onRelease();
+            } else if (endpoint.onFailure(now)) {
+                metrics.onEjected(endpoint);
+            }
+        }
+
+        /**
+         * 优先使用模型返回的用量，没有时按流式片段数估算
+         */
+        private int outputTokens(ChatResponse completeResponse) {
+            TokenUsage tokenUsage = completeResponse.metadata() == null ? null : completeResponse.metadata().tokenUsage();
+            if (tokenUsage != null && tokenUsage.outputTokenCount() != null) {
+                return tokenUsage.outputTokenCount();
+            }
+            return partialCount;
+        }
+    }
+}
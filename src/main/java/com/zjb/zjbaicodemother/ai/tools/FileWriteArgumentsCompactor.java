@@ -0,0 +1,95 @@
+package com.zjb.zjbaicodemother.ai.tools;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.internal.Json;
+import dev.langchain4j.internal.ParsedToolArguments;
+import dev.langchain4j.service.ToolArgumentsCompactor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压缩之前轮次的 writeFile 调用
+ * Vue 项目生成的每一轮工具调用都会把完整的对话再发送一次，之前轮次写入的文件内容已经落盘，
+ * 只保留路径，内容替换为包含字符数和摘要的省略标记，后续轮次的请求不再随写入的文件数增长
+ * 模型照抄省略标记时，写文件工具和流式写入都会拒绝，避免用标记覆盖已写入的文件
+ * 每一轮都会压缩之前所有轮次的调用，压缩结果按参数字符串的引用缓存，每个调用只解析和计算摘要一次
+ *
+ * @author zjb
+ */
+public class FileWriteArgumentsCompactor implements ToolArgumentsCompactor {
+
+    private static final String CONTENT_FIELD = "content";
+
+    private static final String MARKER_PREFIX = "[已省略：文件已写入";
+
+    /**
+     * 不需要压缩的调用在缓存中的值
+     */
+    private static final String UNCHANGED = "";
+
+    /**
+     * 参数字符串 -> 压缩后的参数，按引用比较，调用请求被回收后条目随之失效
+     */
+    private final Cache<String, String> compactedArguments = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * 内容少于该字符数时不压缩，省略标记本身也有几十个字符
+     */
+    private final int minContentChars;
+
+    public FileWriteArgumentsCompactor(int minContentChars) {
+        this.minContentChars = minContentChars;
+    }
+
+    @Override
+    public String compact(ToolExecutionRequest toolExecutionRequest) {
+        if (!FileWriteTool.TOOL_NAME.equals(toolExecutionRequest.name()) || toolExecutionRequest.arguments() == null) {
+            return null;
+        }
+        String compacted = compactedArguments.get(toolExecutionRequest.arguments(), this::compact);
+        return compacted.isEmpty() ? null : compacted;
+    }
+
+    /**
+     * @return 压缩后的参数，不需要压缩时为 UNCHANGED
+     */
+    private String compact(String rawArguments) {
+        Map<String, Object> arguments = ParsedToolArguments.parse(rawArguments);
+        if (arguments == null || !(arguments.get(CONTENT_FIELD) instanceof String content)
+                || content.length() < minContentChars || isMarker(content)) {
+            return UNCHANGED;
+        }
+        Map<String, Object> compacted = new LinkedHashMap<>(arguments);
+        compacted.put(CONTENT_FIELD, marker(content));
+        return Json.toJson(compacted);
+    }
+
+    /**
+     * 内容是否是省略标记
+     *
+     * @param content 文件内容或其开头部分
+     * @return 是否是省略标记
+     */
+    public static boolean isMarker(CharSequence content) {
+        return content.length() >= MARKER_PREFIX.length()
+                && MARKER_PREFIX.contentEquals(content.subSequence(0, MARKER_PREFIX.length()));
+    }
+
+    /**
+     * 判断是否是省略标记需要的开头字符数
+     */
+    static int markerPrefixLength() {
+        return MARKER_PREFIX.length();
+    }
+
+    static String marker(String content) {
+        return MARKER_PREFIX + "，共 " + content.length() + " 字符，sha256: "
+                + DigestUtil.sha256Hex(content).substring(0, 12) + "。需要修改时请重新输出完整内容]";
+    }
+}
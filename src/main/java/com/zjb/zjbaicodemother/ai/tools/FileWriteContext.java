@@ -0,0 +1,84 @@
+package com.zjb.zjbaicodemother.ai.tools;
+
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
+import dev.langchain4j.service.ToolExecutionContext;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一次生成的文件写入上下文，作为 {@link ToolExecutionContext} 传给 {@link FileWriteTool}，并由同一生成的
+ * {@link FileWriteStreamSession} 共享
+ * 文件锁和参数流式写入的记录只属于这次生成，生成结束后随上下文一起回收，不同生成之间互不影响
+ * 写入时会做文件 IO，使用 {@link ReentrantLock} 而不是 synchronized，避免阻塞虚拟线程的载体线程
+ *
+ * @author zjb
+ */
+public class FileWriteContext {
+
+    private final CodeOutputManager.Staging staging;
+
+    /**
+     * 按文件路径加锁，避免参数流式写入和工具执行对同一文件的写入交错
+     */
+    private final Map<Path, Lock> fileLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 参数流式到达时已经写入磁盘的文件及其内容（UTF-8 编码）的 SHA-256，工具执行时内容一致则不再重复写入
+     */
+    private final Map<Path, String> streamedFiles = new ConcurrentHashMap<>();
+
+    public FileWriteContext(CodeOutputManager.Staging staging) {
+        this.staging = staging;
+    }
+
+    /**
+     * 本次生成的暂存目录
+     */
+    public CodeOutputManager.Staging staging() {
+        return staging;
+    }
+
+    /**
+     * 获取文件的写入锁
+     *
+     * @param normalizedPath 规范化后的绝对路径
+     * @return 锁
+     */
+    Lock lockFor(Path normalizedPath) {
+        return fileLocks.computeIfAbsent(normalizedPath, path -> new ReentrantLock());
+    }
+
+    /**
+     * 记录参数流式到达时已经写入的文件内容
+     *
+     * @param normalizedPath 规范化后的绝对路径
+     * @param sha256         内容（UTF-8 编码）的 SHA-256
+     */
+    void markStreamed(Path normalizedPath, String sha256) {
+        streamedFiles.put(normalizedPath, sha256);
+    }
+
+    /**
+     * 清除参数流式写入的记录，工具执行时按原方式写入
+     *
+     * @param normalizedPath 规范化后的绝对路径
+     */
+    void clearStreamed(Path normalizedPath) {
+        streamedFiles.remove(normalizedPath);
+    }
+
+    /**
+     * 参数流式到达时是否已写入相同内容，是则消费这条记录
+     *
+     * @param normalizedPath 规范化后的绝对路径
+     * @param sha256         工具调用内容（UTF-8 编码）的 SHA-256
+     * @return 是否已写入
+     */
+    boolean takeStreamed(Path normalizedPath, String sha256) {
+        return streamedFiles.remove(normalizedPath, sha256);
+    }
+}
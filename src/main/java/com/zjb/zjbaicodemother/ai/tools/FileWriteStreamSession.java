@@ -0,0 +1,296 @@
+package com.zjb.zjbaicodemother.ai.tools;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.zjb.zjbaicodemother.core.output.ContentStore;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.ToolArgumentsListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文件流式写入会话（一次生成对应一个会话）
+ * 在 writeFile 工具调用的参数还在流式到达时就开始写文件：
+ * 1. 解析出 relativeFilePath 后打开同目录下的临时文件
+ * 2. content 边解码边追加到临时文件
+ * 3. 该工具调用的参数完整后移入按内容去重的存储，并原子替换目标路径，工具执行时内容一致则不再重复写入
+ * 4. 解析失败、参数不完整或生成异常时删除临时文件，由工具执行时按原方式写入
+ * <p>
+ * 参数由 AI 服务的流式解析器解码后回调（见 {@link #open(ToolExecutionRequest)}），工具执行时直接使用同一次解析的结果，
+ * 参数只解析一次；其他工具的参数不在流式到达时解析
+ * <p>
+ * 参数回调来自模型响应线程，取消时的 close 可能来自其他线程，因此回调都需要加锁；
+ * 加锁期间会写文件，使用 {@link ReentrantLock} 避免阻塞虚拟线程的载体线程
+ *
+ * @author zjb
+ */
+@Slf4j
+public class FileWriteStreamSession {
+
+    private static final String PATH_FIELD = "relativeFilePath";
+
+    private static final String CONTENT_FIELD = "content";
+
+    /**
+     * 本次生成的文件写入上下文，与工具执行共享文件锁和流式写入记录
+     */
+    private final FileWriteContext context;
+
+    /**
+     * 项目目录，即本次生成的暂存目录
+     */
+    private final Path projectRoot;
+
+    private final ContentStore contentStore;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 进行中的文件写入
+     */
+    private final Set<PendingFileWrite> pendingWrites = new HashSet<>();
+
+    /**
+     * 本次会话已经提交的文件
+     */
+    private final Set<Path> committedPaths = new HashSet<>();
+
+    private boolean closed;
+
+    public FileWriteStreamSession(FileWriteContext context, ContentStore contentStore) {
+        this.context = context;
+        this.projectRoot = context.staging().dir();
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * 工具调用的第一个参数片段到达，为 writeFile 调用创建流式写入
+     *
+     * @param partialRequest 工具调用片段
+     * @return 参数监听器，其他工具或会话已关闭时返回 null
+     */
+    public ToolArgumentsListener open(ToolExecutionRequest partialRequest) {
+        if (!FileWriteTool.TOOL_NAME.equals(partialRequest.name())) {
+            return null;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            PendingFileWrite pendingWrite = new PendingFileWrite();
+            pendingWrites.add(pendingWrite);
+            return pendingWrite;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 生成结束（完成、异常或取消），丢弃所有未提交的临时文件
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            pendingWrites.forEach(PendingFileWrite::discard);
+            pendingWrites.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 单个 writeFile 调用的流式写入
+     */
+    private final class PendingFileWrite implements ToolArgumentsListener {
+
+        private final StringBuilder relativeFilePath = new StringBuilder();
+
+        private Path target;
+
+        private Path tempFile;
+
+        private Writer writer;
+
+        private boolean contentDone;
+
+        /**
+         * 边写入边计算内容（UTF-8 编码）的 SHA-256，用于工具执行时校验内容一致
+         */
+        private MessageDigest digest;
+
+        /**
+         * 内容的开头部分，用于识别模型照抄的省略标记
+         */
+        private final StringBuilder contentPrefix = new StringBuilder();
+
+        /**
+         * 无法流式写入（如 content 先于路径到达或写入失败），交给工具执行时处理
+         */
+        private boolean abandoned;
+
+        @Override
+        public void onStringFieldStart(String field) {
+            lock.lock();
+            try {
+                if (closed || abandoned || !CONTENT_FIELD.equals(field)) {
+                    return;
+                }
+                if (relativeFilePath.isEmpty()) {
+                    abandon("content 先于 relativeFilePath 到达");
+                    return;
+                }
+                open();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onStringFieldChunk(String field, CharSequence chunk) {
+            lock.lock();
+            try {
+                if (closed || abandoned) {
+                    return;
+                }
+                if (PATH_FIELD.equals(field)) {
+                    relativeFilePath.append(chunk);
+                } else if (CONTENT_FIELD.equals(field) && writer != null) {
+                    try {
+                        writer.append(chunk);
+                    } catch (IOException e) {
+                        abandon(e.getMessage());
+                        return;
+                    }
+                    int prefixChars = FileWriteArgumentsCompactor.markerPrefixLength() - contentPrefix.length();
+                    if (prefixChars > 0) {
+                        contentPrefix.append(chunk, 0, Math.min(prefixChars, chunk.length()));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onStringFieldEnd(String field) {
+            lock.lock();
+            try {
+                if (!closed && !abandoned && CONTENT_FIELD.equals(field)) {
+                    contentDone = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onArgumentsComplete() {
+            lock.lock();
+            try {
+                if (pendingWrites.remove(this)) {
+                    commit();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onArgumentsFailed() {
+            lock.lock();
+            try {
+                if (pendingWrites.remove(this)) {
+                    abandon("参数不是合法的 JSON 对象");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void open() {
+            try {
+                target = FileWriteTool.resolvePath(relativeFilePath.toString(), projectRoot);
+                Path parentDir = target.getParent();
+                Files.createDirectories(parentDir);
+                tempFile = Files.createTempFile(parentDir, "." + target.getFileName(), ".streaming");
+                digest = DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new DigestOutputStream(Files.newOutputStream(tempFile), digest), StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                abandon(e.getMessage());
+            }
+        }
+
+        private void commit() {
+            if (abandoned || !contentDone) {
+                discard();
+                return;
+            }
+            if (FileWriteArgumentsCompactor.isMarker(contentPrefix)) {
+                abandon("content 是省略标记");
+                return;
+            }
+            try {
+                writer.close();
+                writer = null;
+                Lock fileLock = context.lockFor(target);
+                fileLock.lock();
+                try {
+                    contentStore.moveIn(tempFile, target);
+                } finally {
+                    fileLock.unlock();
+                }
+                tempFile = null;
+                if (committedPaths.add(target)) {
+                    context.markStreamed(target, HexUtil.encodeHexStr(digest.digest()));
+                } else {
+                    // 同一文件在本次生成中被多次写入，交给工具执行时按原方式写入，保证以工具结果为准
+                    context.clearStreamed(target);
+                }
+                log.info("参数流式写入文件完成: {}", target);
+            } catch (IOException e) {
+                log.warn("参数流式写入文件失败，将由工具执行时写入: {}, 错误: {}", target, e.getMessage());
+                discard();
+            }
+        }
+
+        private void abandon(String reason) {
+            if (!abandoned) {
+                log.debug("放弃流式写入文件: {}, 原因: {}", relativeFilePath, reason);
+            }
+            abandoned = true;
+            discard();
+        }
+
+        private void discard() {
+            try {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                    tempFile = null;
+                }
+            } catch (IOException e) {
+                log.warn("删除流式写入的临时文件失败: {}, 错误: {}", tempFile, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,24 +1,47 @@
 package com.zjb.zjbaicodemother.ai.tools;
 
-import com.zjb.zjbaicodemother.constant.AppConstant;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
+import com.zjb.zjbaicodemother.core.output.ContentStore;
 import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import dev.langchain4j.internal.ParsedToolArguments;
+import dev.langchain4j.service.ToolExecutionContext;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 文件写入工具
- * 支持 AI 通过工具调用的方式写入文件
+ * 支持 AI 通过工具调用的方式写入文件，写入发起这次工具调用的生成的暂存目录（通过 {@link ToolExecutionContext} 传入的
+ * {@link FileWriteContext}），
+ * 工具循环结束后整体发布；生成已结束或不在生成中时不写入
+ * 文件内容按哈希去重，写入时整体替换目标文件，不修改与其他项目共享的内容
  */
 @Slf4j
 public class FileWriteTool {
 
+    /**
+     * 工具名称，与 writeFile 方法名一致
+     */
+    public static final String TOOL_NAME = "writeFile";
+
+    private static final String PATH_FIELD = "relativeFilePath";
+
+    private final ContentStore contentStore;
+
+    public FileWriteTool(ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -27,24 +50,34 @@ public class FileWriteTool {
             String content,
             @ToolMemoryId Long appId
     ) {
+        if (FileWriteArgumentsCompactor.isMarker(content)) {
+            // 之前轮次的写入被压缩为省略标记，模型照抄标记时不能覆盖已写入的文件
+            return "文件写入失败: " + relativeFilePath + ", 错误: content 是省略标记，请输出文件的完整内容";
+        }
+        FileWriteContext context = ToolExecutionContext.current(FileWriteContext.class);
+        CodeOutputManager.Staging staging = context == null ? null : context.staging();
+        if (staging == null || staging.isFinished()) {
+            // 生成已取消或失败后仍在执行的工具调用，不能写入其他生成的目录
+            log.warn("生成已结束，忽略文件写入: {}, appId: {}", relativeFilePath, appId);
+            return "文件写入失败: " + relativeFilePath + ", 错误: 本次生成已结束";
+        }
         try {
-            Path path = Paths.get(relativeFilePath);
-            if (!path.isAbsolute()) {
-                // 相对路径处理，创建基于 appId 的项目目录
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeFilePath);
+            Path lockKey = resolvePath(relativeFilePath, staging.dir());
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            // 参数流式到达时已写入相同内容，直接返回
+            if (context.takeStreamed(lockKey, DigestUtil.sha256Hex(bytes))) {
+                log.info("文件已在参数流式到达时写入: {}", lockKey);
+                return "文件写入成功: " + relativeFilePath;
             }
-            // 创建父目录（如果不存在）
-            Path parentDir = path.getParent();
-            if (parentDir != null) {
-                Files.createDirectories(parentDir);
+            // 写入文件内容，父目录不存在时自动创建
+            Lock lock = context.lockFor(lockKey);
+            lock.lock();
+            try {
+                contentStore.write(lockKey, bytes);
+            } finally {
+                lock.unlock();
             }
-            // 写入文件内容
-            Files.write(path, content.getBytes(),
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
-            log.info("成功写入文件: {}", path.toAbsolutePath());
+            log.info("成功写入文件: {}", lockKey);
             // 注意要返回相对路径，不能让 AI 把文件绝对路径返回给用户
             return "文件写入成功: " + relativeFilePath;
         } catch (IOException e) {
@@ -53,4 +86,49 @@ public class FileWriteTool {
             return errorMessage;
         }
     }
+
+    /**
+     * 同一轮工具调用并发执行时的依赖键：写同一文件的调用按原顺序执行，不同文件的写入并发执行
+     * 其他工具和无法解析的参数返回 null，与同一轮的其他调用串行
+     *
+     * @param toolExecutionRequest 工具调用请求
+     * @return 依赖键
+     */
+    public static String executionKey(ToolExecutionRequest toolExecutionRequest) {
+        if (!TOOL_NAME.equals(toolExecutionRequest.name())) {
+            return null;
+        }
+        Map<String, Object> arguments = ParsedToolArguments.parse(toolExecutionRequest.arguments());
+        if (arguments == null || !(arguments.get(PATH_FIELD) instanceof String relativeFilePath)) {
+            return null;
+        }
+        try {
+            return TOOL_NAME + ":" + Paths.get(relativeFilePath).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析文件的写入路径，只允许项目目录内的相对路径，绝对路径和规范化后超出项目目录的路径（如 ../）被拒绝
+     *
+     * @param relativeFilePath 文件路径
+     * @param projectRoot      项目目录，生成过程中为暂存目录
+     * @return 规范化后的绝对路径
+     * @throws IOException 路径无效或不在项目目录内
+     */
+    static Path resolvePath(String relativeFilePath, Path projectRoot) throws IOException {
+        Path path;
+        try {
+            path = Paths.get(relativeFilePath);
+        } catch (InvalidPathException e) {
+            throw new IOException("路径无效: " + e.getMessage());
+        }
+        Path root = projectRoot.toAbsolutePath().normalize();
+        Path resolved = root.resolve(path).normalize();
+        if (path.isAbsolute() || !resolved.startsWith(root) || resolved.equals(root)) {
+            throw new IOException("只能写入项目目录内的相对路径");
+        }
+        return resolved;
+    }
 }
@@ -0,0 +1,138 @@
+package com.zjb.zjbaicodemother.config;
+
+import com.zjb.zjbaicodemother.ai.http.AiHttpClientMetrics;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClient;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 模型 HTTP 客户端配置
+ * 所有模型（包括自动配置的 openAiChatModel、openAiStreamingChatModel）共用同一个 HTTP 客户端，
+ * 启用 HTTP/2 多路复用和长连接复用，启动后预热连接，减少首个 token 的等待时间
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.http-client")
+@Data
+@Slf4j
+public class AiHttpClientConfig {
+
+    /**
+     * 是否优先使用 HTTP/2（服务端不支持时自动回退到 HTTP/1.1）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 建立连接（含 TLS 握手）的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 发出请求到收到响应头的超时时间
+     */
+    private Duration firstByteTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 流式响应两次数据之间的最长间隔
+     */
+    private Duration readTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 空闲长连接的保活时间，需在 JDK HttpClient 首次使用前生效
+     */
+    private Duration keepAliveTimeout = Duration.ofMinutes(5);
+
+    /**
+     * 每个目标地址最多保留的空闲连接数，0 表示不限制
+     */
+    private int maxIdleConnections = 0;
+
+    /**
+     * 启动后预热连接的地址
+     */
+    private List<String> warmUpUrls = new ArrayList<>();
+
+    /**
+     * 执行流式请求和 HTTP 客户端内部任务的虚拟线程
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService aiHttpClientExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-http-", 0).factory());
+    }
+
+    /**
+     * 检查流式响应读取超时的看门狗线程，也用于触发对冲请求等轻量定时任务
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService aiHttpClientWatchdog() {
+        return Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ai-http-watchdog").daemon().factory());
+    }
+
+    @Bean(destroyMethod = "close")
+    public HttpClient aiJdkHttpClient(ExecutorService aiHttpClientExecutor) {
+        // 连接池参数由 JDK HttpClient 在首次创建时读取，已通过启动参数指定的不覆盖
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveTimeout.toSeconds()));
+        setIfAbsent("jdk.httpclient.keepalive.timeout.h2", String.valueOf(keepAliveTimeout.toSeconds()));
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(maxIdleConnections));
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(aiHttpClientExecutor)
+                .build();
+    }
+
+    @Bean
+    public SharedHttpClient sharedHttpClient(HttpClient aiJdkHttpClient,
+                                             ExecutorService aiHttpClientExecutor,
+                                             ScheduledExecutorService aiHttpClientWatchdog,
+                                             AiHttpClientMetrics aiHttpClientMetrics) {
+        return new SharedHttpClient(aiJdkHttpClient, firstByteTimeout, readTimeout,
+                aiHttpClientExecutor, aiHttpClientWatchdog, aiHttpClientMetrics);
+    }
+
+    /**
+     * 同时以自动配置使用的名称注册，替换 openAiChatModel、openAiStreamingChatModel 默认的 HTTP 客户端
+     */
+    @Bean(name = {"aiHttpClientBuilder", "openAiChatModelHttpClientBuilder", "openAiStreamingChatModelHttpClientBuilder"})
+    public HttpClientBuilder aiHttpClientBuilder(SharedHttpClient sharedHttpClient) {
+        return new SharedHttpClientBuilder(sharedHttpClient);
+    }
+
+    /**
+     * 启动后异步预热连接，提前完成 TCP 和 TLS 握手
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp(ApplicationReadyEvent event) {
+        SharedHttpClient sharedHttpClient = event.getApplicationContext().getBean(SharedHttpClient.class);
+        for (String url : warmUpUrls) {
+            if (url == null || url.isBlank()) {
+                continue;
+            }
+            Thread.ofVirtual().name("ai-http-warm-up").start(() -> sharedHttpClient.warmUp(URI.create(url)));
+        }
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
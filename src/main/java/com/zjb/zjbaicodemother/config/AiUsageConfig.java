@@ -0,0 +1,44 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 模型用量计量配置
+ * 每次生成结束后记录 token 用量，先进入内存队列，再由后台线程批量写入数据库
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.usage")
+@Data
+public class AiUsageConfig {
+
+    /**
+     * 是否记录用量明细，关闭后仍上报指标
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存队列容量，写库跟不上时超出的记录被丢弃并计数，不阻塞生成
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每批写入的最大条数，队列积压达到该值时立即写入
+     */
+    private int batchSize = 200;
+
+    /**
+     * 定时写入的间隔
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /**
+     * 关闭应用时等待后台写入结束的最长时间
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,99 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对话记忆配置
+ * 每种生成类型只有一个 AI 服务实例，按 appId 获取对话记忆，消息只缓存在本地缓存中，按字符数限制总量
+ * 对话记忆按估算的 token 数限制容量，估算参数可以按模型配置
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.chat-memory")
+@Data
+public class ChatMemoryConfig {
+
+    /**
+     * 对话记忆的 token 预算，超出时从最早的消息开始淘汰，当前轮次不淘汰
+     */
+    private int maxTokens = 32_000;
+
+    /**
+     * 默认的 token 估算参数
+     */
+    private TokenEstimate tokenEstimate = new TokenEstimate();
+
+    /**
+     * 按模型名称覆盖的 token 估算参数
+     */
+    private Map<String, TokenEstimate> models = new HashMap<>();
+
+    /**
+     * Redis 中的对话记忆已过期时，从对话历史中加载的消息数
+     */
+    private int historyLoadCount = 20;
+
+    /**
+     * 单条消息的 JSON 超过该字节数时压缩后写入 Redis
+     */
+    private int compressThresholdBytes = 1024;
+
+    /**
+     * 本地缓存的对话记忆最多保存的字符数
+     */
+    private long localMaximumChars = 64 * 1024 * 1024;
+
+    /**
+     * 本地变更延迟写入 Redis 的间隔，同一应用在间隔内的多次变更合并写入
+     */
+    private Duration writeBehindInterval = Duration.ofMillis(200);
+
+    /**
+     * 关闭应用时等待写入线程结束的时间
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 本地缓存的对话记忆多久未被访问后移除，再次使用时重新恢复
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+
+    /**
+     * 获取模型使用的 token 估算参数
+     *
+     * @param modelName 模型名称
+     * @return 估算参数，未单独配置时使用默认参数
+     */
+    public TokenEstimate tokenEstimateOf(String modelName) {
+        return modelName == null ? tokenEstimate : models.getOrDefault(modelName, tokenEstimate);
+    }
+
+    /**
+     * token 估算参数
+     */
+    @Data
+    public static class TokenEstimate {
+
+        /**
+         * 平均每个 token 包含的 ASCII 字符数
+         */
+        private double asciiCharsPerToken = 4.0;
+
+        /**
+         * 每个非 ASCII 字符（中文等）折算的 token 数
+         */
+        private double nonAsciiTokensPerChar = 0.6;
+
+        /**
+         * 每条消息的格式开销
+         */
+        private int messageOverheadTokens = 4;
+    }
+}
@@ -0,0 +1,50 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成代码输出目录配置
+ * 每次生成写入独立的版本目录，完成后原子切换 tmp/code_output/{type}_{appId} 指向的版本
+ * 生成和部署的文件按内容去重，相同内容的文件硬链接到同一个存储文件
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-output")
+@Data
+public class CodeOutputConfig {
+
+    /**
+     * 每个应用保留的历史版本数（不含当前版本），更早的版本在切换后删除
+     * 历史版本只保留源文件，且与其他版本共享相同内容的文件，占用的空间很小
+     */
+    private int retainedVersions = 20;
+
+    /**
+     * 按内容去重的文件存储配置
+     */
+    private Store store = new Store();
+
+    @Data
+    public static class Store {
+
+        /**
+         * 是否开启去重，关闭时直接写入文件
+         */
+        private boolean enabled = true;
+
+        /**
+         * 清理未被引用的存储文件的间隔
+         */
+        private Duration gcInterval = Duration.ofHours(1);
+
+        /**
+         * 存储文件最近一次写入或复用超过该时长且未被引用时才清理，避免删除刚写入、还未链接的文件
+         */
+        private Duration gcMinAge = Duration.ofHours(1);
+    }
+}
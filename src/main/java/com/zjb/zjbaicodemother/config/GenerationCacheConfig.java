@@ -0,0 +1,59 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * HTML / 多文件模式的生成结果缓存配置
+ * 应用首次对话时，提示词、生成类型、模型和系统提示词都相同的请求直接回放已生成的代码
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.generation-cache")
+@Data
+public class GenerationCacheConfig {
+
+    /**
+     * 是否开启生成结果缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 生成所用的模型名称，参与缓存键的计算，切换模型后旧结果自动失效
+     */
+    private String modelName;
+
+    /**
+     * 缓存键版本，需要手动让所有缓存失效时修改
+     */
+    private String keyVersion = "2";
+
+    /**
+     * 缓存有效期，写入时确定，本地缓存与 Redis 中的同一条结果同时过期
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * 本地缓存最多保存的字符数
+     */
+    private long localMaximumChars = 16 * 1024 * 1024;
+
+    /**
+     * 提示词超过该长度时不使用缓存，长提示词几乎不会重复
+     */
+    private int maxPromptLength = 2000;
+
+    /**
+     * 回放时每个片段的字符数
+     */
+    private int replayChunkChars = 32;
+
+    /**
+     * 回放时相邻片段的间隔
+     */
+    private Duration replayInterval = Duration.ofMillis(10);
+}
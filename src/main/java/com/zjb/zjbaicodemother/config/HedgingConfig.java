@@ -0,0 +1,39 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 推理模型对冲请求配置
+ * 请求发出后超过等待时间仍未收到首个 token 时，再发出一个相同的请求，先产出 token 的一方胜出
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.hedging")
+@Data
+public class HedgingConfig {
+
+    /**
+     * 是否启用对冲请求
+     */
+    private boolean enabled = false;
+
+    /**
+     * 发出对冲请求前等待首个 token 的时间，建议设置为首 token 耗时的 p95 左右
+     */
+    private Duration delay = Duration.ofSeconds(3);
+
+    /**
+     * 对冲请求占普通请求的最大比例，限制对冲带来的额外负载
+     */
+    private double budgetRatio = 0.1;
+
+    /**
+     * 预算最多累积的对冲请求数，也是启动时可用的对冲请求数
+     */
+    private int maxBurst = 5;
+}
@@ -0,0 +1,101 @@
+package com.zjb.zjbaicodemother.config;
+
+import com.zjb.zjbaicodemother.ai.mock.MockOpenAiServer;
+import com.zjb.zjbaicodemother.ai.mock.MockStreamingChatModelPostProcessor;
+import com.zjb.zjbaicodemother.ai.mock.ModelTraceStore;
+import com.zjb.zjbaicodemother.ai.mock.TracePlayer;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 模型录制 / 回放配置，只在 mock 环境生效
+ * 1. record：流式模型照常调用，同时把每次调用的 token 和工具调用录制到轨迹文件
+ * 2. replay：流式模型替换为进程内的回放模型，按配置的速度输出录制的轨迹，不调用真实模型
+ * 3. server：启动 OpenAI 兼容的本地接口回放轨迹，模型仍经由 HTTP 客户端调用，可以覆盖网络和解析开销
+ * 用于压测生成接口，不产生模型费用
+ *
+ * @author zjb
+ */
+@Configuration
+@Profile("mock")
+@ConfigurationProperties(prefix = "ai.mock")
+@Data
+public class MockModelConfig {
+
+    /**
+     * 工作模式
+     */
+    private Mode mode = Mode.REPLAY;
+
+    /**
+     * 轨迹文件，每行一次模型调用；不存在时回放内置的示例轨迹
+     */
+    private String traceFile = System.getProperty("user.dir") + "/tmp/model-traces.jsonl";
+
+    /**
+     * record / replay 模式下处理的流式模型 Bean
+     */
+    private List<String> models = List.of("openAiStreamingChatModel", "reasoningStreamingChatModel");
+
+    /**
+     * 回放时首个 token 前的等待时长
+     */
+    private Duration firstTokenLatency = Duration.ofMillis(800);
+
+    /**
+     * 回放速度（每秒 token 数），录制的每个片段和每段工具参数各算一个 token
+     */
+    private double tokensPerSecond = 50;
+
+    /**
+     * 相邻 token 间隔的随机抖动比例，0.2 表示在平均间隔的 ±20% 内浮动
+     */
+    private double jitter = 0.2;
+
+    /**
+     * 回放工具调用时每段参数的字符数
+     */
+    private int toolArgumentChunkChars = 4;
+
+    /**
+     * server 模式的监听端口
+     */
+    private int serverPort = 18080;
+
+    @Bean
+    public ModelTraceStore modelTraceStore() {
+        return new ModelTraceStore(traceFile);
+    }
+
+    @Bean
+    public TracePlayer tracePlayer() {
+        return new TracePlayer(firstTokenLatency, tokensPerSecond, jitter, toolArgumentChunkChars);
+    }
+
+    @Bean
+    public static MockStreamingChatModelPostProcessor mockStreamingChatModelPostProcessor() {
+        return new MockStreamingChatModelPostProcessor();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "ai.mock", name = "mode", havingValue = "server")
+    public MockOpenAiServer mockOpenAiServer(ModelTraceStore modelTraceStore, TracePlayer tracePlayer) {
+        return new MockOpenAiServer(serverPort, modelTraceStore, tracePlayer);
+    }
+
+    /**
+     * 工作模式
+     */
+    public enum Mode {
+        RECORD,
+        REPLAY,
+        SERVER
+    }
+}
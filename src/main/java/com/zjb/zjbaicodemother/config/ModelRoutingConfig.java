@@ -0,0 +1,89 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 推理模型多端点路由配置
+ * 配置了多个端点时，每次请求按首 token 耗时、生成速度和错误率选择端点，异常端点会被暂时摘除
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.routing")
+@Data
+public class ModelRoutingConfig {
+
+    /**
+     * 候选端点，为空时只使用 langchain4j.open-ai.chat-model 配置的端点
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    /**
+     * 指数加权移动平均的平滑系数，越大越偏向最近的请求
+     */
+    private double ewmaAlpha = 0.3;
+
+    /**
+     * 估算端点耗时时参考的输出 token 数，用于把生成速度折算成耗时
+     */
+    private int referenceOutputTokens = 1000;
+
+    /**
+     * 错误率惩罚系数，得分 = 预计耗时 * (1 + 错误率 * 惩罚系数)
+     */
+    private double errorPenalty = 4;
+
+    /**
+     * 随机选择端点的比例，让未被选中的端点也能持续更新统计
+     */
+    private double explorationRatio = 0.05;
+
+    /**
+     * 连续失败多少次后摘除端点
+     */
+    private int consecutiveFailuresToEject = 3;
+
+    /**
+     * 错误率超过该值时摘除端点
+     */
+    private double errorRateToEject = 0.6;
+
+    /**
+     * 首次摘除的时长，之后探测失败时翻倍
+     */
+    private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+    /**
+     * 最长摘除时长
+     */
+    private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * 端点名称，用于日志和指标
+         */
+        private String name;
+
+        /**
+         * 为空时使用 langchain4j.open-ai.chat-model.base-url
+         */
+        private String baseUrl;
+
+        /**
+         * 为空时使用 langchain4j.open-ai.chat-model.api-key
+         */
+        private String apiKey;
+
+        private String modelName;
+
+        private Integer maxTokens;
+    }
+}
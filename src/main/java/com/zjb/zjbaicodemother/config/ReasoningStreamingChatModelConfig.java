@@ -1,33 +1,94 @@
 package com.zjb.zjbaicodemother.config;
 
+import cn.hutool.core.util.StrUtil;
+import com.zjb.zjbaicodemother.ai.routing.HedgingStreamingChatModel;
+import com.zjb.zjbaicodemother.ai.routing.ModelRoutingMetrics;
+import com.zjb.zjbaicodemother.ai.routing.RoutedEndpoint;
+import com.zjb.zjbaicodemother.ai.routing.RoutingStreamingChatModel;
+import dev.langchain4j.http.client.HttpClientBuilder;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.open-ai.chat-model")
 @Data
 public class ReasoningStreamingChatModelConfig {
+
+    //为了测试方便，使用deepseek-chat
+    public static final String DEFAULT_MODEL_NAME = "deepseek-chat";
+    private static final int DEFAULT_MAX_TOKENS = 8192;
+//    //生产环境调用
+//    private static final String DEFAULT_MODEL_NAME = "deepseek-reasoner";
+//    private static final int DEFAULT_MAX_TOKENS = 32768;
+
     private String apiKey;
     private String baseUrl;
 
+    /**
+     * 所有模型共用的 HTTP 客户端
+     */
+    @Resource
+    private HttpClientBuilder aiHttpClientBuilder;
+
+    @Resource
+    private ModelRoutingConfig modelRoutingConfig;
+
+    @Resource
+    private ModelRoutingMetrics modelRoutingMetrics;
+
+    @Resource
+    private HedgingConfig hedgingConfig;
+
+    @Resource
+    private ScheduledExecutorService aiHttpClientWatchdog;
+
     /**
      * 推理流式模型（用于vue项目生成，带工具调用）
+     * 配置了 ai.routing.endpoints 时按各端点的延迟和错误率路由，启用 ai.hedging 时首 token 过慢会发出对冲请求
      */
     @Bean
     public StreamingChatModel reasoningStreamingChatModel() {
-        //为了测试方便，使用deepseek-chat
-        final String modelName = "deepseek-chat";
-        final int maxTokens = 8192;
-//        //生产环境调用
-//        final String modelName = "deepseek-reasoner";
-//        final int maxTokens = 32768;
+        StreamingChatModel model = buildRoutedStreamingChatModel();
+        if (hedgingConfig.isEnabled()) {
+            model = new HedgingStreamingChatModel(model, hedgingConfig, aiHttpClientWatchdog, modelRoutingMetrics);
+        }
+        return model;
+    }
+
+    private StreamingChatModel buildRoutedStreamingChatModel() {
+        List<ModelRoutingConfig.Endpoint> endpoints = modelRoutingConfig.getEndpoints();
+        if (endpoints.isEmpty()) {
+            return buildStreamingChatModel(baseUrl, apiKey, DEFAULT_MODEL_NAME, DEFAULT_MAX_TOKENS);
+        }
+        List<RoutedEndpoint> routedEndpoints = endpoints.stream()
+                .map(endpoint -> {
+                    String endpointBaseUrl = StrUtil.blankToDefault(endpoint.getBaseUrl(), baseUrl);
+                    String modelName = StrUtil.blankToDefault(endpoint.getModelName(), DEFAULT_MODEL_NAME);
+                    StreamingChatModel model = buildStreamingChatModel(
+                            endpointBaseUrl,
+                            StrUtil.blankToDefault(endpoint.getApiKey(), apiKey),
+                            modelName,
+                            endpoint.getMaxTokens() == null ? DEFAULT_MAX_TOKENS : endpoint.getMaxTokens());
+                    String name = StrUtil.blankToDefault(endpoint.getName(), modelName + "@" + endpointBaseUrl);
+                    return new RoutedEndpoint(name, model, modelRoutingConfig);
+                })
+                .toList();
+        return new RoutingStreamingChatModel(routedEndpoints, modelRoutingConfig, modelRoutingMetrics);
+    }
+
+    private StreamingChatModel buildStreamingChatModel(String baseUrl, String apiKey, String modelName, int maxTokens) {
         return OpenAiStreamingChatModel.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
+                .httpClientBuilder(aiHttpClientBuilder)
                 .modelName(modelName)
                 .maxTokens(maxTokens)
                 .logRequests(true)
@@ -1,12 +1,22 @@
 package com.zjb.zjbaicodemother.config;
 
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import com.zjb.zjbaicodemother.ai.memory.CachedChatMemoryStore;
+import com.zjb.zjbaicodemother.ai.memory.CompressedRedisChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
 /**
  * Redis 聊天记录存储配置。存储对话记忆
+ * 每个应用的对话记忆保存为 Redis 列表，新增消息只追加，大消息压缩存储；
+ * 前面有一层本地缓存，变更延迟批量写入 Redis
  * @author zjb
  */
 @Configuration
@@ -14,24 +24,24 @@ import org.springframework.context.annotation.Configuration;
 @Data
 public class RedisChatMemoryStoreConfig {
 
-    private String host;
-
-    private int port;
-
-    private String username;
-
-    private String password;
-
+    /**
+     * 对话记忆的过期时间（秒），每次写入时刷新
+     */
     private long ttl;
 
     @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .user(username)
-                .password(password)
-                .ttl(ttl)
-                .build();
+    public CachedChatMemoryStore chatMemoryStore(RedisConnectionFactory redisConnectionFactory,
+                                                 ChatMemoryConfig chatMemoryConfig, MeterRegistry meterRegistry) {
+        RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+        CompressedRedisChatMemoryStore redisStore = new CompressedRedisChatMemoryStore(redisTemplate, Duration.ofSeconds(ttl),
+                chatMemoryConfig.getCompressThresholdBytes());
+        // 关闭应用时由 Spring 调用 close，写完未写入的变更
+        return new CachedChatMemoryStore(redisStore, chatMemoryConfig.getLocalMaximumChars(),
+                chatMemoryConfig.getExpireAfterAccess(), chatMemoryConfig.getWriteBehindInterval(),
+                chatMemoryConfig.getShutdownTimeout(), meterRegistry);
     }
 }
@@ -0,0 +1,39 @@
+package com.zjb.zjbaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * SSE 帧合并配置
+ * 开启后按时间窗口或字节预算把多个分片合并为一个 SSE 帧，减少写出和网络包次数
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.sse.batch")
+@Data
+public class SseBatchConfig {
+
+    /**
+     * 是否允许合并（默认关闭，保持逐 token 推送）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 客户端未指定时使用的时间窗口
+     */
+    private Duration window = Duration.ofMillis(30);
+
+    /**
+     * 客户端可协商的最大时间窗口
+     */
+    private Duration maxWindow = Duration.ofMillis(200);
+
+    /**
+     * 单个帧的字节预算（UTF-8），达到后立即推送
+     */
+    private int maxBytes = 4096;
+}
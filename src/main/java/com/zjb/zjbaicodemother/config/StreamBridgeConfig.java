@@ -0,0 +1,39 @@
+package com.zjb.zjbaicodemother.config;
+
+import com.zjb.zjbaicodemother.model.enums.StreamOverflowPolicyEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * TokenStream 到 Flux 桥接的缓冲配置
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.stream.bridge")
+@Data
+public class StreamBridgeConfig {
+
+    /**
+     * 每个流最多缓冲的消息块数量
+     */
+    private int bufferSize = 256;
+
+    /**
+     * 消费者落后时，相邻文本片段合并后的最大字符数
+     */
+    private int maxCoalescedChars = 8192;
+
+    /**
+     * 缓冲区满时的处理策略，默认终止流：文本片段已经合并，缓冲区仍然写满说明客户端长时间没有消费
+     */
+    private StreamOverflowPolicyEnum overflowPolicy = StreamOverflowPolicyEnum.ERROR;
+
+    /**
+     * BLOCK 策略下生产者最长等待时间，等待期间模型响应的读取暂停，不宜过长
+     */
+    private Duration blockTimeout = Duration.ofSeconds(2);
+}
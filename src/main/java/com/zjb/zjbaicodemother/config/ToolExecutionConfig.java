@@ -0,0 +1,55 @@
+package com.zjb.zjbaicodemother.config;
+
+import com.zjb.zjbaicodemother.ai.tools.FileWriteArgumentsCompactor;
+import com.zjb.zjbaicodemother.ai.tools.FileWriteTool;
+import dev.langchain4j.service.StreamingToolExecutionSettings;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工具调用执行配置
+ * 同一轮对话中的多个工具调用（如多次写文件）在虚拟线程上并发执行，写同一文件的调用按原顺序执行
+ * 发起下一轮请求时，之前轮次 writeFile 的文件内容替换为省略标记，只有最近一轮原样发送
+ * 这些设置只作用于代码生成服务的流，由门面在启动流时传入，不影响其他 AI 服务
+ *
+ * @author zjb
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.tool")
+@Data
+public class ToolExecutionConfig {
+
+    /**
+     * 同一轮工具调用的最大并发数，1 表示串行执行
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 是否在 writeFile 的参数流式到达时就开始写文件
+     */
+    private boolean streamingWrite = true;
+
+    /**
+     * 是否压缩之前轮次的 writeFile 调用，只影响发送给模型的请求，不修改对话记忆
+     */
+    private boolean compactHistory = true;
+
+    /**
+     * 文件内容少于该字符数时不压缩
+     */
+    private int compactMinContentChars = 256;
+
+    /**
+     * 代码生成流的工具执行设置
+     */
+    @Bean
+    public StreamingToolExecutionSettings codeGenToolExecutionSettings() {
+        return StreamingToolExecutionSettings.builder()
+                .maxConcurrency(maxConcurrency)
+                .executionKeyResolver(FileWriteTool::executionKey)
+                .argumentsCompactor(compactHistory ? new FileWriteArgumentsCompactor(compactMinContentChars) : null)
+                .build();
+    }
+}
@@ -27,6 +27,11 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * 按内容去重的文件存储目录，需要与生成目录、部署目录在同一文件系统上才能使用硬链接
+     */
+    String CODE_STORE_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_store";
+
     /**
      * 应用部署域名
      */
@@ -0,0 +1,41 @@
+package com.zjb.zjbaicodemother.controller;
+
+import com.zjb.zjbaicodemother.annotation.AuthCheck;
+import com.zjb.zjbaicodemother.common.BaseResponse;
+import com.zjb.zjbaicodemother.common.ResultUtils;
+import com.zjb.zjbaicodemother.constant.UserConstant;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.exception.ThrowUtils;
+import com.zjb.zjbaicodemother.model.dto.usage.AiUsageQueryRequest;
+import com.zjb.zjbaicodemother.model.vo.AiUsageStatsVO;
+import com.zjb.zjbaicodemother.service.AiUsageService;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 模型用量 控制层。
+ *
+ * @author zjb
+ */
+@RestController
+@RequestMapping("/aiUsage")
+public class AiUsageController {
+
+    @Resource
+    private AiUsageService aiUsageService;
+
+    /**
+     * 管理员按应用、用户和天查询模型用量汇总
+     *
+     * @param aiUsageQueryRequest 查询请求
+     * @return 用量汇总，默认按总 token 数降序
+     */
+    @PostMapping("/admin/stats")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<List<AiUsageStatsVO>> listDailyStatsForAdmin(@RequestBody AiUsageQueryRequest aiUsageQueryRequest) {
+        ThrowUtils.throwIf(aiUsageQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        return ResultUtils.success(aiUsageService.listDailyStats(aiUsageQueryRequest));
+    }
+}
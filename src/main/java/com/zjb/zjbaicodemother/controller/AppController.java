@@ -1,13 +1,18 @@
 package com.zjb.zjbaicodemother.controller;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.mybatisflex.core.paginate.Page;
 import com.zjb.zjbaicodemother.annotation.AuthCheck;
 import com.zjb.zjbaicodemother.common.BaseResponse;
 import com.zjb.zjbaicodemother.common.DeleteRequest;
 import com.zjb.zjbaicodemother.common.ResultUtils;
+import com.zjb.zjbaicodemother.config.SseBatchConfig;
 import com.zjb.zjbaicodemother.constant.UserConstant;
+import com.zjb.zjbaicodemother.core.stream.SseFrameBatcher;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.exception.ThrowUtils;
@@ -15,6 +20,8 @@ import com.zjb.zjbaicodemother.model.dto.app.*;
 import com.zjb.zjbaicodemother.model.entity.App;
 import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.vo.AppVO;
+import com.zjb.zjbaicodemother.model.vo.CodeFileChangeVO;
+import com.zjb.zjbaicodemother.model.vo.CodeVersionVO;
 import com.zjb.zjbaicodemother.service.AppService;
 import com.zjb.zjbaicodemother.service.UserService;
 import jakarta.annotation.Resource;
@@ -25,7 +32,9 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,17 +52,28 @@ public class AppController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private SseBatchConfig sseBatchConfig;
+
+    /**
+     * 预构建的 SSE 数据块序列化器，每个分片只序列化一次
+     */
+    private static final ObjectWriter CHUNK_WRITER = new ObjectMapper()
+            .writerFor(new TypeReference<Map<String, String>>() {});
+
     /**
      * 应用聊天生成代码（流式 SSE）
      *
      * @param appId   应用 ID
      * @param message 用户消息
+     * @param batchWindowMs 客户端协商的帧合并时间窗口（毫秒），0 表示不合并，为空时使用服务端默认值
      * @param request 请求对象
      * @return 生成结果流
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                       @RequestParam String message,
+                                      @RequestParam(required = false) Long batchWindowMs,
                                       HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
@@ -62,11 +82,13 @@ public class AppController {
         User loginUser = userService.getLoginUser(request);
         // 调用服务生成代码（流式）
         Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
+        //按时间窗口或字节预算合并分片，减少 SSE 帧数量
+        contentFlux = SseFrameBatcher.batch(contentFlux, resolveBatchWindow(batchWindowMs), sseBatchConfig.getMaxBytes());
         //目前虽然能流式输出了，但其实获取到的数据是有问题的!前端使用 EventSource 对接目前的接口时，会出现空格丢失问题。
         return contentFlux.map(chunk -> {
             //将内容包装成JSON对象
             Map<String, String> chunkMap = Map.of("d", chunk);
-            String jsonStr = JSONUtil.toJsonStr(chunkMap);
+            String jsonStr = writeChunk(chunkMap);
             return ServerSentEvent.<String>builder()
                     .data(jsonStr)
                     .build();
@@ -79,6 +101,38 @@ public class AppController {
         ));
     }
 
+    /**
+     * 确定帧合并时间窗口
+     *
+     * @param batchWindowMs 客户端协商的时间窗口（毫秒）
+     * @return 时间窗口，Duration.ZERO 表示不合并
+     */
+    private Duration resolveBatchWindow(Long batchWindowMs) {
+        if (!sseBatchConfig.isEnabled()) {
+            return Duration.ZERO;
+        }
+        if (batchWindowMs == null) {
+            return sseBatchConfig.getWindow();
+        }
+        ThrowUtils.throwIf(batchWindowMs < 0, ErrorCode.PARAMS_ERROR, "合并时间窗口不能为负数");
+        Duration window = Duration.ofMillis(batchWindowMs);
+        return window.compareTo(sseBatchConfig.getMaxWindow()) > 0 ? sseBatchConfig.getMaxWindow() : window;
+    }
+
+    /**
+     * 序列化 SSE 数据块
+     *
+     * @param chunkMap 数据块
+     * @return JSON 字符串
+     */
+    private static String writeChunk(Map<String, String> chunkMap) {
+        try {
+            return CHUNK_WRITER.writeValueAsString(chunkMap);
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "消息序列化失败");
+        }
+    }
+
     /**
      * 应用部署
      *
@@ -98,6 +152,57 @@ public class AppController {
         return ResultUtils.success(deployUrl);
     }
 
+    /**
+     * 列出应用代码的历史版本
+     *
+     * @param appId   应用 id
+     * @param request 请求
+     * @return 版本列表，按发布时间从新到旧排列
+     */
+    @GetMapping("/version/list")
+    public BaseResponse<List<CodeVersionVO>> listCodeVersions(@RequestParam Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.listCodeVersions(appId, loginUser));
+    }
+
+    /**
+     * 比较应用代码的两个版本
+     *
+     * @param appId   应用 id
+     * @param from    旧版本号
+     * @param to      新版本号
+     * @param request 请求
+     * @return 变化的文件列表
+     */
+    @GetMapping("/version/diff")
+    public BaseResponse<List<CodeFileChangeVO>> diffCodeVersions(@RequestParam Long appId,
+                                                                 @RequestParam String from,
+                                                                 @RequestParam String to,
+                                                                 HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(appService.diffCodeVersions(appId, from, to, loginUser));
+    }
+
+    /**
+     * 恢复应用代码到历史版本，恢复后可以调用部署接口部署
+     *
+     * @param appVersionRestoreRequest 恢复请求
+     * @param request                  请求
+     * @return 新版本的版本号
+     */
+    @PostMapping("/version/restore")
+    public BaseResponse<String> restoreCodeVersion(@RequestBody AppVersionRestoreRequest appVersionRestoreRequest,
+                                                   HttpServletRequest request) {
+        ThrowUtils.throwIf(appVersionRestoreRequest == null, ErrorCode.PARAMS_ERROR);
+        Long appId = appVersionRestoreRequest.getAppId();
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        User loginUser = userService.getLoginUser(request);
+        String versionId = appService.restoreCodeVersion(appId, appVersionRestoreRequest.getVersionId(), loginUser);
+        return ResultUtils.success(versionId);
+    }
+
     /**
      * 创建应用
      *
@@ -1,27 +1,42 @@
 package com.zjb.zjbaicodemother.core;
 
-import cn.hutool.json.JSONUtil;
 import com.zjb.zjbaicodemother.ai.AiCodeGeneratorService;
 import com.zjb.zjbaicodemother.ai.AiCodeGeneratorServiceFactory;
 import com.zjb.zjbaicodemother.ai.model.HtmlCodeResult;
 import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
 import com.zjb.zjbaicodemother.ai.model.message.AiResponseMessage;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
 import com.zjb.zjbaicodemother.ai.model.message.ToolExecutedMessage;
 import com.zjb.zjbaicodemother.ai.model.message.ToolRequestMessage;
-import com.zjb.zjbaicodemother.core.parser.CodeParserExecutor;
+import com.zjb.zjbaicodemother.ai.tools.FileWriteContext;
+import com.zjb.zjbaicodemother.ai.tools.FileWriteStreamSession;
+import com.zjb.zjbaicodemother.ai.tools.FileWriteTool;
+import com.zjb.zjbaicodemother.core.buider.VueProjectBuider;
+import com.zjb.zjbaicodemother.core.cache.GenerationCache;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
+import com.zjb.zjbaicodemother.core.output.ContentStore;
+import com.zjb.zjbaicodemother.config.StreamBridgeConfig;
+import com.zjb.zjbaicodemother.config.ToolExecutionConfig;
 import com.zjb.zjbaicodemother.core.saver.CodeFileSaverExecutor;
+import com.zjb.zjbaicodemother.core.saver.StreamingCodeFileSaver;
+import com.zjb.zjbaicodemother.core.stream.StreamBridgeMetrics;
+import com.zjb.zjbaicodemother.core.stream.StreamMessageBridge;
+import com.zjb.zjbaicodemother.core.usage.AiUsageRecorder;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.StreamingToolExecutionSettings;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -33,6 +48,33 @@ public class AiCodeGeneratorFacade {
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    @Resource
+    private StreamBridgeConfig streamBridgeConfig;
+
+    @Resource
+    private StreamBridgeMetrics streamBridgeMetrics;
+
+    @Resource
+    private ToolExecutionConfig toolExecutionConfig;
+
+    @Resource
+    private StreamingToolExecutionSettings codeGenToolExecutionSettings;
+
+    @Resource
+    private GenerationCache generationCache;
+
+    @Resource
+    private AiUsageRecorder aiUsageRecorder;
+
+    @Resource
+    private CodeOutputManager codeOutputManager;
+
+    @Resource
+    private ContentStore contentStore;
+
+    @Resource
+    private VueProjectBuider vueProjectBuider;
+
     /**
      * 统一入口：根据类型生成并保存代码
      *
@@ -44,6 +86,7 @@ public class AiCodeGeneratorFacade {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
+        aiCodeGeneratorServiceFactory.revalidateChatMemory(appId);
         return switch (codeGenTypeEnum) {
             case HTML -> generateAndSaveHtmlCode(userMessage, appId);
             case MULTI_FILE -> generateAndSaveMultiFileCode(userMessage, appId);
@@ -60,15 +103,42 @@ public class AiCodeGeneratorFacade {
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
      * @param appId 应用ID
+     * @return 类型化的消息流
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, null, false);
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式）
+     *
+     * @param userMessage        用户提示词
+     * @param codeGenTypeEnum    生成类型
+     * @param appId              应用ID
+     * @param userId             发起生成的用户ID，用于用量统计
+     * @param useGenerationCache 是否可以复用相同提示词的生成结果，只适用于应用的首次对话
+     * @return 类型化的消息流
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                         Long userId, boolean useGenerationCache) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
+        AiUsageRecorder.Tracker usage = aiUsageRecorder.start(appId, userId, codeGenTypeEnum);
+        GenerationCache.Key cacheKey = useGenerationCache ? generationCache.keyOf(userMessage, codeGenTypeEnum) : null;
+        if (cacheKey != null) {
+            String cachedOutput = generationCache.get(cacheKey);
+            if (cachedOutput != null) {
+                log.info("命中生成缓存，回放已生成的代码，appId: {}", appId);
+                usage.cacheHit();
+                return replayCachedCodeStream(cachedOutput, userMessage, codeGenTypeEnum, appId);
+            }
+        }
+        aiCodeGeneratorServiceFactory.revalidateChatMemory(appId);
         return switch (codeGenTypeEnum) {
-            case HTML -> generateAndSaveHtmlCodeStream(userMessage, appId);
-            case MULTI_FILE -> generateAndSaveMultiFileCodeStream(userMessage, appId);
-            case VUE_PROJECT -> generateAndSaveVueProjectCodeStream(userMessage, appId);
+            case HTML -> generateAndSaveHtmlCodeStream(userMessage, appId, cacheKey, usage);
+            case MULTI_FILE -> generateAndSaveMultiFileCodeStream(userMessage, appId, cacheKey, usage);
+            case VUE_PROJECT -> generateAndSaveVueProjectCodeStream(userMessage, appId, usage);
             default -> {
                 String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMessage);
@@ -78,42 +148,69 @@ public class AiCodeGeneratorFacade {
 
     /**
      * 通用流式代码处理方法
+     * 在流中逐个片段解析代码块，每个代码块结束时立即写入暂存目录，完成后发布为新版本，异常或取消时丢弃；
+     * 只有需要写入生成缓存时才保留完整输出
      *
      * @param codeStream      代码流
      * @param codeGenType 生成类型
+     * @param cacheKey    生成缓存键，不为 null 时把保存成功的结果写入缓存
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId){
-        StringBuilder codeBuilder = new StringBuilder();
+    private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId,
+                                                  GenerationCache.Key cacheKey){
+        StreamingCodeFileSaver codeFileSaver = new StreamingCodeFileSaver(codeGenType, appId, codeOutputManager);
+        StringBuilder codeBuilder = cacheKey != null ? new StringBuilder() : null;
         return codeStream.doOnNext(
                 chunk -> {
-                    //实时收集代码片段
-                    codeBuilder.append(chunk);
+                    if (codeBuilder != null) {
+                        codeBuilder.append(chunk);
+                    }
+                    //代码块结束时立即保存
+                    codeFileSaver.onChunk(chunk);
                 }
         ).doOnComplete(() -> {
             try {
-                String completeCode = codeBuilder.toString();
-                //使用解析器解析代码
-                Object parsedCode = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                //使用执行器保存代码
-                File saveDir = CodeFileSaverExecutor.executeSaver(parsedCode, codeGenType, appId);
+                File saveDir = codeFileSaver.finish();
                 log.info("代码保存成功，保存目录：{}", saveDir.getAbsolutePath());
+                if (cacheKey != null) {
+                    generationCache.put(cacheKey, codeBuilder.toString());
+                }
             } catch (Exception e) {
                 log.error("代码保存失败: {}", e.getMessage());
             }
-        });
+        }).doFinally(signalType -> codeFileSaver.close())
+                .map(AiResponseMessage::new);
+    }
+
+    /**
+     * 回放缓存的生成结果，保存流程与模型生成时相同
+     * 回放完成后把这一轮对话写入对话记忆，后续对话的上下文与模型生成时一致
+     *
+     * @param cachedOutput 缓存的模型输出
+     * @param userMessage  用户提示词
+     * @param codeGenType  生成类型
+     * @param appId        应用ID
+     * @return 响应流
+     */
+    private Flux<StreamMessage> replayCachedCodeStream(String cachedOutput, String userMessage,
+                                                       CodeGenTypeEnum codeGenType, Long appId) {
+        return processCodeStream(generationCache.replay(cachedOutput), codeGenType, appId, null)
+                .doOnComplete(() -> aiCodeGeneratorServiceFactory.appendToChatMemory(appId, codeGenType, userMessage, cachedOutput));
     }
 
     /**
      * 生成HTML模式的代码并保存（流式）
      *
      * @param userMessage     用户提示词
+     * @param cacheKey        生成缓存键，不使用缓存时为 null
+     * @param usage           用量跟踪器
      * @return 响应流
      */
-    private Flux<String> generateAndSaveHtmlCodeStream(String userMessage, Long appId) {
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
-        Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
+    private Flux<StreamMessage> generateAndSaveHtmlCodeStream(String userMessage, Long appId, GenerationCache.Key cacheKey,
+                                                              AiUsageRecorder.Tracker usage) {
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService();
+        Flux<String> result = toCodeStream(aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage), usage);
         //当流式返回生成代码完成后，在保存代码
-        return processCodeStream(result, CodeGenTypeEnum.HTML, appId);
+        return processCodeStream(result, CodeGenTypeEnum.HTML, appId, cacheKey);
     }
 
     /**
@@ -121,13 +218,16 @@ public class AiCodeGeneratorFacade {
      *
      * @param userMessage     用户提示词
      * @param appId 应用ID
+     * @param cacheKey 生成缓存键，不使用缓存时为 null
+     * @param usage 用量跟踪器
      * @return 响应流
      */
-    private Flux<String> generateAndSaveMultiFileCodeStream(String userMessage, Long appId) {
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
-        Flux<String> result = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
+    private Flux<StreamMessage> generateAndSaveMultiFileCodeStream(String userMessage, Long appId, GenerationCache.Key cacheKey,
+                                                                   AiUsageRecorder.Tracker usage) {
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService();
+        Flux<String> result = toCodeStream(aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage), usage);
         //当流式返回生成代码完成后，在保存代码
-        return processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId);
+        return processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId, cacheKey);
     }
 
     /**
@@ -135,37 +235,122 @@ public class AiCodeGeneratorFacade {
      *
      * @param userMessage     用户提示词
      * @param appId 应用ID
+     * @param usage 用量跟踪器
      * @return 响应流
      */
-    private Flux<String> generateAndSaveVueProjectCodeStream(String userMessage, Long appId) {
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, CodeGenTypeEnum.VUE_PROJECT);
+    private Flux<StreamMessage> generateAndSaveVueProjectCodeStream(String userMessage, Long appId, AiUsageRecorder.Tracker usage) {
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(CodeGenTypeEnum.VUE_PROJECT);
         TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-        return processTokenStream(tokenStream);
+        return processTokenStream(tokenStream, appId, usage);
+    }
+
+    /**
+     * 将 HTML / 多文件模式的 TokenStream 转换为代码流
+     * 完成时从最终响应中记录 token 用量；客户端断开时取消 TokenStream，中断进行中的模型请求
+     *
+     * @param tokenStream Token流
+     * @param usage       用量跟踪器
+     * @return 代码流
+     */
+    private Flux<String> toCodeStream(TokenStream tokenStream, AiUsageRecorder.Tracker usage) {
+        return Flux.create(sink -> {
+            sink.onCancel(() -> {
+                usage.cancel();
+                tokenStream.cancel();
+            });
+            tokenStream.onPartialResponse(sink::next)
+                    .onCompleteResponse(chatResponse -> {
+                        usage.complete(chatResponse);
+                        sink.complete();
+                    })
+                    .onError(error -> {
+                        usage.fail(error);
+                        sink.error(error);
+                    })
+                    .start();
+        });
     }
 
     /**
-     * 将TokenStream转换为Flux<String>，并传递工具调用信息
+     * 将TokenStream转换为Flux<StreamMessage>，并传递工具调用信息
+     * 直接下发类型化消息，避免每个 token 都做一次 JSON 序列化和反序列化；
+     * 通过有界桥接缓冲，客户端消费过慢时合并文本片段，避免无限堆积；
+     * 开启流式写入时，writeFile 的参数边到达边写入磁盘；
+     * 文件写入本次生成的暂存目录，正常结束后在暂存目录中构建再发布为新版本，异常或取消时丢弃，并在对话记忆中说明已写入的文件被丢弃；
+     * 客户端断开或桥接异常终止时取消 TokenStream，中断进行中的模型请求并不再开始新的工具轮次
      *
      * @param tokenStream      Token流
+     * @param appId 应用ID
+     * @param usage 用量跟踪器，记录 token 用量和工具调用轮次
      * @return 响应流
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream){
-        return Flux.create(sink -> {
-            tokenStream.onPartialResponse((String partialResponse) -> {
-                AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                sink.next(JSONUtil.toJsonStr(aiResponseMessage));
-            }).onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                sink.next(JSONUtil.toJsonStr(toolRequestMessage));
-            }).onToolExecuted((ToolExecution toolExecution) -> {
-                ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
-            }).onCompleteResponse((ChatResponse chatResponse) -> {
-                sink.complete();
-            }).onError((Throwable error) -> {
-                error.printStackTrace();
-                sink.error(error);
-            }).start();
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId, AiUsageRecorder.Tracker usage){
+        return Flux.defer(() -> {
+            // 本次生成的文件写入暂存目录，工具循环结束后整体发布
+            CodeOutputManager.Staging staging = codeOutputManager.begin(CodeGenTypeEnum.VUE_PROJECT, appId);
+            FileWriteContext fileWriteContext = new FileWriteContext(staging);
+            FileWriteStreamSession fileWriteSession = toolExecutionConfig.isStreamingWrite()
+                    ? new FileWriteStreamSession(fileWriteContext, contentStore) : null;
+            AtomicBoolean filesWritten = new AtomicBoolean();
+            // 暂存目录交给构建后由构建负责发布或丢弃
+            AtomicBoolean handedOverToBuild = new AtomicBoolean();
+            Flux<StreamMessage> messageStream = StreamMessageBridge.create(bridge -> {
+                tokenStream.onPartialResponse((String partialResponse) -> {
+                    usage.onModelOutput();
+                    bridge.next(new AiResponseMessage(partialResponse));
+                }).onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
+                    usage.onModelOutput();
+                    bridge.next(new ToolRequestMessage(toolExecutionRequest));
+                }).onToolArguments(fileWriteSession == null ? null : fileWriteSession::open)
+                .onToolExecuted((ToolExecution toolExecution) -> {
+                    usage.onToolExecuted();
+                    if (FileWriteTool.TOOL_NAME.equals(toolExecution.request().name())) {
+                        filesWritten.set(true);
+                    }
+                    bridge.next(new ToolExecutedMessage(toolExecution));
+                }).onIntermediateResponse(usage::onIntermediateResponse)
+                .onCompleteResponse((ChatResponse chatResponse) -> {
+                    usage.complete(chatResponse);
+                    bridge.complete();
+                }).onError((Throwable error) -> {
+                    log.error("Vue 项目生成流异常: {}", error.getMessage(), error);
+                    usage.fail(error);
+                    // 取消时也在工具循环结束后回调，对话记忆不会再有这次生成的消息
+                    if (filesWritten.get()) {
+                        aiCodeGeneratorServiceFactory.appendDiscardedFilesNote(appId, CodeGenTypeEnum.VUE_PROJECT);
+                    }
+                    bridge.error(error);
+                }).toolExecutionContext(fileWriteContext).toolExecutionSettings(codeGenToolExecutionSettings).start();
+            }, streamBridgeConfig, streamBridgeMetrics);
+            return messageStream.doOnComplete(() -> {
+                if (fileWriteSession != null) {
+                    fileWriteSession.close();
+                }
+                // 在暂存目录中构建完成后再发布，构建期间应用的生成位置仍被占用
+                vueProjectBuider.buildAndPublishAsync(staging).whenComplete((dir, error) -> {
+                    if (error != null && filesWritten.get()) {
+                        aiCodeGeneratorServiceFactory.appendDiscardedFilesNote(appId, CodeGenTypeEnum.VUE_PROJECT);
+                    }
+                });
+                handedOverToBuild.set(true);
+            }).doOnError(error -> {
+                // 桥接溢出、发布失败等不经过 TokenStream 回调的异常也要记录，跟踪器只记录第一次结束
+                usage.fail(error);
+            }).doFinally(signalType -> {
+                if (signalType == SignalType.CANCEL) {
+                    usage.cancel();
+                }
+                if (signalType != SignalType.ON_COMPLETE) {
+                    tokenStream.cancel();
+                }
+                // 无论正常结束、异常还是客户端取消，都清理未提交的临时文件，没有交给构建的暂存目录直接丢弃
+                if (fileWriteSession != null) {
+                    fileWriteSession.close();
+                }
+                if (!handedOverToBuild.get()) {
+                    staging.discard();
+                }
+            });
         });
     }
 
@@ -177,9 +362,9 @@ public class AiCodeGeneratorFacade {
      * @return 保存的目录
      */
     private File generateAndSaveHtmlCode(String userMessage, Long appId) {
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
-        return CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML, appId);
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService();
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
+        return saveCode(result, CodeGenTypeEnum.HTML, appId);
     }
 
     /**
@@ -190,8 +375,26 @@ public class AiCodeGeneratorFacade {
      * @return 保存的目录
      */
     private File generateAndSaveMultiFileCode(String userMessage, Long appId) {
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
-        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
-        return CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE, appId);
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService();
+        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
+        return saveCode(result, CodeGenTypeEnum.MULTI_FILE, appId);
+    }
+
+    /**
+     * 保存到暂存目录后发布为新版本，保存失败时丢弃暂存目录
+     *
+     * @param result      代码结果对象
+     * @param codeGenType 生成类型
+     * @param appId       应用ID
+     * @return 正式目录
+     */
+    private File saveCode(Object result, CodeGenTypeEnum codeGenType, Long appId) {
+        CodeOutputManager.Staging staging = codeOutputManager.begin(codeGenType, appId);
+        try {
+            CodeFileSaverExecutor.executeSaver(result, codeGenType, staging);
+            return staging.publish();
+        } finally {
+            staging.discard();
+        }
     }
 }
@@ -1,10 +1,12 @@
 package com.zjb.zjbaicodemother.core.buider;
 
 import cn.hutool.core.util.RuntimeUtil;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 /**
  * @Description: Vue项目构建器
@@ -15,20 +17,33 @@ import java.util.concurrent.TimeUnit;
 public class VueProjectBuider {
 
     /**
-     * 异步构建Vue项目
+     * 在暂存目录中异步构建Vue项目，构建结束后发布为当前版本
+     * 构建期间暂存目录仍占用应用的生成位置，新的生成和恢复会被拒绝，npm 写入 node_modules 时不会被克隆或清理；
+     * 预览在构建完成前看到的是上一个版本，构建失败时照常发布生成的源文件
      *
-     * @param projectPath 项目路径
+     * @param staging 暂存目录，由本方法负责发布或丢弃
+     * @return 发布后的正式目录，发布失败时异常结束
      */
-    public void buildProjectAsync(String projectPath) {
+    public CompletableFuture<File> buildAndPublishAsync(CodeOutputManager.Staging staging) {
+        CompletableFuture<File> published = new CompletableFuture<>();
         //在单独的线程中执行构建，避免阻塞主线程
         Thread.ofVirtual().name("vue-project-buider-"+System.currentTimeMillis())
                 .start(() -> {
                     try {
-                        buildProject(projectPath);
+                        buildProject(staging.dir().toString());
                     } catch (Exception e) {
                         log.error("异步构建项目失败：{}", e.getMessage(), e);
                     }
+                    try {
+                        published.complete(staging.publish());
+                    } catch (Exception e) {
+                        log.error("构建后发布项目失败：{}", e.getMessage(), e);
+                        published.completeExceptionally(e);
+                    } finally {
+                        staging.discard();
+                    }
                 });
+        return published;
     }
 
     /**
@@ -0,0 +1,214 @@
+package com.zjb.zjbaicodemother.core.cache;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zjb.zjbaicodemother.config.GenerationCacheConfig;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * HTML / 多文件模式的生成结果缓存
+ * 1. 缓存键由归一化后的提示词、生成类型、模型名称、系统提示词摘要和键版本计算，任一变化都不会命中旧结果
+ * 2. 先查本地 Caffeine，再查 Redis，Redis 命中后回填本地；每条结果写入时确定过期时间，两级缓存同时过期
+ * 3. Redis 不可用时按未命中处理，不影响正常生成
+ * 命中后按固定节奏分片回放，前端看到的仍是逐步输出的效果
+ *
+ * @author zjb
+ */
+@Slf4j
+@Component
+public class GenerationCache {
+
+    private static final String REDIS_KEY_PREFIX = "ai:generation-cache:";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * 与 AiCodeGeneratorService 中各类型使用的系统提示词保持一致
+     */
+    private static final Map<CodeGenTypeEnum, String> SYSTEM_PROMPTS = Map.of(
+            CodeGenTypeEnum.HTML, "prompt/codegen-html-system-prompt.txt",
+            CodeGenTypeEnum.MULTI_FILE, "prompt/codegen-multi-file-system-prompt.txt");
+
+    private final GenerationCacheConfig config;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final GenerationCacheMetrics metrics;
+
+    private final Map<CodeGenTypeEnum, String> systemPromptVersions = new EnumMap<>(CodeGenTypeEnum.class);
+
+    private final Cache<String, CachedGeneration> localCache;
+
+    public GenerationCache(GenerationCacheConfig config, StringRedisTemplate stringRedisTemplate,
+                           ObjectMapper objectMapper, GenerationCacheMetrics metrics) {
+        this.config = config;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        SYSTEM_PROMPTS.forEach((codeGenType, resource) ->
+                systemPromptVersions.put(codeGenType, DigestUtil.sha256Hex(ResourceUtil.readUtf8Str(resource)).substring(0, 16)));
+        this.localCache = Caffeine.newBuilder()
+                .maximumWeight(config.getLocalMaximumChars())
+                .weigher((String key, CachedGeneration value) -> value.output().length())
+                .expireAfter(Expiry.creating((String key, CachedGeneration value) -> value.remaining()))
+                .build();
+    }
+
+    /**
+     * 该生成类型是否使用缓存
+     */
+    public boolean supports(CodeGenTypeEnum codeGenType) {
+        return config.isEnabled() && SYSTEM_PROMPTS.containsKey(codeGenType);
+    }
+
+    /**
+     * 计算缓存键
+     *
+     * @param userMessage 用户提示词
+     * @param codeGenType 生成类型
+     * @return 缓存键，不使用缓存时为 null
+     */
+    public Key keyOf(String userMessage, CodeGenTypeEnum codeGenType) {
+        if (!supports(codeGenType) || userMessage == null || userMessage.length() > config.getMaxPromptLength()) {
+            return null;
+        }
+        String digest = DigestUtil.sha256Hex(String.join("\n",
+                String.valueOf(config.getModelName()),
+                config.getKeyVersion(),
+                systemPromptVersions.get(codeGenType),
+                normalize(userMessage)));
+        return new Key(codeGenType.getValue() + ":" + digest, codeGenType);
+    }
+
+    /**
+     * 查询已生成的结果
+     *
+     * @param key 缓存键
+     * @return 生成结果，未命中时为 null
+     */
+    public String get(Key key) {
+        CachedGeneration cached = localCache.getIfPresent(key.value());
+        if (cached != null) {
+            metrics.onLocalHit(key.codeGenType());
+            return cached.output();
+        }
+        cached = getFromRedis(key);
+        if (cached == null || cached.remaining().isZero()) {
+            metrics.onMiss(key.codeGenType());
+            return null;
+        }
+        localCache.put(key.value(), cached);
+        metrics.onRedisHit(key.codeGenType());
+        return cached.output();
+    }
+
+    /**
+     * 写入生成结果
+     *
+     * @param key    缓存键
+     * @param output 完整的模型输出
+     */
+    public void put(Key key, String output) {
+        Duration ttl = config.getTtl();
+        CachedGeneration cached = new CachedGeneration(output, System.currentTimeMillis() + ttl.toMillis());
+        localCache.put(key.value(), cached);
+        try {
+            stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key.value(), objectMapper.writeValueAsString(cached), ttl);
+        } catch (DataAccessException | JsonProcessingException e) {
+            metrics.onRedisError();
+            log.warn("生成结果写入 Redis 失败: {}", e.getMessage());
+        }
+        metrics.onStore(key.codeGenType());
+        log.info("生成结果已缓存，缓存键: {}，长度: {}", key.value(), output.length());
+    }
+
+    /**
+     * 按固定节奏分片回放生成结果
+     *
+     * @param output 生成结果
+     * @return 代码流
+     */
+    public Flux<String> replay(String output) {
+        return Flux.fromIterable(split(output, config.getReplayChunkChars()))
+                .delayElements(config.getReplayInterval());
+    }
+
+    private CachedGeneration getFromRedis(Key key) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(REDIS_KEY_PREFIX + key.value());
+            return json == null ? null : objectMapper.readValue(json, CachedGeneration.class);
+        } catch (DataAccessException | JsonProcessingException e) {
+            metrics.onRedisError();
+            log.warn("从 Redis 读取生成结果失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 归一化提示词：统一全半角、去掉首尾空白、合并连续空白
+     * 不忽略大小写，提示词中的标题、文案等需要原样展示，大小写不同的提示词不能共用结果
+     */
+    static String normalize(String userMessage) {
+        String normalized = Normalizer.normalize(userMessage, Normalizer.Form.NFKC).strip();
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+
+    /**
+     * 按字符数分片，不拆开代理对
+     */
+    static List<String> split(String output, int chunkChars) {
+        List<String> chunks = new ArrayList<>(output.length() / chunkChars + 1);
+        int start = 0;
+        while (start < output.length()) {
+            int end = Math.min(start + chunkChars, output.length());
+            if (end < output.length() && Character.isHighSurrogate(output.charAt(end - 1))) {
+                end++;
+            }
+            chunks.add(output.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 缓存键
+     *
+     * @param value       键值，同时用于本地缓存和 Redis
+     * @param codeGenType 生成类型
+     */
+    public record Key(String value, CodeGenTypeEnum codeGenType) {
+    }
+
+    /**
+     * 缓存的生成结果
+     *
+     * @param output         完整的模型输出
+     * @param expireAtMillis 过期时间
+     */
+    record CachedGeneration(String output, long expireAtMillis) {
+
+        Duration remaining() {
+            return Duration.ofMillis(Math.max(0, expireAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
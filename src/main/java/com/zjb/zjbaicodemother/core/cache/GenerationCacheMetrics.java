@@ -0,0 +1,80 @@
+package com.zjb.zjbaicodemother.core.cache;
+
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成结果缓存指标
+ * 按生成类型统计本地命中、Redis 命中、未命中和写入次数，以及整体命中率
+ *
+ * @author zjb
+ */
+@Component
+public class GenerationCacheMetrics {
+
+    private static final String TYPE_TAG = "type";
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final Counter redisErrorCounter;
+
+    public GenerationCacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ai.generation-cache.hit-ratio", this, metrics -> metrics.hitRatio())
+                .description("启动以来的缓存命中率")
+                .register(meterRegistry);
+        this.redisErrorCounter = Counter.builder("ai.generation-cache.redis.errors")
+                .description("读写 Redis 失败的次数，失败时按未命中处理")
+                .register(meterRegistry);
+    }
+
+    void onLocalHit(CodeGenTypeEnum codeGenType) {
+        onLookup(codeGenType, "local");
+        hits.incrementAndGet();
+    }
+
+    void onRedisHit(CodeGenTypeEnum codeGenType) {
+        onLookup(codeGenType, "redis");
+        hits.incrementAndGet();
+    }
+
+    void onMiss(CodeGenTypeEnum codeGenType) {
+        onLookup(codeGenType, "miss");
+    }
+
+    void onStore(CodeGenTypeEnum codeGenType) {
+        Counter.builder("ai.generation-cache.stores")
+                .tag(TYPE_TAG, codeGenType.getValue())
+                .description("写入缓存的生成结果数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    void onRedisError() {
+        redisErrorCounter.increment();
+    }
+
+    private void onLookup(CodeGenTypeEnum codeGenType, String result) {
+        lookups.incrementAndGet();
+        Counter.builder("ai.generation-cache.lookups")
+                .tag(TYPE_TAG, codeGenType.getValue())
+                .tag("result", result)
+                .description("查询缓存的次数，按命中位置区分")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private double hitRatio() {
+        long total = lookups.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+}
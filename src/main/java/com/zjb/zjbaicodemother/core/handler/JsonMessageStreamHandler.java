@@ -2,20 +2,18 @@ package com.zjb.zjbaicodemother.core.handler;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import com.zjb.zjbaicodemother.ai.model.message.*;
-import com.zjb.zjbaicodemother.constant.AppConstant;
-import com.zjb.zjbaicodemother.core.buider.VueProjectBuider;
 import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
-import jakarta.annotation.Resource;
+import dev.langchain4j.internal.ParsedToolArguments;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -26,11 +24,8 @@ import java.util.Set;
 @Component
 public class JsonMessageStreamHandler {
 
-    @Resource
-    private VueProjectBuider vueProjectBuider;
-
     /**
-     * 解析JSON消息并重组为完整的响应格式
+     * 处理类型化消息并重组为完整的响应格式
      *
      * @param originFlux 原始消息流
      * @param chatHistoryService 对话历史服务
@@ -38,23 +33,27 @@ public class JsonMessageStreamHandler {
      * @param loginUser  登录用户
      * @return 处理后的消息流
      */
-    public Flux<String> handle(Flux<String> originFlux, ChatHistoryService chatHistoryService, long appId, User loginUser){
+    public Flux<String> handle(Flux<StreamMessage> originFlux, ChatHistoryService chatHistoryService, long appId, User loginUser){
         // 收集数据用于生成后端记忆格式
         StringBuilder chatHistoryStringBuilder = new StringBuilder();
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    //解析每个JSON消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(message -> {
+                    //处理每个消息块
+                    return handleJsonMessageChunk(message, chatHistoryStringBuilder, seenToolIds);
                 }).filter(StrUtil::isNotEmpty) //过滤掉空消息
                 .doOnComplete(() -> {
                     //流式响应完成后，添加AI消息到对话历史
                     String aiResponse = chatHistoryStringBuilder.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                    //异步构建Vue项目
-                    String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-                    vueProjectBuider.buildProjectAsync(projectPath);
+                    // Vue 项目由生成流程在暂存目录中构建后发布，这里不再构建
+                })
+                .doOnCancel(() -> {
+                    // 客户端断开时上游生成随之取消，已执行完的工具调用和文本都已在记录中，保存这部分内容；
+                    // 项目文件可能不完整，不触发构建
+                    String aiResponse = chatHistoryStringBuilder + "\n\n[生成已中断]";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
@@ -64,23 +63,18 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 解析并收集TokenStream数据
+     * 处理并收集TokenStream数据
      */
-    public String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        //解析Json
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiResponseMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
-                String data = aiResponseMessage.getData();
+    public String handleJsonMessageChunk(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+        switch (streamMessage) {
+            case AiResponseMessage aiResponseMessage -> {
+                String data = aiResponseMessage.data();
                 //直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 return data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
-                String toolId = toolRequestMessage.getId();
+            case ToolRequestMessage toolRequestMessage -> {
+                String toolId = toolRequestMessage.id();
                 //检查是否第一次看到这个工具ID
                 if(toolId != null && !seenToolIds.contains(toolId)){
                     //第一次调用这个工具，记录ID并完整返回工具信息
@@ -91,12 +85,15 @@ public class JsonMessageStreamHandler {
                     return "";
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
-                JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
-                String relativeFilePath = jsonObject.getStr("relativeFilePath");
+            case ToolExecutedMessage toolExecutedMessage -> {
+                // 工具执行完成后才输出，流式解析的结果已随工具调用释放，这里解析一次用于展示
+                Map<String, Object> arguments = ParsedToolArguments.parse(toolExecutedMessage.arguments());
+                if (arguments == null) {
+                    arguments = Map.of();
+                }
+                String relativeFilePath = Objects.toString(arguments.get("relativeFilePath"), null);
                 String suffix = FileUtil.getSuffix(relativeFilePath);
-                String content = jsonObject.getStr("content");
+                String content = Objects.toString(arguments.get("content"), null);
                 String result = String.format("""
                         [工具调用]写入文件 %s
                         ```%s
@@ -108,10 +105,6 @@ public class JsonMessageStreamHandler {
                 chatHistoryStringBuilder.append(output);
                 return output;
             }
-            default -> {
-                log.error("不支持消息类型：{}", typeEnum);
-                return "";
-            }
         }
     }
 }
@@ -1,5 +1,7 @@
 package com.zjb.zjbaicodemother.core.handler;
 
+import com.zjb.zjbaicodemother.ai.model.message.AiResponseMessage;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
 import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
@@ -23,12 +25,14 @@ public class SimpleTextStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                .ofType(AiResponseMessage.class)
+                .map(message -> {
+                    String chunk = message.data();
                     // 收集AI响应内容
                     aiResponseBuilder.append(chunk);
                     return chunk;
@@ -38,6 +42,11 @@ public class SimpleTextStreamHandler {
                     String aiResponse = aiResponseBuilder.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
+                .doOnCancel(() -> {
+                    // 客户端断开时上游生成随之取消，保存已经生成的部分，避免对话历史中只有用户消息
+                    String aiResponse = aiResponseBuilder + "\n\n[生成已中断]";
+                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
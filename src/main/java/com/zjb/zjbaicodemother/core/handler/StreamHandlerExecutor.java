@@ -1,5 +1,6 @@
 package com.zjb.zjbaicodemother.core.handler;
 
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
 import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
@@ -11,7 +12,7 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 1. 纯文本的 AI 响应流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
  * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
  */
 @Slf4j
@@ -31,7 +32,7 @@ public class StreamHandlerExecutor {
      * @param codeGenType        代码生成类型
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenType) {
         return switch (codeGenType) {
@@ -0,0 +1,543 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.zjb.zjbaicodemother.config.CodeOutputConfig;
+import com.zjb.zjbaicodemother.constant.AppConstant;
+import com.zjb.zjbaicodemother.exception.BusinessException;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.exception.ThrowUtils;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 生成代码输出目录管理
+ * 1. 每次生成写入 .versions/{type}_{appId}/{版本号}.staging，生成过程中预览和部署看不到这个目录
+ * 2. 生成完成后重命名为正式版本目录，再原子替换 {type}_{appId} 这个符号链接，读取方看到的要么是旧版本，要么是完整的新版本
+ * 3. 生成失败、取消或进程崩溃时丢弃暂存目录，崩溃遗留的暂存目录在启动时清理
+ *    同一应用同时只能有一个暂存目录，已有进行中的生成或恢复时拒绝新的生成；暂存目录在发布（包括切换后的清理）或丢弃后才释放，
+ *    Vue 项目在暂存目录中构建完成后再发布，npm 不会与克隆和清理同时操作同一应用的 node_modules
+ * 4. 每个应用保留固定数量的历史版本，更早的版本在切换后删除；被替换的版本删除 node_modules 和 dist，只保留源文件
+ * 5. 每个版本发布时记录清单（路径 -> 内容哈希），支持列出版本、比较两个版本和恢复到历史版本
+ * 文件通过 ContentStore 按内容去重写入，相同内容在各版本、各应用之间只保存一份
+ * Vue 项目在多轮对话中逐步修改，暂存目录从当前版本复制：已在存储中的文件和 node_modules 使用硬链接，
+ * npm 生成的其他文件复制，dist 由构建重新生成
+ * 不支持符号链接的文件系统上，正式目录改为复制后通过两次重命名替换
+ *
+ * @author zjb
+ */
+@Slf4j
+@Component
+public class CodeOutputManager {
+
+    /**
+     * 版本目录的根目录名称，位于输出根目录下
+     */
+    static final String VERSIONS_DIR = ".versions";
+
+    private static final String STAGING_SUFFIX = ".staging";
+
+    private static final String TEMP_SUFFIX = ".swap";
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String DIST = "dist";
+
+    private static final DateTimeFormatter VERSION_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS")
+            .withZone(ZoneId.systemDefault());
+
+    private final Path rootDir;
+
+    private final CodeOutputConfig config;
+
+    private final ContentStore contentStore;
+
+    private final VersionHistory history;
+
+    /**
+     * 进行中的生成的暂存目录，key 为 {type}_{appId}
+     */
+    private final Map<String, Staging> workspaces = new ConcurrentHashMap<>();
+
+    /**
+     * 同一应用的版本切换和清理串行执行
+     */
+    private final LoadingCache<String, Object> locks = Caffeine.newBuilder()
+            .weakValues()
+            .build(key -> new Object());
+
+    private volatile boolean symbolicLinkSupported = true;
+
+    @Autowired
+    public CodeOutputManager(CodeOutputConfig config, ContentStore contentStore) {
+        this(Path.of(AppConstant.CODE_OUTPUT_ROOT_DIR), config, contentStore);
+    }
+
+    CodeOutputManager(Path rootDir, CodeOutputConfig config, ContentStore contentStore) {
+        this.rootDir = rootDir.toAbsolutePath().normalize();
+        this.config = config;
+        this.contentStore = contentStore;
+        this.history = new VersionHistory(this.rootDir.resolve(VERSIONS_DIR), TEMP_SUFFIX);
+    }
+
+    /**
+     * 清理进程崩溃时遗留的暂存目录和临时文件
+     */
+    @PostConstruct
+    public void cleanUp() {
+        Path versionsRoot = rootDir.resolve(VERSIONS_DIR);
+        if (Files.isDirectory(versionsRoot)) {
+            for (Path appVersionsDir : list(versionsRoot)) {
+                list(appVersionsDir).stream()
+                        .filter(path -> path.getFileName().toString().endsWith(STAGING_SUFFIX)
+                                || path.getFileName().toString().endsWith(TEMP_SUFFIX))
+                        .forEach(this::delete);
+            }
+        }
+        if (Files.isDirectory(rootDir)) {
+            list(rootDir).stream()
+                    .filter(path -> path.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .forEach(this::delete);
+        }
+    }
+
+    /**
+     * 开始一次生成，创建暂存目录
+     *
+     * @param codeGenType 生成类型
+     * @param appId       应用 ID
+     * @return 暂存目录，生成结束时必须发布或丢弃
+     * @throws BusinessException 应用已有进行中的生成或恢复
+     */
+    public Staging begin(CodeGenTypeEnum codeGenType, Long appId) {
+        ThrowUtils.throwIf(appId == null, ErrorCode.PARAMS_ERROR, "应用id不能为空");
+        String name = outputName(codeGenType, appId);
+        String versionId = VERSION_TIME_FORMATTER.format(Instant.now()) + "-" + RandomUtil.randomString(6);
+        Path dir = versionsDir(name).resolve(versionId + STAGING_SUFFIX);
+        Staging staging = new Staging(name, versionId, dir);
+        ThrowUtils.throwIf(workspaces.putIfAbsent(name, staging) != null, ErrorCode.OPERATION_ERROR, "应用正在生成代码，请稍后再试");
+        try {
+            Files.createDirectories(dir);
+            if (codeGenType == CodeGenTypeEnum.VUE_PROJECT) {
+                // Vue 项目在当前版本的基础上修改
+                Path live = liveDir(codeGenType, appId);
+                if (Files.isDirectory(live)) {
+                    cloneProject(live.toRealPath(), dir);
+                }
+            }
+        } catch (IOException e) {
+            staging.discard();
+            log.error("创建暂存目录失败: {}", dir, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建代码输出目录失败");
+        }
+        return staging;
+    }
+
+    /**
+     * 正式目录，预览、部署和构建都读取这个目录
+     *
+     * @param codeGenType 生成类型
+     * @param appId       应用 ID
+     * @return 正式目录
+     */
+    public Path liveDir(CodeGenTypeEnum codeGenType, Long appId) {
+        return rootDir.resolve(outputName(codeGenType, appId));
+    }
+
+    /**
+     * 列出应用的历史版本
+     *
+     * @param codeGenType 生成类型
+     * @param appId       应用 ID
+     * @return 版本清单，按发布时间从新到旧排列，第一个为当前版本；只有文件统计信息可用，文件列表可能是差异
+     */
+    public List<VersionManifest> listVersions(CodeGenTypeEnum codeGenType, Long appId) {
+        String name = outputName(codeGenType, appId);
+        synchronized (locks.get(name)) {
+            return history.list(name);
+        }
+    }
+
+    /**
+     * 比较两个版本
+     *
+     * @param codeGenType   生成类型
+     * @param appId         应用 ID
+     * @param fromVersionId 旧版本号
+     * @param toVersionId   新版本号
+     * @return 从旧版本到新版本的文件变化，按路径排序
+     */
+    public List<FileChange> diffVersions(CodeGenTypeEnum codeGenType, Long appId, String fromVersionId, String toVersionId) {
+        String name = outputName(codeGenType, appId);
+        synchronized (locks.get(name)) {
+            return VersionHistory.diff(resolveVersion(name, fromVersionId), resolveVersion(name, toVersionId));
+        }
+    }
+
+    /**
+     * 恢复到历史版本：以当前版本为基础，只替换两个版本之间变化的文件，然后作为新版本发布
+     * 文件从存储中按哈希链接，不复制内容，历史版本本身保持不变
+     *
+     * @param codeGenType 生成类型
+     * @param appId       应用 ID
+     * @param versionId   要恢复的版本号
+     * @return 新版本的版本号
+     */
+    public String restore(CodeGenTypeEnum codeGenType, Long appId, String versionId) {
+        Staging staging = prepareRestore(codeGenType, appId, versionId);
+        try {
+            staging.publish();
+            return staging.versionId;
+        } finally {
+            staging.discard();
+        }
+    }
+
+    /**
+     * 准备恢复到历史版本：在暂存目录中以当前版本为基础替换变化的文件，由调用方发布（如 Vue 项目构建完成后）
+     *
+     * @param codeGenType 生成类型
+     * @param appId       应用 ID
+     * @param versionId   要恢复的版本号
+     * @return 暂存目录，必须发布或丢弃
+     */
+    public Staging prepareRestore(CodeGenTypeEnum codeGenType, Long appId, String versionId) {
+        String name = outputName(codeGenType, appId);
+        Map<String, VersionManifest.Entry> target = resolveVersion(name, versionId);
+        Staging staging = begin(codeGenType, appId);
+        try {
+            // Vue 项目的暂存目录从当前版本复制，其他类型从空目录开始；复制的文件与当前版本的清单比较即可，不需要重新计算哈希
+            Map<String, VersionManifest.Entry> current = Map.of();
+            List<VersionManifest> manifests = listVersions(codeGenType, appId);
+            if (!manifests.isEmpty()) {
+                current = resolveVersion(name, manifests.getFirst().getVersionId());
+            }
+            List<FileChange> changes = VersionHistory.diff(VersionHistory.snapshot(staging.dir, current), target);
+            for (FileChange change : changes) {
+                Path file = staging.dir.resolve(change.path()).normalize();
+                ThrowUtils.throwIf(!file.startsWith(staging.dir), ErrorCode.SYSTEM_ERROR, "版本清单中的路径无效");
+                if (change.after() == null) {
+                    Files.deleteIfExists(file);
+                } else {
+                    restoreFile(name, versionId, change.path(), change.after(), file);
+                }
+            }
+            log.info("已准备恢复到历史版本: {} -> {}，变化的文件数: {}", versionId, staging.versionId, changes.size());
+            return staging;
+        } catch (IOException e) {
+            staging.discard();
+            log.error("恢复历史版本失败: {}", versionId, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "恢复版本失败");
+        } catch (RuntimeException e) {
+            staging.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * 恢复一个文件：优先从存储链接，存储中没有时（如 npm 生成的文件）从历史版本目录复制
+     */
+    private void restoreFile(String name, String versionId, String path, VersionManifest.Entry entry, Path target) throws IOException {
+        if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+            FileUtil.del(target);
+        }
+        if (contentStore.linkStored(entry.getHash(), target)) {
+            return;
+        }
+        Path source = versionsDir(name).resolve(versionId).resolve(path);
+        ThrowUtils.throwIf(!Files.isRegularFile(source), ErrorCode.NOT_FOUND_ERROR, "版本文件已丢失: " + path);
+        contentStore.write(target, Files.readAllBytes(source));
+    }
+
+    private Map<String, VersionManifest.Entry> resolveVersion(String name, String versionId) {
+        ThrowUtils.throwIf(versionId == null || versionId.isBlank(), ErrorCode.PARAMS_ERROR, "版本号不能为空");
+        Map<String, VersionManifest.Entry> files;
+        synchronized (locks.get(name)) {
+            files = history.resolve(name, versionId);
+        }
+        ThrowUtils.throwIf(files == null, ErrorCode.NOT_FOUND_ERROR, "版本不存在");
+        return files;
+    }
+
+    /**
+     * 应用的版本目录的上级目录
+     */
+    Path versionsDir(String name) {
+        return rootDir.resolve(VERSIONS_DIR).resolve(name);
+    }
+
+    private static String outputName(CodeGenTypeEnum codeGenType, Long appId) {
+        return codeGenType.getValue() + "_" + appId;
+    }
+
+    private void publish(Staging staging) {
+        synchronized (locks.get(staging.name)) {
+            Path versionDir = versionsDir(staging.name).resolve(staging.versionId);
+            try {
+                Files.move(staging.dir, versionDir, StandardCopyOption.ATOMIC_MOVE);
+                recordVersion(staging.name, staging.versionId, versionDir);
+                switchTo(staging.name, versionDir);
+            } catch (IOException e) {
+                delete(versionDir);
+                log.error("切换代码输出版本失败: {}", versionDir, e);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存代码失败");
+            }
+            log.info("代码输出已切换到新版本: {}", versionDir);
+            prune(staging.name, staging.versionId);
+        }
+    }
+
+    /**
+     * 记录版本清单，失败时版本照常发布，只是不出现在历史版本中
+     */
+    private void recordVersion(String name, String versionId, Path versionDir) {
+        long start = System.nanoTime();
+        try {
+            VersionManifest manifest = history.record(name, versionId, versionDir);
+            log.info("已记录版本清单: {}，文件数: {}，耗时: {} ms", versionId, manifest.getFileCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("记录版本清单失败: {}, 错误: {}", versionDir, e.getMessage());
+        }
+    }
+
+    /**
+     * 原子替换正式目录指向的版本
+     */
+    private void switchTo(String name, Path versionDir) throws IOException {
+        Path live = rootDir.resolve(name);
+        if (symbolicLinkSupported) {
+            if (Files.isDirectory(live, LinkOption.NOFOLLOW_LINKS)) {
+                migrateLegacyDir(name, live);
+            }
+            Path link = rootDir.resolve("." + name + "." + IdUtil.fastSimpleUUID() + TEMP_SUFFIX);
+            try {
+                Files.createSymbolicLink(link, rootDir.relativize(versionDir));
+                Files.move(link, live, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.deleteIfExists(link);
+                log.warn("文件系统不支持符号链接，改为复制后重命名替换: {}", e.getMessage());
+                symbolicLinkSupported = false;
+            }
+        }
+        Path copy = rootDir.resolve("." + name + "." + IdUtil.fastSimpleUUID() + TEMP_SUFFIX);
+        FileUtil.copyContent(versionDir.toFile(), copy.toFile(), true);
+        if (Files.exists(live, LinkOption.NOFOLLOW_LINKS)) {
+            Path old = rootDir.resolve("." + name + "." + IdUtil.fastSimpleUUID() + TEMP_SUFFIX);
+            Files.move(live, old, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(copy, live, StandardCopyOption.ATOMIC_MOVE);
+            delete(old);
+        } else {
+            Files.move(copy, live, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * 之前直接写入的正式目录移入版本目录，作为一个历史版本保留
+     */
+    private void migrateLegacyDir(String name, Path live) throws IOException {
+        Instant modified = Files.getLastModifiedTime(live).toInstant();
+        Path legacyDir = versionsDir(name).resolve(VERSION_TIME_FORMATTER.format(modified) + "-legacy");
+        Files.move(live, legacyDir, StandardCopyOption.ATOMIC_MOVE);
+        log.info("已将原有的输出目录移入版本目录: {}", legacyDir);
+    }
+
+    /**
+     * 删除超出保留数量的历史版本，版本号以时间开头，按名称排序即为时间顺序
+     * 保留的历史版本删除 node_modules 和 dist：恢复时以当前版本为基础，不需要这两个目录
+     */
+    private void prune(String name, String currentVersionId) {
+        List<Path> versions = new ArrayList<>(list(versionsDir(name)).stream()
+                .filter(path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                .filter(path -> !path.getFileName().toString().endsWith(STAGING_SUFFIX))
+                .filter(path -> !path.getFileName().toString().equals(currentVersionId))
+                .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                .toList());
+        for (int i = 0; i < versions.size(); i++) {
+            Path version = versions.get(i);
+            if (i < config.getRetainedVersions()) {
+                for (String generated : List.of(NODE_MODULES, DIST)) {
+                    if (Files.exists(version.resolve(generated), LinkOption.NOFOLLOW_LINKS)) {
+                        delete(version.resolve(generated));
+                    }
+                }
+            } else {
+                delete(version);
+                history.delete(name, version.getFileName().toString());
+            }
+        }
+    }
+
+    /**
+     * 复制 Vue 项目，已在存储中的文件和 node_modules 使用硬链接；dist 由构建重新生成，不复制
+     */
+    private void cloneProject(Path source, Path target) throws IOException {
+        Path nodeModules = source.resolve(NODE_MODULES);
+        Path dist = source.resolve(DIST);
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(dist)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path copy = target.resolve(source.relativize(file));
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(copy, Files.readSymbolicLink(file));
+                } else if (file.startsWith(nodeModules)) {
+                    try {
+                        Files.createLink(copy, file);
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                } else if (!contentStore.linkIfStored(file, copy)) {
+                    // npm 生成的文件（如 package-lock.json）可能被原地修改，不链接到存储
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static List<Path> list(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.toList();
+        } catch (IOException e) {
+            log.warn("读取目录失败: {}, 错误: {}", dir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            if (Files.isSymbolicLink(path)) {
+                Files.delete(path);
+            } else {
+                FileUtil.del(path);
+            }
+        } catch (Exception e) {
+            log.warn("删除目录失败: {}, 错误: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 一次生成的暂存目录
+     */
+    public final class Staging {
+
+        private final String name;
+
+        private final String versionId;
+
+        private final Path dir;
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Staging(String name, String versionId, Path dir) {
+            this.name = name;
+            this.versionId = versionId;
+            this.dir = dir;
+        }
+
+        /**
+         * 暂存目录，生成的文件写入这里
+         */
+        public Path dir() {
+            return dir;
+        }
+
+        /**
+         * 写入文件，内容按哈希去重
+         *
+         * @param relativePath 相对暂存目录的路径
+         * @param content      文件内容
+         */
+        public void writeFile(String relativePath, String content) {
+            try {
+                contentStore.write(dir.resolve(relativePath), content.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error("写入文件失败: {}", relativePath, e);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存文件失败: " + relativePath);
+            }
+        }
+
+        /**
+         * 版本号
+         */
+        public String versionId() {
+            return versionId;
+        }
+
+        /**
+         * 是否已发布或丢弃，之后不能再写入
+         */
+        public boolean isFinished() {
+            return finished.get();
+        }
+
+        /**
+         * 发布为当前版本
+         *
+         * @return 正式目录
+         */
+        public File publish() {
+            ThrowUtils.throwIf(!finished.compareAndSet(false, true), ErrorCode.OPERATION_ERROR, "暂存目录已发布或丢弃");
+            try {
+                CodeOutputManager.this.publish(this);
+            } finally {
+                delete(dir);
+                // 切换和清理完成后才允许新的生成，克隆当前版本时不会遇到正在删除的目录
+                workspaces.remove(name, this);
+            }
+            return rootDir.resolve(name).toFile();
+        }
+
+        /**
+         * 丢弃暂存目录，已发布时不做任何处理
+         */
+        public void discard() {
+            if (finished.compareAndSet(false, true)) {
+                workspaces.remove(name, this);
+                delete(dir);
+                log.info("已丢弃未完成的生成结果: {}", dir);
+            }
+        }
+    }
+}
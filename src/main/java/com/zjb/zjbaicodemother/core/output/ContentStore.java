@@ -0,0 +1,402 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.zjb.zjbaicodemother.config.CodeOutputConfig;
+import com.zjb.zjbaicodemother.constant.AppConstant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按内容去重的文件存储
+ * 1. 文件内容按 SHA-256 保存为 blobs/{前两位}/{哈希}，相同内容只保存一份
+ * 2. 生成目录和部署目录中的文件是存储文件的硬链接，写入时先在同目录创建链接再重命名替换，不修改已有文件的内容；
+ *    不设置只读属性，Windows 上只读文件无法删除和重命名
+ * 3. 引用计数即文件系统的硬链接数：只剩存储自身一个链接的文件不再被引用，由后台任务定期清理；
+ *    最近写入或复用的时间记录在内存中，不修改存储文件的修改时间，版本清单按修改时间沿用哈希不受影响
+ * 4. 不支持硬链接时（如跨文件系统）退化为复制，JDK 不提供 reflink，因此不使用
+ * 5. 文件系统不提供硬链接数（unix:nlink，如 Windows）时无法判断引用，启动时关闭去重，直接写入文件
+ * 只有本服务写入的内容进入存储；npm 等外部工具生成的文件可能被原地修改，复制项目时不链接到存储
+ *
+ * @author zjb
+ */
+@Slf4j
+@Component
+public class ContentStore {
+
+    private static final String BLOBS_DIR = "blobs";
+
+    private static final String TEMP_DIR = "tmp";
+
+    private final Path rootDir;
+
+    private final Path blobsDir;
+
+    private final Path tempDir;
+
+    private final CodeOutputConfig.Store config;
+
+    private final Counter newBlobCounter;
+
+    private final Counter reusedBlobCounter;
+
+    private final Counter copyFallbackCounter;
+
+    private final Counter collectedCounter;
+
+    /**
+     * 文件系统是否提供硬链接数，不提供时不使用存储
+     */
+    private final boolean linkCountSupported;
+
+    /**
+     * 存储文件最近一次写入或复用的时间，清理时跳过最近用过的文件；超过清理时长的记录在清理时移除
+     */
+    private final Map<Path, Instant> lastUsed = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService collector;
+
+    @Autowired
+    public ContentStore(CodeOutputConfig config, MeterRegistry meterRegistry) {
+        this(Path.of(AppConstant.CODE_STORE_ROOT_DIR), config.getStore(), meterRegistry);
+    }
+
+    ContentStore(Path rootDir, CodeOutputConfig.Store config, MeterRegistry meterRegistry) {
+        this.rootDir = rootDir.toAbsolutePath().normalize();
+        this.blobsDir = this.rootDir.resolve(BLOBS_DIR);
+        this.tempDir = this.rootDir.resolve(TEMP_DIR);
+        this.config = config;
+        this.linkCountSupported = this.rootDir.getFileSystem().supportedFileAttributeViews().contains("unix");
+        if (config.isEnabled() && !linkCountSupported) {
+            log.warn("文件系统不提供硬链接数，无法判断存储文件是否被引用，不使用按内容去重的存储");
+        }
+        this.newBlobCounter = Counter.builder("code-output.store.writes")
+                .tag("result", "new")
+                .description("写入存储的文件数，内容首次出现")
+                .register(meterRegistry);
+        this.reusedBlobCounter = Counter.builder("code-output.store.writes")
+                .tag("result", "reused")
+                .description("写入存储的文件数，内容已存在，直接链接")
+                .register(meterRegistry);
+        this.copyFallbackCounter = Counter.builder("code-output.store.copy-fallbacks")
+                .description("无法创建硬链接、改为复制的次数")
+                .register(meterRegistry);
+        this.collectedCounter = Counter.builder("code-output.store.collected")
+                .description("清理的未被引用的存储文件数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled()) {
+            return;
+        }
+        long interval = config.getGcInterval().toMillis();
+        collector = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("content-store-gc").daemon().factory());
+        collector.scheduleWithFixedDelay(this::collectGarbage, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (collector != null) {
+            collector.shutdownNow();
+        }
+    }
+
+    /**
+     * 写入文件，已存在的目标文件被整体替换
+     *
+     * @param target  目标文件
+     * @param content 文件内容
+     */
+    public void write(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (!enabled()) {
+            Path temp = siblingTemp(target);
+            try {
+                Files.write(temp, content);
+                replace(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return;
+        }
+        Path blob = blobPath(DigestUtil.sha256Hex(content));
+        for (int attempt = 0; ; attempt++) {
+            if (!reuse(blob)) {
+                Path temp = storeTemp();
+                try {
+                    Files.write(temp, content);
+                    addBlob(temp, blob);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            try {
+                linkTo(blob, target);
+                return;
+            } catch (NoSuchFileException e) {
+                // 存储文件恰好被清理，重新写入
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把本服务写好的临时文件移入存储并链接到目标文件，临时文件随后不再存在
+     *
+     * @param source 临时文件，调用方不再使用
+     * @param target 目标文件
+     */
+    public void moveIn(Path source, Path target) throws IOException {
+        if (!enabled()) {
+            replace(source, target);
+            return;
+        }
+        Path blob = blobPath(DigestUtil.sha256Hex(source.toFile()));
+        if (reuse(blob)) {
+            Files.delete(source);
+        } else {
+            addBlob(source, blob);
+        }
+        try {
+            linkTo(blob, target);
+        } catch (NoSuchFileException e) {
+            // 存储文件恰好被清理，按内容重新写入
+            write(target, Files.readAllBytes(blob));
+        }
+    }
+
+    /**
+     * 复制目录，已在存储中的文件直接链接，其他文件复制内容写入存储后链接
+     * 目标目录先在同级的临时目录中完整生成，再通过两次重命名替换，读取方不会看到复制了一半的目录
+     * 只用于之后不会被原地修改的目录，如部署目录
+     *
+     * @param sourceDir 源目录
+     * @param targetDir 目标目录
+     */
+    public void copyTree(Path sourceDir, Path targetDir) throws IOException {
+        Path source = sourceDir.toRealPath();
+        Path parent = targetDir.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path staging = parent.resolve("." + targetDir.getFileName() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(staging.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path copy = staging.resolve(source.relativize(file).toString());
+                    if (!linkIfStored(file, copy)) {
+                        write(copy, Files.readAllBytes(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            if (Files.exists(targetDir)) {
+                Path old = parent.resolve("." + targetDir.getFileName() + "." + IdUtil.fastSimpleUUID() + ".old");
+                Files.move(targetDir, old, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(staging, targetDir, StandardCopyOption.ATOMIC_MOVE);
+                FileUtil.del(old);
+            } else {
+                Files.move(staging, targetDir, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            FileUtil.del(staging);
+        }
+    }
+
+    /**
+     * 源文件已经是存储文件的链接时，直接链接到目标文件
+     *
+     * @param source 源文件
+     * @param target 目标文件，不能已存在
+     * @return 是否已链接
+     */
+    public boolean linkIfStored(Path source, Path target) throws IOException {
+        if (!enabled() || !Files.isRegularFile(source) || linkCount(source) <= 1) {
+            return false;
+        }
+        Path blob = blobPath(DigestUtil.sha256Hex(source.toFile()));
+        if (!Files.exists(blob) || !Files.isSameFile(source, blob)) {
+            return false;
+        }
+        try {
+            Files.createLink(target, blob);
+            return true;
+        } catch (UnsupportedOperationException | NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 存储中有该内容时链接到目标文件，已存在的目标文件被整体替换
+     *
+     * @param hash   内容的 SHA-256
+     * @param target 目标文件
+     * @return 是否已链接，存储中没有该内容时为 false
+     */
+    public boolean linkStored(String hash, Path target) throws IOException {
+        if (!enabled()) {
+            return false;
+        }
+        Path blob = blobPath(hash);
+        if (!Files.exists(blob)) {
+            return false;
+        }
+        try {
+            linkTo(blob, target);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 清理未被引用的存储文件和遗留的临时文件
+     *
+     * @return 清理的存储文件数
+     */
+    public int collectGarbage() {
+        if (!Files.isDirectory(blobsDir) || !linkCountSupported) {
+            return 0;
+        }
+        Instant deadline = Instant.now().minus(config.getGcMinAge());
+        lastUsed.values().removeIf(time -> !time.isAfter(deadline));
+        int[] collected = {0};
+        try {
+            Files.walkFileTree(rootDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Instant used = lastUsed.get(file);
+                    if (attrs.lastModifiedTime().toInstant().isAfter(deadline) || (used != null && used.isAfter(deadline))) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    if (file.startsWith(tempDir) || linkCount(file) <= 1) {
+                        Files.deleteIfExists(file);
+                        if (file.startsWith(blobsDir)) {
+                            collected[0]++;
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("清理存储文件失败: {}", e.getMessage());
+        }
+        if (collected[0] > 0) {
+            collectedCounter.increment(collected[0]);
+            log.info("已清理未被引用的存储文件: {} 个", collected[0]);
+        }
+        return collected[0];
+    }
+
+    Path blobPath(String hash) {
+        return blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * 存储文件已存在时记录使用时间，避免在链接之前被清理；先记录再检查，清理任务要么看到记录，要么在检查之后删除，链接时发现文件不存在再重新写入
+     */
+    private boolean reuse(Path blob) {
+        lastUsed.put(blob, Instant.now());
+        if (!Files.exists(blob)) {
+            return false;
+        }
+        reusedBlobCounter.increment();
+        return true;
+    }
+
+    private void addBlob(Path source, Path blob) throws IOException {
+        Files.createDirectories(blob.getParent());
+        lastUsed.put(blob, Instant.now());
+        try {
+            // 并发写入相同内容时后者覆盖前者，已有的链接仍指向原来的文件，内容相同
+            Files.move(source, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.copy(source, blob, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source);
+        }
+        newBlobCounter.increment();
+    }
+
+    /**
+     * 在目标文件同目录创建存储文件的链接，再重命名替换目标文件
+     */
+    private void linkTo(Path blob, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = siblingTemp(target);
+        try {
+            try {
+                Files.createLink(temp, blob);
+            } catch (NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                copyFallbackCounter.increment();
+                Files.copy(blob, temp);
+            }
+            replace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean enabled() {
+        return config.isEnabled() && linkCountSupported;
+    }
+
+    private static long linkCount(Path file) throws IOException {
+        return ((Number) Files.getAttribute(file, "unix:nlink")).longValue();
+    }
+
+    private Path storeTemp() throws IOException {
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(IdUtil.fastSimpleUUID());
+    }
+
+    private static Path siblingTemp(Path target) {
+        return target.resolveSibling("." + target.getFileName() + "." + IdUtil.fastSimpleUUID() + ".tmp");
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
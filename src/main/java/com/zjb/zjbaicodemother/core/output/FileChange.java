@@ -0,0 +1,15 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import com.zjb.zjbaicodemother.model.enums.FileChangeTypeEnum;
+
+/**
+ * 两个版本之间一个文件的变化
+ *
+ * @param path   相对路径
+ * @param type   变化类型
+ * @param before 变化前的文件，新增时为空
+ * @param after  变化后的文件，删除时为空
+ * @author zjb
+ */
+public record FileChange(String path, FileChangeTypeEnum type, VersionManifest.Entry before, VersionManifest.Entry after) {
+}
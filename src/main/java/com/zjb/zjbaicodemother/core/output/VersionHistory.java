@@ -0,0 +1,296 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjb.zjbaicodemother.model.enums.FileChangeTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 生成代码的版本清单，保存为 .versions/{type}_{appId}/{版本号}.manifest.json
+ * 1. 最新版本保存完整清单和每个文件的 inode、大小、修改时间，下次快照时这些都没变的文件沿用哈希，只对变化的文件计算哈希
+ * 2. 新版本发布后，上一个版本的清单改写为相对新版本的差异（反向增量），删除最早的版本不影响其他版本
+ * 3. node_modules 和 dist 可以重新安装和构建，不记录
+ * 调用方负责同一应用的操作串行执行
+ *
+ * @author zjb
+ */
+@Slf4j
+class VersionHistory {
+
+    static final String MANIFEST_SUFFIX = ".manifest.json";
+
+    private static final Set<String> EXCLUDED_DIRS = Set.of("node_modules", "dist");
+
+    private final Path versionsRoot;
+
+    private final String tempSuffix;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param versionsRoot 版本目录的根目录
+     * @param tempSuffix   写入清单时临时文件的后缀，崩溃遗留的临时文件由调用方清理
+     */
+    VersionHistory(Path versionsRoot, String tempSuffix) {
+        this.versionsRoot = versionsRoot;
+        this.tempSuffix = tempSuffix;
+    }
+
+    /**
+     * 记录新发布的版本
+     *
+     * @param name       {type}_{appId}
+     * @param versionId  版本号
+     * @param versionDir 版本目录
+     * @return 新版本的清单
+     */
+    VersionManifest record(String name, String versionId, Path versionDir) throws IOException {
+        List<VersionManifest> manifests = list(name);
+        VersionManifest previous = manifests.isEmpty() ? null : manifests.getFirst();
+        Map<String, VersionManifest.Entry> previousFiles = previous == null ? Map.of() : resolve(name, previous.getVersionId());
+        Map<String, VersionManifest.Entry> files = snapshot(versionDir, previousFiles == null ? Map.of() : previousFiles);
+        VersionManifest manifest = full(versionId, System.currentTimeMillis(), files);
+        write(name, manifest);
+        if (previous != null && previous.getBase() == null) {
+            write(name, delta(previous, versionId, files));
+        }
+        return manifest;
+    }
+
+    /**
+     * 所有版本的清单，按发布时间从新到旧排列，只有第一个是完整清单
+     */
+    List<VersionManifest> list(String name) {
+        Path dir = versionsRoot.resolve(name);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<VersionManifest> manifests = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (path.getFileName().toString().endsWith(MANIFEST_SUFFIX)) {
+                    VersionManifest manifest = read(path);
+                    if (manifest != null) {
+                        manifests.add(manifest);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取版本清单失败: {}, 错误: {}", dir, e.getMessage());
+            return List.of();
+        }
+        manifests.sort(Comparator.comparingLong(VersionManifest::getCreateTime)
+                .thenComparing(VersionManifest::getVersionId).reversed());
+        return manifests;
+    }
+
+    /**
+     * 还原版本的完整清单：从该版本沿差异链找到完整清单，再依次应用差异
+     *
+     * @return 路径 -> 文件，版本不存在或清单不完整时为 null
+     */
+    Map<String, VersionManifest.Entry> resolve(String name, String versionId) {
+        Deque<VersionManifest> deltas = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+        String current = versionId;
+        VersionManifest manifest;
+        while (true) {
+            manifest = visited.add(current) ? read(manifestPath(name, current)) : null;
+            if (manifest == null) {
+                return null;
+            }
+            if (manifest.getBase() == null) {
+                break;
+            }
+            deltas.push(manifest);
+            current = manifest.getBase();
+        }
+        Map<String, VersionManifest.Entry> files = new TreeMap<>(manifest.getFiles());
+        while (!deltas.isEmpty()) {
+            VersionManifest delta = deltas.pop();
+            delta.getRemoved().forEach(files::remove);
+            files.putAll(delta.getFiles());
+        }
+        return files;
+    }
+
+    /**
+     * 删除版本的清单，依赖它的差异清单先改写为完整清单
+     */
+    void delete(String name, String versionId) {
+        for (VersionManifest manifest : list(name)) {
+            if (versionId.equals(manifest.getBase())) {
+                Map<String, VersionManifest.Entry> files = resolve(name, manifest.getVersionId());
+                try {
+                    if (files != null) {
+                        write(name, full(manifest.getVersionId(), manifest.getCreateTime(), files));
+                    }
+                } catch (IOException e) {
+                    log.warn("改写版本清单失败: {}, 错误: {}", manifest.getVersionId(), e.getMessage());
+                }
+            }
+        }
+        try {
+            Files.deleteIfExists(manifestPath(name, versionId));
+        } catch (IOException e) {
+            log.warn("删除版本清单失败: {}, 错误: {}", versionId, e.getMessage());
+        }
+    }
+
+    /**
+     * 比较两个清单
+     *
+     * @return 按路径排序的变化
+     */
+    static List<FileChange> diff(Map<String, VersionManifest.Entry> from, Map<String, VersionManifest.Entry> to) {
+        List<FileChange> changes = new ArrayList<>();
+        TreeMap<String, VersionManifest.Entry> before = new TreeMap<>(from);
+        TreeMap<String, VersionManifest.Entry> after = new TreeMap<>(to);
+        Iterator<Map.Entry<String, VersionManifest.Entry>> left = before.entrySet().iterator();
+        Iterator<Map.Entry<String, VersionManifest.Entry>> right = after.entrySet().iterator();
+        Map.Entry<String, VersionManifest.Entry> l = left.hasNext() ? left.next() : null;
+        Map.Entry<String, VersionManifest.Entry> r = right.hasNext() ? right.next() : null;
+        while (l != null || r != null) {
+            int order = l == null ? 1 : r == null ? -1 : l.getKey().compareTo(r.getKey());
+            if (order < 0) {
+                changes.add(new FileChange(l.getKey(), FileChangeTypeEnum.DELETED, l.getValue(), null));
+                l = left.hasNext() ? left.next() : null;
+            } else if (order > 0) {
+                changes.add(new FileChange(r.getKey(), FileChangeTypeEnum.ADDED, null, r.getValue()));
+                r = right.hasNext() ? right.next() : null;
+            } else {
+                if (!l.getValue().sameContent(r.getValue())) {
+                    changes.add(new FileChange(l.getKey(), FileChangeTypeEnum.MODIFIED, l.getValue(), r.getValue()));
+                }
+                l = left.hasNext() ? left.next() : null;
+                r = right.hasNext() ? right.next() : null;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 记录目录中的文件，inode、大小和修改时间都与上一个版本相同的文件沿用哈希
+     */
+    static Map<String, VersionManifest.Entry> snapshot(Path root, Map<String, VersionManifest.Entry> previous) throws IOException {
+        Map<String, VersionManifest.Entry> files = new TreeMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (root.equals(dir.getParent()) && EXCLUDED_DIRS.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+                String fileKey = attrs.fileKey() == null ? null : attrs.fileKey().toString();
+                long modifiedTime = attrs.lastModifiedTime().toMillis();
+                VersionManifest.Entry old = previous.get(path);
+                String hash;
+                if (old != null && fileKey != null && fileKey.equals(old.getFileKey())
+                        && old.getSize() == attrs.size() && Objects.equals(old.getModifiedTime(), modifiedTime)) {
+                    hash = old.getHash();
+                } else {
+                    hash = DigestUtil.sha256Hex(file.toFile());
+                }
+                files.put(path, new VersionManifest.Entry(hash, attrs.size(), fileKey, modifiedTime));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static VersionManifest full(String versionId, long createTime, Map<String, VersionManifest.Entry> files) {
+        VersionManifest manifest = new VersionManifest();
+        manifest.setVersionId(versionId);
+        manifest.setCreateTime(createTime);
+        manifest.setFileCount(files.size());
+        manifest.setTotalSize(files.values().stream().mapToLong(VersionManifest.Entry::getSize).sum());
+        manifest.setFiles(new TreeMap<>(files));
+        return manifest;
+    }
+
+    /**
+     * 把完整清单改写为相对 base 版本的差异，不再需要的文件标识一并去掉
+     */
+    private static VersionManifest delta(VersionManifest manifest, String base, Map<String, VersionManifest.Entry> baseFiles) {
+        VersionManifest delta = new VersionManifest();
+        delta.setVersionId(manifest.getVersionId());
+        delta.setCreateTime(manifest.getCreateTime());
+        delta.setFileCount(manifest.getFileCount());
+        delta.setTotalSize(manifest.getTotalSize());
+        delta.setBase(base);
+        for (FileChange change : diff(baseFiles, manifest.getFiles())) {
+            if (change.after() == null) {
+                delta.getRemoved().add(change.path());
+            } else {
+                delta.getFiles().put(change.path(), change.after().withoutStat());
+            }
+        }
+        return delta;
+    }
+
+    private Path manifestPath(String name, String versionId) {
+        return versionsRoot.resolve(name).resolve(versionId + MANIFEST_SUFFIX);
+    }
+
+    private VersionManifest read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(path.toFile(), VersionManifest.class);
+        } catch (IOException e) {
+            log.warn("读取版本清单失败: {}, 错误: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 先写入临时文件再重命名，读取方不会看到写了一半的清单
+     */
+    private void write(String name, VersionManifest manifest) throws IOException {
+        Path target = manifestPath(name, manifest.getVersionId());
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + manifest.getVersionId() + "." + IdUtil.fastSimpleUUID() + tempSuffix);
+        try {
+            objectMapper.writeValue(temp.toFile(), manifest);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 版本清单：版本中每个文件的相对路径 -> 内容哈希和大小
+ * 最新版本保存完整清单，更早的版本只保存相对 base 版本的差异
+ *
+ * @author zjb
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VersionManifest {
+
+    /**
+     * 版本号
+     */
+    private String versionId;
+
+    /**
+     * 发布时间（毫秒时间戳），发布顺序即版本顺序
+     */
+    private long createTime;
+
+    /**
+     * 文件数
+     */
+    private int fileCount;
+
+    /**
+     * 文件总大小（字节）
+     */
+    private long totalSize;
+
+    /**
+     * 差异的基准版本，为空时 files 是完整清单
+     */
+    private String base;
+
+    /**
+     * 完整清单，或相对基准版本新增、修改的文件
+     */
+    private Map<String, Entry> files = new TreeMap<>();
+
+    /**
+     * 相对基准版本删除的文件
+     */
+    private List<String> removed = new ArrayList<>();
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+
+        /**
+         * 内容的 SHA-256
+         */
+        private String hash;
+
+        /**
+         * 文件大小（字节）
+         */
+        private long size;
+
+        /**
+         * 记录清单时的文件标识（inode），只在最新版本中保存，用于下次快照时判断文件是否变化
+         */
+        private String fileKey;
+
+        /**
+         * 记录清单时的修改时间（毫秒时间戳），只在最新版本中保存
+         */
+        private Long modifiedTime;
+
+        public Entry() {
+        }
+
+        Entry(String hash, long size, String fileKey, Long modifiedTime) {
+            this.hash = hash;
+            this.size = size;
+            this.fileKey = fileKey;
+            this.modifiedTime = modifiedTime;
+        }
+
+        /**
+         * 去掉文件标识，只保留内容
+         */
+        Entry withoutStat() {
+            return new Entry(hash, size, null, null);
+        }
+
+        boolean sameContent(Entry other) {
+            return other != null && hash.equals(other.hash);
+        }
+    }
+}
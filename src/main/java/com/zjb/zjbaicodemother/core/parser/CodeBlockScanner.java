@@ -0,0 +1,121 @@
+package com.zjb.zjbaicodemother.core.parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 描述：代码块扫描器
+ * 一次遍历提取所有需要的语言的第一个 ``` 代码块，耗时与内容长度成线性关系
+ * 结果与 ```html\s*\n([\s\S]*?)``` 这类正则（忽略大小写）逐个语言匹配的结果完全一致：
+ * 1. 每个 ``` 都可以作为代码块的开始，包括上一个代码块的结束标记
+ * 2. 语言名称后可以有空白，代码块内容从这段空白中最后一个换行之后开始
+ * 3. 代码块在内容开始之后的第一个 ``` 处结束，没有结束标记时不算代码块
+ * 原有的正则每种语言各扫描一遍全文，懒惰匹配在缺少结束标记时逐个字符尝试到末尾
+ *
+ * @author zjb
+ */
+public class CodeBlockScanner {
+
+    private static final String FENCE = "```";
+
+    /**
+     * 语言标记（小写），与 languages 按下标对应
+     */
+    private final String[] tags;
+
+    private final String[] languages;
+
+    private final int languageCount;
+
+    /**
+     * @param tags 语言标记（小写）到语言的映射，多个标记可以对应同一种语言，如 js 和 javascript
+     */
+    public CodeBlockScanner(Map<String, String> tags) {
+        this.tags = tags.keySet().toArray(String[]::new);
+        this.languages = new String[this.tags.length];
+        for (int i = 0; i < this.tags.length; i++) {
+            this.languages[i] = tags.get(this.tags[i]);
+        }
+        this.languageCount = (int) Arrays.stream(languages).distinct().count();
+    }
+
+    /**
+     * 提取代码块
+     *
+     * @param content 原始内容
+     * @return 语言 -> 第一个代码块的内容（未去除首尾空白），没有找到的语言不在结果中
+     */
+    public Map<String, String> scan(String content) {
+        Map<String, String> blocks = new LinkedHashMap<>();
+        // 已找到开始标记、等待结束标记的代码块：语言 -> 内容开始位置
+        Map<String, Integer> open = new HashMap<>();
+        int found = 0;
+        int fence = content.indexOf(FENCE);
+        while (fence >= 0 && found < languageCount) {
+            // 先用当前标记结束之前打开的代码块
+            if (!open.isEmpty()) {
+                Iterator<Map.Entry<String, Integer>> iterator = open.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Integer> entry = iterator.next();
+                    if (entry.getValue() <= fence) {
+                        blocks.put(entry.getKey(), content.substring(entry.getValue(), fence));
+                        found++;
+                        iterator.remove();
+                    }
+                }
+            }
+            // 再判断当前标记能否作为代码块的开始
+            for (int i = 0; i < tags.length; i++) {
+                String language = languages[i];
+                if (blocks.containsKey(language) || open.containsKey(language)) {
+                    continue;
+                }
+                int contentStart = contentStart(content, fence + FENCE.length(), tags[i]);
+                if (contentStart >= 0) {
+                    open.put(language, contentStart);
+                }
+            }
+            // 反引号连续出现时每个位置都可能是标记的开始
+            fence = content.indexOf(FENCE, fence + 1);
+        }
+        return blocks;
+    }
+
+    /**
+     * 判断语言标记和随后的空白、换行是否匹配
+     *
+     * @return 代码块内容的开始位置，不匹配时为 -1
+     */
+    private static int contentStart(String content, int from, String tag) {
+        int length = content.length();
+        if (from + tag.length() > length) {
+            return -1;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            if (toLowerAscii(content.charAt(from + i)) != tag.charAt(i)) {
+                return -1;
+            }
+        }
+        int contentStart = -1;
+        for (int i = from + tag.length(); i < length && isWhitespace(content.charAt(i)); i++) {
+            if (content.charAt(i) == '\n') {
+                contentStart = i + 1;
+            }
+        }
+        return contentStart;
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * 与正则中的 \s 一致
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
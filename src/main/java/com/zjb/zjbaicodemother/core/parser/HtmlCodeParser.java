@@ -2,8 +2,7 @@ package com.zjb.zjbaicodemother.core.parser;
 
 import com.zjb.zjbaicodemother.ai.model.HtmlCodeResult;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * @Description: html单文件代码解析器
@@ -11,7 +10,8 @@ import java.util.regex.Pattern;
  */
 public class HtmlCodeParser implements CodeParser<HtmlCodeResult>{
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final CodeBlockScanner HTML_CODE_SCANNER = new CodeBlockScanner(Map.of("html", "html"));
+
     @Override
     public HtmlCodeResult parse(String codeContent) {
         HtmlCodeResult result = new HtmlCodeResult();
@@ -33,10 +33,6 @@ public class HtmlCodeParser implements CodeParser<HtmlCodeResult>{
      * @return HTML代码
      */
     private static String extractHtmlCode(String content) {
-        Matcher matcher = HTML_CODE_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+        return HTML_CODE_SCANNER.scan(content).get("html");
     }
 }
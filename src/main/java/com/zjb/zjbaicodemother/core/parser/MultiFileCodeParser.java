@@ -2,25 +2,30 @@ package com.zjb.zjbaicodemother.core.parser;
 
 import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * 描述：多文件代码解析器
  */
 public class MultiFileCodeParser implements CodeParser<MultiFileCodeResult>{
 
-    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    /**
+     * 一次遍历提取三种代码块，js 和 javascript 都按 js 处理
+     */
+    private static final CodeBlockScanner CODE_SCANNER = new CodeBlockScanner(Map.of(
+            "html", "html",
+            "css", "css",
+            "js", "js",
+            "javascript", "js"));
 
     @Override
     public MultiFileCodeResult parse(String codeContent) {
         MultiFileCodeResult result = new MultiFileCodeResult();
         // 提取各类代码
-        String htmlCode = extractCodeByPattern(codeContent, HTML_CODE_PATTERN);
-        String cssCode = extractCodeByPattern(codeContent, CSS_CODE_PATTERN);
-        String jsCode = extractCodeByPattern(codeContent, JS_CODE_PATTERN);
+        Map<String, String> blocks = CODE_SCANNER.scan(codeContent);
+        String htmlCode = blocks.get("html");
+        String cssCode = blocks.get("css");
+        String jsCode = blocks.get("js");
         // 设置HTML代码
         if (htmlCode != null && !htmlCode.trim().isEmpty()) {
             result.setHtmlCode(htmlCode.trim());
@@ -35,19 +40,4 @@ public class MultiFileCodeParser implements CodeParser<MultiFileCodeResult>{
         }
         return result;
     }
-
-    /**
-     * 根据正则模式提取代码
-     *
-     * @param content 原始内容
-     * @param pattern 正则模式
-     * @return 提取的代码
-     */
-    private static String extractCodeByPattern(String content, Pattern pattern) {
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
 }
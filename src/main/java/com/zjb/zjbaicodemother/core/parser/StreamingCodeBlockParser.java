@@ -0,0 +1,164 @@
+package com.zjb.zjbaicodemother.core.parser;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 描述：流式代码块解析器
+ * 逐个片段解析模型输出中的 ``` 代码块，代码块结束时立即回调，不需要等待整个响应完成
+ * 1. 只保存需要的语言的代码块内容，其他内容只做扫描，占用的内存以最大的代码块为上限
+ * 2. 与正则解析器一致：每种语言只取第一个代码块，``` 后紧跟语言名称，代码块在下一个 ``` 处结束
+ * 3. 可选保留完整的原文作为兜底内容（与正则解析器一致，没有需要的语言的非空代码块时使用整个输出），
+ *    输出第一个非空代码块后释放
+ *
+ * @author zjb
+ */
+public class StreamingCodeBlockParser {
+
+    private static final String FENCE = "```";
+
+    private enum State {
+        /**
+         * 代码块之外
+         */
+        TEXT,
+        /**
+         * 读取 ``` 后的语言名称
+         */
+        INFO,
+        /**
+         * 代码块之内
+         */
+        BLOCK
+    }
+
+    private final Set<String> languages;
+
+    private final BiConsumer<String, String> onBlock;
+
+    /**
+     * 兜底内容，不保留或已经输出非空代码块时为 null
+     */
+    private StringBuilder fallbackText;
+
+    private final StringBuilder info = new StringBuilder();
+
+    private final StringBuilder block = new StringBuilder();
+
+    private final Set<String> emitted = new HashSet<>();
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续的反引号个数，用于识别跨片段的 ```
+     */
+    private int backticks;
+
+    /**
+     * 当前代码块的语言，不需要保存时为 null
+     */
+    private String blockLanguage;
+
+    /**
+     * @param languages       需要的语言（小写），javascript 按 js 处理
+     * @param keepFallbackText 是否保留完整的原文作为兜底内容
+     * @param onBlock          代码块结束时的回调，参数为语言和代码块内容
+     */
+    public StreamingCodeBlockParser(Set<String> languages, boolean keepFallbackText, BiConsumer<String, String> onBlock) {
+        this.languages = languages;
+        this.onBlock = onBlock;
+        this.fallbackText = keepFallbackText ? new StringBuilder() : null;
+    }
+
+    /**
+     * 解析一个片段
+     *
+     * @param chunk 模型输出的片段
+     */
+    public void feed(String chunk) {
+        if (fallbackText != null) {
+            fallbackText.append(chunk);
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> {
+                    if (isFence(c)) {
+                        info.setLength(0);
+                        state = State.INFO;
+                    }
+                }
+                case INFO -> {
+                    if (c == '\n') {
+                        openBlock(info.toString().strip().toLowerCase(Locale.ROOT));
+                    } else {
+                        info.append(c);
+                    }
+                }
+                case BLOCK -> {
+                    if (blockLanguage != null) {
+                        block.append(c);
+                    }
+                    if (isFence(c)) {
+                        closeBlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 响应结束：模型输出被截断时，未结束的代码块按已输出的内容处理
+     */
+    public void finish() {
+        if (state == State.BLOCK && blockLanguage != null) {
+            emit(blockLanguage, block.toString());
+        }
+        state = State.TEXT;
+        block.setLength(0);
+    }
+
+    /**
+     * 兜底内容：还没有输出非空代码块时为完整的原文，否则（或没有保留时）为空字符串
+     */
+    public String fallbackText() {
+        return fallbackText == null ? "" : fallbackText.toString();
+    }
+
+    private boolean isFence(char c) {
+        backticks = c == '`' ? backticks + 1 : 0;
+        if (backticks == FENCE.length()) {
+            backticks = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private void openBlock(String language) {
+        String normalized = "javascript".equals(language) ? "js" : language;
+        blockLanguage = languages.contains(normalized) && !emitted.contains(normalized) ? normalized : null;
+        block.setLength(0);
+        state = State.BLOCK;
+    }
+
+    private void closeBlock() {
+        if (blockLanguage != null) {
+            block.setLength(block.length() - FENCE.length());
+            emit(blockLanguage, block.toString());
+        }
+        blockLanguage = null;
+        block.setLength(0);
+        state = State.TEXT;
+    }
+
+    private void emit(String language, String content) {
+        emitted.add(language);
+        if (!content.isBlank()) {
+            // 已经有非空代码块，不再需要兜底内容
+            fallbackText = null;
+        }
+        onBlock.accept(language, content);
+    }
+}
@@ -2,11 +2,11 @@ package com.zjb.zjbaicodemother.core.saver;
 
 import com.zjb.zjbaicodemother.ai.model.HtmlCodeResult;
 import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 
-import java.io.File;
 
 public class CodeFileSaverExecutor {
     private static final HtmlCodeFileSaverTemplate htmlCodeFileSaverTemplate = new HtmlCodeFileSaverTemplate();
@@ -17,14 +17,29 @@ public class CodeFileSaverExecutor {
      *
      * @param codeGenTypeEnum  代码生成类型
      * @param result  代码生成结果
-     * @param appId  应用ID
-     * @return 保存后的目录
+     * @param staging  暂存目录
      */
-    public static File executeSaver(Object result, CodeGenTypeEnum codeGenTypeEnum, Long appId){
-        return switch (codeGenTypeEnum){
-            case HTML -> htmlCodeFileSaverTemplate.saveCode((HtmlCodeResult) result, appId);
-            case MULTI_FILE -> multiFileCodeFileSaverTemplate.saveCode((MultiFileCodeResult) result, appId);
+    public static void executeSaver(Object result, CodeGenTypeEnum codeGenTypeEnum, CodeOutputManager.Staging staging){
+        switch (codeGenTypeEnum){
+            case HTML -> htmlCodeFileSaverTemplate.saveCode((HtmlCodeResult) result, staging);
+            case MULTI_FILE -> multiFileCodeFileSaverTemplate.saveCode((MultiFileCodeResult) result, staging);
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型" + codeGenTypeEnum);
-        };
+        }
+    }
+
+    /**
+     * 按代码生成类型保存单个文件
+     *
+     * @param codeGenTypeEnum 代码生成类型
+     * @param staging         暂存目录
+     * @param fileName        文件名
+     * @param content         文件内容
+     */
+    public static void executeFileSaver(CodeGenTypeEnum codeGenTypeEnum, CodeOutputManager.Staging staging, String fileName, String content){
+        switch (codeGenTypeEnum){
+            case HTML -> htmlCodeFileSaverTemplate.saveFile(staging, fileName, content);
+            case MULTI_FILE -> multiFileCodeFileSaverTemplate.saveFile(staging, fileName, content);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型" + codeGenTypeEnum);
+        }
     }
 }
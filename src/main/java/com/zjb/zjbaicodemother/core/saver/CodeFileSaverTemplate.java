@@ -1,34 +1,42 @@
 package com.zjb.zjbaicodemother.core.saver;
 
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
-import com.zjb.zjbaicodemother.constant.AppConstant;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 
-import java.io.File;
-import java.nio.charset.StandardCharsets;
-
 /**
  * @Description: 抽象代码文件保存器模板 - 模板方法模式
  * @Author: zjb
  */
 public abstract class CodeFileSaverTemplate<T> {
 
-    //文件保存根目录
-    private static final String FILE_SAVE_ROOT_DIR = AppConstant.CODE_OUTPUT_ROOT_DIR;
-
-    public final File saveCode(T result, Long appId) {
+    /**
+     * 保存代码到本次生成的暂存目录，暂存目录由 CodeOutputManager 创建和发布
+     *
+     * @param result  代码结果对象
+     * @param staging 暂存目录
+     */
+    public final void saveCode(T result, CodeOutputManager.Staging staging) {
         // 1. 验证参数
         validateInput(result);
-        // 2. 创建唯一目录
-        String baseDirPath = buildUniquePath(appId);
+        // 2. 校验目录
+        checkStaging(staging);
         // 3. 保存文件
-        saveFiles(result, baseDirPath);
-        // 4. 返回目录文件对象
-        return new File(baseDirPath);
+        saveFiles(result, staging);
+    }
+
+    /**
+     * 保存单个文件，流式生成时代码块结束后立即写入暂存目录
+     *
+     * @param staging  暂存目录
+     * @param fileName 文件名
+     * @param content  文件内容，为空白时不写入
+     */
+    public final void saveFile(CodeOutputManager.Staging staging, String fileName, String content) {
+        checkStaging(staging);
+        writeToFile(staging, fileName, content);
     }
 
     /**
@@ -43,33 +51,26 @@ public abstract class CodeFileSaverTemplate<T> {
     }
 
     /**
-     * 构建唯一目录路径（不能子类覆盖）
+     * 校验暂存目录（不能子类覆盖）
      *
-     * @param appId 应用id
-     * @return 唯一目录路径
+     * @param staging 暂存目录
      */
-    protected final String buildUniquePath(Long appId) {
-        if (appId == null){
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用id不能为空");
+    protected final void checkStaging(CodeOutputManager.Staging staging) {
+        if (staging == null){
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存目录不能为空");
         }
-        String codeType = getCodeType().getValue();
-        String uniquePath = StrUtil.format("{}_{}", codeType, appId);
-        String dirPath = FILE_SAVE_ROOT_DIR + File.separator + uniquePath;
-        FileUtil.mkdir(dirPath);
-        return dirPath;
     }
 
     /**
-     * 写入单个文件（不能子类覆盖）
+     * 写入单个文件（不能子类覆盖），内容按哈希去重
      *
-     * @param dirPath  目录路径
+     * @param staging  暂存目录
      * @param fileName  文件名
      * @param content  文件内容
      */
-    protected final void writeToFile(String dirPath, String fileName, String content) {
+    protected final void writeToFile(CodeOutputManager.Staging staging, String fileName, String content) {
         if(StrUtil.isNotBlank(content)){
-            String filePath = dirPath + File.separator + fileName;
-            FileUtil.writeString(content, filePath, StandardCharsets.UTF_8);
+            staging.writeFile(fileName, content);
         }
     }
 
@@ -84,7 +85,7 @@ public abstract class CodeFileSaverTemplate<T> {
      * 保存文件（由子类实现）
      *
      * @param result    代码结果对象
-     * @param baseDirPath   目录路径
+     * @param staging   暂存目录
      */
-    protected abstract void saveFiles(T result, String baseDirPath);
+    protected abstract void saveFiles(T result, CodeOutputManager.Staging staging);
 }
@@ -2,6 +2,7 @@ package com.zjb.zjbaicodemother.core.saver;
 
 import cn.hutool.core.util.StrUtil;
 import com.zjb.zjbaicodemother.ai.model.HtmlCodeResult;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
@@ -18,9 +19,9 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
     }
 
     @Override
-    protected void saveFiles(HtmlCodeResult result, String baseDirPath) {
+    protected void saveFiles(HtmlCodeResult result, CodeOutputManager.Staging staging) {
         // 保存 HTML 文件
-        writeToFile(baseDirPath, "index.html", result.getHtmlCode());
+        writeToFile(staging, "index.html", result.getHtmlCode());
     }
 
     @Override
@@ -2,6 +2,7 @@ package com.zjb.zjbaicodemother.core.saver;
 
 import cn.hutool.core.util.StrUtil;
 import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
@@ -16,13 +17,13 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
     }
 
     @Override
-    protected void saveFiles(MultiFileCodeResult result, String baseDirPath) {
+    protected void saveFiles(MultiFileCodeResult result, CodeOutputManager.Staging staging) {
         // 保存html文件
-        writeToFile(baseDirPath, "index.html", result.getHtmlCode());
+        writeToFile(staging, "index.html", result.getHtmlCode());
         // 保存css文件
-        writeToFile(baseDirPath, "style.css", result.getCssCode());
+        writeToFile(staging, "style.css", result.getCssCode());
         // 保存js文件
-        writeToFile(baseDirPath, "script.js", result.getJsCode());
+        writeToFile(staging, "script.js", result.getJsCode());
     }
 
     @Override
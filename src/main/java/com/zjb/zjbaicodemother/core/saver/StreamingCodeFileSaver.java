@@ -0,0 +1,133 @@
+package com.zjb.zjbaicodemother.core.saver;
+
+import cn.hutool.core.util.StrUtil;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
+import com.zjb.zjbaicodemother.core.parser.StreamingCodeBlockParser;
+import com.zjb.zjbaicodemother.exception.BusinessException;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * 描述：流式代码文件保存器
+ * HTML / 多文件模式生成过程中逐个片段解析，每个代码块结束时立即写入暂存目录，不需要在内存中保存整个响应
+ * （HTML 模式写入 HTML 代码块之前保留原文，没有 HTML 代码块时与原来一样把整个输出作为 HTML）
+ * 生成完成后整体发布为新版本，失败或取消时丢弃，预览看到的始终是完整的版本
+ *
+ * @author zjb
+ */
+@Slf4j
+public class StreamingCodeFileSaver {
+
+    private static final String HTML_FILE_NAME = "index.html";
+
+    private static final Map<String, String> HTML_FILES = Map.of("html", HTML_FILE_NAME);
+
+    private static final Map<String, String> MULTI_FILE_FILES = Map.of(
+            "html", HTML_FILE_NAME,
+            "css", "style.css",
+            "js", "script.js");
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final Long appId;
+
+    private final CodeOutputManager codeOutputManager;
+
+    private final Map<String, String> fileNames;
+
+    private final StreamingCodeBlockParser parser;
+
+    /**
+     * 第一个文件写入时创建的暂存目录
+     */
+    private CodeOutputManager.Staging staging;
+
+    private boolean htmlSaved;
+
+    private RuntimeException failure;
+
+    public StreamingCodeFileSaver(CodeGenTypeEnum codeGenType, Long appId, CodeOutputManager codeOutputManager) {
+        this.codeGenType = codeGenType;
+        this.appId = appId;
+        this.codeOutputManager = codeOutputManager;
+        this.fileNames = switch (codeGenType) {
+            case HTML -> HTML_FILES;
+            case MULTI_FILE -> MULTI_FILE_FILES;
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型" + codeGenType);
+        };
+        // 单文件模式没有非空的 HTML 代码块时把整个输出作为 HTML，需要保留原文直到写入 HTML
+        this.parser = new StreamingCodeBlockParser(fileNames.keySet(), codeGenType == CodeGenTypeEnum.HTML, this::onBlock);
+    }
+
+    /**
+     * 解析一个片段，代码块结束时写入文件；写入失败不影响输出，结束时再抛出
+     *
+     * @param chunk 模型输出的片段
+     */
+    public void onChunk(String chunk) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            parser.feed(chunk);
+        } catch (RuntimeException e) {
+            log.error("保存代码块失败, appId: {}, error: {}", appId, e.getMessage());
+            failure = e;
+        }
+    }
+
+    /**
+     * 响应结束，保存未结束的代码块或兜底内容，并发布为当前版本
+     *
+     * @return 正式目录
+     */
+    public File finish() {
+        if (failure == null) {
+            parser.finish();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (!htmlSaved && codeGenType == CodeGenTypeEnum.HTML && StrUtil.isNotBlank(parser.fallbackText())) {
+            // 如果没有找到 HTML 代码块，将整个内容作为HTML
+            save(HTML_FILE_NAME, parser.fallbackText().trim());
+            htmlSaved = true;
+        }
+        if (!htmlSaved) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
+        }
+        return staging.publish();
+    }
+
+    /**
+     * 生成结束（完成、异常或取消），丢弃未发布的暂存目录
+     */
+    public void close() {
+        if (staging != null) {
+            staging.discard();
+        }
+    }
+
+    private void onBlock(String language, String content) {
+        String code = content.trim();
+        if (code.isEmpty()) {
+            return;
+        }
+        save(fileNames.get(language), code);
+        if ("html".equals(language)) {
+            htmlSaved = true;
+        }
+        log.info("代码块已保存: {}, appId: {}, 长度: {}", fileNames.get(language), appId, code.length());
+    }
+
+    private void save(String fileName, String content) {
+        if (staging == null) {
+            staging = codeOutputManager.begin(codeGenType, appId);
+        }
+        CodeFileSaverExecutor.executeFileSaver(codeGenType, staging, fileName, content);
+    }
+}
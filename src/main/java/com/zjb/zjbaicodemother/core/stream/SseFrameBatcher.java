@@ -0,0 +1,220 @@
+package com.zjb.zjbaicodemother.core.stream;
+
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 帧合并器
+ * 把连续的文本分片按时间窗口或字节预算合并为一个帧：
+ * 1. 当前帧达到字节预算时立即推送
+ * 2. 帧内第一个分片到达后经过一个时间窗口推送
+ * 3. 下游没有需求时暂停拉取上游，内存占用不超过一个帧
+ *
+ * @author zjb
+ */
+public final class SseFrameBatcher {
+
+    private SseFrameBatcher() {
+    }
+
+    /**
+     * 合并文本流
+     *
+     * @param source   原始分片流
+     * @param window   时间窗口，小于等于 0 时不合并
+     * @param maxBytes 单帧字节预算
+     * @return 合并后的帧流
+     */
+    public static Flux<String> batch(Flux<String> source, Duration window, int maxBytes) {
+        if (window == null || window.isZero() || window.isNegative()) {
+            return source;
+        }
+        return Flux.create(sink -> source.subscribe(new BatchingSubscriber(sink, window, maxBytes)));
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数（不额外分配内存）
+     *
+     * @param text 文本
+     * @return 字节数
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class BatchingSubscriber extends BaseSubscriber<String> {
+
+        private final FluxSink<String> sink;
+
+        private final Duration window;
+
+        private final int maxBytes;
+
+        private final StringBuilder frame = new StringBuilder();
+
+        private int frameBytes;
+
+        /**
+         * 当前帧的时间窗口定时器
+         */
+        private Disposable windowTimer;
+
+        /**
+         * 时间窗口已到但下游暂无需求，等待下游请求时推送
+         */
+        private boolean frameDue;
+
+        /**
+         * 当前帧已满，暂停拉取上游
+         */
+        private boolean paused;
+
+        private boolean upstreamDone;
+
+        private Throwable upstreamError;
+
+        private boolean terminated;
+
+        private BatchingSubscriber(FluxSink<String> sink, Duration window, int maxBytes) {
+            this.sink = sink;
+            this.window = window;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            sink.onRequest(n -> onDownstreamRequest());
+            sink.onDispose(this::onDownstreamDispose);
+            request(1);
+        }
+
+        @Override
+        protected synchronized void hookOnNext(String chunk) {
+            if (terminated) {
+                return;
+            }
+            frame.append(chunk);
+            frameBytes += utf8Length(chunk);
+            if (frameBytes >= maxBytes) {
+                if (!tryFlush()) {
+                    // 帧已满且下游暂无需求，暂停拉取上游
+                    paused = true;
+                    return;
+                }
+            } else if (windowTimer == null) {
+                windowTimer = Schedulers.parallel().schedule(this::onWindowElapsed, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            request(1);
+        }
+
+        @Override
+        protected synchronized void hookOnComplete() {
+            upstreamDone = true;
+            tryTerminate();
+        }
+
+        @Override
+        protected synchronized void hookOnError(Throwable throwable) {
+            upstreamDone = true;
+            upstreamError = throwable;
+            tryTerminate();
+        }
+
+        private synchronized void onWindowElapsed() {
+            windowTimer = null;
+            if (terminated) {
+                return;
+            }
+            if (!tryFlush()) {
+                frameDue = true;
+            }
+        }
+
+        private synchronized void onDownstreamRequest() {
+            if (terminated) {
+                return;
+            }
+            if (frameDue || frameBytes >= maxBytes) {
+                tryFlush();
+            }
+            if (upstreamDone) {
+                tryTerminate();
+            } else if (paused && frameBytes < maxBytes) {
+                paused = false;
+                request(1);
+            }
+        }
+
+        private synchronized void onDownstreamDispose() {
+            terminated = true;
+            cancelWindowTimer();
+            frame.setLength(0);
+            dispose();
+        }
+
+        /**
+         * 在下游有需求时推送当前帧（调用方需持有锁）
+         *
+         * @return 当前帧是否已清空
+         */
+        private boolean tryFlush() {
+            if (frame.isEmpty()) {
+                return true;
+            }
+            if (sink.requestedFromDownstream() <= 0) {
+                return false;
+            }
+            String payload = frame.toString();
+            frame.setLength(0);
+            frameBytes = 0;
+            frameDue = false;
+            cancelWindowTimer();
+            sink.next(payload);
+            return true;
+        }
+
+        /**
+         * 推送剩余帧后传递结束信号（调用方需持有锁）
+         */
+        private void tryTerminate() {
+            if (terminated || !tryFlush()) {
+                return;
+            }
+            terminated = true;
+            cancelWindowTimer();
+            if (upstreamError != null) {
+                sink.error(upstreamError);
+            } else {
+                sink.complete();
+            }
+        }
+
+        private void cancelWindowTimer() {
+            if (windowTimer != null) {
+                windowTimer.dispose();
+                windowTimer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zjb.zjbaicodemother.core.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式桥接指标
+ * 统计所有生成流当前缓冲的消息块数量、合并次数和溢出次数
+ *
+ * @author zjb
+ */
+@Component
+public class StreamBridgeMetrics {
+
+    private final AtomicInteger bufferDepth = new AtomicInteger();
+
+    private final Counter coalescedCounter;
+
+    private final Counter overflowCounter;
+
+    public StreamBridgeMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("ai.stream.bridge.buffer.depth", bufferDepth, AtomicInteger::get)
+                .description("所有生成流中等待下发的消息块数量")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("ai.stream.bridge.coalesced")
+                .description("消费者落后时被合并的消息片段数量")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("ai.stream.bridge.overflow")
+                .description("缓冲区写满的次数")
+                .register(meterRegistry);
+    }
+
+    void onEnqueue() {
+        bufferDepth.incrementAndGet();
+    }
+
+    void onDequeue(int count) {
+        bufferDepth.addAndGet(-count);
+    }
+
+    void onCoalesced() {
+        coalescedCounter.increment();
+    }
+
+    void onOverflow() {
+        overflowCounter.increment();
+    }
+}
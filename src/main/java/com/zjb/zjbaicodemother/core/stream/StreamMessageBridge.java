@@ -0,0 +1,297 @@
+package com.zjb.zjbaicodemother.core.stream;
+
+import com.zjb.zjbaicodemother.ai.model.message.AiResponseMessage;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
+import com.zjb.zjbaicodemother.ai.model.message.ToolRequestMessage;
+import com.zjb.zjbaicodemother.config.StreamBridgeConfig;
+import com.zjb.zjbaicodemother.exception.BusinessException;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.model.enums.StreamOverflowPolicyEnum;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 有界、可合并的 TokenStream 到 Flux 桥接
+ * 1. 消费者有需求时直接下发消息
+ * 2. 消费者落后时，相邻的 AI 文本片段（以及同一工具调用的参数片段）合并为一个消息块
+ * 3. 工具事件不会被丢弃，缓冲区写满时按配置的溢出策略终止流（默认）或短暂阻塞生产者
+ * 生产者是模型响应的回调线程（虚拟线程），等待使用 ReentrantLock 的 Condition，不会像 synchronized 中的 wait 那样占住载体线程
+ *
+ * @author zjb
+ */
+@Slf4j
+public class StreamMessageBridge {
+
+    private final FluxSink<StreamMessage> sink;
+
+    private final StreamBridgeConfig config;
+
+    private final StreamBridgeMetrics metrics;
+
+    /**
+     * 待下发的消息块，所有访问都需要持有 lock
+     */
+    private final Deque<PendingMessage> queue = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 缓冲区有空位或流已取消
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * 保证同一时刻只有一个线程在下发消息
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean done;
+
+    private volatile Throwable error;
+
+    private volatile boolean terminated;
+
+    private StreamMessageBridge(FluxSink<StreamMessage> sink, StreamBridgeConfig config, StreamBridgeMetrics metrics) {
+        this.sink = sink;
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 创建桥接流
+     *
+     * @param producer 生产者，通过桥接对象推送消息
+     * @param config   缓冲配置
+     * @param metrics  指标
+     * @return 消息流
+     */
+    public static Flux<StreamMessage> create(Consumer<StreamMessageBridge> producer,
+                                             StreamBridgeConfig config,
+                                             StreamBridgeMetrics metrics) {
+        return Flux.create(sink -> {
+            StreamMessageBridge bridge = new StreamMessageBridge(sink, config, metrics);
+            sink.onRequest(n -> bridge.drain());
+            sink.onDispose(bridge::discard);
+            producer.accept(bridge);
+        });
+    }
+
+    /**
+     * 推送一条消息
+     *
+     * @param message 消息
+     */
+    public void next(StreamMessage message) {
+        if (done || sink.isCancelled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            PendingMessage tail = queue.peekLast();
+            if (tail != null && tail.tryAppend(message, config.getMaxCoalescedChars())) {
+                metrics.onCoalesced();
+            } else if (awaitCapacity()) {
+                queue.offerLast(new PendingMessage(message));
+                metrics.onEnqueue();
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * 生产者正常结束
+     */
+    public void complete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * 生产者异常结束
+     *
+     * @param throwable 异常
+     */
+    public void error(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    /**
+     * 等待缓冲区有空位（调用方需持有 lock），等待期间释放锁
+     *
+     * @return 是否可以继续写入
+     */
+    private boolean awaitCapacity() {
+        if (queue.size() < config.getBufferSize()) {
+            return true;
+        }
+        metrics.onOverflow();
+        if (config.getOverflowPolicy() == StreamOverflowPolicyEnum.ERROR) {
+            error = new BusinessException(ErrorCode.SYSTEM_ERROR, "客户端消费过慢，生成流已终止");
+            done = true;
+            return false;
+        }
+        long deadline = System.nanoTime() + config.getBlockTimeout().toNanos();
+        try {
+            while (queue.size() >= config.getBufferSize()) {
+                if (sink.isCancelled()) {
+                    return false;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    error = new BusinessException(ErrorCode.SYSTEM_ERROR, "等待客户端消费超时，生成流已终止");
+                    done = true;
+                    return false;
+                }
+                notFull.awaitNanos(remainingNanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+            done = true;
+            return false;
+        }
+    }
+
+    /**
+     * 按下游需求下发缓冲的消息，并在缓冲区清空后传递结束信号
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!terminated) {
+                if (sink.isCancelled()) {
+                    discard();
+                    return;
+                }
+                StreamMessage message;
+                lock.lock();
+                try {
+                    if (queue.isEmpty() || sink.requestedFromDownstream() == 0) {
+                        break;
+                    }
+                    message = queue.pollFirst().build();
+                    metrics.onDequeue(1);
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                sink.next(message);
+            }
+            if (done && !terminated && isEmpty()) {
+                terminated = true;
+                if (error != null) {
+                    sink.error(error);
+                } else {
+                    sink.complete();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 流被取消或结束时丢弃剩余消息并唤醒阻塞的生产者
+     */
+    private void discard() {
+        lock.lock();
+        try {
+            metrics.onDequeue(queue.size());
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓冲中的消息块，可以与后续同类片段合并
+     */
+    private static final class PendingMessage {
+
+        private final StreamMessage first;
+
+        private StringBuilder merged;
+
+        private PendingMessage(StreamMessage first) {
+            this.first = first;
+        }
+
+        /**
+         * 尝试把后续片段合并到当前消息块
+         *
+         * @param next     后续片段
+         * @param maxChars 合并后的最大字符数
+         * @return 是否合并成功
+         */
+        private boolean tryAppend(StreamMessage next, int maxChars) {
+            String fragment = mergeableFragment(next);
+            if (fragment == null || mergeableFragment(first) == null) {
+                return false;
+            }
+            if (first instanceof ToolRequestMessage firstRequest
+                    && !(next instanceof ToolRequestMessage nextRequest && Objects.equals(firstRequest.id(), nextRequest.id()))) {
+                return false;
+            }
+            if (first instanceof AiResponseMessage && !(next instanceof AiResponseMessage)) {
+                return false;
+            }
+            if (merged == null) {
+                merged = new StringBuilder(mergeableFragment(first));
+            }
+            if (merged.length() + fragment.length() > maxChars) {
+                return false;
+            }
+            merged.append(fragment);
+            return true;
+        }
+
+        private StreamMessage build() {
+            if (merged == null) {
+                return first;
+            }
+            return switch (first) {
+                case AiResponseMessage ignored -> new AiResponseMessage(merged.toString());
+                case ToolRequestMessage request -> new ToolRequestMessage(request.id(), request.name(), merged.toString());
+                default -> first;
+            };
+        }
+
+        /**
+         * 获取可合并的文本内容，工具执行结果等事件不可合并
+         */
+        private static String mergeableFragment(StreamMessage message) {
+            return switch (message) {
+                case AiResponseMessage aiResponseMessage -> Objects.toString(aiResponseMessage.data(), "");
+                case ToolRequestMessage toolRequestMessage when toolRequestMessage.id() != null ->
+                        Objects.toString(toolRequestMessage.arguments(), "");
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.zjb.zjbaicodemother.core.usage;
+
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 模型用量指标
+ * 按生成类型和模型统计 token 数、生成次数和耗时，以及用量明细的写入情况
+ *
+ * @author zjb
+ */
+@Component
+public class AiUsageMetrics {
+
+    private static final String TYPE_TAG = "type";
+
+    private static final String MODEL_TAG = "model";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter droppedCounter;
+
+    private final Counter writeFailureCounter;
+
+    public AiUsageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.droppedCounter = Counter.builder("ai.usage.records.dropped")
+                .description("队列已满被丢弃的用量明细数")
+                .register(meterRegistry);
+        this.writeFailureCounter = Counter.builder("ai.usage.records.write-failures")
+                .description("写入数据库失败的用量明细数")
+                .register(meterRegistry);
+    }
+
+    void onRecorded(AiUsage usage) {
+        String model = usage.getModelName() == null ? "unknown" : usage.getModelName();
+        Counter.builder("ai.usage.generations")
+                .tag(TYPE_TAG, usage.getCodeGenType())
+                .tag(MODEL_TAG, model)
+                .tag("status", usage.getStatus())
+                .description("代码生成次数")
+                .register(meterRegistry)
+                .increment();
+        tokens(usage.getCodeGenType(), model, "input").increment(usage.getInputTokens());
+        tokens(usage.getCodeGenType(), model, "output").increment(usage.getOutputTokens());
+        DistributionSummary.builder("ai.usage.generation.input-tokens")
+                .tag(TYPE_TAG, usage.getCodeGenType())
+                .description("单次生成的输入 token 数，上下文过长时先在这里体现")
+                .register(meterRegistry)
+                .record(usage.getInputTokens());
+        Timer.builder("ai.usage.generation.latency")
+                .tag(TYPE_TAG, usage.getCodeGenType())
+                .tag("status", usage.getStatus())
+                .description("单次生成从开始到结束的耗时")
+                .register(meterRegistry)
+                .record(Duration.ofMillis(usage.getLatencyMs()));
+    }
+
+    void onDropped() {
+        droppedCounter.increment();
+    }
+
+    void onWriteFailure(int count) {
+        writeFailureCounter.increment(count);
+    }
+
+    private Counter tokens(String codeGenType, String model, String direction) {
+        return Counter.builder("ai.usage.tokens")
+                .tag(TYPE_TAG, codeGenType)
+                .tag(MODEL_TAG, model)
+                .tag("direction", direction)
+                .description("消耗的 token 数")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,247 @@
+package com.zjb.zjbaicodemother.core.usage;
+
+import com.zjb.zjbaicodemother.config.AiUsageConfig;
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import com.zjb.zjbaicodemother.model.enums.AiUsageStatusEnum;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import com.zjb.zjbaicodemother.service.AiUsageService;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 模型用量记录器
+ * 1. 每次生成通过 {@link #start} 取得一个 {@link Tracker}，生成结束时只记录一次，同时上报指标
+ * 2. 用量明细先进入有界队列，由单独的后台线程定时或积压到一批时批量写库，生成线程不等待数据库
+ * 3. 队列已满或写库失败时丢弃明细并计数，不影响生成；关闭应用时把队列中剩余的明细写完
+ *
+ * @author zjb
+ */
+@Slf4j
+@Component
+public class AiUsageRecorder {
+
+    private final AiUsageConfig config;
+
+    private final AiUsageService aiUsageService;
+
+    private final AiUsageMetrics metrics;
+
+    private final BlockingQueue<AiUsage> queue;
+
+    private final ScheduledExecutorService writer;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public AiUsageRecorder(AiUsageConfig config, AiUsageService aiUsageService, AiUsageMetrics metrics) {
+        this.config = config;
+        this.aiUsageService = aiUsageService;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.writer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ai-usage-writer").daemon().factory());
+        long interval = config.getFlushInterval().toMillis();
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 开始记录一次生成
+     *
+     * @param appId       应用ID
+     * @param userId      发起生成的用户ID
+     * @param codeGenType 生成类型
+     * @return 本次生成的用量跟踪器
+     */
+    public Tracker start(Long appId, Long userId, CodeGenTypeEnum codeGenType) {
+        return new Tracker(appId, userId, codeGenType);
+    }
+
+    /**
+     * 关闭应用时停止定时写入，并把队列中剩余的明细写完
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(config.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("等待模型用量写入线程结束超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void record(AiUsage usage) {
+        metrics.onRecorded(usage);
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!queue.offer(usage)) {
+            metrics.onDropped();
+            return;
+        }
+        if (queue.size() >= config.getBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，剩余的明细由 shutdown 写入
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 分批写入队列中的明细，直到队列为空
+     */
+    synchronized void flush() {
+        List<AiUsage> batch = new ArrayList<>(config.getBatchSize());
+        while (queue.drainTo(batch, config.getBatchSize()) > 0) {
+            try {
+                aiUsageService.saveBatch(batch, config.getBatchSize());
+            } catch (Exception e) {
+                metrics.onWriteFailure(batch.size());
+                log.error("写入模型用量失败，丢弃 {} 条记录: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 一次生成的用量跟踪器
+     * 成功时 token 数取最终响应中的累计值，已经包含了所有工具调用轮次；
+     * 失败或取消时记录已完成的工具调用轮次的用量之和，进行中的那一轮模型还没有返回用量，不计入
+     */
+    public final class Tracker {
+
+        private final Long appId;
+
+        private final Long userId;
+
+        private final CodeGenTypeEnum codeGenType;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private final AtomicBoolean inToolPhase = new AtomicBoolean();
+
+        private final AtomicInteger toolRounds = new AtomicInteger();
+
+        /**
+         * 已完成的工具调用轮次的用量之和
+         */
+        private final AtomicReference<TokenUsage> completedRoundsUsage = new AtomicReference<>();
+
+        private volatile String modelName;
+
+        private Tracker(Long appId, Long userId, CodeGenTypeEnum codeGenType) {
+            this.appId = appId;
+            this.userId = userId;
+            this.codeGenType = codeGenType;
+        }
+
+        /**
+         * 收到模型输出的文本或工具调用参数
+         */
+        public void onModelOutput() {
+            inToolPhase.set(false);
+        }
+
+        /**
+         * 一个工具执行完成，模型输出之后的第一个工具开始新的一轮
+         */
+        public void onToolExecuted() {
+            if (inToolPhase.compareAndSet(false, true)) {
+                toolRounds.incrementAndGet();
+            }
+        }
+
+        /**
+         * 模型完成了一轮请求工具调用的响应，累计这一轮的用量
+         *
+         * @param chatResponse 这一轮的响应
+         */
+        public void onIntermediateResponse(ChatResponse chatResponse) {
+            if (chatResponse.modelName() != null) {
+                modelName = chatResponse.modelName();
+            }
+            TokenUsage roundUsage = chatResponse.tokenUsage();
+            if (roundUsage != null) {
+                completedRoundsUsage.accumulateAndGet(roundUsage, TokenUsage::sum);
+            }
+        }
+
+        /**
+         * 生成成功
+         *
+         * @param chatResponse 最终响应
+         */
+        public void complete(ChatResponse chatResponse) {
+            finish(AiUsageStatusEnum.SUCCESS, chatResponse);
+        }
+
+        /**
+         * 生成失败，取消导致的异常按取消记录
+         *
+         * @param error 异常
+         */
+        public void fail(Throwable error) {
+            finish(error instanceof CancellationException ? AiUsageStatusEnum.CANCELLED : AiUsageStatusEnum.ERROR, null);
+        }
+
+        /**
+         * 客户端断开，生成被取消
+         */
+        public void cancel() {
+            finish(AiUsageStatusEnum.CANCELLED, null);
+        }
+
+        /**
+         * 命中生成缓存，没有调用模型
+         */
+        public void cacheHit() {
+            finish(AiUsageStatusEnum.CACHE_HIT, null);
+        }
+
+        private void finish(AiUsageStatusEnum status, ChatResponse chatResponse) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            TokenUsage tokenUsage = chatResponse == null ? completedRoundsUsage.get() : chatResponse.tokenUsage();
+            int inputTokens = tokenUsage == null || tokenUsage.inputTokenCount() == null ? 0 : tokenUsage.inputTokenCount();
+            int outputTokens = tokenUsage == null || tokenUsage.outputTokenCount() == null ? 0 : tokenUsage.outputTokenCount();
+            record(AiUsage.builder()
+                    .appId(appId)
+                    .userId(userId)
+                    .codeGenType(codeGenType.getValue())
+                    .modelName(chatResponse == null ? modelName : chatResponse.modelName())
+                    .status(status.getValue())
+                    .inputTokens(inputTokens)
+                    .outputTokens(outputTokens)
+                    .totalTokens(inputTokens + outputTokens)
+                    .toolRounds(toolRounds.get())
+                    .latencyMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                    .createTime(LocalDateTime.now())
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.zjb.zjbaicodemother.mapper;
+
+import com.mybatisflex.core.BaseMapper;
+import com.zjb.zjbaicodemother.model.dto.usage.AiUsageQueryRequest;
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import com.zjb.zjbaicodemother.model.vo.AiUsageStatsVO;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 模型用量 映射层。
+ *
+ * @author zjb
+ */
+public interface AiUsageMapper extends BaseMapper<AiUsage> {
+
+    /**
+     * 按应用、用户和天汇总用量
+     *
+     * @param query   查询条件
+     * @param orderBy 排序列，只能是调用方校验过的列名
+     * @param asc     是否升序
+     * @param offset  偏移量
+     * @param limit   条数
+     * @return 汇总结果
+     */
+    List<AiUsageStatsVO> selectDailyStats(@Param("query") AiUsageQueryRequest query,
+                                          @Param("orderBy") String orderBy,
+                                          @Param("asc") boolean asc,
+                                          @Param("offset") long offset,
+                                          @Param("limit") long limit);
+}
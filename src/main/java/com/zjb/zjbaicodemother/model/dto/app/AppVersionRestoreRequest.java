@@ -0,0 +1,26 @@
+package com.zjb.zjbaicodemother.model.dto.app;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 恢复应用代码历史版本请求
+ *
+ * @author zjb
+ */
+@Data
+public class AppVersionRestoreRequest implements Serializable {
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 要恢复的版本号
+     */
+    private String versionId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,46 @@
+package com.zjb.zjbaicodemother.model.dto.usage;
+
+import com.zjb.zjbaicodemother.common.PageRequest;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 模型用量统计查询请求
+ * 结果按应用、用户和天汇总，排序字段可选 inputTokens、outputTokens、totalTokens、maxInputTokens、generations、day
+ *
+ * @author zjb
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class AiUsageQueryRequest extends PageRequest implements Serializable {
+
+    /**
+     * 应用id
+     */
+    private Long appId;
+
+    /**
+     * 用户id
+     */
+    private Long userId;
+
+    /**
+     * 代码生成类型
+     */
+    private String codeGenType;
+
+    /**
+     * 开始日期（包含）
+     */
+    private LocalDate startDate;
+
+    /**
+     * 结束日期（包含）
+     */
+    private LocalDate endDate;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,105 @@
+package com.zjb.zjbaicodemother.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import java.io.Serial;
+
+import com.mybatisflex.core.keygen.KeyGenerators;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 模型用量 实体类。
+ * 每次代码生成一条记录，工具调用的多轮请求合并计算
+ *
+ * @author zjb
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("ai_usage")
+public class AiUsage implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id
+     */
+    @Id(keyType = KeyType.Generator, value = KeyGenerators.snowFlakeId)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 发起生成的用户id
+     */
+    @Column("userId")
+    private Long userId;
+
+    /**
+     * 代码生成类型
+     */
+    @Column("codeGenType")
+    private String codeGenType;
+
+    /**
+     * 模型名称
+     */
+    @Column("modelName")
+    private String modelName;
+
+    /**
+     * success/error/cancelled/cache_hit
+     */
+    private String status;
+
+    /**
+     * 输入 token 数
+     */
+    @Column("inputTokens")
+    private Integer inputTokens;
+
+    /**
+     * 输出 token 数
+     */
+    @Column("outputTokens")
+    private Integer outputTokens;
+
+    /**
+     * 总 token 数
+     */
+    @Column("totalTokens")
+    private Integer totalTokens;
+
+    /**
+     * 工具调用轮次
+     */
+    @Column("toolRounds")
+    private Integer toolRounds;
+
+    /**
+     * 生成耗时（毫秒）
+     */
+    @Column("latencyMs")
+    private Long latencyMs;
+
+    /**
+     * 创建时间，取生成结束的时间而不是异步写入的时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+}
@@ -0,0 +1,43 @@
+package com.zjb.zjbaicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+/**
+ * 模型用量记录的生成结果枚举
+ * @author zjb
+ */
+@Getter
+public enum AiUsageStatusEnum {
+
+    SUCCESS("成功", "success"),
+    ERROR("失败", "error"),
+    CANCELLED("已取消", "cancelled"),
+    CACHE_HIT("命中生成缓存", "cache_hit");
+
+    private final String text;
+
+    private final String value;
+
+    AiUsageStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static AiUsageStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (AiUsageStatusEnum anEnum : AiUsageStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.zjb.zjbaicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 两个代码版本之间文件的变化类型枚举
+ *
+ * @author zjb
+ */
+@Getter
+public enum FileChangeTypeEnum {
+
+    ADDED("新增", "added"),
+    MODIFIED("修改", "modified"),
+    DELETED("删除", "deleted");
+
+    private final String text;
+
+    private final String value;
+
+    FileChangeTypeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static FileChangeTypeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (FileChangeTypeEnum anEnum : FileChangeTypeEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.zjb.zjbaicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 流式桥接缓冲区溢出策略枚举
+ *
+ * @author zjb
+ */
+@Getter
+public enum StreamOverflowPolicyEnum {
+
+    BLOCK("阻塞生产者直到消费者追上", "block"),
+    ERROR("直接终止流", "error");
+
+    private final String text;
+
+    private final String value;
+
+    StreamOverflowPolicyEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static StreamOverflowPolicyEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (StreamOverflowPolicyEnum anEnum : StreamOverflowPolicyEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
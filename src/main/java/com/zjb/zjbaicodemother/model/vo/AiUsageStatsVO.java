@@ -0,0 +1,77 @@
+package com.zjb.zjbaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按应用、用户和天汇总的模型用量
+ *
+ * @author zjb
+ */
+@Data
+public class AiUsageStatsVO implements Serializable {
+
+    /**
+     * 应用id
+     */
+    private Long appId;
+
+    /**
+     * 用户id
+     */
+    private Long userId;
+
+    /**
+     * 日期
+     */
+    private LocalDate day;
+
+    /**
+     * 生成次数
+     */
+    private Long generations;
+
+    /**
+     * 命中生成缓存的次数
+     */
+    private Long cacheHits;
+
+    /**
+     * 失败次数
+     */
+    private Long errors;
+
+    /**
+     * 输入 token 数
+     */
+    private Long inputTokens;
+
+    /**
+     * 输出 token 数
+     */
+    private Long outputTokens;
+
+    /**
+     * 总 token 数
+     */
+    private Long totalTokens;
+
+    /**
+     * 单次生成的最大输入 token 数，用于发现上下文过长的应用
+     */
+    private Integer maxInputTokens;
+
+    /**
+     * 工具调用轮次
+     */
+    private Long toolRounds;
+
+    /**
+     * 平均耗时（毫秒）
+     */
+    private Double avgLatencyMs;
+
+    private static final long serialVersionUID = 1L;
+}
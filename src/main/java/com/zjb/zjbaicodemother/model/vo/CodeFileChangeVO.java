@@ -0,0 +1,36 @@
+package com.zjb.zjbaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 两个代码版本之间一个文件的变化
+ *
+ * @author zjb
+ */
+@Data
+public class CodeFileChangeVO implements Serializable {
+
+    /**
+     * 文件相对路径
+     */
+    private String path;
+
+    /**
+     * 变化类型：added / modified / deleted
+     */
+    private String changeType;
+
+    /**
+     * 变化前的大小（字节），新增时为空
+     */
+    private Long oldSize;
+
+    /**
+     * 变化后的大小（字节），删除时为空
+     */
+    private Long newSize;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,42 @@
+package com.zjb.zjbaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 应用代码的一个历史版本
+ *
+ * @author zjb
+ */
+@Data
+public class CodeVersionVO implements Serializable {
+
+    /**
+     * 版本号
+     */
+    private String versionId;
+
+    /**
+     * 发布时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 文件数
+     */
+    private Integer fileCount;
+
+    /**
+     * 文件总大小（字节）
+     */
+    private Long totalSize;
+
+    /**
+     * 是否为当前版本
+     */
+    private Boolean current;
+
+    private static final long serialVersionUID = 1L;
+}
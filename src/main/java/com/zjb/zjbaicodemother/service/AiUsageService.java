@@ -0,0 +1,24 @@
+package com.zjb.zjbaicodemother.service;
+
+import com.mybatisflex.core.service.IService;
+import com.zjb.zjbaicodemother.model.dto.usage.AiUsageQueryRequest;
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import com.zjb.zjbaicodemother.model.vo.AiUsageStatsVO;
+
+import java.util.List;
+
+/**
+ * 模型用量 服务层。
+ *
+ * @author zjb
+ */
+public interface AiUsageService extends IService<AiUsage> {
+
+    /**
+     * 按应用、用户和天汇总用量
+     *
+     * @param aiUsageQueryRequest 查询条件
+     * @return 汇总结果
+     */
+    List<AiUsageStatsVO> listDailyStats(AiUsageQueryRequest aiUsageQueryRequest);
+}
@@ -11,6 +11,8 @@ import com.zjb.zjbaicodemother.model.dto.app.AppUpdateRequest;
 import com.zjb.zjbaicodemother.model.entity.App;
 import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.vo.AppVO;
+import com.zjb.zjbaicodemother.model.vo.CodeFileChangeVO;
+import com.zjb.zjbaicodemother.model.vo.CodeVersionVO;
 import jakarta.servlet.http.HttpServletRequest;
 import reactor.core.publisher.Flux;
 
@@ -42,6 +44,37 @@ public interface AppService extends IService<App> {
      */
     String deployApp(Long appId, User loginUser);
 
+    /**
+     * 列出应用代码的历史版本
+     *
+     * @param appId     应用 id
+     * @param loginUser 登录用户
+     * @return 版本列表，按发布时间从新到旧排列
+     */
+    List<CodeVersionVO> listCodeVersions(Long appId, User loginUser);
+
+    /**
+     * 比较应用代码的两个版本
+     *
+     * @param appId         应用 id
+     * @param fromVersionId 旧版本号
+     * @param toVersionId   新版本号
+     * @param loginUser     登录用户
+     * @return 变化的文件列表
+     */
+    List<CodeFileChangeVO> diffCodeVersions(Long appId, String fromVersionId, String toVersionId, User loginUser);
+
+    /**
+     * 恢复应用代码到历史版本，恢复的内容作为新版本发布，之后可以照常部署
+     * Vue 项目在暂存目录中重新构建后才发布，返回时可能仍在构建
+     *
+     * @param appId     应用 id
+     * @param versionId 要恢复的版本号
+     * @param loginUser 登录用户
+     * @return 新版本的版本号
+     */
+    String restoreCodeVersion(Long appId, String versionId, User loginUser);
+
     /**
      * 异步生成应用截图并更新封面
      *
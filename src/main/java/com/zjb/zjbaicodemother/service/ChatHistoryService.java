@@ -6,9 +6,10 @@ import com.mybatisflex.core.service.IService;
 import com.zjb.zjbaicodemother.model.dto.ChatHistoryQueryRequest;
 import com.zjb.zjbaicodemother.model.entity.ChatHistory;
 import com.zjb.zjbaicodemother.model.entity.User;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 对话历史 服务层。
@@ -55,12 +56,19 @@ public interface ChatHistoryService extends IService<ChatHistory> {
     Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize, LocalDateTime lastCreateTime, User loginUser);
 
     /**
-     * 加载指定应用的对话历史
+     * 加载指定应用最近的对话历史，用于恢复对话记忆
      *
      * @param appId 应用 ID
-     * @param chatMessage 对话记忆
-     * @param maxCount 最对加载maxCount条对话历史
-     * @return loadedCount 加载的条数
+     * @param maxCount 最多加载maxCount条对话历史，不包含最新的一条用户消息
+     * @return 按时间顺序排列的消息，加载失败时为空列表
      */
-    int loadChatHistoryToMessage(Long appId, MessageWindowChatMemory chatMessage, int maxCount);
+    List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount);
+
+    /**
+     * 指定应用是否已有对话历史
+     *
+     * @param appId 应用 ID
+     * @return 是否存在对话历史
+     */
+    boolean hasChatHistory(Long appId);
 }
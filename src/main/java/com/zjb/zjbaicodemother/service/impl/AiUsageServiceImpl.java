@@ -0,0 +1,46 @@
+package com.zjb.zjbaicodemother.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.exception.ThrowUtils;
+import com.zjb.zjbaicodemother.mapper.AiUsageMapper;
+import com.zjb.zjbaicodemother.model.dto.usage.AiUsageQueryRequest;
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import com.zjb.zjbaicodemother.model.vo.AiUsageStatsVO;
+import com.zjb.zjbaicodemother.service.AiUsageService;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 模型用量 服务层实现。
+ *
+ * @author zjb
+ */
+@Service
+public class AiUsageServiceImpl extends ServiceImpl<AiUsageMapper, AiUsage> implements AiUsageService {
+
+    /**
+     * 允许排序的汇总列，直接拼接到 SQL 中，必须是白名单
+     */
+    private static final Set<String> SORT_FIELDS = Set.of(
+            "inputTokens", "outputTokens", "totalTokens", "maxInputTokens", "generations", "day");
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Override
+    public List<AiUsageStatsVO> listDailyStats(AiUsageQueryRequest aiUsageQueryRequest) {
+        ThrowUtils.throwIf(aiUsageQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        String sortField = StrUtil.blankToDefault(aiUsageQueryRequest.getSortField(), "totalTokens");
+        ThrowUtils.throwIf(!SORT_FIELDS.contains(sortField), ErrorCode.PARAMS_ERROR, "不支持的排序字段");
+        int pageNum = aiUsageQueryRequest.getPageNum();
+        int pageSize = aiUsageQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageNum <= 0 || pageSize <= 0 || pageSize > MAX_PAGE_SIZE, ErrorCode.PARAMS_ERROR, "分页参数错误");
+        ThrowUtils.throwIf(aiUsageQueryRequest.getStartDate() != null && aiUsageQueryRequest.getEndDate() != null
+                && aiUsageQueryRequest.getStartDate().isAfter(aiUsageQueryRequest.getEndDate()), ErrorCode.PARAMS_ERROR, "日期范围错误");
+        boolean asc = "ascend".equals(aiUsageQueryRequest.getSortOrder());
+        return mapper.selectDailyStats(aiUsageQueryRequest, sortField, asc, (long) (pageNum - 1) * pageSize, pageSize);
+    }
+}
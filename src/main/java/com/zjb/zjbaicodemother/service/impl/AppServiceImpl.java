@@ -2,17 +2,22 @@ package com.zjb.zjbaicodemother.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
 import com.zjb.zjbaicodemother.common.DeleteRequest;
 import com.zjb.zjbaicodemother.constant.AppConstant;
 import com.zjb.zjbaicodemother.constant.UserConstant;
 import com.zjb.zjbaicodemother.core.AiCodeGeneratorFacade;
 import com.zjb.zjbaicodemother.core.buider.VueProjectBuider;
+import com.zjb.zjbaicodemother.core.output.CodeOutputManager;
+import com.zjb.zjbaicodemother.core.output.ContentStore;
+import com.zjb.zjbaicodemother.core.output.FileChange;
+import com.zjb.zjbaicodemother.core.output.VersionManifest;
+import com.zjb.zjbaicodemother.core.cache.GenerationCache;
 import com.zjb.zjbaicodemother.core.handler.StreamHandlerExecutor;
 import com.zjb.zjbaicodemother.exception.BusinessException;
 import com.zjb.zjbaicodemother.exception.ErrorCode;
@@ -27,6 +32,8 @@ import com.zjb.zjbaicodemother.model.entity.User;
 import com.zjb.zjbaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 import com.zjb.zjbaicodemother.model.vo.AppVO;
+import com.zjb.zjbaicodemother.model.vo.CodeFileChangeVO;
+import com.zjb.zjbaicodemother.model.vo.CodeVersionVO;
 import com.zjb.zjbaicodemother.model.vo.UserVO;
 import com.zjb.zjbaicodemother.service.AppService;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
@@ -40,7 +47,10 @@ import reactor.core.publisher.Flux;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -67,7 +77,13 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
     @Resource
     private VueProjectBuider vueProjectBuider;
     @Resource
+    private ContentStore contentStore;
+    @Resource
+    private CodeOutputManager codeOutputManager;
+    @Resource
     private ScreenshotService screenshotService;
+    @Resource
+    private GenerationCache generationCache;
 
     /**
      * 聊天生成代码
@@ -90,10 +106,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         //4.调用 AI 生成代码
         CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
         ThrowUtils.throwIf(codeGenType == null, ErrorCode.SYSTEM_ERROR, "不支持的生成类型");
-        //5.添加用户信息到对话历史
+        //5.首次对话才能复用生成缓存，之后的生成依赖对话上下文
+        boolean useGenerationCache = generationCache.supports(codeGenType) && !chatHistoryService.hasChatHistory(appId);
+        //6.添加用户信息到对话历史
         chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        //6.调用AI生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenType, appId);
+        //7.调用AI生成代码（流式）
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenType, appId, loginUser.getId(), useGenerationCache);
         return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenType);
     }
 
@@ -141,11 +159,12 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
             sourceDir = disDir;
             log.info("Vue 项目构建成功，dist目录已生成：{}", disDir.getAbsolutePath());
         }
-        //8.复制文件到部署目录
+        //8.复制文件到部署目录，相同内容的文件硬链接到同一个存储文件
         String deployDirPath = AppConstant.CODE_DEPLOY_ROOT_DIR + "/" + deployKey;
         try {
-            FileUtil.copyContent(sourceDir, new File(deployDirPath), true);
+            contentStore.copyTree(sourceDir.toPath(), Path.of(deployDirPath));
         } catch (Exception e) {
+            log.error("复制文件到部署目录失败: {}", deployDirPath, e);
             ThrowUtils.throwIf(true, ErrorCode.SYSTEM_ERROR, "复制文件失败");
         }
         //9.更新应用的deployKey和部署时间
@@ -162,6 +181,95 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         return appDeployUrl;
     }
 
+    /**
+     * 列出应用代码的历史版本
+     *
+     * @param appId     应用 id
+     * @param loginUser 登录用户
+     * @return 版本列表，按发布时间从新到旧排列
+     */
+    @Override
+    public List<CodeVersionVO> listCodeVersions(Long appId, User loginUser) {
+        App app = getOwnApp(appId, loginUser);
+        List<VersionManifest> manifests = codeOutputManager.listVersions(getCodeGenType(app), appId);
+        List<CodeVersionVO> versionVOList = new ArrayList<>(manifests.size());
+        for (VersionManifest manifest : manifests) {
+            CodeVersionVO versionVO = new CodeVersionVO();
+            versionVO.setVersionId(manifest.getVersionId());
+            versionVO.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(manifest.getCreateTime()), ZoneId.systemDefault()));
+            versionVO.setFileCount(manifest.getFileCount());
+            versionVO.setTotalSize(manifest.getTotalSize());
+            // 最近发布的版本即当前版本
+            versionVO.setCurrent(versionVOList.isEmpty());
+            versionVOList.add(versionVO);
+        }
+        return versionVOList;
+    }
+
+    /**
+     * 比较应用代码的两个版本
+     *
+     * @param appId         应用 id
+     * @param fromVersionId 旧版本号
+     * @param toVersionId   新版本号
+     * @param loginUser     登录用户
+     * @return 变化的文件列表
+     */
+    @Override
+    public List<CodeFileChangeVO> diffCodeVersions(Long appId, String fromVersionId, String toVersionId, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.hasBlank(fromVersionId, toVersionId), ErrorCode.PARAMS_ERROR, "版本号不能为空");
+        App app = getOwnApp(appId, loginUser);
+        List<FileChange> changes = codeOutputManager.diffVersions(getCodeGenType(app), appId, fromVersionId, toVersionId);
+        return changes.stream().map(change -> {
+            CodeFileChangeVO changeVO = new CodeFileChangeVO();
+            changeVO.setPath(change.path());
+            changeVO.setChangeType(change.type().getValue());
+            changeVO.setOldSize(change.before() == null ? null : change.before().getSize());
+            changeVO.setNewSize(change.after() == null ? null : change.after().getSize());
+            return changeVO;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 恢复应用代码到历史版本
+     *
+     * @param appId     应用 id
+     * @param versionId 要恢复的版本号
+     * @param loginUser 登录用户
+     * @return 新版本的版本号
+     */
+    @Override
+    public String restoreCodeVersion(Long appId, String versionId, User loginUser) {
+        ThrowUtils.throwIf(StrUtil.isBlank(versionId), ErrorCode.PARAMS_ERROR, "版本号不能为空");
+        App app = getOwnApp(appId, loginUser);
+        CodeGenTypeEnum codeGenType = getCodeGenType(app);
+        //Vue项目在暂存目录中重新构建后再发布，预览使用 dist 目录
+        if (codeGenType == CodeGenTypeEnum.VUE_PROJECT) {
+            CodeOutputManager.Staging staging = codeOutputManager.prepareRestore(codeGenType, appId, versionId);
+            vueProjectBuider.buildAndPublishAsync(staging);
+            return staging.versionId();
+        }
+        return codeOutputManager.restore(codeGenType, appId, versionId);
+    }
+
+    /**
+     * 获取当前用户自己的应用
+     */
+    private App getOwnApp(Long appId, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用id错误");
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR, "用户未登录");
+        App app = getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!loginUser.getId().equals(app.getUserId()), ErrorCode.NO_AUTH_ERROR);
+        return app;
+    }
+
+    private static CodeGenTypeEnum getCodeGenType(App app) {
+        CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        ThrowUtils.throwIf(codeGenType == null, ErrorCode.SYSTEM_ERROR, "不支持的生成类型");
+        return codeGenType;
+    }
+
     /**
      * 异步生成应用截图并更新封面
      *
@@ -18,13 +18,14 @@ import com.zjb.zjbaicodemother.service.AppService;
 import com.zjb.zjbaicodemother.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.ChatMessage;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -111,15 +112,14 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
 
     /**
-     * 加载指定应用的对话历史到消息窗口
+     * 加载指定应用最近的对话历史
      *
      * @param appId       应用id
-     * @param chatMessage 消息窗口
      * @param maxCount    最大数量
-     * @return 加载数量
+     * @return 按时间顺序排列的消息
      */
     @Override
-    public int loadChatHistoryToMessage(Long appId, MessageWindowChatMemory chatMessage, int maxCount) {
+    public List<ChatMessage> loadChatHistoryMessages(Long appId, int maxCount) {
         try {
             //直接构造查询条件，起始点为1而不是0，用于排除最新的用户消息
             QueryWrapper queryWrapper = QueryWrapper.create()
@@ -128,31 +128,39 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                     .limit(1, maxCount);
             List<ChatHistory> list = list(queryWrapper);
             if(CollUtil.isEmpty(list)){
-                return 0;
+                return new ArrayList<>();
             }
             //反转列表，确保最新的消息在最后面
             list = CollUtil.reverse(list);
-            //按时间顺序添加到消息窗口
-            int loadedCount = 0;
-            //先清理历史缓存，防止缓存数据重复
-            chatMessage.clear();
+            //按时间顺序转换为对话消息，由调用方一次写入对话记忆
+            List<ChatMessage> messages = new ArrayList<>(list.size());
             for (ChatHistory chatHistory : list) {
                 if(chatHistory.getMessageType().equals(ChatHistoryMessageTypeEnum.USER.getValue())){
-                    chatMessage.add(UserMessage.from(chatHistory.getMessage()));
-                    loadedCount++;
+                    messages.add(UserMessage.from(chatHistory.getMessage()));
                 } else if(chatHistory.getMessageType().equals(ChatHistoryMessageTypeEnum.AI.getValue())){
-                    chatMessage.add(AiMessage.from(chatHistory.getMessage()));
-                    loadedCount++;
+                    messages.add(AiMessage.from(chatHistory.getMessage()));
                 }
             }
-            return loadedCount;
+            return messages;
         } catch (Exception e) {
             log.error("加载对话历史失败, appId: {}, error: {}", appId, e.getMessage(), e);
             //加载失败不影响系统运行，只是没有历史上下文
-            return 0;
+            return new ArrayList<>();
         }
     }
 
+    /**
+     * 指定应用是否已有对话历史
+     *
+     * @param appId 应用id
+     * @return 是否存在对话历史
+     */
+    @Override
+    public boolean hasChatHistory(Long appId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用id错误");
+        return exists(QueryWrapper.create().eq(ChatHistory::getAppId, appId));
+    }
+
     /**
      * 获取查询包装类
      *
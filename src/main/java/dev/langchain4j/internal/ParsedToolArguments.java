@@ -0,0 +1,69 @@
+package dev.langchain4j.internal;
+
+import dev.langchain4j.Internal;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tool-call arguments that have already been parsed while they were streamed.
+ * <p>
+ * The parsed object is bound to the current thread only while the tool call it belongs to is resolved or
+ * executed, and only for the identity of the arguments string stored in that {@code ToolExecutionRequest}.
+ * Nothing is cached beyond the call, so the parsed copy of large arguments (such as whole file contents)
+ * is released together with the call. Lookups outside of the call parse the arguments again.
+ */
+@Internal
+public final class ParsedToolArguments {
+
+    private static final ThreadLocal<Bound> CURRENT = new ThreadLocal<>();
+
+    private ParsedToolArguments() {
+    }
+
+    /**
+     * Runs an action with the parsed arguments of a tool call bound to the current thread.
+     *
+     * @param arguments the arguments string of the tool call
+     * @param parsed    the arguments parsed while streaming, may be {@code null}
+     * @param action    the action that resolves or executes the tool call
+     * @return the result of the action
+     */
+    public static <T> T callWith(String arguments, Map<String, Object> parsed, Supplier<T> action) {
+        if (arguments == null || parsed == null) {
+            return action.get();
+        }
+        Bound previous = CURRENT.get();
+        CURRENT.set(new Bound(arguments, parsed));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the arguments parsed while streaming, or {@code null} if this arguments string is not the one of
+     * the tool call that is currently resolved or executed
+     */
+    public static Map<String, Object> get(String arguments) {
+        Bound bound = CURRENT.get();
+        return bound != null && bound.arguments == arguments ? bound.parsed : null;
+    }
+
+    /**
+     * @return the arguments parsed while streaming, otherwise the result of parsing them now
+     * ({@code null} if they are not a valid JSON object)
+     */
+    public static Map<String, Object> parse(String arguments) {
+        Map<String, Object> parsed = get(arguments);
+        return parsed != null ? parsed : StreamingJsonParser.parse(arguments);
+    }
+
+    private record Bound(String arguments, Map<String, Object> parsed) {
+    }
+}
@@ -0,0 +1,431 @@
+package dev.langchain4j.internal;
+
+import dev.langchain4j.Internal;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental JSON parser for tool-call arguments.
+ * <p>
+ * Fragments are consumed as they arrive from the model, so the arguments never have to be accumulated
+ * and parsed a second time. String fields of the top-level object are reported to a {@link FieldListener}
+ * while they are decoded, and the parsed object is available from {@link #result()} as soon as the closing
+ * brace has been consumed. Values are built the same way Jackson builds untyped values:
+ * {@link LinkedHashMap}, {@link ArrayList}, {@link String}, {@link Integer}/{@link Long}/{@link BigInteger},
+ * {@link Double}, {@link Boolean} and {@code null}.
+ * <p>
+ * Trailing commas before a closing bracket are tolerated, as they are by the fallback parsing of tool arguments.
+ * <p>
+ * Not thread safe: fragments of one tool call are expected to be delivered sequentially.
+ */
+@Internal
+public class StreamingJsonParser {
+
+    /**
+     * Receives the string fields of the top-level object while they are being decoded.
+     */
+    public interface FieldListener {
+
+        default void onStringFieldStart(String name) {
+        }
+
+        /**
+         * @param chunk decoded characters of the field received since the last call; only valid during the call
+         */
+        default void onStringFieldChunk(String name, CharSequence chunk) {
+        }
+
+        default void onStringFieldEnd(String name) {
+        }
+    }
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+
+    private enum State {
+        START, KEY_OR_END, KEY, COLON, VALUE, STRING, NUMBER, LITERAL, AFTER_VALUE, END, FAILED
+    }
+
+    private final FieldListener listener;
+    private final boolean buildResult;
+
+    /**
+     * Reused for keys, numbers, literals and (when building the result) string values.
+     */
+    private final StringBuilder text = new StringBuilder();
+    /**
+     * Decoded characters of the streamed field that have not been reported yet.
+     */
+    private final StringBuilder chunk = new StringBuilder();
+
+    private byte[] kinds = new byte[8];
+    private String[] keys = new String[8];
+    private Object[] containers;
+    private int depth;
+
+    private State state = State.START;
+    private boolean escaping;
+    private int unicodeDigits = -1;
+    private int unicodeValue;
+    private boolean streamingField;
+
+    private Map<String, Object> result;
+
+    /**
+     * @param listener    receives top-level string fields while they are decoded, may be {@code null}
+     * @param buildResult whether to build the parsed object; when {@code false} only the listener is fed
+     *                    and values are not retained
+     */
+    public StreamingJsonParser(FieldListener listener, boolean buildResult) {
+        this.listener = listener;
+        this.buildResult = buildResult;
+        this.containers = buildResult ? new Object[8] : null;
+    }
+
+    /**
+     * Parses complete arguments in one go.
+     *
+     * @return the parsed object, or {@code null} if the arguments are not a complete JSON object
+     */
+    public static Map<String, Object> parse(CharSequence json) {
+        StreamingJsonParser parser = new StreamingJsonParser(null, true);
+        parser.accept(json);
+        return parser.result();
+    }
+
+    public void accept(CharSequence fragment) {
+        if (fragment == null || state == State.FAILED) {
+            return;
+        }
+        int length = fragment.length();
+        int i = 0;
+        while (i < length && state != State.FAILED) {
+            if (state == State.STRING && !escaping && unicodeDigits < 0) {
+                // Fast path: copy a run of plain characters in one go
+                int end = i;
+                char c;
+                while (end < length && (c = fragment.charAt(end)) != '"' && c != '\\') {
+                    end++;
+                }
+                if (end > i) {
+                    if (streamingField) {
+                        chunk.append(fragment, i, end);
+                    }
+                    if (buildResult) {
+                        text.append(fragment, i, end);
+                    }
+                    i = end;
+                    continue;
+                }
+            }
+            consume(fragment.charAt(i++));
+        }
+        flushChunk();
+    }
+
+    /**
+     * @return whether the top-level object has been closed
+     */
+    public boolean isComplete() {
+        return state == State.END;
+    }
+
+    /**
+     * @return whether the input is not valid JSON
+     */
+    public boolean isFailed() {
+        return state == State.FAILED;
+    }
+
+    /**
+     * @return the parsed object, or {@code null} if it is not complete yet, the input is invalid,
+     * or the parser does not build results
+     */
+    public Map<String, Object> result() {
+        return state == State.END ? result : null;
+    }
+
+    private void consume(char c) {
+        switch (state) {
+            case START -> {
+                if (c == '{') {
+                    push(OBJECT);
+                    state = State.KEY_OR_END;
+                } else if (!isWhitespace(c)) {
+                    fail();
+                }
+            }
+            case KEY_OR_END -> {
+                if (c == '"') {
+                    text.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    close(OBJECT);
+                } else if (!isWhitespace(c)) {
+                    fail();
+                }
+            }
+            case KEY -> {
+                if (c == '"' && !escaping && unicodeDigits < 0) {
+                    keys[depth - 1] = text.toString();
+                    state = State.COLON;
+                } else {
+                    decode(c, text, null);
+                }
+            }
+            case COLON -> {
+                if (c == ':') {
+                    state = State.VALUE;
+                } else if (!isWhitespace(c)) {
+                    fail();
+                }
+            }
+            case VALUE -> startValue(c);
+            case STRING -> {
+                if (c == '"' && !escaping && unicodeDigits < 0) {
+                    endString();
+                } else if (streamingField) {
+                    decode(c, chunk, buildResult ? text : null);
+                } else {
+                    decode(c, buildResult ? text : null, null);
+                }
+            }
+            case NUMBER -> {
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    text.append(c);
+                } else {
+                    completeValue(buildResult ? parseNumber() : null);
+                    if (state != State.FAILED) {
+                        consume(c);
+                    }
+                }
+            }
+            case LITERAL -> {
+                if (c >= 'a' && c <= 'z') {
+                    text.append(c);
+                } else {
+                    completeLiteral();
+                    if (state != State.FAILED) {
+                        consume(c);
+                    }
+                }
+            }
+            case AFTER_VALUE -> {
+                if (c == ',') {
+                    state = kinds[depth - 1] == OBJECT ? State.KEY_OR_END : State.VALUE;
+                } else if (c == '}') {
+                    close(OBJECT);
+                } else if (c == ']') {
+                    close(ARRAY);
+                } else if (!isWhitespace(c)) {
+                    fail();
+                }
+            }
+            case END -> {
+                if (!isWhitespace(c)) {
+                    fail();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void startValue(char c) {
+        if (c == '"') {
+            text.setLength(0);
+            streamingField = listener != null && depth == 1;
+            if (streamingField) {
+                listener.onStringFieldStart(keys[0]);
+            }
+            state = State.STRING;
+        } else if (c == '{') {
+            push(OBJECT);
+            state = State.KEY_OR_END;
+        } else if (c == '[') {
+            push(ARRAY);
+            state = State.VALUE;
+        } else if (c == ']' && kinds[depth - 1] == ARRAY) {
+            // Empty array or trailing comma
+            close(ARRAY);
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            text.setLength(0);
+            text.append(c);
+            state = State.NUMBER;
+        } else if (c >= 'a' && c <= 'z') {
+            text.setLength(0);
+            text.append(c);
+            state = State.LITERAL;
+        } else if (!isWhitespace(c)) {
+            fail();
+        }
+    }
+
+    /**
+     * Decodes one character of a string body into up to two targets.
+     */
+    private void decode(char c, StringBuilder target, StringBuilder secondTarget) {
+        char decoded;
+        if (unicodeDigits >= 0) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                fail();
+                return;
+            }
+            unicodeValue = (unicodeValue << 4) | digit;
+            if (++unicodeDigits < 4) {
+                return;
+            }
+            unicodeDigits = -1;
+            decoded = (char) unicodeValue;
+        } else if (escaping) {
+            escaping = false;
+            switch (c) {
+                case 'n' -> decoded = '\n';
+                case 't' -> decoded = '\t';
+                case 'r' -> decoded = '\r';
+                case 'b' -> decoded = '\b';
+                case 'f' -> decoded = '\f';
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                    return;
+                }
+                default -> decoded = c;
+            }
+        } else if (c == '\\') {
+            escaping = true;
+            return;
+        } else {
+            decoded = c;
+        }
+        if (target != null) {
+            target.append(decoded);
+        }
+        if (secondTarget != null) {
+            secondTarget.append(decoded);
+        }
+    }
+
+    private void endString() {
+        if (streamingField) {
+            flushChunk();
+            listener.onStringFieldEnd(keys[0]);
+            streamingField = false;
+        }
+        completeValue(buildResult ? text.toString() : null);
+    }
+
+    private void completeLiteral() {
+        Object value;
+        if (contentEquals("true")) {
+            value = Boolean.TRUE;
+        } else if (contentEquals("false")) {
+            value = Boolean.FALSE;
+        } else if (contentEquals("null")) {
+            value = null;
+        } else {
+            fail();
+            return;
+        }
+        completeValue(value);
+    }
+
+    private boolean contentEquals(String literal) {
+        return text.length() == literal.length() && literal.contentEquals(text);
+    }
+
+    private Object parseNumber() {
+        String number = text.toString();
+        try {
+            if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+                return Double.parseDouble(number);
+            }
+            long value;
+            try {
+                value = Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                return new BigInteger(number);
+            }
+            if (value == (int) value) {
+                return (int) value;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            fail();
+            return null;
+        }
+    }
+
+    private void push(byte kind) {
+        if (depth == kinds.length) {
+            kinds = Arrays.copyOf(kinds, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+            if (buildResult) {
+                containers = Arrays.copyOf(containers, depth * 2);
+            }
+        }
+        kinds[depth] = kind;
+        if (buildResult) {
+            containers[depth] = kind == OBJECT ? new LinkedHashMap<String, Object>() : new ArrayList<>();
+        }
+        depth++;
+    }
+
+    private void close(byte kind) {
+        if (kinds[depth - 1] != kind) {
+            fail();
+            return;
+        }
+        depth--;
+        keys[depth] = null;
+        Object container = null;
+        if (buildResult) {
+            container = containers[depth];
+            containers[depth] = null;
+        }
+        completeValue(container);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeValue(Object value) {
+        if (state == State.FAILED) {
+            return;
+        }
+        if (depth == 0) {
+            result = (Map<String, Object>) value;
+            state = State.END;
+            return;
+        }
+        if (buildResult) {
+            Object parent = containers[depth - 1];
+            if (kinds[depth - 1] == OBJECT) {
+                ((Map<String, Object>) parent).put(keys[depth - 1], value);
+            } else {
+                ((List<Object>) parent).add(value);
+            }
+        }
+        state = State.AFTER_VALUE;
+    }
+
+    private void flushChunk() {
+        if (streamingField && !chunk.isEmpty()) {
+            listener.onStringFieldChunk(keys[0], chunk);
+            chunk.setLength(0);
+        }
+    }
+
+    private void fail() {
+        state = State.FAILED;
+        result = null;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
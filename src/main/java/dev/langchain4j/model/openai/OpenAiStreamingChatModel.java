@@ -21,6 +21,7 @@ import dev.langchain4j.model.openai.spi.OpenAiStreamingChatModelBuilderFactory;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static dev.langchain4j.internal.InternalStreamingChatResponseHandlerUtils.withLoggingExceptions;
 import static dev.langchain4j.internal.Utils.*;
@@ -121,6 +122,9 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
 
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
+        // A stream that has already completed (e.g. cancelled from within a completion callback)
+        // must not report the transport error that follows
+        AtomicBoolean completed = new AtomicBoolean();
 
         client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
@@ -128,6 +132,7 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     handle(partialResponse, toolBuilder, handler);
                 })
                 .onComplete(() -> {
+                    completed.set(true);
                     if (toolBuilder.hasToolExecutionRequests()) {
                         try {
                             handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
@@ -143,6 +148,9 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     }
                 })
                 .onError(throwable -> {
+                    if (completed.get()) {
+                        return;
+                    }
                     RuntimeException mappedException = ExceptionMapper.DEFAULT.mapException(throwable);
                     withLoggingExceptions(() -> handler.onError(mappedException));
                 })
@@ -12,9 +12,7 @@ import dev.langchain4j.model.output.FinishReason;
 import dev.langchain4j.model.output.TokenUsage;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.TreeMap;
 
 import static dev.langchain4j.internal.Utils.isNullOrBlank;
 import static dev.langchain4j.internal.Utils.isNullOrEmpty;
@@ -24,27 +22,37 @@ import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
 /**
- * This class needs to be thread safe because it is called when a streaming result comes back
- * and there is no guarantee that this thread will be the same as the one that initiated the request,
- * in fact it almost certainly won't be.
+ * Accumulates the chunks of one streaming response.
+ * <p>
+ * Each stream has exactly one writer: the HTTP client delivers the chunks of a response sequentially,
+ * and {@link #build()} is called from the completion callback of the same stream, after the last chunk.
+ * The builder is therefore not synchronized; it must not be shared between streams.
  */
 @Internal
 public class OpenAiStreamingResponseBuilder {
 
-    private final StringBuffer contentBuilder = new StringBuffer();
-
-    private final StringBuffer toolNameBuilder = new StringBuffer();
-    private final StringBuffer toolArgumentsBuilder = new StringBuffer();
-
-    private final Map<Integer, ToolExecutionRequestBuilder> indexToToolExecutionRequestBuilder = new ConcurrentHashMap<>();
-
-    private final AtomicReference<String> id = new AtomicReference<>();
-    private final AtomicReference<Long> created = new AtomicReference<>();
-    private final AtomicReference<String> model = new AtomicReference<>();
-    private final AtomicReference<String> serviceTier = new AtomicReference<>();
-    private final AtomicReference<String> systemFingerprint = new AtomicReference<>();
-    private final AtomicReference<TokenUsage> tokenUsage = new AtomicReference<>();
-    private final AtomicReference<FinishReason> finishReason = new AtomicReference<>();
+    private final StringBuilder contentBuilder = new StringBuilder();
+
+    private StringBuilder toolNameBuilder;
+    private StringBuilder toolArgumentsBuilder;
+
+    /**
+     * Tool calls ordered by their index, as they appear in the response.
+     */
+    private final TreeMap<Integer, ToolExecutionRequestBuilder> indexToToolExecutionRequestBuilder = new TreeMap<>();
+    /**
+     * Tool-call deltas arrive in runs for the same index, so the last builder is looked up directly.
+     */
+    private int lastToolCallIndex = -1;
+    private ToolExecutionRequestBuilder lastToolExecutionRequestBuilder;
+
+    private String id;
+    private Long created;
+    private String model;
+    private String serviceTier;
+    private String systemFingerprint;
+    private TokenUsage tokenUsage;
+    private FinishReason finishReason;
 
     public void append(ChatCompletionResponse partialResponse) {
         if (partialResponse == null) {
@@ -52,24 +60,24 @@ public class OpenAiStreamingResponseBuilder {
         }
 
         if (!isNullOrBlank(partialResponse.id())) {
-            this.id.set(partialResponse.id());
+            this.id = partialResponse.id();
         }
         if (partialResponse.created() != null) {
-            this.created.set(partialResponse.created());
+            this.created = partialResponse.created();
         }
         if (!isNullOrBlank(partialResponse.model())) {
-            this.model.set(partialResponse.model());
+            this.model = partialResponse.model();
         }
         if (!isNullOrBlank(partialResponse.serviceTier())) {
-            this.serviceTier.set(partialResponse.serviceTier());
+            this.serviceTier = partialResponse.serviceTier();
         }
         if (!isNullOrBlank(partialResponse.systemFingerprint())) {
-            this.systemFingerprint.set(partialResponse.systemFingerprint());
+            this.systemFingerprint = partialResponse.systemFingerprint();
         }
 
         Usage usage = partialResponse.usage();
         if (usage != null) {
-            this.tokenUsage.set(tokenUsageFrom(usage));
+            this.tokenUsage = tokenUsageFrom(usage);
         }
 
         List<ChatCompletionChoice> choices = partialResponse.choices();
@@ -84,7 +92,7 @@ public class OpenAiStreamingResponseBuilder {
 
         String finishReason = chatCompletionChoice.finishReason();
         if (finishReason != null) {
-            this.finishReason.set(finishReasonFrom(finishReason));
+            this.finishReason = finishReasonFrom(finishReason);
         }
 
         Delta delta = chatCompletionChoice.delta();
@@ -101,23 +109,25 @@ public class OpenAiStreamingResponseBuilder {
             FunctionCall functionCall = delta.functionCall();
 
             if (functionCall.name() != null) {
+                if (toolNameBuilder == null) {
+                    toolNameBuilder = new StringBuilder();
+                }
                 this.toolNameBuilder.append(functionCall.name());
             }
 
             if (functionCall.arguments() != null) {
+                if (toolArgumentsBuilder == null) {
+                    toolArgumentsBuilder = new StringBuilder();
+                }
                 this.toolArgumentsBuilder.append(functionCall.arguments());
             }
         }
 
-        if (delta.toolCalls() != null) {
-            System.out.println("OLOLO " + delta.toolCalls()); // TODO
-
-            for (ToolCall toolCall : delta.toolCalls()) {
-
-                ToolExecutionRequestBuilder builder = this.indexToToolExecutionRequestBuilder.computeIfAbsent(
-                        toolCall.index(),
-                        idx -> new ToolExecutionRequestBuilder()
-                );
+        List<ToolCall> toolCalls = delta.toolCalls();
+        if (toolCalls != null) {
+            for (int i = 0; i < toolCalls.size(); i++) {
+                ToolCall toolCall = toolCalls.get(i);
+                ToolExecutionRequestBuilder builder = toolExecutionRequestBuilder(toolCall.index());
 
                 if (toolCall.id() != null) {
                     builder.idBuilder.append(toolCall.id());
@@ -135,6 +145,18 @@ public class OpenAiStreamingResponseBuilder {
         }
     }
 
+    private ToolExecutionRequestBuilder toolExecutionRequestBuilder(Integer index) {
+        int key = index == null ? 0 : index;
+        if (lastToolExecutionRequestBuilder == null || lastToolCallIndex != key) {
+            lastToolExecutionRequestBuilder = indexToToolExecutionRequestBuilder.computeIfAbsent(
+                    key,
+                    idx -> new ToolExecutionRequestBuilder()
+            );
+            lastToolCallIndex = key;
+        }
+        return lastToolExecutionRequestBuilder;
+    }
+
     public void append(CompletionResponse partialResponse) {
         if (partialResponse == null) {
             return;
@@ -142,7 +164,7 @@ public class OpenAiStreamingResponseBuilder {
 
         Usage usage = partialResponse.usage();
         if (usage != null) {
-            this.tokenUsage.set(tokenUsageFrom(usage));
+            this.tokenUsage = tokenUsageFrom(usage);
         }
 
         List<CompletionChoice> choices = partialResponse.choices();
@@ -157,7 +179,7 @@ public class OpenAiStreamingResponseBuilder {
 
         String finishReason = completionChoice.finishReason();
         if (finishReason != null) {
-            this.finishReason.set(finishReasonFrom(finishReason));
+            this.finishReason = finishReasonFrom(finishReason);
         }
 
         String token = completionChoice.text();
@@ -169,22 +191,21 @@ public class OpenAiStreamingResponseBuilder {
     public ChatResponse build() {
 
         OpenAiChatResponseMetadata chatResponseMetadata = OpenAiChatResponseMetadata.builder()
-                .id(id.get())
-                .modelName(model.get())
-                .tokenUsage(tokenUsage.get())
-                .finishReason(finishReason.get())
-                .created(created.get())
-                .serviceTier(serviceTier.get())
-                .systemFingerprint(systemFingerprint.get())
+                .id(id)
+                .modelName(model)
+                .tokenUsage(tokenUsage)
+                .finishReason(finishReason)
+                .created(created)
+                .serviceTier(serviceTier)
+                .systemFingerprint(systemFingerprint)
                 .build();
 
         String text = contentBuilder.toString();
 
-        String toolName = toolNameBuilder.toString();
-        if (!toolName.isEmpty()) {
+        if (toolNameBuilder != null && !toolNameBuilder.isEmpty()) {
             ToolExecutionRequest toolExecutionRequest = ToolExecutionRequest.builder()
-                    .name(toolName)
-                    .arguments(toolArgumentsBuilder.toString())
+                    .name(toolNameBuilder.toString())
+                    .arguments(toolArgumentsBuilder == null ? "" : toolArgumentsBuilder.toString())
                     .build();
 
             AiMessage aiMessage = isNullOrBlank(text) ?
@@ -199,11 +220,7 @@ public class OpenAiStreamingResponseBuilder {
 
         if (!indexToToolExecutionRequestBuilder.isEmpty()) {
             List<ToolExecutionRequest> toolExecutionRequests = indexToToolExecutionRequestBuilder.values().stream()
-                    .map(it -> ToolExecutionRequest.builder()
-                            .id(it.idBuilder.toString())
-                            .name(it.nameBuilder.toString())
-                            .arguments(it.argumentsBuilder.toString())
-                            .build())
+                    .map(ToolExecutionRequestBuilder::build)
                     .collect(toList());
 
             AiMessage aiMessage = isNullOrBlank(text) ?
@@ -229,8 +246,16 @@ public class OpenAiStreamingResponseBuilder {
 
     private static class ToolExecutionRequestBuilder {
 
-        private final StringBuffer idBuilder = new StringBuffer();
-        private final StringBuffer nameBuilder = new StringBuffer();
-        private final StringBuffer argumentsBuilder = new StringBuffer();
+        private final StringBuilder idBuilder = new StringBuilder();
+        private final StringBuilder nameBuilder = new StringBuilder();
+        private final StringBuilder argumentsBuilder = new StringBuilder();
+
+        private ToolExecutionRequest build() {
+            return ToolExecutionRequest.builder()
+                    .id(idBuilder.toString())
+                    .name(nameBuilder.toString())
+                    .arguments(argumentsBuilder.toString())
+                    .build();
+        }
     }
 }
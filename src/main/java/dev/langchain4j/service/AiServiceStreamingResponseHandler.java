@@ -9,6 +9,8 @@ import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.guardrail.ChatExecutor;
 import dev.langchain4j.guardrail.GuardrailRequestParams;
 import dev.langchain4j.guardrail.OutputGuardrailRequest;
+import dev.langchain4j.internal.ParsedToolArguments;
+import dev.langchain4j.internal.StreamingJsonParser;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -20,10 +22,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static dev.langchain4j.internal.Utils.copy;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
@@ -36,6 +47,13 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AiServiceStreamingResponseHandler.class);
 
+    private static final ExecutorService TOOL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ai-service-tool-", 0).factory());
+
+    private static final String CANCELLED_TOOL_RESULT = "Tool was not executed because the generation was cancelled";
+
+    private static final String FAILED_TOOL_RESULT = "Tool execution failed: ";
+
     private final ChatExecutor chatExecutor;
     private final AiServiceContext context;
     private final Object memoryId;
@@ -45,7 +63,9 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Consumer<String> partialResponseHandler;
     private final BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler;
     private final BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
+    private final Function<ToolExecutionRequest, ToolArgumentsListener> toolArgumentsListenerFactory;
     private final Consumer<ToolExecution> toolExecutionHandler;
+    private final Consumer<ChatResponse> intermediateResponseHandler;
     private final Consumer<ChatResponse> completeResponseHandler;
 
     private final Consumer<Throwable> errorHandler;
@@ -57,6 +77,14 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Map<String, ToolExecutor> toolExecutors;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final StreamCancellation cancellation;
+    private final Object toolExecutionContext;
+    private final StreamingToolExecutionSettings toolExecutionSettings;
+    /**
+     * Arguments of this round's tool calls that are parsed while they stream, by tool call id. An entry is removed
+     * when its tool executes, so the parsed copy does not outlive the call.
+     */
+    private final Map<String, StreamedArguments> streamedArguments = new ConcurrentHashMap<>();
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -65,7 +93,9 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             Consumer<String> partialResponseHandler,
             BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler,
             BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler,
+            Function<ToolExecutionRequest, ToolArgumentsListener> toolArgumentsListenerFactory,
             Consumer<ToolExecution> toolExecutionHandler,
+            Consumer<ChatResponse> intermediateResponseHandler,
             Consumer<ChatResponse> completeResponseHandler,
             Consumer<Throwable> errorHandler,
             ChatMemory temporaryMemory,
@@ -73,7 +103,10 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            StreamCancellation cancellation,
+            Object toolExecutionContext,
+            StreamingToolExecutionSettings toolExecutionSettings) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -82,6 +115,8 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.partialResponseHandler = ensureNotNull(partialResponseHandler, "partialResponseHandler");
         this.partialToolExecutionRequestHandler = partialToolExecutionRequestHandler;
         this.completeToolExecutionRequestHandler = completeToolExecutionRequestHandler;
+        this.toolArgumentsListenerFactory = toolArgumentsListenerFactory;
+        this.intermediateResponseHandler = intermediateResponseHandler;
         this.completeResponseHandler = completeResponseHandler;
         this.toolExecutionHandler = toolExecutionHandler;
         this.errorHandler = errorHandler;
@@ -93,6 +128,9 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.cancellation = ensureNotNull(cancellation, "cancellation");
+        this.toolExecutionContext = toolExecutionContext;
+        this.toolExecutionSettings = ensureNotNull(toolExecutionSettings, "toolExecutionSettings");
     }
 
     @Override
@@ -107,20 +145,50 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
-        // If we're using output guardrails, then buffer the partial response until the guardrails have completed
+        if (toolArgumentsListenerFactory != null && partialToolExecutionRequest.id() != null) {
+            streamedArguments.computeIfAbsent(partialToolExecutionRequest.id(),
+                            id -> new StreamedArguments(toolArgumentsListenerFactory.apply(partialToolExecutionRequest)))
+                    .accept(partialToolExecutionRequest.arguments());
+        }
         partialToolExecutionRequestHandler.accept(index, partialToolExecutionRequest);
     }
 
+    @Override
+    public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+        // Fired as soon as the arguments of one tool call are complete, before the whole response is
+        StreamedArguments arguments = completeToolExecutionRequest.id() == null
+                ? null : streamedArguments.get(completeToolExecutionRequest.id());
+        if (arguments != null) {
+            arguments.complete();
+        }
+        if (completeToolExecutionRequestHandler != null) {
+            completeToolExecutionRequestHandler.accept(index, completeToolExecutionRequest);
+        }
+    }
+
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
         AiMessage aiMessage = completeResponse.aiMessage();
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
+            if (intermediateResponseHandler != null) {
+                intermediateResponseHandler.accept(completeResponse);
+            }
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            if (cancellation.isCancelled()) {
+                // Answer every request, so the memory never ends with tool calls that have no results
+                toolExecutionRequests.forEach(toolExecutionRequest -> addToMemory(
+                        ToolExecutionResultMessage.from(toolExecutionRequest, CANCELLED_TOOL_RESULT)));
+                onError(new CancellationException("Streaming was cancelled before tools were executed"));
+                return;
+            }
+            List<CompletableFuture<String>> toolExecutionResults = executeTools(toolExecutionRequests);
+            // Results are consumed in request order, so memory and callbacks stay deterministic; a failed request
+            // is answered with an error result, so the requests after it still get theirs
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
+                String toolExecutionResult = resultOf(toolExecutionRequest, toolExecutionResults.get(i));
                 ToolExecutionResultMessage toolExecutionResultMessage =
                         ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
                 addToMemory(toolExecutionResultMessage);
@@ -133,6 +201,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolExecutionHandler.accept(toolExecution);
                 }
             }
+            // Tools that were already running have finished and their results are in memory; stop before the next round
+            if (cancellation.isCancelled()) {
+                onError(new CancellationException("Streaming was cancelled after tools were executed"));
+                return;
+            }
 
             ChatRequest chatRequest = ChatRequest.builder()
                     .messages(messagesToSend(memoryId))
@@ -146,7 +219,9 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     partialResponseHandler,
                     partialToolExecutionRequestHandler,
                     completeToolExecutionRequestHandler,
+                    toolArgumentsListenerFactory,
                     toolExecutionHandler,
+                    intermediateResponseHandler,
                     completeResponseHandler,
                     errorHandler,
                     temporaryMemory,
@@ -154,9 +229,13 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolSpecifications,
                     toolExecutors,
                     commonGuardrailParams,
-                    methodKey);
+                    methodKey,
+                    cancellation,
+                    toolExecutionContext,
+                    toolExecutionSettings);
 
-            context.streamingChatModel.chat(chatRequest, handler);
+            // The next round is issued from the response thread, so re-enter the handle to keep it cancellable
+            cancellation.runWithin(() -> context.streamingChatModel.chat(chatRequest, handler));
         } else {
             if (completeResponseHandler != null) {
                 ChatResponse finalChatResponse = ChatResponse.builder()
@@ -199,6 +278,114 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         }
     }
 
+    /**
+     * Starts the execution of all tool requests of the turn. Independent requests are executed concurrently on
+     * virtual threads, at most {@link StreamingToolExecutionSettings#maxConcurrency()} of the stream at a time; a request starts
+     * only after the earlier requests it depends on (see {@link ToolExecutionKeyResolver}) have finished. A single
+     * request, or a cap of 1, is executed on the calling thread.
+     */
+    private List<CompletableFuture<String>> executeTools(List<ToolExecutionRequest> toolExecutionRequests) {
+        int maxConcurrency = toolExecutionSettings.maxConcurrency();
+        List<CompletableFuture<String>> results = new ArrayList<>(toolExecutionRequests.size());
+        if (toolExecutionRequests.size() == 1 || maxConcurrency == 1) {
+            for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
+                try {
+                    results.add(CompletableFuture.completedFuture(executeTool(toolExecutionRequest)));
+                } catch (RuntimeException e) {
+                    results.add(CompletableFuture.failedFuture(e));
+                }
+            }
+            return results;
+        }
+        ToolExecutionKeyResolver keyResolver = toolExecutionSettings.executionKeyResolver();
+        // The resolver sees the arguments parsed while streaming, so it does not parse them again
+        ToolExecutionKeyResolver streamedKeyResolver = keyResolver == null ? null
+                : request -> ParsedToolArguments.callWith(request.arguments(), parsedArguments(request, false),
+                        () -> keyResolver.resolve(request));
+        return executeConcurrently(toolExecutionRequests, maxConcurrency, streamedKeyResolver, this::executeTool);
+    }
+
+    static List<CompletableFuture<String>> executeConcurrently(List<ToolExecutionRequest> toolExecutionRequests,
+                                                              int maxConcurrency,
+                                                              ToolExecutionKeyResolver keyResolver,
+                                                              Function<ToolExecutionRequest, String> executor) {
+        List<CompletableFuture<String>> results = new ArrayList<>(toolExecutionRequests.size());
+        Semaphore permits = new Semaphore(maxConcurrency);
+        // The last request of each key, the last request without a key, and everything started after it
+        Map<String, CompletableFuture<String>> lastByKey = new HashMap<>();
+        CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);
+        List<CompletableFuture<?>> sinceBarrier = new ArrayList<>();
+        for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
+            String key = keyResolver == null ? null : keyResolver.resolve(toolExecutionRequest);
+            CompletableFuture<?> dependencies;
+            if (key == null) {
+                sinceBarrier.add(barrier);
+                dependencies = CompletableFuture.allOf(sinceBarrier.toArray(CompletableFuture[]::new));
+            } else {
+                CompletableFuture<String> previous = lastByKey.get(key);
+                dependencies = previous == null ? barrier : CompletableFuture.allOf(barrier, previous);
+            }
+            // A failed dependency does not stop the request; the failure is reported as the result of that request only
+            CompletableFuture<String> result = dependencies
+                    .handle((ignored, error) -> null)
+                    .thenApplyAsync(ignored -> {
+                        permits.acquireUninterruptibly();
+                        try {
+                            return executor.apply(toolExecutionRequest);
+                        } finally {
+                            permits.release();
+                        }
+                    }, TOOL_EXECUTOR);
+            results.add(result);
+            if (key == null) {
+                barrier = result;
+                lastByKey.clear();
+                sinceBarrier.clear();
+            } else {
+                lastByKey.put(key, result);
+                sinceBarrier.add(result);
+            }
+        }
+        return results;
+    }
+
+    private String executeTool(ToolExecutionRequest toolExecutionRequest) {
+        ToolExecutor toolExecutor = toolExecutors.get(toolExecutionRequest.name());
+        Map<String, Object> parsed = parsedArguments(toolExecutionRequest, true);
+        return ToolExecutionContext.callWithin(toolExecutionContext,
+                () -> ParsedToolArguments.callWith(toolExecutionRequest.arguments(), parsed,
+                        () -> toolExecutor.execute(toolExecutionRequest, memoryId)));
+    }
+
+    /**
+     * @param release whether the tool is about to execute and the parsed copy is no longer needed afterwards
+     * @return the arguments parsed while they were streamed, or {@code null} if they were not
+     */
+    private Map<String, Object> parsedArguments(ToolExecutionRequest toolExecutionRequest, boolean release) {
+        if (toolExecutionRequest.id() == null) {
+            return null;
+        }
+        StreamedArguments arguments = release
+                ? streamedArguments.remove(toolExecutionRequest.id())
+                : streamedArguments.get(toolExecutionRequest.id());
+        return arguments == null ? null : arguments.result();
+    }
+
+    /**
+     * Waits for the result of one tool request. A failure is turned into an error result for the model instead of
+     * being thrown, so that it does not abort the results of the other requests of the turn.
+     */
+    static String resultOf(ToolExecutionRequest toolExecutionRequest, CompletableFuture<String> toolExecutionResult) {
+        try {
+            return toolExecutionResult.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            LOG.warn("Tool '{}' ({}) failed", toolExecutionRequest.name(), toolExecutionRequest.id(), cause);
+            String message = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+            return FAILED_TOOL_RESULT + message;
+        }
+    }
+
     private ChatMemory getMemory() {
         return getMemory(memoryId);
     }
@@ -212,7 +399,102 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     }
 
     private List<ChatMessage> messagesToSend(Object memoryId) {
-        return getMemory(memoryId).messages();
+        return compactEarlierToolRounds(getMemory(memoryId).messages(), toolExecutionSettings.argumentsCompactor());
+    }
+
+    /**
+     * Keeps the most recent tool round verbatim and rewrites the tool requests of earlier rounds with the
+     * given {@link ToolArgumentsCompactor}. Only the messages sent to the model are rewritten.
+     */
+    static List<ChatMessage> compactEarlierToolRounds(List<ChatMessage> messages, ToolArgumentsCompactor compactor) {
+        if (compactor == null) {
+            return messages;
+        }
+        int lastRound = messages.size() - 1;
+        while (lastRound >= 0 && !(messages.get(lastRound) instanceof AiMessage aiMessage
+                && aiMessage.hasToolExecutionRequests())) {
+            lastRound--;
+        }
+        List<ChatMessage> compacted = null;
+        for (int i = 0; i < lastRound; i++) {
+            if (messages.get(i) instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                AiMessage compactedMessage = compact(aiMessage, compactor);
+                if (compactedMessage != aiMessage) {
+                    if (compacted == null) {
+                        compacted = new ArrayList<>(messages);
+                    }
+                    compacted.set(i, compactedMessage);
+                }
+            }
+        }
+        return compacted == null ? messages : compacted;
+    }
+
+    private static AiMessage compact(AiMessage aiMessage, ToolArgumentsCompactor compactor) {
+        boolean changed = false;
+        List<ToolExecutionRequest> toolExecutionRequests = new ArrayList<>(aiMessage.toolExecutionRequests().size());
+        for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+            String arguments = compactor.compact(toolExecutionRequest);
+            if (arguments == null || arguments.equals(toolExecutionRequest.arguments())) {
+                toolExecutionRequests.add(toolExecutionRequest);
+                continue;
+            }
+            changed = true;
+            toolExecutionRequests.add(ToolExecutionRequest.builder()
+                    .id(toolExecutionRequest.id())
+                    .name(toolExecutionRequest.name())
+                    .arguments(arguments)
+                    .build());
+        }
+        if (!changed) {
+            return aiMessage;
+        }
+        return aiMessage.text() == null
+                ? AiMessage.from(toolExecutionRequests)
+                : AiMessage.from(aiMessage.text(), toolExecutionRequests);
+    }
+
+    /**
+     * The incremental parse of one tool call's arguments. Calls without a listener are not parsed at all.
+     * Fragments of one call arrive sequentially on the response thread.
+     */
+    private static final class StreamedArguments {
+
+        private final ToolArgumentsListener listener;
+        private final StreamingJsonParser parser;
+        private boolean reported;
+
+        private StreamedArguments(ToolArgumentsListener listener) {
+            this.listener = listener;
+            this.parser = listener == null ? null : new StreamingJsonParser(listener, true);
+        }
+
+        private void accept(String fragment) {
+            if (parser == null || reported) {
+                return;
+            }
+            parser.accept(fragment);
+            if (parser.isFailed()) {
+                reported = true;
+                listener.onArgumentsFailed();
+            }
+        }
+
+        private void complete() {
+            if (parser == null || reported) {
+                return;
+            }
+            reported = true;
+            if (parser.isComplete()) {
+                listener.onArgumentsComplete();
+            } else {
+                listener.onArgumentsFailed();
+            }
+        }
+
+        private Map<String, Object> result() {
+            return parser == null ? null : parser.result();
+        }
     }
 
     @Override
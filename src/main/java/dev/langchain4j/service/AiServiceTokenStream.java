@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static dev.langchain4j.internal.Utils.copy;
 import static dev.langchain4j.internal.ValidationUtils.ensureNotEmpty;
@@ -35,14 +36,19 @@ public class AiServiceTokenStream implements TokenStream {
     private final Object memoryId;
     private final GuardrailRequestParams commonGuardrailParams;
     private final Object methodKey;
+    private final StreamCancellation cancellation = new StreamCancellation();
 
     private Consumer<String> partialResponseHandler;
     private Consumer<List<Content>> contentsHandler;
     private Consumer<ToolExecution> toolExecutionHandler;
     private Consumer<ChatResponse> completeResponseHandler;
+    private Consumer<ChatResponse> intermediateResponseHandler;
     private Consumer<Throwable> errorHandler;
     private BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler;
     private BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
+    private Function<ToolExecutionRequest, ToolArgumentsListener> toolArgumentsListenerFactory;
+    private Object toolExecutionContext;
+    private StreamingToolExecutionSettings toolExecutionSettings = StreamingToolExecutionSettings.DEFAULT;
 
     private int onPartialResponseInvoked;
     private int onCompleteResponseInvoked;
@@ -88,6 +94,12 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream onToolArguments(Function<ToolExecutionRequest, ToolArgumentsListener> listenerFactory) {
+        this.toolArgumentsListenerFactory = listenerFactory;
+        return this;
+    }
+
     @Override
     public TokenStream onRetrieved(Consumer<List<Content>> contentsHandler) {
         this.contentsHandler = contentsHandler;
@@ -109,6 +121,12 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream onIntermediateResponse(Consumer<ChatResponse> intermediateResponseHandler) {
+        this.intermediateResponseHandler = intermediateResponseHandler;
+        return this;
+    }
+
     @Override
     public TokenStream onError(Consumer<Throwable> errorHandler) {
         this.errorHandler = errorHandler;
@@ -123,6 +141,18 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream toolExecutionContext(Object context) {
+        this.toolExecutionContext = context;
+        return this;
+    }
+
+    @Override
+    public TokenStream toolExecutionSettings(StreamingToolExecutionSettings settings) {
+        this.toolExecutionSettings = ensureNotNull(settings, "settings");
+        return this;
+    }
+
     @Override
     public void start() {
         validateConfiguration();
@@ -144,7 +174,9 @@ public class AiServiceTokenStream implements TokenStream {
                 partialResponseHandler,
                 partialToolExecutionRequestHandler,
                 completeToolExecutionRequestHandler,
+                toolArgumentsListenerFactory,
                 toolExecutionHandler,
+                intermediateResponseHandler,
                 completeResponseHandler,
                 errorHandler,
                 initTemporaryMemory(context, messages),
@@ -152,13 +184,26 @@ public class AiServiceTokenStream implements TokenStream {
                 toolSpecifications,
                 toolExecutors,
                 commonGuardrailParams,
-                methodKey);
+                methodKey,
+                cancellation,
+                toolExecutionContext,
+                toolExecutionSettings);
 
         if (contentsHandler != null && retrievedContents != null) {
             contentsHandler.accept(retrievedContents);
         }
 
-        context.streamingChatModel.chat(chatRequest, handler);
+        // A stream started within an outer handle is cancelled together with it
+        StreamCancellation outer = StreamCancellation.current();
+        if (outer != null) {
+            outer.onCancel(cancellation::cancel);
+        }
+        cancellation.runWithin(() -> context.streamingChatModel.chat(chatRequest, handler));
+    }
+
+    @Override
+    public void cancel() {
+        cancellation.cancel();
     }
 
     private void validateConfiguration() {
@@ -0,0 +1,96 @@
+package dev.langchain4j.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cancellation handle for streaming model requests.
+ * <p>
+ * Requests issued inside {@link #runWithin(Runnable)} can register themselves with the handle of the current thread
+ * (the shared HTTP client does so for every streaming request). {@link #cancel()} aborts all registered requests,
+ * whose handlers then complete with a {@link java.util.concurrent.CancellationException}.
+ * {@link AiServiceTokenStream} owns one handle per stream and re-enters it for every tool round,
+ * so a single {@link TokenStream#cancel()} reaches whichever request is currently in flight.
+ */
+public class StreamCancellation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamCancellation.class);
+
+    private static final ThreadLocal<StreamCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> cancelActions = new ArrayList<>();
+
+    private boolean cancelled;
+
+    /**
+     * @return the handle the current thread is running within, or {@code null} if there is none
+     */
+    public static StreamCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the given action within this handle, so that requests it issues can be cancelled.
+     *
+     * @param action the action issuing requests
+     */
+    public void runWithin(Runnable action) {
+        StreamCancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Registers an action to run on cancellation. Runs it immediately if the handle is already cancelled.
+     *
+     * @param action the cancel action
+     */
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        runQuietly(action);
+    }
+
+    /**
+     * Cancels all registered requests. Subsequent calls have no effect.
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+            cancelActions.clear();
+        }
+        actions.forEach(StreamCancellation::runQuietly);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            LOG.warn("Failed to cancel a streaming request", e);
+        }
+    }
+}
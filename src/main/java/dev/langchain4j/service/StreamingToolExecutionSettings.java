@@ -0,0 +1,107 @@
+package dev.langchain4j.service;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * Settings used by {@link AiServiceStreamingResponseHandler} when it executes the tool requests of one
+ * assistant turn. Requests that a {@link ToolExecutionKeyResolver} reports as independent are executed
+ * concurrently on virtual threads, dependent requests are executed in their original order, and results
+ * are always added to the chat memory in the original request order.
+ * Before the next round is requested, tool requests of earlier rounds can be compacted by a
+ * {@link ToolArgumentsCompactor}; the chat memory itself is never modified.
+ * <p>
+ * Settings are immutable and passed per stream with {@link TokenStream#toolExecutionSettings}, so AI Services
+ * with different tools never see each other's resolver or compactor.
+ */
+public final class StreamingToolExecutionSettings {
+
+    /**
+     * Executes the requests of a turn in order and sends earlier rounds verbatim.
+     */
+    public static final StreamingToolExecutionSettings DEFAULT = builder().build();
+
+    private final int maxConcurrency;
+
+    private final ToolArgumentsCompactor argumentsCompactor;
+
+    private final ToolExecutionKeyResolver executionKeyResolver;
+
+    private StreamingToolExecutionSettings(Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.argumentsCompactor = builder.argumentsCompactor;
+        this.executionKeyResolver = builder.executionKeyResolver;
+    }
+
+    /**
+     * @return the maximum number of tool requests of one turn that are executed at the same time
+     */
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the compactor applied to earlier tool rounds, or {@code null} if they are sent verbatim
+     */
+    public ToolArgumentsCompactor argumentsCompactor() {
+        return argumentsCompactor;
+    }
+
+    /**
+     * @return the resolver that tells which requests of a turn are independent, or {@code null} if none is set
+     * and every request is treated as depending on all others
+     */
+    public ToolExecutionKeyResolver executionKeyResolver() {
+        return executionKeyResolver;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private int maxConcurrency = 8;
+
+        private ToolArgumentsCompactor argumentsCompactor;
+
+        private ToolExecutionKeyResolver executionKeyResolver;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the maximum number of tool requests of one turn that are executed at the same time.
+         * A value of 1 executes the requests one after another on the calling thread.
+         *
+         * @param maxConcurrency the parallelism cap, must be greater than zero
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = ensureGreaterThanZero(maxConcurrency, "maxConcurrency");
+            return this;
+        }
+
+        /**
+         * Sets the compactor applied to tool requests of all rounds except the most recent one.
+         *
+         * @param argumentsCompactor the compactor, or {@code null} to send earlier rounds verbatim
+         */
+        public Builder argumentsCompactor(ToolArgumentsCompactor argumentsCompactor) {
+            this.argumentsCompactor = argumentsCompactor;
+            return this;
+        }
+
+        /**
+         * Sets the resolver that tells which requests of a turn are independent and may run concurrently.
+         *
+         * @param executionKeyResolver the resolver, or {@code null} to execute the requests of a turn in order
+         */
+        public Builder executionKeyResolver(ToolExecutionKeyResolver executionKeyResolver) {
+            this.executionKeyResolver = executionKeyResolver;
+            return this;
+        }
+
+        public StreamingToolExecutionSettings build() {
+            return new StreamingToolExecutionSettings(this);
+        }
+    }
+}
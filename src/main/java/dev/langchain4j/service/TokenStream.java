@@ -9,6 +9,7 @@ import dev.langchain4j.service.tool.ToolExecution;
 import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Represents a token stream from the model to which you can subscribe and receive updates
@@ -59,6 +60,16 @@ public interface TokenStream {
      */
     TokenStream onCompleteResponse(Consumer<ChatResponse> completeResponseHandler);
 
+    /**
+     * The provided consumer will be invoked every time the language model completes a response that requests tool
+     * executions, before the tools are executed. Its token usage covers that round only, so summing the usage of
+     * the intermediate responses gives what a stream used so far even if it fails or is cancelled later.
+     *
+     * @param intermediateResponseHandler lambda that consumes intermediate chat responses
+     * @return token stream instance used to configure or start stream processing
+     */
+    TokenStream onIntermediateResponse(Consumer<ChatResponse> intermediateResponseHandler);
+
     /**
      * The provided consumer will be invoked when an error occurs during streaming.
      *
@@ -74,10 +85,47 @@ public interface TokenStream {
      */
     TokenStream ignoreErrors();
 
+    /**
+     * Sets the factory of listeners that receive the arguments of tool calls while they are streamed.
+     * The factory is invoked with the first fragment of every tool call; the arguments of calls it returns a
+     * listener for are parsed incrementally, and the parsed arguments are passed on to the tool, so they are not
+     * parsed again when it executes. Arguments of other calls are only parsed when the tool executes.
+     *
+     * @param listenerFactory creates the listener of a tool call, or returns {@code null} to leave it unparsed
+     * @return token stream instance used to configure or start stream processing
+     */
+    TokenStream onToolArguments(Function<ToolExecutionRequest, ToolArgumentsListener> listenerFactory);
+
+    /**
+     * Sets the context that tools see through {@link ToolExecutionContext#current(Class)} while they execute for
+     * this stream, so that they can tell apart concurrent invocations with the same memory id.
+     *
+     * @param context the per-invocation context
+     * @return token stream instance used to configure or start stream processing
+     */
+    TokenStream toolExecutionContext(Object context);
+
+    /**
+     * Sets how the tool requests of this stream are executed and how earlier tool rounds are sent back to the
+     * model. Streams that do not set them use {@link StreamingToolExecutionSettings#DEFAULT}.
+     *
+     * @param settings the tool execution settings of this stream
+     * @return token stream instance used to configure or start stream processing
+     */
+    TokenStream toolExecutionSettings(StreamingToolExecutionSettings settings);
+
     /**
      * Completes the current token stream building and starts processing.
      * <p>
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: aborts the request that is currently in flight and does not start further tool rounds.
+     * Tool executions that are already running are allowed to finish. The error handler then receives a
+     * {@link java.util.concurrent.CancellationException}, unless the stream had already completed.
+     * Has no effect if the stream has not been started or has already been cancelled.
+     */
+    void cancel();
 }
@@ -0,0 +1,21 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+
+/**
+ * Rewrites the arguments of tool execution requests from earlier tool rounds before the conversation is sent
+ * to the model again. Arguments of completed rounds are often large (for example full file contents) and
+ * are not needed verbatim once the tool has run, so replacing them with a short marker keeps the request
+ * size of later rounds from growing with every round.
+ *
+ * @see StreamingToolExecutionSettings.Builder#argumentsCompactor(ToolArgumentsCompactor)
+ */
+@FunctionalInterface
+public interface ToolArgumentsCompactor {
+
+    /**
+     * @param toolExecutionRequest a request from a round before the most recent one
+     * @return the compacted arguments, or {@code null} to send the request unchanged
+     */
+    String compact(ToolExecutionRequest toolExecutionRequest);
+}
@@ -0,0 +1,26 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.internal.StreamingJsonParser;
+
+/**
+ * Receives the arguments of one tool call while they are streamed, decoded by the same incremental parser
+ * whose result is later handed to the tool, so the arguments are tokenized only once.
+ * Listeners are created per tool call by the factory set with {@link TokenStream#onToolArguments}.
+ * <p>
+ * All callbacks are invoked on the thread that delivers the response of the model.
+ */
+public interface ToolArgumentsListener extends StreamingJsonParser.FieldListener {
+
+    /**
+     * The arguments are complete and form a valid JSON object.
+     */
+    default void onArgumentsComplete() {
+    }
+
+    /**
+     * The arguments are not valid JSON, or the tool call ended before they were complete.
+     * Called at most once, and never after {@link #onArgumentsComplete()}.
+     */
+    default void onArgumentsFailed() {
+    }
+}
@@ -0,0 +1,51 @@
+package dev.langchain4j.service;
+
+import java.util.function.Supplier;
+
+/**
+ * The per-stream context set with {@link TokenStream#toolExecutionContext(Object)}, visible to tools while they
+ * execute for that stream.
+ * <p>
+ * Tools of an AI Service are shared by all invocations and only receive the memory id, which does not tell apart
+ * two invocations for the same memory. A tool that needs per-invocation state (such as the directory an invocation
+ * writes to) reads it from here instead. The context is bound to the executing thread only for the duration of the
+ * tool call, so it is never visible to tools of another stream.
+ */
+public final class ToolExecutionContext {
+
+    private static final ThreadLocal<Object> CURRENT = new ThreadLocal<>();
+
+    private ToolExecutionContext() {
+    }
+
+    /**
+     * @param type the expected type of the context
+     * @return the context of the stream the current tool executes for, or {@code null} if there is none
+     * or it is not of the given type
+     */
+    public static <T> T current(Class<T> type) {
+        Object context = CURRENT.get();
+        return type.isInstance(context) ? type.cast(context) : null;
+    }
+
+    /**
+     * Runs a tool call with the given context bound to the current thread.
+     *
+     * @param context the context of the stream, may be {@code null}
+     * @param action  the tool call
+     * @return the result of the tool call
+     */
+    static <T> T callWithin(Object context, Supplier<T> action) {
+        Object previous = CURRENT.get();
+        CURRENT.set(context);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
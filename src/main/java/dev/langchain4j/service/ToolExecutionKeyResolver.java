@@ -0,0 +1,21 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+
+/**
+ * Tells which tool requests of one turn depend on each other. Requests that resolve to the same key (for
+ * example two writes of the same file) are executed one after another in their original order, requests
+ * with different keys are executed concurrently. A request without a key may depend on anything: it starts
+ * after all earlier requests of the turn have finished, and later requests start after it has finished.
+ *
+ * @see StreamingToolExecutionSettings.Builder#executionKeyResolver(ToolExecutionKeyResolver)
+ */
+@FunctionalInterface
+public interface ToolExecutionKeyResolver {
+
+    /**
+     * @param toolExecutionRequest a request of the current turn
+     * @return the key of the resource the request works on, or {@code null} if it is not known
+     */
+    String resolve(ToolExecutionRequest toolExecutionRequest);
+}
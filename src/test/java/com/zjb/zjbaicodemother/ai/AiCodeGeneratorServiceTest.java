@@ -16,13 +16,13 @@ class AiCodeGeneratorServiceTest {
 
     @Test
     void generateHtmlCode() {
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode("做个程序员zjb的工作记录小工具,不超过20行代码");
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(0L, "做个程序员zjb的工作记录小工具,不超过20行代码");
         Assertions.assertNotNull(result);
     }
 
     @Test
     void generateMultiFileCode() {
-        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode("做个程序员zjb的留言板");
+        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode(0L, "做个程序员zjb的留言板");
         Assertions.assertNotNull(multiFileCode);
     }
 }
@@ -0,0 +1,223 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用内存中的 Redis 存储替身验证本地缓存、合并写入和写入纪元
+ */
+class CachedChatMemoryStoreTest {
+
+    private final FakeRedisStore redisStore = new FakeRedisStore();
+
+    private final CachedChatMemoryStore store = new CachedChatMemoryStore(redisStore, 1_000_000, Duration.ofMinutes(10),
+            Duration.ofHours(1), Duration.ofSeconds(1), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void readsStayLocalAndWritesAreMerged() {
+        store.updateMessages(1L, List.of(SystemMessage.from("system"), UserMessage.from("u1")));
+        store.appendMessages(1L, List.of(AiMessage.from("a1")), 0);
+        store.appendMessages(1L, List.of(UserMessage.from("u2")), 1);
+        for (int i = 0; i < 10; i++) {
+            store.getMessages(1L);
+        }
+
+        assertEquals(0, redisStore.reads);
+        assertTrue(redisStore.messages.isEmpty());
+
+        store.flush();
+
+        // 整体重写之后的追加合并到同一次写入
+        assertEquals(1, redisStore.writes);
+        List<ChatMessage> expected = List.of(SystemMessage.from("system"), AiMessage.from("a1"), UserMessage.from("u2"));
+        assertEquals(expected, redisStore.messages.get(1L));
+        assertEquals(expected, store.getMessages(1L));
+
+        store.appendMessages(1L, List.of(AiMessage.from("a2")), 1);
+        store.appendMessages(1L, List.of(UserMessage.from("u3")), 0);
+        store.flush();
+        assertEquals(2, redisStore.writes);
+        assertEquals(List.of(SystemMessage.from("system"), UserMessage.from("u2"), AiMessage.from("a2"), UserMessage.from("u3")),
+                redisStore.messages.get(1L));
+    }
+
+    @Test
+    void concurrentTurnsOfTwoNodesAreBothKept() {
+        redisStore.messages.put(1L, List.of(UserMessage.from("u1")));
+        try (CachedChatMemoryStore other = new CachedChatMemoryStore(redisStore, 1_000_000, Duration.ofMinutes(10),
+                Duration.ofHours(1), Duration.ofSeconds(1), new SimpleMeterRegistry())) {
+            // 两个节点都读取了历史，读取不影响对方写入
+            store.getMessages(1L);
+            other.getMessages(1L);
+
+            store.appendMessages(1L, List.of(AiMessage.from("mine")), 1);
+            other.appendMessages(1L, List.of(AiMessage.from("other")), 0);
+            other.flush();
+            store.flush();
+        }
+
+        // 本节点基于旧历史的追加被拒绝后追加到另一个节点的消息之后，旧历史上的淘汰不再执行
+        List<ChatMessage> expected = List.of(UserMessage.from("u1"), AiMessage.from("other"), AiMessage.from("mine"));
+        assertEquals(expected, redisStore.messages.get(1L));
+        assertEquals(expected, store.getMessages(1L));
+
+        // 重新加载后回到正常的带纪元写入
+        store.appendMessages(1L, List.of(UserMessage.from("u2")), 0);
+        store.flush();
+        assertEquals(4, redisStore.messages.get(1L).size());
+        assertEquals(1, redisStore.uncheckedWrites);
+    }
+
+    @Test
+    void rejectedRewriteIsDropped() {
+        redisStore.messages.put(1L, List.of(UserMessage.from("u1")));
+        store.getMessages(1L);
+        redisStore.writeFromOtherNode(1L, List.of(UserMessage.from("u1"), AiMessage.from("other")));
+
+        store.updateMessages(1L, List.of(SystemMessage.from("system"), UserMessage.from("u1")));
+        store.flush();
+
+        // 整体重写不覆盖另一个节点的历史，重新读取时得到最新的历史
+        assertEquals(List.of(UserMessage.from("u1"), AiMessage.from("other")), store.getMessages(1L));
+        assertEquals(2, redisStore.reads);
+    }
+
+    @Test
+    void revalidateReloadsAfterAnotherNodeWrites() {
+        redisStore.messages.put(1L, List.of(UserMessage.from("u1")));
+        store.getMessages(1L);
+        store.revalidate(1L);
+        store.getMessages(1L);
+        assertEquals(1, redisStore.reads);
+
+        // 本节点自己的写入不需要重新加载
+        store.appendMessages(1L, List.of(AiMessage.from("a1")), 0);
+        store.flush();
+        store.revalidate(1L);
+        store.getMessages(1L);
+        assertEquals(1, redisStore.reads);
+
+        redisStore.writeFromOtherNode(1L, List.of(UserMessage.from("u1"), AiMessage.from("a1"), UserMessage.from("u2")));
+        store.revalidate(1L);
+        assertEquals(3, store.getMessages(1L).size());
+        assertEquals(2, redisStore.reads);
+    }
+
+    @Test
+    void closeFlushesPendingChanges() {
+        store.updateMessages(1L, List.of(UserMessage.from("u1")));
+        store.close();
+        assertEquals(List.of(UserMessage.from("u1")), redisStore.messages.get(1L));
+    }
+
+    @Test
+    void growingMemoryIsEvictedByItsCurrentSize() throws InterruptedException {
+        List<Object> evicted = new CopyOnWriteArrayList<>();
+        try (CachedChatMemoryStore small = new CachedChatMemoryStore(redisStore, 100, Duration.ofMinutes(10),
+                Duration.ofHours(1), Duration.ofSeconds(1), new SimpleMeterRegistry())) {
+            small.onEvicted(evicted::add);
+            small.updateMessages(1L, List.of(UserMessage.from("u1")));
+            small.updateMessages(2L, List.of(UserMessage.from("u2")));
+            // 追加消息后权重随之增长，超出容量时淘汰
+            for (int i = 0; i < 10; i++) {
+                small.appendMessages(1L, List.of(AiMessage.from("0123456789")), 0);
+            }
+            for (int i = 0; i < 50 && evicted.isEmpty(); i++) {
+                Thread.sleep(20);
+                small.getMessages(2L);
+            }
+        }
+
+        assertEquals(List.of(1L), evicted);
+    }
+
+    /**
+     * 只实现本地缓存用到的方法
+     */
+    private static class FakeRedisStore extends CompressedRedisChatMemoryStore {
+
+        final Map<Object, List<ChatMessage>> messages = new HashMap<>();
+
+        final Map<Object, Long> epochs = new HashMap<>();
+
+        int reads;
+
+        int writes;
+
+        /**
+         * 不校验纪元的写入次数，只有合并被拒绝的追加时使用
+         */
+        int uncheckedWrites;
+
+        FakeRedisStore() {
+            super(null, Duration.ZERO, 1024);
+        }
+
+        @Override
+        public synchronized List<ChatMessage> getMessages(Object memoryId) {
+            reads++;
+            return new ArrayList<>(messages.getOrDefault(memoryId, List.of()));
+        }
+
+        @Override
+        public synchronized Long updateMessages(Object memoryId, List<ChatMessage> messages, Long epoch) {
+            if (!accepts(memoryId, epoch)) {
+                return null;
+            }
+            this.messages.put(memoryId, new ArrayList<>(messages));
+            return epochs.merge(memoryId, 1L, Long::sum);
+        }
+
+        @Override
+        public synchronized Long appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead, Long epoch) {
+            if (!accepts(memoryId, epoch)) {
+                return null;
+            }
+            List<ChatMessage> current = new ArrayList<>(messages.getOrDefault(memoryId, List.of()));
+            int head = !current.isEmpty() && current.getFirst() instanceof SystemMessage ? 1 : 0;
+            current.addAll(appended);
+            current.subList(head, head + evictedFromHead).clear();
+            messages.put(memoryId, current);
+            return epochs.merge(memoryId, 1L, Long::sum);
+        }
+
+        @Override
+        public synchronized long currentEpoch(Object memoryId) {
+            return epochs.getOrDefault(memoryId, 0L);
+        }
+
+        synchronized void writeFromOtherNode(Object memoryId, List<ChatMessage> messages) {
+            this.messages.put(memoryId, new ArrayList<>(messages));
+            epochs.merge(memoryId, 1L, Long::sum);
+        }
+
+        private boolean accepts(Object memoryId, Long epoch) {
+            if (epoch == null) {
+                uncheckedWrites++;
+            } else if (epoch != currentEpoch(memoryId)) {
+                return false;
+            }
+            writes++;
+            return true;
+        }
+    }
+}
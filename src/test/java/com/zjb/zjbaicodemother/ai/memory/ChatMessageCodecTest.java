@@ -0,0 +1,57 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证对话消息编码的往返、压缩和版本校验
+ */
+class ChatMessageCodecTest {
+
+    private final ChatMessageCodec codec = new ChatMessageCodec(256);
+
+    @Test
+    void roundTrip() {
+        String content = "<template>\n  <div class=\"todo\">待办事项 😀</div>\n</template>\n".repeat(200);
+        List<ChatMessage> messages = List.of(
+                UserMessage.from("做一个 Todo 网站"),
+                AiMessage.from(List.of(ToolExecutionRequest.builder()
+                        .id("call_1")
+                        .name("writeFile")
+                        .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + content.replace("\"", "\\\"").replace("\n", "\\n") + "\"}")
+                        .build())),
+                ToolExecutionResultMessage.from("call_1", "writeFile", "文件写入成功: src/App.vue"),
+                AiMessage.from(content));
+        for (ChatMessage message : messages) {
+            assertEquals(message, codec.decode(codec.encode(message)));
+        }
+    }
+
+    @Test
+    void compressesLargeMessages() {
+        String content = "<div class=\"todo-item\">待办事项</div>\n".repeat(500);
+        byte[] encoded = codec.encode(AiMessage.from(content));
+        assertEquals(ChatMessageCodec.VERSION, encoded[0]);
+        assertTrue(encoded.length * 5 < content.getBytes(StandardCharsets.UTF_8).length);
+
+        // 小消息不压缩，仍可直接看到 JSON
+        byte[] small = codec.encode(UserMessage.from("hi"));
+        assertTrue(new String(small, StandardCharsets.UTF_8).contains("hi"));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] encoded = codec.encode(UserMessage.from("hi"));
+        encoded[0] = 99;
+        assertThrows(IllegalStateException.class, () -> codec.decode(encoded));
+    }
+}
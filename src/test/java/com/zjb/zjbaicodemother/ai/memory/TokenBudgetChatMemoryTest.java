@@ -0,0 +1,161 @@
+package com.zjb.zjbaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证按 token 预算淘汰消息时系统消息、工具调用配对和当前轮次的处理
+ */
+class TokenBudgetChatMemoryTest {
+
+    /**
+     * 每个 ASCII 字符折算 1 个 token，没有消息开销，便于计算
+     */
+    private final ApproximateTokenCountEstimator estimator = new ApproximateTokenCountEstimator(1, 1, 0);
+
+    @Test
+    void estimatesByCharacterClass() {
+        ApproximateTokenCountEstimator estimator = new ApproximateTokenCountEstimator(4, 0.5, 3);
+        assertEquals(0, estimator.estimateTokenCountInText(""));
+        assertEquals(2, estimator.estimateTokenCountInText("abcdefgh"));
+        // 代理对按一个字符计算
+        assertEquals(2, estimator.estimateTokenCountInText("你好😀"));
+        assertEquals(3 + 3, estimator.estimateTokenCountInMessage(UserMessage.from("abcd你好😀")));
+    }
+
+    @Test
+    void evictsOldestKeepingSystemMessage() {
+        TokenBudgetChatMemory memory = memory(30);
+        memory.add(SystemMessage.from("system"));
+        memory.add(UserMessage.from("u1".repeat(5)));
+        memory.add(AiMessage.from("a1".repeat(5)));
+        memory.add(UserMessage.from("u2".repeat(5)));
+        memory.add(AiMessage.from("a2".repeat(5)));
+
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(3, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertEquals("u2".repeat(5), ((UserMessage) messages.get(1)).singleText());
+        assertTrue(estimator.estimateTokenCountInMessages(messages) <= 30);
+    }
+
+    @Test
+    void evictsToolCallWithItsResults() {
+        TokenBudgetChatMemory memory = memory(60);
+        memory.add(UserMessage.from("u1"));
+        memory.add(AiMessage.from(List.of(writeFile("call_1"), writeFile("call_2"))));
+        memory.add(ToolExecutionResultMessage.from("call_1", "writeFile", "ok"));
+        memory.add(ToolExecutionResultMessage.from("call_2", "writeFile", "ok"));
+        memory.add(AiMessage.from("done"));
+        memory.add(UserMessage.from("u2"));
+
+        List<ChatMessage> messages = memory.messages();
+        // 工具调用与结果一起淘汰，不留下不成对的工具结果
+        assertTrue(messages.stream().noneMatch(ToolExecutionResultMessage.class::isInstance));
+        assertEquals(List.of(AiMessage.from("done"), UserMessage.from("u2")), messages);
+    }
+
+    @Test
+    void keepsCurrentRoundOverBudget() {
+        TokenBudgetChatMemory memory = memory(10);
+        memory.add(UserMessage.from("u1"));
+        memory.add(AiMessage.from("a1"));
+        memory.add(UserMessage.from("生成一个 Vue 项目"));
+        memory.add(AiMessage.from(List.of(writeFile("call_1"))));
+        memory.add(ToolExecutionResultMessage.from("call_1", "writeFile", "ok"));
+
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(3, messages.size());
+        assertInstanceOf(UserMessage.class, messages.get(0));
+        assertInstanceOf(ToolExecutionResultMessage.class, messages.get(2));
+    }
+
+    @Test
+    void appendsWithoutRewriting() {
+        AppendingStore store = new AppendingStore();
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 30, estimator, store);
+        TokenBudgetChatMemory reference = memory(30);
+        for (ChatMessage message : List.of(SystemMessage.from("system"), UserMessage.from("u1".repeat(5)),
+                AiMessage.from("a1".repeat(5)), UserMessage.from("u2".repeat(5)), AiMessage.from("a2".repeat(5)))) {
+            memory.add(message);
+            reference.add(message);
+        }
+
+        // 只有系统消息整体写入一次，其余消息都是追加
+        assertEquals(1, store.updates);
+        assertEquals(4, store.appends);
+        assertEquals(reference.messages(), memory.messages());
+    }
+
+    @Test
+    void estimatesEachMessageOnce() {
+        AtomicInteger estimates = new AtomicInteger();
+        ApproximateTokenCountEstimator counting = new ApproximateTokenCountEstimator(1, 1, 0) {
+            @Override
+            public int estimateTokenCountInMessage(ChatMessage message) {
+                estimates.incrementAndGet();
+                return super.estimateTokenCountInMessage(message);
+            }
+        };
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, 50, counting, new AppendingStore());
+        memory.add(SystemMessage.from("system"));
+        for (int i = 0; i < 20; i++) {
+            memory.add(UserMessage.from("u" + i));
+            memory.add(AiMessage.from("a" + i));
+            memory.messages();
+        }
+
+        assertEquals(41, estimates.get());
+        assertTrue(estimator.estimateTokenCountInMessages(memory.messages()) <= 50);
+    }
+
+    private TokenBudgetChatMemory memory(int maxTokens) {
+        return new TokenBudgetChatMemory(1L, maxTokens, estimator, new InMemoryChatMemoryStore());
+    }
+
+    private static ToolExecutionRequest writeFile(String id) {
+        return ToolExecutionRequest.builder()
+                .id(id)
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"<template></template>\"}")
+                .build();
+    }
+
+    /**
+     * 按追加写入方式保存消息的内存存储
+     */
+    private static class AppendingStore extends InMemoryChatMemoryStore implements AppendableChatMemoryStore {
+
+        int updates;
+
+        int appends;
+
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            updates++;
+            super.updateMessages(memoryId, messages);
+        }
+
+        @Override
+        public void appendMessages(Object memoryId, List<ChatMessage> appended, int evictedFromHead) {
+            appends++;
+            List<ChatMessage> messages = new ArrayList<>(getMessages(memoryId));
+            int head = !messages.isEmpty() && messages.getFirst() instanceof SystemMessage ? 1 : 0;
+            messages.addAll(appended);
+            messages.subList(head, head + evictedFromHead).clear();
+            super.updateMessages(memoryId, messages);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.zjb.zjbaicodemother.ai.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjb.zjbaicodemother.ai.http.AiHttpClientMetrics;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClient;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClientBuilder;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证录制的工具调用轨迹可以在进程内和本地接口上回放，录制结果与回放内容一致，回放可以取消
+ */
+class ModelReplayTest {
+
+    private static final String PROMPT = "做一个 Todo 网站";
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final TracePlayer fastPlayer = new TracePlayer(Duration.ZERO, 0, 0, 4);
+
+    private MockOpenAiServer server;
+
+    interface Assistant {
+
+        TokenStream chat(String userMessage);
+    }
+
+    static class TouchTool {
+
+        final List<String> written = new CopyOnWriteArrayList<>();
+
+        @Tool(name = "touch")
+        String touch(@P("文件名") String name) {
+            written.add(name);
+            return "ok";
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        executor.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void replaysToolCallingTurnsInProcess() throws Exception {
+        ModelTraceStore store = store(traces());
+        TouchTool tool = new TouchTool();
+
+        ChatResponse response = generate(new ReplayStreamingChatModel(store, fastPlayer), tool);
+
+        assertEquals(List.of("a.txt", "b.txt"), tool.written.stream().sorted().toList());
+        assertEquals("全部完成", response.aiMessage().text());
+        // 两轮调用的用量之和
+        assertEquals(300, response.tokenUsage().inputTokenCount());
+        assertEquals(30, response.tokenUsage().outputTokenCount());
+    }
+
+    @Test
+    void replaysToolCallingTurnsOverHttp() throws Exception {
+        server = new MockOpenAiServer(0, store(traces()), fastPlayer);
+        server.start();
+        StreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl("http://localhost:" + server.getPort() + "/v1")
+                .apiKey("mock")
+                .modelName(ReplayStreamingChatModel.MODEL_NAME)
+                .httpClientBuilder(httpClientBuilder())
+                .build();
+        TouchTool tool = new TouchTool();
+
+        ChatResponse response = generate(model, tool);
+
+        assertEquals(List.of("a.txt", "b.txt"), tool.written.stream().sorted().toList());
+        assertEquals("全部完成", response.aiMessage().text());
+        assertEquals(300, response.tokenUsage().inputTokenCount());
+    }
+
+    @Test
+    void recordingMatchesReplayedTrace() throws Exception {
+        Path recorded = Files.createTempFile("recorded-traces", ".jsonl");
+        Files.delete(recorded);
+        ModelTraceStore recordStore = new ModelTraceStore(recorded.toString());
+        StreamingChatModel model = new RecordingStreamingChatModel(
+                new ReplayStreamingChatModel(store(traces()), fastPlayer), recordStore);
+
+        generate(model, new TouchTool());
+
+        List<String> lines = Files.readAllLines(recorded);
+        assertEquals(2, lines.size());
+        ModelTrace first = objectMapper.readValue(lines.get(0), ModelTrace.class);
+        assertEquals(0, first.turn());
+        assertTrue(first.tools());
+        assertEquals(traces().get(0).toolCalls(), first.toolCalls());
+        ModelTrace second = objectMapper.readValue(lines.get(1), ModelTrace.class);
+        assertEquals(1, second.turn());
+        assertEquals(traces().get(1).chunks(), second.chunks());
+        // 重新加载录制的文件后，相同的用户消息直接命中
+        assertEquals(first.traceId(), new ModelTraceStore(recorded.toString()).find(
+                new ModelTraceStore.Position(first.traceId(), null, true, 0)).traceId());
+    }
+
+    @Test
+    void cancelStopsPlayback() throws Exception {
+        TracePlayer slowPlayer = new TracePlayer(Duration.ZERO, 5, 0, 4);
+        CountDownLatch firstToken = new CountDownLatch(1);
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        TokenStream tokenStream = assistant(new ReplayStreamingChatModel(store(traces()), slowPlayer), new TouchTool())
+                .chat(PROMPT)
+                .onPartialResponse(partialResponse -> firstToken.countDown())
+                .onPartialToolExecutionRequest((index, request) -> {
+                })
+                .onCompleteResponse(response -> error.complete(null))
+                .onError(error::complete);
+        tokenStream.start();
+
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+        tokenStream.cancel();
+
+        assertInstanceOf(CancellationException.class, error.get(1, TimeUnit.SECONDS));
+    }
+
+    private ChatResponse generate(StreamingChatModel model, TouchTool tool) throws Exception {
+        CompletableFuture<ChatResponse> response = new CompletableFuture<>();
+        assistant(model, tool).chat(PROMPT)
+                .onPartialResponse(partialResponse -> {
+                })
+                .onPartialToolExecutionRequest((index, request) -> {
+                })
+                .onCompleteResponse(response::complete)
+                .onError(response::completeExceptionally)
+                .start();
+        return response.get(10, TimeUnit.SECONDS);
+    }
+
+    private Assistant assistant(StreamingChatModel model, TouchTool tool) {
+        return AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .tools(tool)
+                .build();
+    }
+
+    /**
+     * 录制的一次生成：第一轮调用两次工具，第二轮输出文本
+     */
+    private static List<ModelTrace> traces() {
+        return List.of(
+                new ModelTrace("recorded", null, true, 0, List.of("开始", "写文件"), List.of(
+                        new ModelTrace.ToolCall("call_1", "touch", "{\"name\":\"a.txt\"}"),
+                        new ModelTrace.ToolCall("call_2", "touch", "{\"name\":\"b.txt\"}")), 100, 20),
+                new ModelTrace("recorded", null, true, 1, List.of("全部", "完成"), List.of(), 200, 10));
+    }
+
+    private ModelTraceStore store(List<ModelTrace> traces) throws Exception {
+        Path file = Files.createTempFile("model-traces", ".jsonl");
+        StringBuilder lines = new StringBuilder();
+        for (ModelTrace trace : traces) {
+            lines.append(objectMapper.writeValueAsString(trace)).append('\n');
+        }
+        Files.writeString(file, lines);
+        return new ModelTraceStore(file.toString());
+    }
+
+    private SharedHttpClientBuilder httpClientBuilder() {
+        return new SharedHttpClientBuilder(new SharedHttpClient(
+                HttpClient.newBuilder().executor(executor).build(),
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5),
+                executor,
+                watchdog,
+                new AiHttpClientMetrics(new SimpleMeterRegistry())));
+    }
+}
@@ -0,0 +1,106 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.ai.http.AiHttpClientMetrics;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClient;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClientBuilder;
+import com.zjb.zjbaicodemother.config.HedgingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用注入延迟的本地桩服务验证对冲请求
+ */
+class HedgingStreamingChatModelTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final SharedHttpClientBuilder httpClientBuilder = new SharedHttpClientBuilder(new SharedHttpClient(
+            HttpClient.newBuilder().executor(executor).build(),
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(5),
+            executor,
+            scheduler,
+            new AiHttpClientMetrics(new SimpleMeterRegistry())));
+
+    private StubOpenAiServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        executor.close();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void hedgeStalledRequestAndCancelLoser() throws Exception {
+        server = new StubOpenAiServer("stub", 0);
+        // 第一个请求在首 token 前卡住 2 秒
+        server.ttftMillis = request -> request == 1 ? 2000 : 0;
+        HedgingStreamingChatModel model = hedgingModel(config(100, 0.1, 5));
+
+        long start = System.nanoTime();
+        assertTrue(StubOpenAiServer.chat(model).startsWith("hello from stub"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1000, "耗时 " + elapsedMillis + "ms");
+        assertEquals(2, server.requests.get());
+        // 落败的请求被取消，桩服务继续输出时发现连接已断开
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.abortedStreams.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, server.abortedStreams.get());
+    }
+
+    @Test
+    void noHedgeAfterFirstToken() throws Exception {
+        server = new StubOpenAiServer("stub", 0);
+        // 首 token 之后停顿，不应触发对冲
+        server.stallAfterFirstTokenMillis = 500;
+        HedgingStreamingChatModel model = hedgingModel(config(100, 0.1, 5));
+
+        assertTrue(StubOpenAiServer.chat(model).startsWith("hello from stub"));
+        assertEquals(1, server.requests.get());
+        assertEquals(0, server.abortedStreams.get());
+    }
+
+    @Test
+    void budgetCapsHedgedRequests() throws Exception {
+        server = new StubOpenAiServer("stub", 300);
+        // 只有一次对冲额度，且普通请求不再补充额度
+        HedgingStreamingChatModel model = hedgingModel(config(50, 0, 1));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(StubOpenAiServer.chat(model).startsWith("hello from stub"));
+        }
+        assertEquals(4, server.requests.get());
+    }
+
+    private static HedgingConfig config(long delayMillis, double budgetRatio, int maxBurst) {
+        HedgingConfig config = new HedgingConfig();
+        config.setEnabled(true);
+        config.setDelay(Duration.ofMillis(delayMillis));
+        config.setBudgetRatio(budgetRatio);
+        config.setMaxBurst(maxBurst);
+        return config;
+    }
+
+    private HedgingStreamingChatModel hedgingModel(HedgingConfig config) throws IOException {
+        return new HedgingStreamingChatModel(server.model(httpClientBuilder), config, scheduler,
+                new ModelRoutingMetrics(new SimpleMeterRegistry()));
+    }
+}
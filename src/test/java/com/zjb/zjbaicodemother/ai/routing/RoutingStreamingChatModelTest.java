@@ -0,0 +1,144 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.ai.http.AiHttpClientMetrics;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClient;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClientBuilder;
+import com.zjb.zjbaicodemother.config.ModelRoutingConfig;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地的 OpenAI 兼容桩服务验证路由选择、摘除和探测
+ */
+class RoutingStreamingChatModelTest {
+
+    private final List<StubOpenAiServer> servers = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    private final SharedHttpClientBuilder httpClientBuilder = new SharedHttpClientBuilder(new SharedHttpClient(
+            HttpClient.newBuilder().executor(executor).build(),
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(5),
+            executor,
+            watchdog,
+            new AiHttpClientMetrics(new SimpleMeterRegistry())));
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(StubOpenAiServer::stop);
+        executor.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void routeToFasterEndpoint() throws Exception {
+        StubOpenAiServer fast = start("fast", 0);
+        StubOpenAiServer slow = start("slow", 300);
+        ModelRoutingConfig config = config();
+        RoutingStreamingChatModel model = routingModel(config, fast, slow);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(StubOpenAiServer.chat(model).startsWith("hello from"));
+        }
+
+        // 两个端点各自至少被尝试一次后，后续请求都应发往更快的端点
+        assertEquals(1, slow.requests.get());
+        assertEquals(9, fast.requests.get());
+        assertTrue(model.endpoints().get(1).ttftMillis() >= 300);
+    }
+
+    @Test
+    void ejectFailingEndpointAndProbeAfterEjection() throws Exception {
+        StubOpenAiServer healthy = start("healthy", 50);
+        StubOpenAiServer broken = start("broken", 0);
+        broken.failing.set(true);
+        ModelRoutingConfig config = config();
+        config.setConsecutiveFailuresToEject(2);
+        config.setBaseEjectionTime(Duration.ofMillis(300));
+        RoutingStreamingChatModel model = routingModel(config, healthy, broken);
+        RoutedEndpoint brokenEndpoint = model.endpoints().get(1);
+
+        // 失败的端点没有样本、得分最低，会先收到请求，连续失败后被摘除
+        List<Boolean> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(chatSucceeded(model));
+        }
+        assertEquals(2, broken.requests.get());
+        assertFalse(brokenEndpoint.isHealthy());
+        assertEquals(4, results.stream().filter(Boolean::booleanValue).count());
+
+        // 摘除到期后，恢复的端点通过探测重新接入
+        broken.failing.set(false);
+        Thread.sleep(400);
+        assertTrue(chatSucceeded(model));
+        assertEquals(3, broken.requests.get());
+        assertTrue(brokenEndpoint.isHealthy());
+    }
+
+    @Test
+    void probeFailureDoublesEjectionTime() throws Exception {
+        StubOpenAiServer healthy = start("healthy", 0);
+        StubOpenAiServer broken = start("broken", 0);
+        broken.failing.set(true);
+        ModelRoutingConfig config = config();
+        config.setConsecutiveFailuresToEject(1);
+        config.setBaseEjectionTime(Duration.ofMillis(200));
+        RoutingStreamingChatModel model = routingModel(config, broken, healthy);
+        RoutedEndpoint brokenEndpoint = model.endpoints().get(0);
+
+        assertFalse(chatSucceeded(model));
+        Thread.sleep(250);
+        // 探测失败，摘除时长翻倍到 400ms
+        assertFalse(chatSucceeded(model));
+        assertEquals(2, broken.requests.get());
+        Thread.sleep(250);
+        assertTrue(chatSucceeded(model));
+        assertEquals(2, broken.requests.get());
+        assertFalse(brokenEndpoint.isHealthy());
+    }
+
+    private static ModelRoutingConfig config() {
+        ModelRoutingConfig config = new ModelRoutingConfig();
+        config.setExplorationRatio(0);
+        return config;
+    }
+
+    private RoutingStreamingChatModel routingModel(ModelRoutingConfig config, StubOpenAiServer... stubs) {
+        List<RoutedEndpoint> endpoints = new ArrayList<>();
+        for (StubOpenAiServer stub : stubs) {
+            endpoints.add(new RoutedEndpoint(stub.name, stub.model(httpClientBuilder), config));
+        }
+        return new RoutingStreamingChatModel(endpoints, config, new ModelRoutingMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static boolean chatSucceeded(StreamingChatModel model) {
+        try {
+            StubOpenAiServer.chat(model);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private StubOpenAiServer start(String name, long ttftMillis) throws IOException {
+        StubOpenAiServer server = new StubOpenAiServer(name, ttftMillis);
+        servers.add(server);
+        return server;
+    }
+}
@@ -0,0 +1,158 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+/**
+ * 最小的 OpenAI 兼容流式接口，首个数据块前按指定时长等待，之后匀速输出
+ */
+final class StubOpenAiServer {
+
+    static final int TOKENS = 20;
+
+    private static final long TOKEN_INTERVAL_MILLIS = 2;
+
+    final String name;
+
+    final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * 客户端在输出完成前断开的请求数
+     */
+    final AtomicInteger abortedStreams = new AtomicInteger();
+
+    final AtomicBoolean failing = new AtomicBoolean();
+
+    /**
+     * 按请求序号（从 1 开始）决定首个数据块前的等待时长
+     */
+    volatile IntToLongFunction ttftMillis;
+
+    /**
+     * 首个数据块之后的停顿时长
+     */
+    volatile long stallAfterFirstTokenMillis;
+
+    /**
+     * 按请求序号决定是否返回一次 {@link #TOOL_NAME} 工具调用，而不是文本
+     */
+    volatile IntPredicate toolCall = request -> false;
+
+    static final String TOOL_NAME = "touch";
+
+    private final HttpServer server;
+
+    StubOpenAiServer(String name, long ttftMillis) throws IOException {
+        this.name = name;
+        this.ttftMillis = request -> ttftMillis;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/chat/completions", exchange -> {
+            int request = requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (failing.get()) {
+                byte[] body = "{\"error\":{\"message\":\"unavailable\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(503, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                sleep(this.ttftMillis.applyAsLong(request));
+                if (toolCall.test(request)) {
+                    writeToolCall(out);
+                    return;
+                }
+                for (int i = 0; i < TOKENS; i++) {
+                    String token = i == 0 ? "hello from " + name : ".";
+                    writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"stub\","
+                            + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token + "\"},\"finish_reason\":null}]}");
+                    sleep(i == 0 ? stallAfterFirstTokenMillis : TOKEN_INTERVAL_MILLIS);
+                }
+                writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"stub\","
+                        + "\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],"
+                        + "\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":" + TOKENS + ",\"total_tokens\":" + (TOKENS + 1) + "}}");
+                writeEvent(out, "[DONE]");
+            } catch (IOException e) {
+                abortedStreams.incrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    StreamingChatModel model(HttpClientBuilder httpClientBuilder) {
+        return OpenAiStreamingChatModel.builder()
+                .httpClientBuilder(httpClientBuilder)
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .apiKey("test")
+                .modelName("stub")
+                .build();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * 同步调用模型并返回完整响应的文本
+     */
+    static String chat(StreamingChatModel model) throws Exception {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        model.chat("hi", new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS).aiMessage().text();
+    }
+
+    private static void writeToolCall(OutputStream out) throws IOException {
+        writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"stub\","
+                + "\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"" + TOOL_NAME + "\",\"arguments\":\"{\\\"name\\\":\\\"a\\\"}\"}}]},\"finish_reason\":null}]}");
+        writeEvent(out, "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"stub\","
+                + "\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"tool_calls\"}]}");
+        writeEvent(out, "[DONE]");
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
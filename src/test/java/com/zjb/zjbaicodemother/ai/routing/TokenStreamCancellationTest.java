@@ -0,0 +1,190 @@
+package com.zjb.zjbaicodemother.ai.routing;
+
+import com.zjb.zjbaicodemother.ai.http.AiHttpClientMetrics;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClient;
+import com.zjb.zjbaicodemother.ai.http.SharedHttpClientBuilder;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证取消 TokenStream 时中断进行中的模型请求，并且不再开始新的工具轮次
+ */
+class TokenStreamCancellationTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    private final SharedHttpClientBuilder httpClientBuilder = new SharedHttpClientBuilder(new SharedHttpClient(
+            HttpClient.newBuilder().executor(executor).build(),
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(5),
+            executor,
+            watchdog,
+            new AiHttpClientMetrics(new SimpleMeterRegistry())));
+
+    private final ChatMemory chatMemory = MessageWindowChatMemory.withMaxMessages(20);
+
+    private StubOpenAiServer server;
+
+    interface Assistant {
+
+        TokenStream chat(String userMessage);
+    }
+
+    static class SlowTool {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        volatile boolean interrupted;
+
+        volatile boolean finished;
+
+        @Tool(name = StubOpenAiServer.TOOL_NAME)
+        String touch(@P("文件名") String name) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            finished = true;
+            return "ok";
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        executor.close();
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void cancelAbortsInFlightRequest() throws Exception {
+        server = new StubOpenAiServer("stub", 0);
+        server.stallAfterFirstTokenMillis = 5000;
+        CountDownLatch firstToken = new CountDownLatch(1);
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        TokenStream tokenStream = assistant(new SlowTool()).chat("hi")
+                .onPartialResponse(partialResponse -> firstToken.countDown())
+                .onCompleteResponse(response -> error.complete(null))
+                .onError(error::complete);
+        tokenStream.start();
+
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        tokenStream.cancel();
+
+        assertInstanceOf(CancellationException.class, error.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        awaitAbortedStreams(1);
+        // 未完成的回复不写入记忆
+        assertEquals(1, chatMemory.messages().size());
+    }
+
+    @Test
+    void cancelDuringToolExecutionStopsNextRound() throws Exception {
+        server = new StubOpenAiServer("stub", 0);
+        server.toolCall = request -> request == 1;
+        SlowTool tool = new SlowTool();
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        TokenStream tokenStream = assistant(tool).chat("hi")
+                .onPartialResponse(partialResponse -> {
+                })
+                .onPartialToolExecutionRequest((index, request) -> {
+                })
+                .onCompleteResponse(response -> error.complete(null))
+                .onError(error::complete);
+        tokenStream.start();
+
+        assertTrue(tool.started.await(5, TimeUnit.SECONDS));
+        tokenStream.cancel();
+        tool.release.countDown();
+
+        assertInstanceOf(CancellationException.class, error.get(5, TimeUnit.SECONDS));
+        // 进行中的工具不被中断，执行完后不再发起下一轮请求
+        assertTrue(tool.finished);
+        assertFalse(tool.interrupted);
+        assertEquals(1, server.requests.get());
+        List<ChatMessage> messages = chatMemory.messages();
+        assertInstanceOf(ToolExecutionResultMessage.class, messages.get(messages.size() - 1));
+    }
+
+    @Test
+    void cancelBeforeToolExecutionAnswersToolCalls() throws Exception {
+        server = new StubOpenAiServer("stub", 0);
+        server.toolCall = request -> request == 1;
+        SlowTool tool = new SlowTool();
+        tool.release.countDown();
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicReference<TokenStream> tokenStream = new AtomicReference<>();
+        tokenStream.set(assistant(tool).chat("hi")
+                .onPartialResponse(partialResponse -> {
+                })
+                .onPartialToolExecutionRequest((index, request) -> {
+                })
+                // 工具参数完整后、执行前取消
+                .onCompleteToolExecutionRequest((index, request) -> tokenStream.get().cancel())
+                .onCompleteResponse(response -> error.complete(null))
+                .onError(throwable -> {
+                    errors.incrementAndGet();
+                    error.complete(throwable);
+                }));
+        tokenStream.get().start();
+
+        assertInstanceOf(CancellationException.class, error.get(5, TimeUnit.SECONDS));
+        // 响应已经完整，关闭响应体不会再回调一次错误
+        Thread.sleep(200);
+        assertEquals(1, errors.get());
+        assertFalse(tool.finished);
+        assertEquals(1, server.requests.get());
+        // 未执行的工具调用也有对应结果，记忆可以直接用于下一次对话
+        ToolExecutionResultMessage result = assertInstanceOf(ToolExecutionResultMessage.class,
+                chatMemory.messages().get(chatMemory.messages().size() - 1));
+        assertEquals("call_1", result.id());
+    }
+
+    private Assistant assistant(SlowTool tool) {
+        return AiServices.builder(Assistant.class)
+                .streamingChatModel(server.model(httpClientBuilder))
+                .chatMemory(chatMemory)
+                .tools(tool)
+                .build();
+    }
+
+    private void awaitAbortedStreams(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.abortedStreams.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, server.abortedStreams.get());
+    }
+}
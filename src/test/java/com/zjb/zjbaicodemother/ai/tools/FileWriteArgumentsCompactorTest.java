@@ -0,0 +1,70 @@
+package com.zjb.zjbaicodemother.ai.tools;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.internal.Json;
+import dev.langchain4j.internal.ParsedToolArguments;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证之前轮次的 writeFile 调用只保留路径，省略标记不会被再次压缩
+ */
+class FileWriteArgumentsCompactorTest {
+
+    private final FileWriteArgumentsCompactor compactor = new FileWriteArgumentsCompactor(16);
+
+    @Test
+    void replacesContentWithMarker() {
+        String content = "<template>\n  <div>\"你好\"</div>\n</template>\n".repeat(10);
+        String compacted = compactor.compact(writeFile("src/App.vue", content));
+
+        Map<String, Object> arguments = ParsedToolArguments.parse(compacted);
+        assertEquals("src/App.vue", arguments.get("relativeFilePath"));
+        String marker = (String) arguments.get("content");
+        assertTrue(FileWriteArgumentsCompactor.isMarker(marker));
+        assertTrue(marker.contains(String.valueOf(content.length())));
+        assertTrue(compacted.length() < content.length());
+
+        // 已经是省略标记时保持不变
+        assertNull(compactor.compact(writeFile("src/App.vue", marker)));
+    }
+
+    @Test
+    void compactsEachRequestOnce() {
+        ToolExecutionRequest request = writeFile("src/App.vue", "<template>todo</template>".repeat(10));
+
+        String compacted = compactor.compact(request);
+
+        // 之后的轮次直接复用第一次的结果
+        assertSame(compacted, compactor.compact(request));
+        assertNull(compactor.compact(writeFile("index.html", "<p>短</p>")));
+    }
+
+    @Test
+    void keepsOtherRequests() {
+        assertNull(compactor.compact(writeFile("index.html", "<p>短</p>")));
+        assertNull(compactor.compact(ToolExecutionRequest.builder()
+                .id("call_1").name("readFile").arguments("{\"relativeFilePath\":\"src/App.vue\"}").build()));
+        assertNull(compactor.compact(ToolExecutionRequest.builder()
+                .id("call_1").name(FileWriteTool.TOOL_NAME).arguments("{\"content\":").build()));
+    }
+
+    @Test
+    void detectsMarkerPrefixOnly() {
+        String marker = FileWriteArgumentsCompactor.marker("x".repeat(100));
+        assertTrue(FileWriteArgumentsCompactor.isMarker(marker.substring(0, FileWriteArgumentsCompactor.markerPrefixLength())));
+        assertFalse(FileWriteArgumentsCompactor.isMarker(marker.substring(0, 3)));
+        assertFalse(FileWriteArgumentsCompactor.isMarker("<template>" + marker));
+    }
+
+    private static ToolExecutionRequest writeFile(String relativeFilePath, String content) {
+        return ToolExecutionRequest.builder()
+                .id("call_1")
+                .name(FileWriteTool.TOOL_NAME)
+                .arguments(Json.toJson(Map.of("relativeFilePath", relativeFilePath, "content", content)))
+                .build();
+    }
+}
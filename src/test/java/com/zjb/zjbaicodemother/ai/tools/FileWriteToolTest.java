@@ -0,0 +1,29 @@
+package com.zjb.zjbaicodemother.ai.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证写入路径只能位于项目目录（暂存目录）内
+ */
+class FileWriteToolTest {
+
+    private final Path projectRoot = Path.of("/tmp/output/.versions/vue_project_1/v1.staging");
+
+    @Test
+    void resolvesRelativePathsInsideProject() throws IOException {
+        assertEquals(projectRoot.resolve("src/App.vue"), FileWriteTool.resolvePath("src/App.vue", projectRoot));
+        assertEquals(projectRoot.resolve("src/App.vue"), FileWriteTool.resolvePath("./src/../src/App.vue", projectRoot));
+    }
+
+    @Test
+    void rejectsPathsOutsideProject() {
+        for (String path : new String[]{"/etc/passwd", "../v0/index.html", "src/../../v0/index.html", ".", "a\0b"}) {
+            assertThrows(IOException.class, () -> FileWriteTool.resolvePath(path, projectRoot));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.zjb.zjbaicodemother.benchmark;
+
+import com.zjb.zjbaicodemother.core.parser.CodeBlockScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多文件代码块提取基准测试
+ * 对比原有的三个懒惰正则（每种语言扫描一遍全文）与一次遍历的 CodeBlockScanner
+ * 运行方式：直接执行 main 方法，可以加 -prof gc 查看分配情况
+ *
+ * @author zjb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeBlockParseBenchmark {
+
+    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+
+    private static final CodeBlockScanner SCANNER = new CodeBlockScanner(Map.of(
+            "html", "html",
+            "css", "css",
+            "js", "js",
+            "javascript", "js"));
+
+    /**
+     * 模型输出大小（字符）
+     */
+    @Param({"1024", "16384", "262144", "2097152"})
+    private int size;
+
+    /**
+     * 输出形态
+     * WELL_FORMED：html / css / js 三个代码块齐全
+     * UNTERMINATED：只有 html 代码块且缺少结束标记（输出被截断）
+     * NO_FENCE：没有任何代码块，纯 HTML 输出
+     * MALFORMED：大量行内反引号和不完整的标记，如 ``htm、```json
+     */
+    @Param({"WELL_FORMED", "UNTERMINATED", "NO_FENCE", "MALFORMED"})
+    private String shape;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = switch (shape) {
+            case "WELL_FORMED" -> "好的，下面是代码：\n```html\n" + fill("<div class=\"card\"><p>待办事项</p></div>\n", size / 2)
+                    + "```\n```css\n" + fill(".card { color: #333; margin: 8px; }\n", size / 4)
+                    + "```\n```javascript\n" + fill("document.querySelectorAll('.card').forEach(c => c.remove());\n", size / 4)
+                    + "```\n以上就是全部代码。";
+            case "UNTERMINATED" -> "```html\n" + fill("<div class=\"card\"><p>待办事项</p></div>\n", size);
+            case "NO_FENCE" -> fill("<div class=\"card\"><p>待办事项</p></div>\n", size);
+            case "MALFORMED" -> fill("说明 `code` ``htm ```json\n{} ``` `` ```htmlx ", size);
+            default -> throw new IllegalArgumentException(shape);
+        };
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        blackhole.consume(find(HTML_CODE_PATTERN));
+        blackhole.consume(find(CSS_CODE_PATTERN));
+        blackhole.consume(find(JS_CODE_PATTERN));
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        blackhole.consume(SCANNER.scan(content));
+    }
+
+    private String find(Pattern pattern) {
+        Matcher matcher = pattern.matcher(content);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String fill(String line, int size) {
+        StringBuilder builder = new StringBuilder(size + line.length());
+        while (builder.length() < size) {
+            builder.append(line);
+        }
+        builder.setLength(size);
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CodeBlockParseBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
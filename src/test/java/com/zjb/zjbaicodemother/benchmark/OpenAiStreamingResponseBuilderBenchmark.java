@@ -0,0 +1,139 @@
+package com.zjb.zjbaicodemother.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.internal.StreamingJsonParser;
+import dev.langchain4j.model.openai.OpenAiStreamingResponseBuilder;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionChoice;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.model.openai.internal.chat.ToolCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenAiStreamingResponseBuilder 基准测试
+ * 回放录制的模型流式响应分片（src/test/resources/benchmark），每次操作追加一个分片，
+ * 回放到末尾时构建完整响应并开始下一轮，因此 GC 分析器的 gc.alloc.rate.norm 即为每个分片（含均摊的 build）的分配字节数
+ * parseArguments 为 true 时，同时把工具调用的参数片段交给流式解析器，即 AI 服务为 writeFile 调用做的解析，
+ * 用于对比构建器本身和加上参数解析后的开销
+ * 运行方式：直接执行 main 方法
+ *
+ * @author zjb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenAiStreamingResponseBuilderBenchmark {
+
+    /**
+     * 录制的分片序列：纯文本回复、带工具调用的回复
+     */
+    @Param({"openai-stream-text.jsonl", "openai-stream-tool-calls.jsonl"})
+    private String recording;
+
+    /**
+     * 是否同时流式解析工具调用参数
+     */
+    @Param({"false", "true"})
+    private boolean parseArguments;
+
+    private ChatCompletionResponse[] chunks;
+
+    private int position;
+
+    private OpenAiStreamingResponseBuilder builder;
+
+    private final Map<Integer, StreamingJsonParser> argumentParsers = new HashMap<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        List<ChatCompletionResponse> responses = new ArrayList<>();
+        try (InputStream inputStream = getClass().getResourceAsStream("/benchmark/" + recording);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    responses.add(objectMapper.readValue(line, ChatCompletionResponse.class));
+                }
+            }
+        }
+        chunks = responses.toArray(new ChatCompletionResponse[0]);
+        builder = new OpenAiStreamingResponseBuilder();
+    }
+
+    /**
+     * 追加一个分片，回放完一个完整响应时构建结果
+     */
+    @Benchmark
+    public void appendChunk(Blackhole blackhole) {
+        ChatCompletionResponse chunk = chunks[position++];
+        builder.append(chunk);
+        if (parseArguments) {
+            parseArguments(chunk);
+        }
+        if (position == chunks.length) {
+            blackhole.consume(builder.build());
+            argumentParsers.values().forEach(parser -> blackhole.consume(parser.result()));
+            argumentParsers.clear();
+            builder = new OpenAiStreamingResponseBuilder();
+            position = 0;
+        }
+    }
+
+    private void parseArguments(ChatCompletionResponse chunk) {
+        if (chunk.choices() == null || chunk.choices().isEmpty()) {
+            return;
+        }
+        ChatCompletionChoice choice = chunk.choices().get(0);
+        if (choice.delta() == null || choice.delta().toolCalls() == null) {
+            return;
+        }
+        for (ToolCall toolCall : choice.delta().toolCalls()) {
+            if (toolCall.function() != null && toolCall.function().arguments() != null) {
+                argumentParsers.computeIfAbsent(toolCall.index(), index -> new StreamingJsonParser(
+                                new StreamingJsonParser.FieldListener() {
+                                }, true))
+                        .accept(toolCall.function().arguments());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OpenAiStreamingResponseBuilderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.zjb.zjbaicodemother.benchmark;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.internal.Json;
+import dev.langchain4j.internal.StreamingJsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工具调用参数解析基准测试
+ * 对比原有的“先拼接完整参数再解析”（流处理器和工具执行器各解析一次）与流式增量解析
+ * 运行方式：直接执行 main 方法，可以加 -prof gc 查看分配情况
+ *
+ * @author zjb
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToolArgumentsParseBenchmark {
+
+    /**
+     * 文件内容大小（字节）
+     */
+    @Param({"10240", "51200", "204800"})
+    private int contentSize;
+
+    /**
+     * 模型每次下发的参数片段长度
+     */
+    @Param({"24"})
+    private int fragmentSize;
+
+    private List<String> fragments;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("relativeFilePath", "src/pages/Home.vue");
+        arguments.put("content", vueContent(contentSize));
+        String json = Json.toJson(arguments);
+        fragments = new ArrayList<>();
+        for (int i = 0; i < json.length(); i += fragmentSize) {
+            fragments.add(json.substring(i, Math.min(json.length(), i + fragmentSize)));
+        }
+    }
+
+    /**
+     * 原有方式：拼接完整参数后，流处理器用 hutool 解析一次，工具执行器再用 Jackson 解析一次
+     */
+    @Benchmark
+    public void accumulateThenParse(Blackhole blackhole) {
+        StringBuilder arguments = new StringBuilder();
+        for (String fragment : fragments) {
+            arguments.append(fragment);
+        }
+        String complete = arguments.toString();
+        JSONObject handlerView = JSONUtil.parseObj(complete);
+        Map<String, Object> executorView = Json.fromJson(complete, Map.class);
+        blackhole.consume(handlerView.getStr("content"));
+        blackhole.consume(executorView);
+    }
+
+    /**
+     * 增量方式：片段到达时解析，完整参数字符串仍保留给对话记忆，解析结果被两处复用
+     */
+    @Benchmark
+    public void incrementalParse(Blackhole blackhole) {
+        StringBuilder arguments = new StringBuilder();
+        StreamingJsonParser parser = new StreamingJsonParser(null, true);
+        for (String fragment : fragments) {
+            arguments.append(fragment);
+            parser.accept(fragment);
+        }
+        blackhole.consume(arguments.toString());
+        blackhole.consume(parser.result());
+    }
+
+    /**
+     * 仅流式回调字段（流式写文件的场景），不构建解析结果
+     */
+    @Benchmark
+    public void incrementalFieldsOnly(Blackhole blackhole) {
+        StreamingJsonParser parser = new StreamingJsonParser(new StreamingJsonParser.FieldListener() {
+            @Override
+            public void onStringFieldChunk(String name, CharSequence chunk) {
+                blackhole.consume(chunk.length());
+            }
+        }, false);
+        for (String fragment : fragments) {
+            parser.accept(fragment);
+        }
+        blackhole.consume(parser.isComplete());
+    }
+
+    private static String vueContent(int size) {
+        String block = """
+                <template>
+                  <div class="card" :class="{ active: isActive }">
+                    <h2>{{ title }}</h2>
+                    <p>说明文字："引号"、\\反斜杠\\ 和 \ttab</p>
+                  </div>
+                </template>
+                """;
+        StringBuilder content = new StringBuilder(size + block.length());
+        while (content.length() < size) {
+            content.append(block);
+        }
+        content.setLength(size);
+        return content.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ToolArgumentsParseBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,5 +1,7 @@
 package com.zjb.zjbaicodemother.core;
 
+import com.zjb.zjbaicodemother.ai.model.message.AiResponseMessage;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
 import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
@@ -26,9 +28,9 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("任务记录网站，不超过20行代码", CodeGenTypeEnum.MULTI_FILE, 1L);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("任务记录网站，不超过20行代码", CodeGenTypeEnum.MULTI_FILE, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<String> result = codeStream.ofType(AiResponseMessage.class).map(AiResponseMessage::data).collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
         String completeContent = String.join("", result);
@@ -37,11 +39,11 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<String> result = codeStream.ofType(AiResponseMessage.class).map(AiResponseMessage::data).collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
         String completeContent = String.join("", result);
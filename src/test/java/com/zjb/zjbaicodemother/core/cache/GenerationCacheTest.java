@@ -0,0 +1,137 @@
+package com.zjb.zjbaicodemother.core.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjb.zjbaicodemother.config.GenerationCacheConfig;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用内存中的 Redis 替身验证缓存键归一化、两级缓存和回放
+ */
+class GenerationCacheTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    @Test
+    void keyIgnoresTrivialPromptDifferences() {
+        GenerationCache cache = cache(config());
+
+        GenerationCache.Key key = cache.keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML);
+        assertEquals(key, cache.keyOf("  做一个\n\tＴｏｄｏ   网站 ", CodeGenTypeEnum.HTML));
+        // 大小写不同的提示词生成的页面文案不同，不能共用结果
+        assertNotEquals(key, cache.keyOf("做一个 TODO 网站", CodeGenTypeEnum.HTML));
+        assertNotEquals(key, cache.keyOf("做一个 Todo 网站", CodeGenTypeEnum.MULTI_FILE));
+        assertNotEquals(key, cache.keyOf("做一个 Todo 博客", CodeGenTypeEnum.HTML));
+        // Vue 工程依赖工具调用写文件，不缓存
+        assertNull(cache.keyOf("做一个 Todo 网站", CodeGenTypeEnum.VUE_PROJECT));
+    }
+
+    @Test
+    void keyChangesWithModel() {
+        GenerationCacheConfig other = config();
+        other.setModelName("another-model");
+
+        assertNotEquals(cache(config()).keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML),
+                cache(other).keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML));
+    }
+
+    @Test
+    void disabledOrLongPromptSkipsCache() {
+        GenerationCacheConfig disabled = config();
+        disabled.setEnabled(false);
+        assertNull(cache(disabled).keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML));
+
+        GenerationCacheConfig config = config();
+        config.setMaxPromptLength(5);
+        assertNull(cache(config).keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML));
+    }
+
+    @Test
+    void sharedThroughRedis() {
+        GenerationCache writer = cache(config());
+        GenerationCache.Key key = writer.keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML);
+        assertNull(writer.get(key));
+
+        writer.put(key, "```html\n<p>todo</p>\n```");
+
+        // 另一个实例的本地缓存为空，从 Redis 读取
+        GenerationCache reader = cache(config());
+        assertEquals("```html\n<p>todo</p>\n```", reader.get(key));
+        assertEquals(1, redis.size());
+    }
+
+    @Test
+    void entryExpiresInBothTiers() throws InterruptedException {
+        GenerationCacheConfig config = config();
+        config.setTtl(Duration.ofMillis(100));
+        GenerationCache cache = cache(config);
+        GenerationCache.Key key = cache.keyOf("做一个 Todo 网站", CodeGenTypeEnum.HTML);
+        cache.put(key, "<p>todo</p>");
+        assertEquals("<p>todo</p>", cache.get(key));
+
+        Thread.sleep(200);
+
+        assertNull(cache.get(key));
+        // Redis 替身不会自动过期，依赖写入时记录的过期时间
+        assertNull(cache(config).get(key));
+    }
+
+    @Test
+    void replayKeepsContent() {
+        String output = "<p>你好 😀 world</p>".repeat(20);
+        List<String> chunks = GenerationCache.split(output, 7);
+
+        assertEquals(output, String.join("", chunks));
+        assertTrue(chunks.stream().noneMatch(chunk -> Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))));
+
+        GenerationCacheConfig config = config();
+        config.setReplayInterval(Duration.ofMillis(1));
+        List<String> replayed = cache(config).replay(output).collectList().block();
+        assertEquals(output, String.join("", replayed));
+    }
+
+    private static GenerationCacheConfig config() {
+        GenerationCacheConfig config = new GenerationCacheConfig();
+        config.setEnabled(true);
+        config.setModelName("test-model");
+        return config;
+    }
+
+    private GenerationCache cache(GenerationCacheConfig config) {
+        return new GenerationCache(config, redisTemplate(), new ObjectMapper(),
+                new GenerationCacheMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * 只实现缓存用到的 get / set
+     */
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redisTemplate() {
+        ValueOperations<String, String> valueOperations = (ValueOperations<String, String>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "get" -> redis.get((String) args[0]);
+                    case "set" -> {
+                        redis.put((String) args[0], (String) args[1]);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return new StringRedisTemplate() {
+            @Override
+            public ValueOperations<String, String> opsForValue() {
+                return valueOperations;
+            }
+        };
+    }
+}
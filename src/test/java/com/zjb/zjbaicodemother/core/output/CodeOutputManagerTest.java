@@ -0,0 +1,239 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import com.zjb.zjbaicodemother.config.CodeOutputConfig;
+import com.zjb.zjbaicodemother.exception.BusinessException;
+import com.zjb.zjbaicodemother.exception.ErrorCode;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证暂存目录的发布、丢弃、历史版本保留、恢复和崩溃后的清理
+ */
+class CodeOutputManagerTest {
+
+    @TempDir
+    Path rootDir;
+
+    private final CodeOutputConfig config = new CodeOutputConfig();
+
+    private ContentStore contentStore;
+
+    private CodeOutputManager manager;
+
+    @BeforeEach
+    void setUp() {
+        contentStore = new ContentStore(rootDir.resolve("store"), config.getStore(), new SimpleMeterRegistry());
+        manager = new CodeOutputManager(rootDir.resolve("output"), config, contentStore);
+    }
+
+    @Test
+    void readersSeeOnlyPublishedVersions() throws IOException {
+        Path live = manager.liveDir(CodeGenTypeEnum.HTML, 1L);
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.HTML, 1L);
+        Files.writeString(first.dir().resolve("index.html"), "v1");
+        assertFalse(Files.exists(live));
+        first.publish();
+        assertEquals("v1", Files.readString(live.resolve("index.html")));
+
+        CodeOutputManager.Staging second = manager.begin(CodeGenTypeEnum.HTML, 1L);
+        Files.writeString(second.dir().resolve("index.html"), "v2-partial");
+        // 未发布的内容不可见，丢弃后暂存目录被删除
+        assertEquals("v1", Files.readString(live.resolve("index.html")));
+        second.discard();
+        assertFalse(Files.exists(second.dir()));
+        assertEquals("v1", Files.readString(live.resolve("index.html")));
+
+        CodeOutputManager.Staging third = manager.begin(CodeGenTypeEnum.HTML, 1L);
+        Files.writeString(third.dir().resolve("index.html"), "v3");
+        third.publish();
+        third.discard();
+        assertEquals("v3", Files.readString(live.resolve("index.html")));
+    }
+
+    @Test
+    void keepsConfiguredNumberOfOldVersions() throws IOException {
+        config.setRetainedVersions(2);
+        for (int i = 0; i < 5; i++) {
+            CodeOutputManager.Staging staging = manager.begin(CodeGenTypeEnum.MULTI_FILE, 2L);
+            Files.writeString(staging.dir().resolve("index.html"), "v" + i);
+            staging.publish();
+        }
+        assertEquals(3, count(manager.versionsDir("multi_file_2")));
+        assertEquals("v4", Files.readString(manager.liveDir(CodeGenTypeEnum.MULTI_FILE, 2L).resolve("index.html")));
+    }
+
+    @Test
+    void migratesLegacyDirectory() throws IOException {
+        Path live = manager.liveDir(CodeGenTypeEnum.HTML, 3L);
+        Files.createDirectories(live);
+        Files.writeString(live.resolve("index.html"), "legacy");
+
+        CodeOutputManager.Staging staging = manager.begin(CodeGenTypeEnum.HTML, 3L);
+        Files.writeString(staging.dir().resolve("index.html"), "new");
+        staging.publish();
+
+        assertEquals("new", Files.readString(live.resolve("index.html")));
+        assertEquals(2, count(manager.versionsDir("html_3")));
+    }
+
+    @Test
+    void vueProjectStartsFromCurrentVersion() throws IOException {
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.VUE_PROJECT, 4L);
+        first.writeFile("package.json", "{}");
+        Files.writeString(first.dir().resolve("package-lock.json"), "{}");
+        Files.createDirectories(first.dir().resolve("node_modules/vue"));
+        Files.writeString(first.dir().resolve("node_modules/vue/index.js"), "vue");
+        Files.createDirectories(first.dir().resolve("dist"));
+        Files.writeString(first.dir().resolve("dist/index.html"), "built");
+        first.publish();
+
+        CodeOutputManager.Staging second = manager.begin(CodeGenTypeEnum.VUE_PROJECT, 4L);
+        assertEquals("{}", Files.readString(second.dir().resolve("package.json")));
+        assertFalse(Files.exists(second.dir().resolve("dist")));
+        Path live = manager.liveDir(CodeGenTypeEnum.VUE_PROJECT, 4L);
+        assertTrue(Files.isSameFile(live.resolve("node_modules/vue/index.js"), second.dir().resolve("node_modules/vue/index.js")));
+        // 写入存储的文件链接复用，npm 生成的文件复制
+        assertTrue(Files.isSameFile(live.resolve("package.json"), second.dir().resolve("package.json")));
+        assertFalse(Files.isSameFile(live.resolve("package-lock.json"), second.dir().resolve("package-lock.json")));
+
+        second.writeFile("package.json", "{\"name\":\"todo\"}");
+        assertEquals("{}", Files.readString(live.resolve("package.json")));
+        second.publish();
+        assertEquals("{\"name\":\"todo\"}", Files.readString(live.resolve("package.json")));
+    }
+
+    @Test
+    void onlyOneStagingPerApp() throws IOException {
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.HTML, 8L);
+        first.writeFile("index.html", "v1");
+        first.publish();
+        CodeOutputManager.Staging generating = manager.begin(CodeGenTypeEnum.HTML, 8L);
+
+        // 进行中的生成不会被另一次生成或恢复接管
+        BusinessException e = assertThrows(BusinessException.class, () -> manager.begin(CodeGenTypeEnum.HTML, 8L));
+        assertEquals(ErrorCode.OPERATION_ERROR.getCode(), e.getCode());
+        assertThrows(BusinessException.class, () -> manager.restore(CodeGenTypeEnum.HTML, 8L, first.versionId()));
+        assertTrue(Files.isDirectory(generating.dir()));
+        // 其他应用不受影响
+        manager.begin(CodeGenTypeEnum.HTML, 9L).discard();
+
+        generating.discard();
+        assertTrue(generating.isFinished());
+        manager.begin(CodeGenTypeEnum.HTML, 8L).discard();
+    }
+
+    @Test
+    void preparedRestoreHoldsTheAppUntilPublished() throws IOException {
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.HTML, 10L);
+        first.writeFile("index.html", "v1");
+        first.publish();
+        CodeOutputManager.Staging second = manager.begin(CodeGenTypeEnum.HTML, 10L);
+        second.writeFile("index.html", "v2");
+        second.publish();
+
+        // 准备好的恢复（如等待构建）发布之前，正式目录不变，新的生成被拒绝
+        CodeOutputManager.Staging restoring = manager.prepareRestore(CodeGenTypeEnum.HTML, 10L, first.versionId());
+        Path live = manager.liveDir(CodeGenTypeEnum.HTML, 10L);
+        assertEquals("v2", Files.readString(live.resolve("index.html")));
+        assertThrows(BusinessException.class, () -> manager.begin(CodeGenTypeEnum.HTML, 10L));
+
+        restoring.publish();
+        assertEquals("v1", Files.readString(live.resolve("index.html")));
+        manager.begin(CodeGenTypeEnum.HTML, 10L).discard();
+    }
+
+    @Test
+    void restoresHistoricalVersionAsNewVersion() throws IOException {
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.MULTI_FILE, 6L);
+        first.writeFile("index.html", "<p>v1</p>");
+        first.writeFile("style.css", "p {}");
+        first.publish();
+        CodeOutputManager.Staging second = manager.begin(CodeGenTypeEnum.MULTI_FILE, 6L);
+        second.writeFile("index.html", "<p>v2</p>");
+        second.writeFile("script.js", "init()");
+        second.publish();
+
+        List<VersionManifest> versions = manager.listVersions(CodeGenTypeEnum.MULTI_FILE, 6L);
+        assertEquals(List.of(second.versionId(), first.versionId()), versions.stream().map(VersionManifest::getVersionId).toList());
+        assertEquals(2, versions.get(1).getFileCount());
+        assertEquals(List.of("index.html:modified", "script.js:added", "style.css:deleted"),
+                manager.diffVersions(CodeGenTypeEnum.MULTI_FILE, 6L, first.versionId(), second.versionId()).stream()
+                        .map(change -> change.path() + ":" + change.type().getValue()).toList());
+
+        String restored = manager.restore(CodeGenTypeEnum.MULTI_FILE, 6L, first.versionId());
+
+        Path live = manager.liveDir(CodeGenTypeEnum.MULTI_FILE, 6L);
+        assertEquals("<p>v1</p>", Files.readString(live.resolve("index.html")));
+        assertEquals("p {}", Files.readString(live.resolve("style.css")));
+        assertFalse(Files.exists(live.resolve("script.js")));
+        assertEquals(restored, manager.listVersions(CodeGenTypeEnum.MULTI_FILE, 6L).getFirst().getVersionId());
+        assertTrue(manager.diffVersions(CodeGenTypeEnum.MULTI_FILE, 6L, first.versionId(), restored).isEmpty());
+        // 恢复的文件链接到存储中的同一份内容
+        assertTrue(Files.isSameFile(live.resolve("index.html"),
+                manager.versionsDir("multi_file_6").resolve(first.versionId()).resolve("index.html")));
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> manager.restore(CodeGenTypeEnum.MULTI_FILE, 6L, "missing"));
+        assertEquals(ErrorCode.NOT_FOUND_ERROR.getCode(), e.getCode());
+    }
+
+    @Test
+    void vueRestoreChangesOnlyDifferentFiles() throws IOException {
+        CodeOutputManager.Staging first = manager.begin(CodeGenTypeEnum.VUE_PROJECT, 7L);
+        first.writeFile("package.json", "{}");
+        first.writeFile("src/App.vue", "<template>v1</template>");
+        Files.createDirectories(first.dir().resolve("node_modules/vue"));
+        Files.writeString(first.dir().resolve("node_modules/vue/index.js"), "vue");
+        first.publish();
+        CodeOutputManager.Staging second = manager.begin(CodeGenTypeEnum.VUE_PROJECT, 7L);
+        second.writeFile("src/App.vue", "<template>v2</template>");
+        second.writeFile("src/Todo.vue", "<template>todo</template>");
+        second.publish();
+        // 历史版本不保留 node_modules，清单中也不记录
+        Path firstDir = manager.versionsDir("vue_project_7").resolve(first.versionId());
+        assertFalse(Files.exists(firstDir.resolve("node_modules")));
+        assertEquals(2, manager.listVersions(CodeGenTypeEnum.VUE_PROJECT, 7L).get(1).getFileCount());
+
+        manager.restore(CodeGenTypeEnum.VUE_PROJECT, 7L, first.versionId());
+
+        Path live = manager.liveDir(CodeGenTypeEnum.VUE_PROJECT, 7L);
+        assertEquals("<template>v1</template>", Files.readString(live.resolve("src/App.vue")));
+        assertFalse(Files.exists(live.resolve("src/Todo.vue")));
+        assertEquals("vue", Files.readString(live.resolve("node_modules/vue/index.js")));
+    }
+
+    @Test
+    void cleanUpRemovesLeftoverStaging() throws IOException {
+        CodeOutputManager.Staging published = manager.begin(CodeGenTypeEnum.HTML, 5L);
+        Files.writeString(published.dir().resolve("index.html"), "v1");
+        published.publish();
+        // 模拟进程在生成过程中崩溃
+        CodeOutputManager.Staging crashed = manager.begin(CodeGenTypeEnum.HTML, 5L);
+        Files.writeString(crashed.dir().resolve("index.html"), "partial");
+
+        new CodeOutputManager(rootDir.resolve("output"), config, contentStore).cleanUp();
+
+        assertFalse(Files.exists(crashed.dir()));
+        assertEquals(1, count(manager.versionsDir("html_5")));
+        assertEquals("v1", Files.readString(manager.liveDir(CodeGenTypeEnum.HTML, 5L).resolve("index.html")));
+    }
+
+    /**
+     * 版本目录数，不含版本清单
+     */
+    private static long count(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(Files::isDirectory).count();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.zjb.zjbaicodemother.config.CodeOutputConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证按内容去重、整体替换写入、目录复制和未引用文件的清理
+ */
+class ContentStoreTest {
+
+    @TempDir
+    Path rootDir;
+
+    private final CodeOutputConfig.Store config = new CodeOutputConfig.Store();
+
+    private ContentStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ContentStore(rootDir.resolve("store"), config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sameContentSharesOneFile() throws IOException {
+        Path first = rootDir.resolve("output/a/package.json");
+        Path second = rootDir.resolve("output/b/package.json");
+        store.write(first, bytes("{\"name\":\"app\"}"));
+        store.write(second, bytes("{\"name\":\"app\"}"));
+
+        assertTrue(Files.isSameFile(first, second));
+        assertTrue(Files.isSameFile(first, blobOf("{\"name\":\"app\"}")));
+        assertEquals(3L, linkCount(first));
+    }
+
+    @Test
+    void rewriteReplacesLinkWithoutTouchingSharedContent() throws IOException {
+        Path first = rootDir.resolve("output/a/main.js");
+        Path second = rootDir.resolve("output/b/main.js");
+        store.write(first, bytes("console.log(1)"));
+        store.write(second, bytes("console.log(1)"));
+
+        store.write(second, bytes("console.log(2)"));
+
+        assertEquals("console.log(1)", Files.readString(first));
+        assertEquals("console.log(2)", Files.readString(second));
+        assertEquals(2L, linkCount(first));
+    }
+
+    @Test
+    void moveInConsumesTempFile() throws IOException {
+        Path temp = rootDir.resolve("output/a/.App.vue.streaming");
+        Files.createDirectories(temp.getParent());
+        Files.writeString(temp, "<template/>");
+        Path target = rootDir.resolve("output/a/App.vue");
+
+        store.moveIn(temp, target);
+
+        assertFalse(Files.exists(temp));
+        assertEquals("<template/>", Files.readString(target));
+        assertTrue(Files.isSameFile(target, blobOf("<template/>")));
+    }
+
+    @Test
+    void copyTreeLinksStoredFilesAndReplacesTarget() throws IOException {
+        Path source = rootDir.resolve("output/dist");
+        store.write(source.resolve("index.html"), bytes("<html></html>"));
+        // 构建生成的文件不在存储中，复制时写入存储
+        Files.createDirectories(source.resolve("assets"));
+        Files.writeString(source.resolve("assets/app.js"), "built");
+        Path deploy = rootDir.resolve("deploy/abc123");
+        Files.createDirectories(deploy);
+        Files.writeString(deploy.resolve("stale.html"), "old");
+
+        store.copyTree(source, deploy);
+
+        assertTrue(Files.isSameFile(source.resolve("index.html"), deploy.resolve("index.html")));
+        assertEquals("built", Files.readString(deploy.resolve("assets/app.js")));
+        assertTrue(Files.isSameFile(deploy.resolve("assets/app.js"), blobOf("built")));
+        assertFalse(Files.exists(deploy.resolve("stale.html")));
+        // 构建目录中的文件本身不链接到存储，之后被原地修改也不影响部署目录
+        assertEquals(1L, linkCount(source.resolve("assets/app.js")));
+    }
+
+    @Test
+    void collectsOnlyUnreferencedBlobs() throws IOException {
+        config.setGcMinAge(Duration.ZERO);
+        Path kept = rootDir.resolve("output/a/index.html");
+        Path removed = rootDir.resolve("output/b/index.html");
+        store.write(kept, bytes("kept"));
+        store.write(removed, bytes("removed"));
+        Files.delete(removed);
+
+        assertEquals(1, store.collectGarbage());
+
+        assertTrue(Files.exists(blobOf("kept")));
+        assertFalse(Files.exists(blobOf("removed")));
+        // 被清理的内容再次写入时重新保存
+        store.write(removed, bytes("removed"));
+        assertEquals("removed", Files.readString(removed));
+    }
+
+    @Test
+    void recentBlobsSurviveCollection() throws IOException {
+        Path file = rootDir.resolve("output/a/index.html");
+        store.write(file, bytes("recent"));
+        Files.delete(file);
+
+        assertEquals(0, store.collectGarbage());
+        assertTrue(Files.exists(blobOf("recent")));
+    }
+
+    @Test
+    void reuseKeepsBlobModifiedTime() throws IOException {
+        Path first = rootDir.resolve("output/a/index.html");
+        store.write(first, bytes("shared"));
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+        Files.setLastModifiedTime(blobOf("shared"), old);
+        Files.delete(first);
+
+        Path second = rootDir.resolve("output/b/index.html");
+        store.write(second, bytes("shared"));
+        Files.delete(second);
+
+        // 复用只记录在内存中，存储文件的修改时间不变，刚复用过的文件也不会被清理
+        assertEquals(old, Files.getLastModifiedTime(blobOf("shared")));
+        assertEquals(0, store.collectGarbage());
+        assertTrue(Files.exists(blobOf("shared")));
+    }
+
+    @Test
+    void linkedFilesStayWritable() throws IOException {
+        Path file = rootDir.resolve("output/a/index.html");
+        store.write(file, bytes("<p>v1</p>"));
+
+        assertTrue(Files.isWritable(file));
+        Path renamed = file.resolveSibling("home.html");
+        Files.move(file, renamed);
+        Files.delete(renamed);
+    }
+
+    @Test
+    void disabledWritesPlainFiles() throws IOException {
+        config.setEnabled(false);
+        Path first = rootDir.resolve("output/a/index.html");
+        Path second = rootDir.resolve("output/b/index.html");
+        store.write(first, bytes("same"));
+        store.write(second, bytes("same"));
+
+        assertFalse(Files.isSameFile(first, second));
+        assertFalse(Files.exists(rootDir.resolve("store")));
+    }
+
+    private Path blobOf(String content) {
+        return store.blobPath(DigestUtil.sha256Hex(bytes(content)));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long linkCount(Path file) throws IOException {
+        return ((Number) Files.getAttribute(file, "unix:nlink")).longValue();
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjb.zjbaicodemother.core.output;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证版本清单的反向增量保存、删除和按文件状态沿用哈希
+ */
+class VersionHistoryTest {
+
+    @TempDir
+    Path rootDir;
+
+    private VersionHistory history;
+
+    @BeforeEach
+    void setUp() {
+        history = new VersionHistory(rootDir.resolve(".versions"), ".swap");
+    }
+
+    @Test
+    void olderVersionsAreStoredAsDeltas() throws IOException {
+        record("v1", Map.of("index.html", "1", "style.css", "css"));
+        record("v2", Map.of("index.html", "2", "style.css", "css", "script.js", "js"));
+        record("v3", Map.of("index.html", "3", "style.css", "css"));
+
+        List<VersionManifest> manifests = history.list("app");
+        assertEquals(List.of("v3", "v2", "v1"), manifests.stream().map(VersionManifest::getVersionId).toList());
+        assertNull(manifests.get(0).getBase());
+        VersionManifest v2 = manifests.get(1);
+        assertEquals("v3", v2.getBase());
+        // 只保存与 v3 不同的文件，且不保存文件状态
+        assertEquals(List.of("index.html", "script.js"), List.copyOf(v2.getFiles().keySet()));
+        assertNull(v2.getFiles().get("index.html").getFileKey());
+        assertEquals(3, v2.getFileCount());
+        assertEquals(List.of(), v2.getRemoved());
+        assertEquals(List.of("script.js"), manifests.get(2).getRemoved());
+
+        Map<String, VersionManifest.Entry> v1 = history.resolve("app", "v1");
+        assertEquals(List.of("index.html", "style.css"), List.copyOf(v1.keySet()));
+        assertEquals(DigestUtil.sha256Hex("1"), v1.get("index.html").getHash());
+        assertNull(history.resolve("app", "missing"));
+    }
+
+    @Test
+    void deletingBaseKeepsDependentsResolvable() throws IOException {
+        record("v1", Map.of("index.html", "1"));
+        record("v2", Map.of("index.html", "2"));
+        record("v3", Map.of("index.html", "3"));
+
+        history.delete("app", "v2");
+
+        assertEquals(List.of("v3", "v1"), history.list("app").stream().map(VersionManifest::getVersionId).toList());
+        assertEquals(DigestUtil.sha256Hex("1"), history.resolve("app", "v1").get("index.html").getHash());
+    }
+
+    @Test
+    void snapshotSkipsGeneratedDirsAndDetectsChanges() throws IOException {
+        Path dir = rootDir.resolve("work");
+        write(dir, Map.of("index.html", "1", "node_modules/vue/index.js", "vue", "dist/index.html", "built",
+                "src/dist/keep.js", "keep"));
+        Map<String, VersionManifest.Entry> first = VersionHistory.snapshot(dir, Map.of());
+        assertEquals(List.of("index.html", "src/dist/keep.js"), List.copyOf(first.keySet()));
+
+        // 原地修改，inode 不变但大小和修改时间变化
+        Path file = dir.resolve("index.html");
+        Files.writeString(file, "changed");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(first.get("index.html").getModifiedTime() + 2000));
+        Map<String, VersionManifest.Entry> second = VersionHistory.snapshot(dir, first);
+
+        assertEquals(DigestUtil.sha256Hex("changed"), second.get("index.html").getHash());
+        assertEquals(first.get("src/dist/keep.js"), second.get("src/dist/keep.js"));
+        assertEquals(List.of("index.html"), VersionHistory.diff(first, second).stream().map(FileChange::path).toList());
+    }
+
+    private void record(String versionId, Map<String, String> files) throws IOException {
+        Path dir = rootDir.resolve(".versions/app").resolve(versionId);
+        write(dir, files);
+        history.record("app", versionId, dir);
+    }
+
+    private static void write(Path dir, Map<String, String> files) throws IOException {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = dir.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.zjb.zjbaicodemother.core.parser;
+
+import com.zjb.zjbaicodemother.ai.model.HtmlCodeResult;
+import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 以原有的正则解析为参照，验证扫描结果完全一致
+ */
+class CodeBlockScannerTest {
+
+    private static final Pattern HTML_CODE_PATTERN = Pattern.compile("```html\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CSS_CODE_PATTERN = Pattern.compile("```css\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JS_CODE_PATTERN = Pattern.compile("```(?:js|javascript)\\s*\\n([\\s\\S]*?)```", Pattern.CASE_INSENSITIVE);
+
+    private final CodeBlockScanner scanner = new CodeBlockScanner(Map.of(
+            "html", "html",
+            "css", "css",
+            "js", "js",
+            "javascript", "js"));
+
+    @Test
+    void matchesRegexOnCodeParserTestCases() {
+        // 与 core/CodeParserTest 中的内容相同：没有代码块，以及 css 缺少开始标记、js 缺少结束标记
+        assertSameAsRegex("""
+                随便写一段描述：
+                html 格式
+                <!DOCTYPE html>
+                <html><body><h1>Hello World!</h1></body></html>
+
+                随便写一段描述
+                """);
+        assertSameAsRegex("""
+                创建一个完整的网页：
+                html 格式
+                <!DOCTYPE html>
+                <html><body><h1>欢迎使用</h1></body></html>
+
+                css 格式
+                h1 {
+                    color: blue;
+                }
+                ```
+                ```js
+                console.log('页面加载完成');
+
+                文件创建完成！
+                """);
+        HtmlCodeResult html = new HtmlCodeParser().parse("说明\n```HTML  \r\n\n  <p>hi</p>\n```");
+        assertEquals("<p>hi</p>", html.getHtmlCode());
+    }
+
+    @Test
+    void matchesRegexOnEdgeCases() {
+        assertSameAsRegex("```css\nh1 {}\n```html\n<p></p>\n```");
+        assertSameAsRegex("````html\n<p></p>\n`````");
+        assertSameAsRegex("```html\n```");
+        assertSameAsRegex("```html```\n<p></p>\n```");
+        assertSameAsRegex("```htmlx\n<p></p>\n```html \t\n<div></div>```");
+        assertSameAsRegex("```json\n{}\n```javascript\nlet a = 1;\n```js\nlet b = 2;\n```");
+        assertSameAsRegex("```html\n<p>未结束");
+        assertSameAsRegex("```js\n```css\n```");
+    }
+
+    @Test
+    void matchesRegexOnRandomContent() {
+        String[] pieces = {"```", "`", "html", "HTML", "css", "js", "javascript", "json", "\n", " ", "\t", "\r\n", "<p>", "代码", "x"};
+        Random random = new Random(7);
+        for (int round = 0; round < 20000; round++) {
+            StringBuilder content = new StringBuilder();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                content.append(pieces[random.nextInt(pieces.length)]);
+            }
+            assertSameAsRegex(content.toString());
+        }
+    }
+
+    @Test
+    void unterminatedFencesOnLongContent() {
+        String content = "```html\n" + "<p>`内联` 代码</p>\n".repeat(200_000);
+        long start = System.nanoTime();
+        assertNull(scanner.scan(content).get("html"));
+        MultiFileCodeResult result = new MultiFileCodeParser().parse(content);
+        assertNull(result.getHtmlCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    private void assertSameAsRegex(String content) {
+        Map<String, String> blocks = scanner.scan(content);
+        assertEquals(find(HTML_CODE_PATTERN, content), blocks.get("html"), content);
+        assertEquals(find(CSS_CODE_PATTERN, content), blocks.get("css"), content);
+        assertEquals(find(JS_CODE_PATTERN, content), blocks.get("js"), content);
+    }
+
+    private static String find(Pattern pattern, String content) {
+        Matcher matcher = pattern.matcher(content);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
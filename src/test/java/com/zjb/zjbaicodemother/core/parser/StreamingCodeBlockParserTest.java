@@ -0,0 +1,101 @@
+package com.zjb.zjbaicodemother.core.parser;
+
+import com.zjb.zjbaicodemother.ai.model.MultiFileCodeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证流式解析与正则解析的结果一致，且与片段的切分方式无关
+ */
+class StreamingCodeBlockParserTest {
+
+    private static final String MULTI_FILE_OUTPUT = """
+            好的，下面是一个待办事项网站：
+
+            ```html
+            <!DOCTYPE html>
+            <html>
+            <head><link rel="stylesheet" href="style.css"></head>
+            <body><h1>待办事项 😀</h1><script src="script.js"></script></body>
+            </html>
+            ```
+
+            ```css
+            h1 { color: blue; }
+            ```
+
+            ```javascript
+            console.log(`模板字符串 ${1 + 1}`);
+            ```
+
+            ```html
+            <p>第二个 html 代码块会被忽略</p>
+            ```
+            说明结束。
+            """;
+
+    @Test
+    void matchesRegexParserForAnyChunking() {
+        MultiFileCodeResult expected = new MultiFileCodeParser().parse(MULTI_FILE_OUTPUT);
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Map<String, String> blocks = new LinkedHashMap<>();
+            StreamingCodeBlockParser parser = new StreamingCodeBlockParser(Set.of("html", "css", "js"), false, blocks::put);
+            int start = 0;
+            while (start < MULTI_FILE_OUTPUT.length()) {
+                int end = Math.min(MULTI_FILE_OUTPUT.length(), start + 1 + random.nextInt(round % 10 + 1));
+                parser.feed(MULTI_FILE_OUTPUT.substring(start, end));
+                start = end;
+            }
+            parser.finish();
+
+            assertEquals(expected.getHtmlCode(), blocks.get("html").trim());
+            assertEquals(expected.getCssCode(), blocks.get("css").trim());
+            assertEquals(expected.getJsCode(), blocks.get("js").trim());
+            assertEquals(3, blocks.size());
+        }
+    }
+
+    @Test
+    void emitsBlockAsSoonAsItCloses() {
+        Map<String, String> blocks = new LinkedHashMap<>();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(Set.of("html", "css"), false, blocks::put);
+        parser.feed("```css\nh1 {}\n``");
+        assertTrue(blocks.isEmpty());
+        parser.feed("`\n```html\n<p>");
+        assertEquals(Map.of("css", "h1 {}\n"), blocks);
+
+        // 输出被截断时按已输出的内容处理
+        parser.finish();
+        assertEquals("<p>", blocks.get("html"));
+    }
+
+    @Test
+    void fallbackMatchesHtmlParserWithoutHtmlBlock() {
+        HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
+        for (String output : new String[]{
+                "<html><body>没有代码块</body></html>",
+                "说明\n```css\nh1 {}\n```\n<html><body>代码块之外</body></html>",
+                "说明\n```html\n   \n```\n```html\n<p>第二个</p>\n```\n"}) {
+            StreamingCodeBlockParser parser = new StreamingCodeBlockParser(Set.of("html"), true, (language, content) -> {
+            });
+            parser.feed(output);
+            parser.finish();
+            assertEquals(htmlCodeParser.parse(output).getHtmlCode(), parser.fallbackText().trim());
+        }
+    }
+
+    @Test
+    void releasesFallbackAfterNonBlankBlock() {
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(Set.of("html"), true, (language, content) -> {
+        });
+        parser.feed("说明\n```html\n<p></p>\n```\n");
+        assertEquals("", parser.fallbackText());
+    }
+}
@@ -0,0 +1,121 @@
+package com.zjb.zjbaicodemother.core.stream;
+
+import com.zjb.zjbaicodemother.ai.model.message.AiResponseMessage;
+import com.zjb.zjbaicodemother.ai.model.message.StreamMessage;
+import com.zjb.zjbaicodemother.ai.model.message.ToolRequestMessage;
+import com.zjb.zjbaicodemother.config.StreamBridgeConfig;
+import com.zjb.zjbaicodemother.model.enums.StreamOverflowPolicyEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证消费者落后时的文本合并和缓冲区写满时的溢出策略
+ */
+class StreamMessageBridgeTest {
+
+    private final StreamBridgeConfig config = new StreamBridgeConfig();
+
+    private final StreamBridgeMetrics metrics = new StreamBridgeMetrics(new SimpleMeterRegistry());
+
+    @Test
+    void coalescesTextWhileConsumerIsBehind() {
+        ManualSubscriber subscriber = subscribe(bridge -> {
+            bridge.next(new AiResponseMessage("a"));
+            bridge.next(new AiResponseMessage("b"));
+            bridge.next(new AiResponseMessage("c"));
+            bridge.complete();
+        });
+
+        subscriber.request(10);
+
+        assertEquals(List.of(new AiResponseMessage("abc")), subscriber.received);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void errorPolicyIsTheDefault() {
+        config.setBufferSize(2);
+        assertEquals(StreamOverflowPolicyEnum.ERROR, config.getOverflowPolicy());
+        ManualSubscriber subscriber = subscribe(bridge -> {
+            for (int i = 0; i < 3; i++) {
+                bridge.next(new ToolRequestMessage("call_" + i, "writeFile", "{}"));
+            }
+        });
+
+        subscriber.request(10);
+
+        // 已缓冲的消息仍然下发，之后终止流
+        assertEquals(2, subscriber.received.size());
+        assertNotNull(subscriber.error.get());
+    }
+
+    @Test
+    void blockedProducerResumesWhenConsumerCatchesUp() throws InterruptedException {
+        config.setBufferSize(1);
+        config.setOverflowPolicy(StreamOverflowPolicyEnum.BLOCK);
+        config.setBlockTimeout(Duration.ofSeconds(5));
+        CountDownLatch produced = new CountDownLatch(1);
+        ManualSubscriber subscriber = subscribe(bridge -> Thread.ofVirtual().start(() -> {
+            bridge.next(new ToolRequestMessage("call_1", "writeFile", "{}"));
+            bridge.next(new ToolRequestMessage("call_2", "writeFile", "{}"));
+            bridge.complete();
+            produced.countDown();
+        }));
+
+        assertFalse(produced.await(100, TimeUnit.MILLISECONDS));
+        subscriber.request(10);
+
+        assertTrue(produced.await(5, TimeUnit.SECONDS));
+        assertEquals(2, subscriber.received.size());
+        assertNull(subscriber.error.get());
+    }
+
+    private ManualSubscriber subscribe(Consumer<StreamMessageBridge> producer) {
+        ManualSubscriber subscriber = new ManualSubscriber();
+        StreamMessageBridge.create(producer, config, metrics).subscribe(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * 订阅时不请求数据，由测试控制需求
+     */
+    private static class ManualSubscriber extends BaseSubscriber<StreamMessage> {
+
+        final List<StreamMessage> received = new CopyOnWriteArrayList<>();
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        volatile boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(StreamMessage value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error.set(throwable);
+        }
+    }
+}
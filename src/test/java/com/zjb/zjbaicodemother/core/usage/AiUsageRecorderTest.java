@@ -0,0 +1,179 @@
+package com.zjb.zjbaicodemother.core.usage;
+
+import com.zjb.zjbaicodemother.config.AiUsageConfig;
+import com.zjb.zjbaicodemother.model.entity.AiUsage;
+import com.zjb.zjbaicodemother.model.enums.AiUsageStatusEnum;
+import com.zjb.zjbaicodemother.model.enums.CodeGenTypeEnum;
+import com.zjb.zjbaicodemother.service.AiUsageService;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证用量跟踪器只记录一次、工具轮次的计算，以及批量写入和关闭时写完剩余明细
+ */
+class AiUsageRecorderTest {
+
+    private final List<List<AiUsage>> batches = new CopyOnWriteArrayList<>();
+
+    private AiUsageRecorder recorder;
+
+    @AfterEach
+    void tearDown() {
+        recorder.shutdown();
+    }
+
+    @Test
+    void recordsTokensAndToolRoundsOnce() {
+        recorder = recorder(config(10));
+        AiUsageRecorder.Tracker usage = recorder.start(1L, 2L, CodeGenTypeEnum.VUE_PROJECT);
+        // 第一轮：模型输出后并行执行两个工具
+        usage.onModelOutput();
+        usage.onToolExecuted();
+        usage.onToolExecuted();
+        // 第二轮
+        usage.onModelOutput();
+        usage.onToolExecuted();
+        usage.onModelOutput();
+        usage.complete(ChatResponse.builder()
+                .aiMessage(AiMessage.from("done"))
+                .tokenUsage(new TokenUsage(1200, 300))
+                .modelName("test-model")
+                .build());
+        // 完成后的取消不再记录
+        usage.cancel();
+        recorder.flush();
+
+        List<AiUsage> records = records();
+        assertEquals(1, records.size());
+        AiUsage record = records.get(0);
+        assertEquals(AiUsageStatusEnum.SUCCESS.getValue(), record.getStatus());
+        assertEquals(1200, record.getInputTokens());
+        assertEquals(300, record.getOutputTokens());
+        assertEquals(1500, record.getTotalTokens());
+        assertEquals(2, record.getToolRounds());
+        assertEquals("test-model", record.getModelName());
+        assertEquals(2L, record.getUserId());
+    }
+
+    @Test
+    void cancellationErrorIsRecordedAsCancelled() {
+        recorder = recorder(config(10));
+        recorder.start(1L, 2L, CodeGenTypeEnum.HTML).fail(new CancellationException());
+        recorder.start(1L, 2L, CodeGenTypeEnum.HTML).fail(new IllegalStateException());
+        recorder.start(1L, 2L, CodeGenTypeEnum.HTML).cacheHit();
+        recorder.flush();
+
+        assertEquals(List.of("cancelled", "error", "cache_hit"), records().stream().map(AiUsage::getStatus).toList());
+        assertTrue(records().stream().allMatch(record -> record.getTotalTokens() == 0));
+    }
+
+    @Test
+    void failureRecordsTheUsageOfCompletedRounds() {
+        recorder = recorder(config(10));
+        AiUsageRecorder.Tracker usage = recorder.start(1L, 2L, CodeGenTypeEnum.VUE_PROJECT);
+        usage.onModelOutput();
+        usage.onIntermediateResponse(toolRound(new TokenUsage(1000, 200)));
+        usage.onToolExecuted();
+        usage.onModelOutput();
+        usage.onIntermediateResponse(toolRound(new TokenUsage(1300, 150)));
+        usage.onToolExecuted();
+        // 第三轮进行中取消，这一轮没有用量
+        usage.onModelOutput();
+        usage.fail(new CancellationException());
+        recorder.flush();
+
+        AiUsage record = records().get(0);
+        assertEquals(AiUsageStatusEnum.CANCELLED.getValue(), record.getStatus());
+        assertEquals(2300, record.getInputTokens());
+        assertEquals(350, record.getOutputTokens());
+        assertEquals(2650, record.getTotalTokens());
+        assertEquals("test-model", record.getModelName());
+    }
+
+    @Test
+    void writesInBatchesAndFlushesOnShutdown() throws InterruptedException {
+        recorder = recorder(config(3));
+        for (int i = 0; i < 7; i++) {
+            recorder.start((long) i, 2L, CodeGenTypeEnum.HTML).cacheHit();
+        }
+        // 积压到一批时立即写入，不等定时任务
+        long deadline = System.currentTimeMillis() + 5000;
+        while (records().size() < 6 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(records().size() >= 6);
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 3));
+
+        recorder.shutdown();
+        assertEquals(7, records().size());
+    }
+
+    @Test
+    void dropsWhenQueueIsFull() {
+        AiUsageConfig config = config(100);
+        config.setQueueCapacity(2);
+        recorder = recorder(config);
+        for (int i = 0; i < 5; i++) {
+            recorder.start((long) i, 2L, CodeGenTypeEnum.HTML).cacheHit();
+        }
+        recorder.flush();
+
+        assertEquals(2, records().size());
+    }
+
+    private static ChatResponse toolRound(TokenUsage tokenUsage) {
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(ToolExecutionRequest.builder().id("call").name("writeFile").arguments("{}").build()))
+                .tokenUsage(tokenUsage)
+                .modelName("test-model")
+                .build();
+    }
+
+    private List<AiUsage> records() {
+        List<AiUsage> records = new ArrayList<>();
+        batches.forEach(records::addAll);
+        return records;
+    }
+
+    private static AiUsageConfig config(int batchSize) {
+        AiUsageConfig config = new AiUsageConfig();
+        config.setBatchSize(batchSize);
+        // 测试中不依赖定时写入
+        config.setFlushInterval(Duration.ofHours(1));
+        return config;
+    }
+
+    private AiUsageRecorder recorder(AiUsageConfig config) {
+        return new AiUsageRecorder(config, aiUsageService(), new AiUsageMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * 只实现记录器用到的 saveBatch
+     */
+    @SuppressWarnings("unchecked")
+    private AiUsageService aiUsageService() {
+        return (AiUsageService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AiUsageService.class},
+                (proxy, method, args) -> {
+                    if (!"saveBatch".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    batches.add(List.copyOf((Collection<AiUsage>) args[0]));
+                    return true;
+                });
+    }
+}
@@ -0,0 +1,250 @@
+package com.zjb.zjbaicodemother.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.stream.Stream;
+
+/**
+ * 代码生成接口压测
+ * 以 N 个并发 SSE 连接调用 /app/chat/gen/code，统计首 token 耗时、单次生成耗时、输出吞吐，
+ * 并通过 actuator 定时采样服务端的堆内存和线程数
+ * 运行方式：服务端以 --spring.profiles.active=local,mock 启动（回放模型，不产生费用），然后直接执行 main 方法，参数通过系统属性指定：
+ * -Dloadtest.baseUrl=http://localhost:8123/api -Dloadtest.userAccount=... -Dloadtest.userPassword=...
+ * -Dloadtest.concurrency=20 -Dloadtest.rounds=3 -Dloadtest.prompt=做一个任务记录网站 -Dloadtest.appIds=1,2（可选，默认为每个并发创建新应用）
+ *
+ * @author zjb
+ */
+public class GenerationLoadRunner {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8123/api");
+
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 10);
+
+    private final int rounds = Integer.getInteger("loadtest.rounds", 1);
+
+    private final String prompt = System.getProperty("loadtest.prompt", "做一个任务记录网站");
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .cookieHandler(new CookieManager())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final List<Result> results = new CopyOnWriteArrayList<>();
+
+    private final LongAccumulator maxHeapBytes = new LongAccumulator(Math::max, 0);
+
+    private final LongAccumulator maxThreads = new LongAccumulator(Math::max, 0);
+
+    public static void main(String[] args) throws Exception {
+        new GenerationLoadRunner().run();
+    }
+
+    private void run() throws Exception {
+        login(System.getProperty("loadtest.userAccount"), System.getProperty("loadtest.userPassword"));
+        List<Long> appIds = prepareApps();
+        long startHeap = metric("jvm.memory.used", "area:heap");
+        long startThreads = metric("jvm.threads.live", null);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long appId : appIds) {
+                futures.add(workers.submit(() -> {
+                    for (int round = 0; round < rounds; round++) {
+                        results.add(generate(appId));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        sampler.shutdownNow();
+        sample();
+        report(wallNanos, startHeap, startThreads);
+    }
+
+    /**
+     * 发起一次生成并读完整个 SSE 流
+     */
+    private Result generate(Long appId) {
+        String url = baseUrl + "/app/chat/gen/code?appId=" + appId
+                + "&message=" + URLEncoder.encode(prompt, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofMinutes(10))
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        long firstTokenNanos = -1;
+        long chars = 0;
+        long events = 0;
+        try {
+            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                return Result.failed(System.nanoTime() - start, "HTTP " + response.statusCode());
+            }
+            try (Stream<String> lines = response.body()) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    if (line.startsWith("event:") && line.substring(6).trim().equals("done")) {
+                        break;
+                    }
+                    if (!line.startsWith("data:") || line.length() <= 5) {
+                        continue;
+                    }
+                    JsonNode data = OBJECT_MAPPER.readTree(line.substring(5).trim());
+                    String chunk = data.path("d").asText("");
+                    if (chunk.isEmpty()) {
+                        continue;
+                    }
+                    if (firstTokenNanos < 0) {
+                        firstTokenNanos = System.nanoTime() - start;
+                    }
+                    chars += chunk.length();
+                    events++;
+                }
+            }
+            return new Result(true, firstTokenNanos, System.nanoTime() - start, chars, events, null);
+        } catch (IOException | RuntimeException e) {
+            return Result.failed(System.nanoTime() - start, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failed(System.nanoTime() - start, "interrupted");
+        }
+    }
+
+    private void login(String userAccount, String userPassword) throws IOException, InterruptedException {
+        if (userAccount == null || userPassword == null) {
+            throw new IllegalArgumentException("请通过 -Dloadtest.userAccount 和 -Dloadtest.userPassword 指定压测账号");
+        }
+        JsonNode response = post("/user/login", Map.of("userAccount", userAccount, "userPassword", userPassword));
+        if (response.path("code").asInt() != 0) {
+            throw new IllegalStateException("登录失败: " + response);
+        }
+    }
+
+    private List<Long> prepareApps() throws IOException, InterruptedException {
+        String appIds = System.getProperty("loadtest.appIds");
+        if (appIds != null && !appIds.isBlank()) {
+            return Arrays.stream(appIds.split(",")).map(String::trim).map(Long::valueOf).toList();
+        }
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            JsonNode response = post("/app/add", Map.of("initPrompt", prompt));
+            if (response.path("code").asInt() != 0) {
+                throw new IllegalStateException("创建应用失败: " + response);
+            }
+            created.add(response.path("data").asLong());
+        }
+        return created;
+    }
+
+    private JsonNode post(String path, Object body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(OBJECT_MAPPER.writeValueAsString(body)))
+                .build();
+        return OBJECT_MAPPER.readTree(httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private void sample() {
+        maxHeapBytes.accumulate(metric("jvm.memory.used", "area:heap"));
+        maxThreads.accumulate(metric("jvm.threads.live", null));
+    }
+
+    /**
+     * 读取服务端 actuator 指标的当前值，读取失败时为 -1
+     */
+    private long metric(String name, String tag) {
+        String url = baseUrl + "/actuator/metrics/" + name
+                + (tag == null ? "" : "?tag=" + URLEncoder.encode(tag, StandardCharsets.UTF_8));
+        try {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            for (JsonNode measurement : OBJECT_MAPPER.readTree(response.body()).path("measurements")) {
+                if ("VALUE".equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asLong();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return -1;
+    }
+
+    private void report(long wallNanos, long startHeap, long startThreads) {
+        List<Result> succeeded = results.stream().filter(Result::ok).toList();
+        List<Long> ttft = succeeded.stream().filter(result -> result.firstTokenNanos() >= 0)
+                .map(Result::firstTokenNanos).sorted().toList();
+        List<Long> durations = succeeded.stream().map(Result::durationNanos).sorted().toList();
+        long totalChars = succeeded.stream().mapToLong(Result::chars).sum();
+        long totalEvents = succeeded.stream().mapToLong(Result::events).sum();
+        double wallSeconds = wallNanos / 1e9;
+
+        System.out.printf("并发: %d，每个并发 %d 次，耗时 %.1fs%n", concurrency, rounds, wallSeconds);
+        System.out.printf("生成: %d 次，成功 %d 次，失败 %d 次%n", results.size(), succeeded.size(), results.size() - succeeded.size());
+        results.stream().filter(result -> !result.ok()).map(Result::error).distinct().limit(5)
+                .forEach(error -> System.out.println("  失败原因: " + error));
+        System.out.printf("首 token 耗时(ms): p50=%.0f p90=%.0f p99=%.0f max=%.0f%n",
+                percentile(ttft, 50), percentile(ttft, 90), percentile(ttft, 99), percentile(ttft, 100));
+        System.out.printf("单次生成耗时(ms): p50=%.0f p90=%.0f p99=%.0f max=%.0f%n",
+                percentile(durations, 50), percentile(durations, 90), percentile(durations, 99), percentile(durations, 100));
+        System.out.printf("吞吐: %.1f 次生成/分钟，%.0f 字符/秒，%.0f SSE 帧/秒%n",
+                succeeded.size() * 60 / wallSeconds, totalChars / wallSeconds, totalEvents / wallSeconds);
+        System.out.printf("服务端堆内存(MB): 开始 %.1f，峰值 %.1f%n", startHeap / 1048576.0, maxHeapBytes.get() / 1048576.0);
+        System.out.printf("服务端线程数: 开始 %d，峰值 %d%n", startThreads, maxThreads.get());
+    }
+
+    private static double percentile(List<Long> sortedNanos, int percentile) {
+        if (sortedNanos.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, Math.min(index, sortedNanos.size() - 1))) / 1e6;
+    }
+
+    /**
+     * 一次生成的结果
+     *
+     * @param ok              是否成功读完整个流
+     * @param firstTokenNanos 首个非空数据帧的耗时，没有数据时为 -1
+     * @param durationNanos   总耗时
+     * @param chars           输出的字符数
+     * @param events          数据帧数
+     * @param error           失败原因
+     */
+    private record Result(boolean ok, long firstTokenNanos, long durationNanos, long chars, long events, String error) {
+
+        static Result failed(long durationNanos, String error) {
+            return new Result(false, -1, durationNanos, 0, 0, error);
+        }
+    }
+}
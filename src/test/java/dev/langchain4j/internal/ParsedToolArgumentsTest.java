@@ -0,0 +1,34 @@
+package dev.langchain4j.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParsedToolArgumentsTest {
+
+    @Test
+    void parsedArgumentsAreOnlyVisibleDuringTheCall() {
+        String arguments = "{\"relativeFilePath\": \"a.txt\"}";
+        Map<String, Object> parsed = Map.of("relativeFilePath", "streamed");
+
+        Object seen = ParsedToolArguments.callWith(arguments, parsed, () -> ParsedToolArguments.parse(arguments));
+
+        assertSame(parsed, seen);
+        // Outside of the call the arguments are parsed again
+        assertEquals(Map.of("relativeFilePath", "a.txt"), ParsedToolArguments.parse(arguments));
+        assertNull(ParsedToolArguments.get(arguments));
+    }
+
+    @Test
+    void equalArgumentsOfAnotherRequestAreParsedAgain() {
+        String arguments = "{\"relativeFilePath\": \"a.txt\"}";
+        String sameText = new String(arguments);
+        Map<String, Object> parsed = Map.of("relativeFilePath", "streamed");
+
+        Object seen = ParsedToolArguments.callWith(arguments, parsed, () -> ParsedToolArguments.get(sameText));
+
+        assertNull(seen);
+    }
+}
@@ -0,0 +1,68 @@
+package dev.langchain4j.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingJsonParserTest {
+
+    private static final String ARGUMENTS = "{\"relativeFilePath\": \"src/App.vue\", \"options\": [1, -2.5e3, true, null, {\"a\": []}], "
+            + "\"content\": \"<div>\\n  \\\"你好\\\" \\u4e16\\u754c \\\\ \\ud83d\\ude00</div>\"}";
+
+    @Test
+    void parseInFragments() {
+        Map<String, Object> expected = Json.fromJson(ARGUMENTS, Map.class);
+        for (int fragmentSize = 1; fragmentSize <= ARGUMENTS.length(); fragmentSize++) {
+            StreamingJsonParser parser = new StreamingJsonParser(null, true);
+            for (int i = 0; i < ARGUMENTS.length(); i += fragmentSize) {
+                assertNull(parser.result());
+                parser.accept(ARGUMENTS.substring(i, Math.min(ARGUMENTS.length(), i + fragmentSize)));
+            }
+            assertTrue(parser.isComplete());
+            assertEquals(expected, parser.result());
+        }
+    }
+
+    @Test
+    void streamTopLevelStringFields() {
+        List<String> events = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        StreamingJsonParser parser = new StreamingJsonParser(new StreamingJsonParser.FieldListener() {
+            @Override
+            public void onStringFieldStart(String name) {
+                events.add("start:" + name);
+            }
+
+            @Override
+            public void onStringFieldChunk(String name, CharSequence chunk) {
+                if ("content".equals(name)) {
+                    content.append(chunk);
+                }
+            }
+
+            @Override
+            public void onStringFieldEnd(String name) {
+                events.add("end:" + name);
+            }
+        }, false);
+        for (int i = 0; i < ARGUMENTS.length(); i += 5) {
+            parser.accept(ARGUMENTS.substring(i, Math.min(ARGUMENTS.length(), i + 5)));
+        }
+        assertTrue(parser.isComplete());
+        assertNull(parser.result());
+        assertEquals(List.of("start:relativeFilePath", "end:relativeFilePath", "start:content", "end:content"), events);
+        assertEquals("<div>\n  \"你好\" 世界 \\ 😀</div>", content.toString());
+    }
+
+    @Test
+    void rejectInvalidArguments() {
+        assertNull(StreamingJsonParser.parse("{\"a\": tru}"));
+        assertNull(StreamingJsonParser.parse("[1, 2]"));
+        assertNull(StreamingJsonParser.parse("{\"a\": 1"));
+        assertEquals(Map.of("a", List.of(1, 2)), StreamingJsonParser.parse("{\"a\": [1, 2,],}"));
+    }
+}
@@ -0,0 +1,128 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiServiceStreamingResponseHandlerTest {
+
+    private static final ToolExecutionKeyResolver KEY_BY_ARGUMENTS =
+            request -> "unknown".equals(request.name()) ? null : request.arguments();
+
+    @Test
+    void requestsWithSameKeyRunInOrder() {
+        List<String> finished = new CopyOnWriteArrayList<>();
+        List<ToolExecutionRequest> requests = List.of(request("1", "write", "a"), request("2", "write", "b"),
+                request("3", "write", "a"));
+
+        List<CompletableFuture<String>> results = AiServiceStreamingResponseHandler.executeConcurrently(
+                requests, 8, KEY_BY_ARGUMENTS, request -> {
+                    // The first write of "a" is the slowest, the second one still runs after it
+                    sleep("1".equals(request.id()) ? 200 : 0);
+                    finished.add(request.id());
+                    return request.id();
+                });
+
+        assertEquals(List.of("1", "2", "3"), results.stream().map(CompletableFuture::join).toList());
+        assertTrue(finished.indexOf("1") < finished.indexOf("3"));
+        // Writing "b" does not depend on "a" and does not wait for it
+        assertEquals("2", finished.getFirst());
+    }
+
+    @Test
+    void independentRequestsRunConcurrently() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<ToolExecutionRequest> requests = List.of(request("1", "write", "a"), request("2", "write", "b"));
+
+        List<CompletableFuture<String>> results = AiServiceStreamingResponseHandler.executeConcurrently(
+                requests, 8, KEY_BY_ARGUMENTS, request -> {
+                    bothStarted.countDown();
+                    await(bothStarted);
+                    return request.id();
+                });
+
+        assertEquals(List.of("1", "2"), results.stream().map(CompletableFuture::join).toList());
+    }
+
+    @Test
+    void requestWithoutKeyIsABarrier() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        ConcurrentHashMap<String, Boolean> running = new ConcurrentHashMap<>();
+        List<ToolExecutionRequest> requests = List.of(request("1", "write", "a"), request("2", "unknown", "x"),
+                request("3", "write", "b"));
+
+        AiServiceStreamingResponseHandler.executeConcurrently(requests, 8, KEY_BY_ARGUMENTS, request -> {
+            running.put(request.id(), true);
+            if (running.size() > 1) {
+                events.add("overlap:" + running.keySet());
+            }
+            sleep(50);
+            events.add(request.id());
+            running.remove(request.id());
+            return request.id();
+        }).forEach(CompletableFuture::join);
+
+        assertEquals(List.of("1", "2", "3"), events);
+    }
+
+    @Test
+    void failedRequestDoesNotBlockLaterOnes() {
+        List<ToolExecutionRequest> requests = List.of(request("1", "write", "a"), request("2", "write", "a"));
+
+        List<CompletableFuture<String>> results = AiServiceStreamingResponseHandler.executeConcurrently(
+                requests, 8, KEY_BY_ARGUMENTS, request -> {
+                    if ("1".equals(request.id())) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return request.id();
+                });
+
+        assertThrows(RuntimeException.class, results.get(0)::join);
+        assertEquals("2", results.get(1).join());
+    }
+
+    @Test
+    void failedRequestIsAnsweredWithAnErrorResult() {
+        List<ToolExecutionRequest> requests = List.of(request("1", "write", "a"), request("2", "write", "b"));
+
+        List<CompletableFuture<String>> results = AiServiceStreamingResponseHandler.executeConcurrently(
+                requests, 8, KEY_BY_ARGUMENTS, request -> {
+                    if ("1".equals(request.id())) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return request.id();
+                });
+
+        assertEquals("Tool execution failed: boom",
+                AiServiceStreamingResponseHandler.resultOf(requests.get(0), results.get(0)));
+        assertEquals("2", AiServiceStreamingResponseHandler.resultOf(requests.get(1), results.get(1)));
+    }
+
+    private static ToolExecutionRequest request(String id, String name, String arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "requests did not run concurrently");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}